@@ -0,0 +1,44 @@
+
+package com.esotericsoftware.jeti.samples;
+
+import com.esotericsoftware.jeti.Core;
+import com.esotericsoftware.jeti.JetiSDK;
+import com.esotericsoftware.jeti.RadioEx;
+
+/** Times the startup of a tool that only uses a RadioEx device. Only the libraries it needs are extracted, and the core library
+ * is not loaded by wrapping the device with {@link Core}, only by the first Core function that is called.
+ *
+ * Run it twice: the second run reuses the extracted libraries. */
+public class StartupBenchmark {
+	static private long last = System.nanoTime();
+
+	static public void main (String[] args) {
+		JetiSDK.initialize("jeti_core64.dll", "jeti_radio_ex64.dll");
+		time("Initialize");
+
+		System.out.println("RadioEx DLL version: " + RadioEx.getDllVersion());
+		time("Load RadioEx library");
+
+		try (RadioEx radioEx = RadioEx.openDevice()) {
+			time("Open RadioEx device");
+
+			radioEx.measure(100, 1, 5);
+			while (radioEx.isMeasuring())
+				Thread.onSpinWait();
+			System.out.println("Photometric value: " + radioEx.getPhotometricValue());
+			time("First measurement");
+
+			var core = new Core(radioEx);
+			time("Wrap with Core");
+
+			System.out.println("Temperature: " + core.getTemperature());
+			time("Load Core library");
+		}
+	}
+
+	static private void time (String label) {
+		long now = System.nanoTime();
+		System.out.println(String.format("%s: %.2f ms", label, (now - last) / 1_000_000f));
+		last = now;
+	}
+}
@@ -0,0 +1,154 @@
+
+package com.esotericsoftware.jeti;
+
+import com.esotericsoftware.jeti.Core.Level;
+
+/** Chooses an integration time which puts the detector level near a target percentage of full scale, usually in one or two
+ * exposures. Each exposure's {@link Core#getLevel() level} predicts the next integration time: proportionally after the first
+ * exposure, then by a line through the last two unsaturated exposures, which accounts for the dark offset. The offset found by
+ * that line is kept for the proportional step of later sources, so after the first source an unsaturated first exposure
+ * usually predicts an integration time within the tolerance. The integration time that converged is used as the first guess for
+ * the next source, so similar sources measured back to back often need a single exposure. A saturated exposure only shows that
+ * the integration time is too long, so a source that saturates the first exposure takes more. Not thread safe, like the
+ * device.
+ *
+ * <pre>
+ * var autoExposure = new AutoExposure(core);
+ * for (...) {
+ * 	Exposure exposure = autoExposure.expose();
+ * 	float[] radiance = core.fetchSpectralRadiance(380, 780, 1);
+ * }
+ * </pre> */
+public class AutoExposure {
+	private final Core core;
+	private float targetPercent = 80, tolerancePercent = 10, saturatedPercent = 98;
+	private int maxExposures = 6;
+	private float minIntegrationTime = Float.NaN, maxIntegrationTime = Float.NaN;
+	private float lastIntegrationTime = Float.NaN;
+
+	// Previous unsaturated exposure of the current expose.
+	private float previousTime = Float.NaN;
+	private int previousPercent;
+	/** The level at an integration time of 0, from the last line through two exposures. */
+	private float offsetPercent;
+
+	public AutoExposure (Core core) {
+		this.core = core;
+	}
+
+	/** @param targetPercent Percent of full scale to aim for. Default is 80.
+	 * @param tolerancePercent An exposure within this many percent of the target is accepted. Default is 10. */
+	public void setTarget (float targetPercent, float tolerancePercent) {
+		if (targetPercent <= 0 || targetPercent >= 100)
+			throw new IllegalArgumentException("targetPercent must be > 0 and < 100: " + targetPercent);
+		if (tolerancePercent < 0) throw new IllegalArgumentException("tolerancePercent must be >= 0: " + tolerancePercent);
+		this.targetPercent = targetPercent;
+		this.tolerancePercent = tolerancePercent;
+	}
+
+	/** @param saturatedPercent A level at or above this percent is treated as saturated, so it says only that the integration
+	 *           time is too long. Default is 98. */
+	public void setSaturatedPercent (float saturatedPercent) {
+		this.saturatedPercent = saturatedPercent;
+	}
+
+	/** @param maxExposures The most exposures {@link #expose()} takes before giving up. Default is 6. */
+	public void setMaxExposures (int maxExposures) {
+		if (maxExposures < 1) throw new IllegalArgumentException("maxExposures must be > 0: " + maxExposures);
+		this.maxExposures = maxExposures;
+	}
+
+	/** Sets the integration time range. By default it is read from the device the first time {@link #expose()} is called.
+	 * @param min In milliseconds.
+	 * @param max In milliseconds. */
+	public void setIntegrationTimeRange (float min, float max) {
+		if (min <= 0 || max < min) throw new IllegalArgumentException("Invalid range: " + min + " - " + max);
+		minIntegrationTime = min;
+		maxIntegrationTime = max;
+	}
+
+	/** Returns the integration time the next {@link #expose()} starts with, or NaN to start with the device's configured
+	 * integration time. */
+	public float getLastIntegrationTime () {
+		return lastIntegrationTime;
+	}
+
+	/** Sets the integration time the next {@link #expose()} starts with, eg from a similar source measured earlier.
+	 * @param integrationTime In milliseconds, or NaN to start with the device's configured integration time. */
+	public void setLastIntegrationTime (float integrationTime) {
+		lastIntegrationTime = integrationTime;
+	}
+
+	/** Takes exposures until the level is within the tolerance of the target, the integration time is at a limit of the range, or
+	 * the maximum number of exposures is reached. The last exposure is left on the device, so its results can be fetched. The
+	 * integration time stays configured on the device. */
+	public Exposure expose () throws InterruptedException {
+		if (Float.isNaN(minIntegrationTime)) {
+			minIntegrationTime = core.getMinIntegrationTimeConfig();
+			maxIntegrationTime = core.getMaxIntegrationTimeConfig();
+		}
+		float time = lastIntegrationTime;
+		if (Float.isNaN(time)) time = core.getIntegrationTimeConfig().configured();
+		time = clamp(time);
+		start();
+		for (int exposures = 1;; exposures++) {
+			core.setIntegrationTimeConfig(time);
+			core.measure();
+			while (core.isMeasuring())
+				Thread.sleep(1);
+			Level level = core.getLevel();
+
+			float next = next(time, level.percent());
+			if (next == time || exposures == maxExposures) {
+				boolean converged = next == time && Math.abs(level.percent() - targetPercent) <= tolerancePercent;
+				lastIntegrationTime = time;
+				Log.debug("Exposure: {} ms, {}", time, level);
+				return new Exposure(time, level.counts(), level.percent(), exposures, converged);
+			}
+			time = next;
+		}
+	}
+
+	/** Forgets the previous exposure, before the first exposure of a source. */
+	void start () {
+		previousTime = Float.NaN;
+	}
+
+	/** Returns the integration time for the next exposure, or the same integration time if the level is acceptable or the
+	 * integration time cannot change further. */
+	float next (float time, int percent) {
+		if (Math.abs(percent - targetPercent) <= tolerancePercent) return time;
+		float next;
+		if (percent >= saturatedPercent) {
+			// The level is clipped, so only the direction is known. Step down as far as a level of 0 steps up.
+			next = time * targetPercent / (saturatedPercent * 10);
+			// Don't go below an unsaturated exposure known to be too dim.
+			if (!Float.isNaN(previousTime) && previousTime < time) next = Math.max(next, (previousTime + time) / 2);
+		} else {
+			float slope = Float.NaN;
+			if (!Float.isNaN(previousTime) && previousTime != time) slope = (percent - previousPercent) / (time - previousTime);
+			if (slope > 0) {
+				next = time + (targetPercent - percent) / slope;
+				float offset = percent - slope * time;
+				if (offset >= 0 && offset < targetPercent) offsetPercent = offset;
+			} else if (percent > offsetPercent)
+				next = time * (targetPercent - offsetPercent) / (percent - offsetPercent);
+			else
+				next = time * 10;
+			previousTime = time;
+			previousPercent = percent;
+		}
+		return clamp(next);
+	}
+
+	private float clamp (float time) {
+		if (time < minIntegrationTime) return minIntegrationTime;
+		if (time > maxIntegrationTime) return maxIntegrationTime;
+		return time;
+	}
+
+	/** @param integrationTime In milliseconds.
+	 * @param converged False if the level is outside the tolerance of the target, eg because the integration time is at a limit
+	 *           of the range. */
+	public record Exposure (float integrationTime, int counts, int percent, int exposures, boolean converged) {}
+}
@@ -0,0 +1,129 @@
+
+package com.esotericsoftware.jeti;
+
+import static com.esotericsoftware.jeti.JetiSDK.*;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Latency and error code counts for each native function called through a {@link Device}. Recording is lock-free and does not
+ * allocate after a function's first call, and snapshots can be taken from any thread while the device is in use. */
+public class CallStatistics {
+	static private final int sdkErrors = 0x101;
+
+	private final ConcurrentHashMap<String, FunctionStatistics> functions = new ConcurrentHashMap<>();
+	private volatile int lastError;
+	private volatile String lastErrorFunction;
+
+	/** @param nanos Time the native call took.
+	 * @param result Code returned by the native call. */
+	public void record (String function, long nanos, int result) {
+		FunctionStatistics stats = functions.get(function);
+		if (stats == null) stats = functions.computeIfAbsent(function, FunctionStatistics::new);
+		stats.latency.record(nanos);
+		if (result != SUCCESS) {
+			if (result > 0 && result < sdkErrors)
+				stats.sdkErrors.incrementAndGet(result);
+			else
+				stats.otherErrors.computeIfAbsent(result, code -> new AtomicLong()).incrementAndGet();
+			lastErrorFunction = function;
+			lastError = result;
+		}
+	}
+
+	/** Returns the total number of calls to the specified functions, or to all functions if none are specified. */
+	public long calls (String... functions) {
+		long calls = 0;
+		if (functions.length == 0) {
+			for (FunctionStatistics stats : this.functions.values())
+				calls += stats.latency.count();
+		} else {
+			for (String function : functions) {
+				FunctionStatistics stats = this.functions.get(function);
+				if (stats != null) calls += stats.latency.count();
+			}
+		}
+		return calls;
+	}
+
+	/** Returns the last non-zero code returned by any function, or {@link JetiSDK#SUCCESS} if none. */
+	public int getLastError () {
+		return lastError;
+	}
+
+	/** Returns the function that returned {@link #getLastError()}, or null. */
+	public String getLastErrorFunction () {
+		return lastErrorFunction;
+	}
+
+	/** Returns the statistics for each function called, sorted by function name. */
+	public Map<String, FunctionSnapshot> snapshot () {
+		var snapshot = new TreeMap<String, FunctionSnapshot>();
+		for (FunctionStatistics stats : functions.values())
+			snapshot.put(stats.function, stats.snapshot());
+		return snapshot;
+	}
+
+	/** Returns the statistics for the function, or null if it has not been called. */
+	public FunctionSnapshot snapshot (String function) {
+		FunctionStatistics stats = functions.get(function);
+		return stats == null ? null : stats.snapshot();
+	}
+
+	/** Returns the number of times each error code was returned by any function. */
+	public Map<Integer, Long> errors () {
+		var errors = new TreeMap<Integer, Long>();
+		for (FunctionStatistics stats : functions.values())
+			stats.errors().forEach( (code, count) -> errors.merge(code, count, Long::sum));
+		return errors;
+	}
+
+	public void reset () {
+		functions.clear();
+		lastError = SUCCESS;
+		lastErrorFunction = null;
+	}
+
+	static private class FunctionStatistics {
+		final String function;
+		final LatencyHistogram latency = new LatencyHistogram();
+		/** Counts of the error codes the SDK defines, indexed by code, so counting them does not box the code. */
+		final AtomicLongArray sdkErrors = new AtomicLongArray(CallStatistics.sdkErrors);
+		final ConcurrentHashMap<Integer, AtomicLong> otherErrors = new ConcurrentHashMap<>();
+
+		FunctionStatistics (String function) {
+			this.function = function;
+		}
+
+		TreeMap<Integer, Long> errors () {
+			var errors = new TreeMap<Integer, Long>();
+			for (int code = 1; code < CallStatistics.sdkErrors; code++) {
+				long count = sdkErrors.get(code);
+				if (count > 0) errors.put(code, count);
+			}
+			otherErrors.forEach( (code, count) -> errors.put(code, count.get()));
+			return errors;
+		}
+
+		FunctionSnapshot snapshot () {
+			return new FunctionSnapshot(function, latency.snapshot(), errors());
+		}
+	}
+
+	/** @param errors Number of times each error code was returned. */
+	public record FunctionSnapshot (String function, LatencyHistogram.Snapshot latency, Map<Integer, Long> errors) {
+		public long calls () {
+			return latency.count();
+		}
+
+		public long errorCount () {
+			long count = 0;
+			for (long value : errors.values())
+				count += value;
+			return count;
+		}
+	}
+}
@@ -3,6 +3,12 @@ package com.esotericsoftware.jeti;
 
 import static com.esotericsoftware.jeti.JetiSDK.*;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.esotericsoftware.jeti.DeviceConfiguration.Field;
+import com.esotericsoftware.jeti.DeviceConfiguration.Layout;
 import com.esotericsoftware.jeti.JetiSDK.AdaptationStatus;
 import com.esotericsoftware.jeti.JetiSDK.BlueMeasurement;
 import com.esotericsoftware.jeti.JetiSDK.DeviceSerials;
@@ -14,6 +20,7 @@ import com.esotericsoftware.jeti.JetiSDK.UV;
 import com.esotericsoftware.jeti.JetiSDK.XY;
 import com.esotericsoftware.jeti.JetiSDK.XY10;
 import com.esotericsoftware.jeti.JetiSDK.XYZ;
+import com.esotericsoftware.jeti.Profile.Setting;
 
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.WinDef;
@@ -25,149 +32,195 @@ import com.sun.jna.ptr.ShortByReference;
 
 /** @author Nathan Sweet <misc@n4te.com> */
 public class Core extends Device<CoreLibrary> {
-	public Core (Device device) {
+	DeviceConfiguration configuration;
+	EnumMap<Setting, Object> shadow;
+
+	public Core (Device<?> device) {
 		this(device.handle);
+		serial = device.serial;
+		serials = device.serials;
+		deviceNumber = device.deviceNumber;
 	}
 
 	private Core (Pointer handle) {
-		super(CoreLibrary.INSTANCE, handle, CoreLibrary.INSTANCE::JETI_CloseDevice, 3, 2, 4, 8, 2, 1);
+		this(() -> CoreLibrary.INSTANCE, handle);
+	}
+
+	/** @param library Called to load the library the first time it is needed. */
+	Core (Supplier<CoreLibrary> library, Pointer handle) {
+		super(library, handle, "JETI_CloseDevice", CoreLibrary::JETI_CloseDevice, 3, 2, 4, 8, 2, 1);
 	}
 
 	// Device info
 
 	public DeviceType getDeviceType () {
-		check(lib().JETI_GetDeviceType(handle, b[0]));
+		check("JETI_GetDeviceType", lib().JETI_GetDeviceType(handle, b[0]));
 		return DeviceType.values[b[0].getValue()];
 	}
 
 	public String getFirmwareVersion () {
 		var versionBuffer = new byte[256];
-		check(lib().JETI_GetFirmwareVersion(handle, versionBuffer));
+		check("JETI_GetFirmwareVersion", lib().JETI_GetFirmwareVersion(handle, versionBuffer));
 		return string(versionBuffer);
 	}
 
 	public float getTemperature () {
-		check(lib().JETI_GetTemperature(handle, f[0]));
-		return f[0].getValue();
+		check("JETI_GetTemperature", lib().JETI_GetTemperature(handle, f[0]));
+		return temperature = f[0].getValue();
 	}
 
 	public BatteryInfo getBatteryInfo () {
-		check(lib().JETI_GetBatteryStat(handle, f[0], b[0], b[1]));
+		check("JETI_GetBatteryStat", lib().JETI_GetBatteryStat(handle, f[0], b[0], b[1]));
 		return new BatteryInfo(f[0].getValue(), b[0].getValue(), b[1].getValue() != 0);
 	}
 
 	public Pointer getComPortHandle () {
-		check(lib().JETI_GetComPortHandle(handle, p[0]));
+		check("JETI_GetComPortHandle", lib().JETI_GetComPortHandle(handle, p[0]));
 		return p[0].getValue();
 	}
 
 	public short measureADC1 () {
-		check(lib().JETI_MeasureADC1(handle, s[0]));
+		check("JETI_MeasureADC1", lib().JETI_MeasureADC1(handle, s[0]));
 		return s[0].getValue();
 	}
 
 	public short measureADC2 () {
-		check(lib().JETI_MeasureADC2(handle, s[0]));
+		check("JETI_MeasureADC2", lib().JETI_MeasureADC2(handle, s[0]));
 		return s[0].getValue();
 	}
 
 	public byte[] readUserData (int start, int end) {
 		var data = new byte[64]; // BOZO - Size?
-		check(lib().JETI_ReadUserData64(handle, data, start, end));
+		check("JETI_ReadUserData64", lib().JETI_ReadUserData64(handle, data, start, end), data.length);
 		return data;
 	}
 
 	public void writeUserData (byte[] data, int block) {
-		check(lib().JETI_WriteUserData64(handle, data, block));
+		check("JETI_WriteUserData64", lib().JETI_WriteUserData64(handle, data, block), data.length);
 	}
 
 	public int getLastError () {
-		check(lib().JETI_GetLastError(handle, i[0]));
-		return i[0].getValue();
+		check("JETI_GetLastError", lib().JETI_GetLastError(handle, i[0]));
+		return lastError = i[0].getValue();
+	}
+
+	/** Reads the last error without throwing, for polling loops. No exception is created on failure, though JNA still
+	 * allocates to pass the call's arguments.
+	 * @param lastError Receives the device's last error.
+	 * @return The status code of the call, {@link JetiSDK#SUCCESS} if the holder was set. */
+	public int getLastError (IntByReference lastError) {
+		int result = call("JETI_GetLastError", lib().JETI_GetLastError(handle, lastError));
+		if (result == SUCCESS) this.lastError = lastError.getValue();
+		return result;
 	}
 
 	public int getEnquiry () {
-		check(lib().JETI_GetEnquiry(handle, i[0]));
+		check("JETI_GetEnquiry", lib().JETI_GetEnquiry(handle, i[0]));
 		return i[0].getValue();
 	}
 
 	public void setCallbackFunction (byte eventChar, WinDef.HWND mainWindow) {
 		if (mainWindow == null) throw new IllegalArgumentException();
-		check(lib().JETI_SetCallbackFunction(handle, eventChar, mainWindow));
+		check("JETI_SetCallbackFunction", lib().JETI_SetCallbackFunction(handle, eventChar, mainWindow));
 	}
 
 	// Device communication
 
 	public void reset () {
-		check(lib().JETI_Reset(handle));
+		clearConfiguration();
+		check("JETI_Reset", lib().JETI_Reset(handle));
 	}
 
 	public void hardReset () {
-		check(lib().JETI_HardReset(handle));
+		clearConfiguration();
+		check("JETI_HardReset", lib().JETI_HardReset(handle));
 	}
 
 	public void deviceWrite (String command, int bytesToWrite, int timeout) {
-		check(lib().JETI_DeviceWrite(handle, command, bytesToWrite, timeout));
+		check("JETI_DeviceWrite", lib().JETI_DeviceWrite(handle, command, bytesToWrite, timeout), bytesToWrite);
 	}
 
 	public DeviceRead deviceRead (int bytesToRead, int timeout) {
 		var response = new byte[bytesToRead];
-		check(lib().JETI_DeviceRead(handle, response, bytesToRead, i[0], timeout));
+		check("JETI_DeviceRead", lib().JETI_DeviceRead(handle, response, bytesToRead, i[0], timeout), i[0].getValue());
 		return new DeviceRead(response, i[0].getValue());
 	}
 
 	public String deviceReadTerminated (int maxBytes, int timeout) {
 		var response = new byte[maxBytes];
-		check(lib().JETI_DeviceReadTerm(handle, response, maxBytes, timeout));
-		return string(response);
+		int result = lib().JETI_DeviceReadTerm(handle, response, maxBytes, timeout);
+		String read = string(response);
+		check("JETI_DeviceReadTerm", result, read.length());
+		return read;
 	}
 
 	public void dataReceived (int maxLength) {
-		check(lib().JETI_DataReceived(handle, maxLength));
+		check("JETI_DataReceived", lib().JETI_DataReceived(handle, maxLength));
 	}
 
 	public String sendCommand (String command) {
 		var answer = new byte[1024]; // BOZO - Size?
-		check(lib().JETI_ArbitraryCommand(handle, command, answer));
+		check("JETI_ArbitraryCommand", lib().JETI_ArbitraryCommand(handle, command, answer));
 		return string(answer);
 	}
 
 	// Measurement
 
 	public void measure () {
-		check(lib().JETI_InitMeasure(handle));
+		check("JETI_InitMeasure", lib().JETI_InitMeasure(handle));
 	}
 
 	public void prepareTriggeredMeasurement () {
-		check(lib().JETI_PreTrigMeasure(handle));
+		check("JETI_PreTrigMeasure", lib().JETI_PreTrigMeasure(handle));
 	}
 
 	public boolean isMeasuring () {
-		check(lib().JETI_MeasureStatusCore(handle, i[0]));
+		check(status("JETI_MeasureStatusCore", lib().JETI_MeasureStatusCore(handle, i[0]), i[0]));
 		return i[0].getValue() != 0;
 	}
 
+	/** Reads the measurement status without throwing, for polling loops. No exception is created on failure, though JNA still
+	 * allocates to pass the call's arguments.
+	 * @param measuring Receives nonzero while measuring.
+	 * @return The status code of the call, {@link JetiSDK#SUCCESS} if the holder was set. */
+	public int getMeasureStatus (IntByReference measuring) {
+		return status("JETI_MeasureStatusCore", lib().JETI_MeasureStatusCore(handle, measuring), measuring);
+	}
+
 	public void cancelMeasurement () {
-		check(lib().JETI_Break(handle));
+		check("JETI_Break", lib().JETI_Break(handle));
 	}
 
 	public float getIntegrationTime () {
-		check(lib().JETI_GetTint(handle, f[0]));
-		return f[0].getValue();
+		check("JETI_GetTint", lib().JETI_GetTint(handle, f[0]));
+		return integrationTime = f[0].getValue();
 	}
 
 	public int[] waitReadTrigger (int timeout) {
-		var spec = new int[1024 * 10]; // BOZO - Size?
-		check(lib().JETI_WaitReadTrigger(handle, spec, timeout));
+		return waitReadTrigger(new int[1024 * 10], timeout); // BOZO - Size?
+	}
+
+	/** @param spec Must have at least {@link #getPixelCount()} elements.
+	 * @return The spec array. */
+	public int[] waitReadTrigger (int[] spec, int timeout) {
+		check("JETI_WaitReadTrigger", lib().JETI_WaitReadTrigger(handle, spec, timeout), spec.length * 4);
 		return spec;
 	}
 
+	/** Waits for a trigger and reads the spectrum without throwing, so a trigger loop does not create an exception for each
+	 * {@link JetiSDK#TIMEOUT timeout}. JNA still allocates to pass the call's arguments.
+	 * @param spec Must have at least {@link #getPixelCount()} elements.
+	 * @return The status code of the call, {@link JetiSDK#SUCCESS} if the spec array was filled. */
+	public int readTrigger (int[] spec, int timeout) {
+		return call("JETI_WaitReadTrigger", lib().JETI_WaitReadTrigger(handle, spec, timeout), spec.length * 4);
+	}
+
 	public void startAdaptation (boolean reference) {
-		check(lib().JETI_StartAdaption(handle, reference));
+		check("JETI_StartAdaption", lib().JETI_StartAdaption(handle, reference));
 	}
 
 	public AdaptationStatus getAdaptationStatus () {
-		check(lib().JETI_CheckAdaptionStat(handle, f[0], s[0], i[0]));
+		check(status("JETI_CheckAdaptionStat", lib().JETI_CheckAdaptionStat(handle, f[0], s[0], i[0]), i[0]));
 		return new AdaptationStatus(f[0].getValue(), s[0].getValue(), i[0].getValue() != 0);
 	}
 
@@ -177,316 +230,458 @@ public class Core extends Device<CoreLibrary> {
 		var mode = new byte[16]; // BOZO - Size?
 		var remark = new byte[64]; // BOZO - Size?
 		var values = new double[2048]; // BOZO - Size?
-		check(lib().JETI_ReadCalib(handle, calibrationNumber, mode, remark, i[0], i[1], i[2], i[3], values));
+		check("JETI_ReadCalib", lib().JETI_ReadCalib(handle, calibrationNumber, mode, remark, i[0], i[1], i[2], i[3], values),
+			values.length * 8);
 		return new Calibration(string(mode), string(remark), i[0].getValue(), i[1].getValue(), i[2].getValue(), i[3].getValue(),
 			values);
 	}
 
 	public void writeCalibration (int calibrationNumber, String mode, String remark, int begin, int end, int step,
 		int integrationTime, double[] values) {
-		check(lib().JETI_WriteCalib(handle, calibrationNumber, mode, remark, begin, end, step, integrationTime, values));
+		configuration = null;
+		check("JETI_WriteCalib",
+			lib().JETI_WriteCalib(handle, calibrationNumber, mode, remark, begin, end, step, integrationTime, values),
+			values.length * 8);
 	}
 
 	public void deleteCalibration (int calibrationNumber) {
-		check(lib().JETI_DeleteCalib(handle, calibrationNumber));
+		write("JETI_DeleteCalib", lib().JETI_DeleteCalib(handle, calibrationNumber));
 	}
 
 	public WavelengthRange getCalibrationRange () {
-		check(lib().JETI_GetCalibRange(handle, i[0], i[1], i[2]));
+		check("JETI_GetCalibRange", lib().JETI_GetCalibRange(handle, i[0], i[1], i[2]));
 		return new WavelengthRange(i[0].getValue(), i[1].getValue(), i[2].getValue());
 	}
 
 	public void setCalibration (byte calibrationNumber) {
-		check(lib().JETI_SetCalib(handle, calibrationNumber));
+		clearConfiguration();
+		check("JETI_SetCalib", lib().JETI_SetCalib(handle, calibrationNumber));
 	}
 
 	public byte getCalibration () {
-		check(lib().JETI_GetCalib(handle, b[0]));
+		check("JETI_GetCalib", lib().JETI_GetCalib(handle, b[0]));
 		return b[0].getValue();
 	}
 
 	public void measureCompensationDark () {
-		check(lib().JETI_MeasCompDark(handle));
+		check("JETI_MeasCompDark", lib().JETI_MeasCompDark(handle));
 	}
 
 	// Parameter functions
 
 	public int getPixelCount () {
-		check(lib().JETI_GetPixel(handle, i[0]));
+		if (configuration != null && configuration.has(Field.pixelCount)) return configuration.getPixelCount();
+		check("JETI_GetPixel", lib().JETI_GetPixel(handle, i[0]));
 		return i[0].getValue();
 	}
 
 	public byte getPixelBinning () {
-		check(lib().JETI_GetPixelBinning(handle, b[0]));
+		if (configuration != null && configuration.has(Field.pixelBinning)) return configuration.getPixelBinning();
+		check("JETI_GetPixelBinning", lib().JETI_GetPixelBinning(handle, b[0]));
 		return b[0].getValue();
 	}
 
 	public float getFit () {
-		check(lib().JETI_GetFit(handle, f[0]));
+		if (configuration != null && configuration.has(Field.fit)) return configuration.getFit();
+		check("JETI_GetFit", lib().JETI_GetFit(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public int getScanDelay () {
-		check(lib().JETI_GetSDelay(handle, i[0]));
-		return i[0].getValue();
+		if (shadow != null && shadow.get(Setting.scanDelay) instanceof Integer value) return value;
+		if (configuration != null && configuration.has(Field.scanDelay)) return configuration.getScanDelay();
+		check("JETI_GetSDelay", lib().JETI_GetSDelay(handle, i[0]));
+		return shadow(Setting.scanDelay, i[0].getValue());
 	}
 
 	public void setScanDelay (int delay) {
-		check(lib().JETI_SetSDelay(handle, delay));
+		set(Setting.scanDelay, delay, "JETI_SetSDelay", lib().JETI_SetSDelay(handle, delay));
 	}
 
 	public byte getADCResolution () {
-		check(lib().JETI_GetADCRes(handle, b[0]));
+		if (configuration != null && configuration.has(Field.adcResolution)) return configuration.getADCResolution();
+		check("JETI_GetADCRes", lib().JETI_GetADCRes(handle, b[0]));
 		return b[0].getValue();
 	}
 
 	public int getSplitTime () {
-		check(lib().JETI_GetSplitTime(handle, i[0]));
+		if (configuration != null && configuration.has(Field.splitTime)) return configuration.getSplitTime();
+		check("JETI_GetSplitTime", lib().JETI_GetSplitTime(handle, i[0]));
 		return i[0].getValue();
 	}
 
 	public Border getBorder () {
-		check(lib().JETI_GetBorder(handle, b[0], b[1]));
+		if (configuration != null && configuration.has(Field.borderMin, Field.borderMax)) return configuration.getBorder();
+		check("JETI_GetBorder", lib().JETI_GetBorder(handle, b[0], b[1]));
 		return new Border(b[0].getValue(), b[1].getValue());
 	}
 
 	public int getDistance () {
-		check(lib().JETI_GetDistance(handle, i[0]));
-		return i[0].getValue();
+		if (shadow != null && shadow.get(Setting.distance) instanceof Integer value) return value;
+		if (configuration != null && configuration.has(Field.distance)) return configuration.getDistance();
+		check("JETI_GetDistance", lib().JETI_GetDistance(handle, i[0]));
+		return shadow(Setting.distance, i[0].getValue());
 	}
 
 	public void setDistance (int distance) {
-		check(lib().JETI_SetDistance(handle, distance));
+		set(Setting.distance, distance, "JETI_SetDistance", lib().JETI_SetDistance(handle, distance));
 	}
 
 	public byte[] getParameterBlock () {
 		var params = new byte[256]; // BOZO - Size?
-		check(lib().JETI_GetParamBlock(handle, params));
+		check("JETI_GetParamBlock", lib().JETI_GetParamBlock(handle, params), params.length);
 		return params;
 	}
 
 	public void setParameterBlock (byte[] params) {
-		check(lib().JETI_SetParamBlock(handle, params));
+		clearConfiguration();
+		check("JETI_SetParamBlock", lib().JETI_SetParamBlock(handle, params), params.length);
+	}
+
+	/** Reads the parameter block in one transfer and decodes it. The getters do not answer from the snapshot until it is passed
+	 * to {@link #useConfiguration(DeviceConfiguration)}.
+	 * @param layout Should be verified for the device model and firmware, see {@link DeviceConfiguration#verify(Core)}. No
+	 *           verified layout is provided for any model. */
+	public DeviceConfiguration readConfiguration (Layout layout) {
+		return new DeviceConfiguration(getParameterBlock(), layout);
+	}
+
+	/** Until the configuration is changed through this core, getters for the fields in the snapshot answer from it without a
+	 * round trip to the device.
+	 * @param configuration A snapshot whose layout was verified with {@link DeviceConfiguration#verify(Core)}, or null to read
+	 *           from the device. */
+	public void useConfiguration (DeviceConfiguration configuration) {
+		this.configuration = configuration;
+	}
+
+	/** Returns the snapshot getters answer from, or null. */
+	public DeviceConfiguration getConfiguration () {
+		return configuration;
+	}
+
+	/** Discards the snapshot and the shadow state, eg when the configuration was changed by other means, so getters read from the
+	 * device. */
+	public void clearConfiguration () {
+		configuration = null;
+		if (shadow != null) shadow.clear();
+	}
+
+	/** When enabled, settings written by setters or read by getters are remembered, getters answer from them without a round trip
+	 * to the device, and {@link #apply(Profile)} sends only settings that differ. The shadow state is discarded by
+	 * {@link #reset()}, {@link #hardReset()}, {@link #setDefault()} and {@link #clearConfiguration()}. The device must not be
+	 * configured by other means, eg another core for the same device, while enabled. Default is false. */
+	public void setShadowEnabled (boolean enabled) {
+		if (!enabled)
+			shadow = null;
+		else if (shadow == null) //
+			shadow = new EnumMap<>(Setting.class);
+	}
+
+	public boolean isShadowEnabled () {
+		return shadow != null;
+	}
+
+	/** Applies the settings of the profile. With shadow state enabled, settings the device is known to have are skipped.
+	 * @return The number of settings written to the device. */
+	public int apply (Profile profile) {
+		int writes = 0;
+		for (Map.Entry<Setting, Object> entry : profile.values.entrySet()) {
+			Setting setting = entry.getKey();
+			Object value = entry.getValue();
+			if (shadow != null && value.equals(shadow.get(setting))) continue;
+			switch (setting) {
+			case wavelengthRange -> {
+				var range = (WavelengthRange)value;
+				setWavelengthRangeConfig(range.begin(), range.end(), range.step());
+			}
+			case maxIntegrationTime -> setMaxIntegrationTimeConfig((Float)value);
+			case integrationTime -> setIntegrationTimeConfig((Float)value);
+			case average -> setAverageConfig((Short)value);
+			case adaptation -> setAdaptationConfig((Byte)value);
+			case syncMode -> setSyncMode((Boolean)value);
+			case syncFrequency -> setSyncFrequency((Float)value);
+			case trigger -> setTrigger((Integer)value);
+			case triggerTimeout -> setTriggerTimeout((Short)value);
+			case correction -> setCorrectionStatus((Boolean)value);
+			case correctionRange -> {
+				var range = (CorrectionRange)value;
+				setCorrectionRange(range.start(), range.end());
+			}
+			case offsetCorrectionRange -> {
+				var range = (CorrectionRange)value;
+				setOffsetCorrectionRange(range.start(), range.end());
+			}
+			case strayLight -> setStrayLightMatrixEnabled((Boolean)value);
+			case distance -> setDistance((Integer)value);
+			case scanDelay -> setScanDelay((Integer)value);
+			case maxAverage -> setMaxAverageConfig((Short)value);
+			case function -> setFunctionConfig((Byte)value);
+			case format -> setFormatConfig((Byte)value);
+			case pdaRow -> {
+				var row = (PDARowConfig)value;
+				setPDARowConfig(row.pdaRow(), row.rowNumber());
+			}
+			}
+			writes++;
+		}
+		if (Log.DEBUG) Log.debug("Profile applied, writes: {}/{}", writes, profile.values.size());
+		return writes;
+	}
+
+	/** Writes a setting. The snapshot is discarded and the setting is dropped from the shadow state before the result is checked,
+	 * since the device's value is unknown if the write failed. The shadow state remembers the value if the write succeeds. */
+	private void set (Setting setting, Object value, String function, int result) {
+		configuration = null;
+		if (shadow != null) shadow.remove(setting);
+		check(function, result);
+		if (shadow != null) shadow.put(setting, value);
+	}
+
+	/** Writes configuration that is not a {@link Setting}. The snapshot is discarded, since the write may change the parameter
+	 * block. */
+	private void write (String function, int result) {
+		configuration = null;
+		check(function, result);
+	}
+
+	/** Remembers a setting read from the device, if shadow state is enabled. */
+	private <T> T shadow (Setting setting, T value) {
+		if (shadow != null) shadow.put(setting, value);
+		return value;
 	}
 
 	public boolean getOpticalTrigger () {
-		check(lib().JETI_GetOptTrigg(handle, i[0]));
+		if (configuration != null && configuration.has(Field.opticalTrigger)) return configuration.getOpticalTrigger();
+		check("JETI_GetOptTrigg", lib().JETI_GetOptTrigg(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public void setLaserIntensity (int intensity, int modulation) {
-		check(lib().JETI_SetLaserIntensity(handle, intensity, modulation));
+		write("JETI_SetLaserIntensity", lib().JETI_SetLaserIntensity(handle, intensity, modulation));
 	}
 
 	public void setTrigger (int triggerMode) {
-		check(lib().JETI_SetTrigger(handle, triggerMode));
+		set(Setting.trigger, triggerMode, "JETI_SetTrigger", lib().JETI_SetTrigger(handle, triggerMode));
 	}
 
 	public short getTriggerTimeout () {
-		check(lib().JETI_GetTrigTimeout(handle, s[0]));
-		return s[0].getValue();
+		if (shadow != null && shadow.get(Setting.triggerTimeout) instanceof Short value) return value;
+		if (configuration != null && configuration.has(Field.triggerTimeout)) return configuration.getTriggerTimeout();
+		check("JETI_GetTrigTimeout", lib().JETI_GetTrigTimeout(handle, s[0]));
+		return shadow(Setting.triggerTimeout, s[0].getValue());
 	}
 
 	public void setTriggerTimeout (short timeout) {
-		check(lib().JETI_SetTrigTimeout(handle, timeout));
+		set(Setting.triggerTimeout, timeout, "JETI_SetTrigTimeout", lib().JETI_SetTrigTimeout(handle, timeout));
 	}
 
 	public void setFlashMode (boolean flashMode) {
-		check(lib().JETI_SetFlashMode(handle, flashMode));
+		write("JETI_SetFlashMode", lib().JETI_SetFlashMode(handle, flashMode));
 	}
 
 	public void setFlashCycle (int flashCycle) {
-		check(lib().JETI_SetFlashCycle(handle, flashCycle));
+		write("JETI_SetFlashCycle", lib().JETI_SetFlashCycle(handle, flashCycle));
 	}
 
 	public boolean getCorrectionStatus () {
-		check(lib().JETI_GetCorrectionStat(handle, i[0]));
-		return i[0].getValue() != 0;
+		if (shadow != null && shadow.get(Setting.correction) instanceof Boolean value) return value;
+		if (configuration != null && configuration.has(Field.correctionStatus)) return configuration.getCorrectionStatus();
+		check("JETI_GetCorrectionStat", lib().JETI_GetCorrectionStat(handle, i[0]));
+		return shadow(Setting.correction, i[0].getValue() != 0);
 	}
 
 	public void setCorrectionStatus (boolean enabled) {
-		check(lib().JETI_SetCorrectionStat(handle, enabled));
+		set(Setting.correction, enabled, "JETI_SetCorrectionStat", lib().JETI_SetCorrectionStat(handle, enabled));
 	}
 
 	public CorrectionRange getCorrectionRange () {
-		check(lib().JETI_GetCorrectionRange(handle, i[0], i[1]));
-		return new CorrectionRange(i[0].getValue(), i[1].getValue());
+		if (shadow != null && shadow.get(Setting.correctionRange) instanceof CorrectionRange value) return value;
+		if (configuration != null && configuration.has(Field.correctionStart, Field.correctionEnd))
+			return configuration.getCorrectionRange();
+		check("JETI_GetCorrectionRange", lib().JETI_GetCorrectionRange(handle, i[0], i[1]));
+		return shadow(Setting.correctionRange, new CorrectionRange(i[0].getValue(), i[1].getValue()));
 	}
 
 	public void setCorrectionRange (int start, int end) {
-		check(lib().JETI_SetCorrectionRange(handle, start, end));
+		set(Setting.correctionRange, new CorrectionRange(start, end), "JETI_SetCorrectionRange",
+			lib().JETI_SetCorrectionRange(handle, start, end));
 	}
 
 	public CorrectionRange getOffsetCorrectionRange () {
-		check(lib().JETI_GetOffsetCorrRange(handle, i[0], i[1]));
-		return new CorrectionRange(i[0].getValue(), i[1].getValue());
+		if (shadow != null && shadow.get(Setting.offsetCorrectionRange) instanceof CorrectionRange value) return value;
+		if (configuration != null && configuration.has(Field.offsetCorrectionStart, Field.offsetCorrectionEnd))
+			return configuration.getOffsetCorrectionRange();
+		check("JETI_GetOffsetCorrRange", lib().JETI_GetOffsetCorrRange(handle, i[0], i[1]));
+		return shadow(Setting.offsetCorrectionRange, new CorrectionRange(i[0].getValue(), i[1].getValue()));
 	}
 
 	public void setOffsetCorrectionRange (int start, int end) {
-		check(lib().JETI_SetOffsetCorrRange(handle, start, end));
+		set(Setting.offsetCorrectionRange, new CorrectionRange(start, end), "JETI_SetOffsetCorrRange",
+			lib().JETI_SetOffsetCorrRange(handle, start, end));
 	}
 
 	public float[] getCorrectionCoefficients () {
 		var coefficients = new float[256]; // BOZO - Size?
-		check(lib().JETI_GetCorrectionCoeff(handle, coefficients));
+		check("JETI_GetCorrectionCoeff", lib().JETI_GetCorrectionCoeff(handle, coefficients));
 		return coefficients;
 	}
 
 	public void setCorrectionCoefficients (float[] coefficients) {
-		check(lib().JETI_SetCorrectionCoeff(handle, coefficients));
+		write("JETI_SetCorrectionCoeff", lib().JETI_SetCorrectionCoeff(handle, coefficients));
 	}
 
 	public boolean getCutoffStatus () {
-		check(lib().JETI_GetCutoffStat(handle, i[0]));
+		check("JETI_GetCutoffStat", lib().JETI_GetCutoffStat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public void setCutoffStatus (boolean enabled) {
-		check(lib().JETI_SetCutoffStat(handle, enabled));
+		write("JETI_SetCutoffStat", lib().JETI_SetCutoffStat(handle, enabled));
 	}
 
 	public int getBaudrate () {
-		check(lib().JETI_GetBaudrate(handle, i[0]));
+		check("JETI_GetBaudrate", lib().JETI_GetBaudrate(handle, i[0]));
 		return i[0].getValue();
 	}
 
 	public boolean getStrayLightMatrixEnabled () {
-		check(lib().JETI_GetSLMEnable(handle, b[0]));
-		return b[0].getValue() != 0;
+		if (shadow != null && shadow.get(Setting.strayLight) instanceof Boolean value) return value;
+		check("JETI_GetSLMEnable", lib().JETI_GetSLMEnable(handle, b[0]));
+		return shadow(Setting.strayLight, b[0].getValue() != 0);
 	}
 
 	public void setStrayLightMatrixEnabled (boolean enabled) {
-		check(lib().JETI_SetSLMEnable(handle, (byte)(enabled ? 1 : 0)));
+		set(Setting.strayLight, enabled, "JETI_SetSLMEnable", lib().JETI_SetSLMEnable(handle, (byte)(enabled ? 1 : 0)));
 	}
 
 	public void setChannelConfig (String configuration) {
-		check(lib().JETI_SetChannelConf(handle, configuration));
+		write("JETI_SetChannelConf", lib().JETI_SetChannelConf(handle, configuration));
 	}
 
 	public String getChannelConfig () {
 		var config = new byte[256]; // BOZO - Size?
-		check(lib().JETI_GetChannelConf(handle, config));
+		check("JETI_GetChannelConf", lib().JETI_GetChannelConf(handle, config));
 		return string(config);
 	}
 
 	public void setLampMode (byte mode) {
-		check(lib().JETI_SetLampMode(handle, mode));
+		write("JETI_SetLampMode", lib().JETI_SetLampMode(handle, mode));
 	}
 
 	public byte getLampMode () {
-		check(lib().JETI_GetLampMode(handle, b[0]));
+		check("JETI_GetLampMode", lib().JETI_GetLampMode(handle, b[0]));
 		return b[0].getValue();
 	}
 
 	public void setFlash (float interval, float pulseLength) {
-		check(lib().JETI_SetFlash(handle, interval, pulseLength));
+		write("JETI_SetFlash", lib().JETI_SetFlash(handle, interval, pulseLength));
 	}
 
 	public FlashSettings getFlash () {
-		check(lib().JETI_GetFlash(handle, f[0], f[1]));
+		check("JETI_GetFlash", lib().JETI_GetFlash(handle, f[0], f[1]));
 		return new FlashSettings(f[0].getValue(), f[1].getValue());
 	}
 
 	// Control functions
 
 	public boolean getLaserStatus () {
-		check(lib().JETI_GetLaserStat(handle, i[0]));
+		check("JETI_GetLaserStat", lib().JETI_GetLaserStat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public void setLaserStatus (boolean enabled) {
-		check(lib().JETI_SetLaserStat(handle, enabled));
+		check("JETI_SetLaserStat", lib().JETI_SetLaserStat(handle, enabled));
 	}
 
 	public boolean getShutterStatus () {
-		check(lib().JETI_GetShutterStat(handle, i[0]));
+		check("JETI_GetShutterStat", lib().JETI_GetShutterStat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public void setShutterStatus (boolean open) {
-		check(lib().JETI_SetShutterStat(handle, open));
+		check("JETI_SetShutterStat", lib().JETI_SetShutterStat(handle, open));
 	}
 
 	public byte getMeasurementHead () {
-		check(lib().JETI_GetMeasHead(handle, b[0]));
+		check("JETI_GetMeasHead", lib().JETI_GetMeasHead(handle, b[0]));
 		return b[0].getValue();
 	}
 
 	public boolean getAux1Status () {
-		check(lib().JETI_GetAux1Stat(handle, i[0]));
+		check("JETI_GetAux1Stat", lib().JETI_GetAux1Stat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public void setAux1Status (boolean enabled) {
-		check(lib().JETI_SetAux1Stat(handle, enabled));
+		check("JETI_SetAux1Stat", lib().JETI_SetAux1Stat(handle, enabled));
 	}
 
 	public boolean getAux2Status () {
-		check(lib().JETI_GetAux2Stat(handle, i[0]));
+		check("JETI_GetAux2Stat", lib().JETI_GetAux2Stat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public void setAux2Status (boolean enabled) {
-		check(lib().JETI_SetAux2Stat(handle, enabled));
+		check("JETI_SetAux2Stat", lib().JETI_SetAux2Stat(handle, enabled));
 	}
 
 	public void setAuxOut1 (boolean state) {
-		check(lib().JETI_AuxOut1(handle, state));
+		check("JETI_AuxOut1", lib().JETI_AuxOut1(handle, state));
 	}
 
 	public boolean getAuxOut1Status () {
-		check(lib().JETI_AuxOut1Stat(handle, i[0]));
+		check("JETI_AuxOut1Stat", lib().JETI_AuxOut1Stat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public void setAuxOut2 (boolean state) {
-		check(lib().JETI_AuxOut2(handle, state));
+		check("JETI_AuxOut2", lib().JETI_AuxOut2(handle, state));
 	}
 
 	public boolean getAuxOut2Status () {
-		check(lib().JETI_AuxOut2Stat(handle, i[0]));
+		check("JETI_AuxOut2Stat", lib().JETI_AuxOut2Stat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public void setAuxOut3 (boolean state) {
-		check(lib().JETI_AuxOut3(handle, state));
+		check("JETI_AuxOut3", lib().JETI_AuxOut3(handle, state));
 	}
 
 	public boolean getAuxOut3Status () {
-		check(lib().JETI_AuxOut3Stat(handle, i[0]));
+		check("JETI_AuxOut3Stat", lib().JETI_AuxOut3Stat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public void setAuxOut4 (boolean state) {
-		check(lib().JETI_AuxOut4(handle, state));
+		check("JETI_AuxOut4", lib().JETI_AuxOut4(handle, state));
 	}
 
 	public boolean getAuxOut4Status () {
-		check(lib().JETI_AuxOut4Stat(handle, i[0]));
+		check("JETI_AuxOut4Stat", lib().JETI_AuxOut4Stat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public void setAuxOut5 (boolean state) {
-		check(lib().JETI_AuxOut5(handle, state));
+		check("JETI_AuxOut5", lib().JETI_AuxOut5(handle, state));
 	}
 
 	public boolean getAuxOut5Status () {
-		check(lib().JETI_AuxOut5Stat(handle, i[0]));
+		check("JETI_AuxOut5Stat", lib().JETI_AuxOut5Stat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public boolean getAuxIn1Status () {
-		check(lib().JETI_AuxIn1Stat(handle, i[0]));
+		check("JETI_AuxIn1Stat", lib().JETI_AuxIn1Stat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public boolean getAuxIn2Status () {
-		check(lib().JETI_AuxIn2Stat(handle, i[0]));
+		check("JETI_AuxIn2Stat", lib().JETI_AuxIn2Stat(handle, i[0]));
 		return i[0].getValue() != 0;
 	}
 
 	public FlickerFrequency getFlickerFrequency () {
-		check(lib().JETI_GetFlickerFreq(handle, f[0], i[0]));
+		check("JETI_GetFlickerFreq", lib().JETI_GetFlickerFreq(handle, f[0], i[0]));
 		FlickerWarning warning = switch (i[0].getValue()) {
 		case 11 -> FlickerWarning.noModulation;
 		case 12 -> FlickerWarning.fuzzyModulation;
@@ -496,173 +691,207 @@ public class Core extends Device<CoreLibrary> {
 	}
 
 	public void setSyncFrequency (float frequency) {
-		check(lib().JETI_SetSyncFreq(handle, frequency));
+		set(Setting.syncFrequency, frequency, "JETI_SetSyncFreq", lib().JETI_SetSyncFreq(handle, frequency));
 	}
 
 	public float getSyncFrequency () {
-		check(lib().JETI_GetSyncFreq(handle, f[0]));
-		return f[0].getValue();
+		if (shadow != null && shadow.get(Setting.syncFrequency) instanceof Float value) return value;
+		check("JETI_GetSyncFreq", lib().JETI_GetSyncFreq(handle, f[0]));
+		return shadow(Setting.syncFrequency, f[0].getValue());
 	}
 
 	public void setSyncMode (boolean mode) {
-		check(lib().JETI_SetSyncMode(handle, mode ? (byte)1 : 0));
+		set(Setting.syncMode, mode, "JETI_SetSyncMode", lib().JETI_SetSyncMode(handle, mode ? (byte)1 : 0));
 	}
 
 	public boolean getSyncMode () {
-		check(lib().JETI_GetSyncMode(handle, b[0]));
-		return b[0].getValue() != 0;
+		if (shadow != null && shadow.get(Setting.syncMode) instanceof Boolean value) return value;
+		check("JETI_GetSyncMode", lib().JETI_GetSyncMode(handle, b[0]));
+		return shadow(Setting.syncMode, b[0].getValue() != 0);
 	}
 
 	public byte getDigitalIOInput () {
-		check(lib().JETI_GetDIOIn(handle, b[0]));
+		check("JETI_GetDIOIn", lib().JETI_GetDIOIn(handle, b[0]));
 		return b[0].getValue();
 	}
 
 	public byte getDigitalIOOutput () {
-		check(lib().JETI_GetDIOOut(handle, b[0]));
+		check("JETI_GetDIOOut", lib().JETI_GetDIOOut(handle, b[0]));
 		return b[0].getValue();
 	}
 
 	public void setDigitalIOOutput (byte value) {
-		check(lib().JETI_SetDIOOut(handle, value));
+		check("JETI_SetDIOOut", lib().JETI_SetDIOOut(handle, value));
 	}
 
 	public void setDigitalIOOutputPin (byte pinNumber, boolean state) {
-		check(lib().JETI_SetDIOOutPin(handle, pinNumber, state));
+		check("JETI_SetDIOOutPin", lib().JETI_SetDIOOutPin(handle, pinNumber, state));
 	}
 
 	// Configuration functions
 
 	public byte getDarkModeConfig () {
-		check(lib().JETI_GetDarkmodeConf(handle, b[0]));
+		check("JETI_GetDarkmodeConf", lib().JETI_GetDarkmodeConf(handle, b[0]));
 		return b[0].getValue();
 	}
 
 	public void setDarkModeConfig (byte mode) {
-		check(lib().JETI_SetDarkmodeConf(handle, mode));
+		write("JETI_SetDarkmodeConf", lib().JETI_SetDarkmodeConf(handle, mode));
 	}
 
 	public byte getExposureConfig () {
-		check(lib().JETI_GetExposureConf(handle, b[0]));
+		check("JETI_GetExposureConf", lib().JETI_GetExposureConf(handle, b[0]));
 		return b[0].getValue();
 	}
 
 	public void setExposureConfig (byte mode) {
-		check(lib().JETI_SetExposureConf(handle, mode));
+		write("JETI_SetExposureConf", lib().JETI_SetExposureConf(handle, mode));
 	}
 
+	/** Always a round trip to the device, since neither the shadow state nor the snapshot knows the previous function. The
+	 * configured function is remembered in the shadow state. */
 	public FunctionConfig getFunctionConfig () {
-		check(lib().JETI_GetFunctionConf(handle, b[0], b[1]));
-		return new FunctionConfig(b[0].getValue(), b[1].getValue());
+		check("JETI_GetFunctionConf", lib().JETI_GetFunctionConf(handle, b[0], b[1]));
+		var config = new FunctionConfig(b[0].getValue(), b[1].getValue());
+		shadow(Setting.function, config.configured());
+		return config;
 	}
 
 	public void setFunctionConfig (byte function) {
-		check(lib().JETI_SetFunctionConf(handle, function));
+		set(Setting.function, function, "JETI_SetFunctionConf", lib().JETI_SetFunctionConf(handle, function));
 	}
 
+	/** Always a round trip to the device, since neither the shadow state nor the snapshot knows the previous format. The
+	 * configured format is remembered in the shadow state. */
 	public FormatConfig getFormatConfig () {
-		check(lib().JETI_GetFormatConf(handle, b[0], b[1]));
-		return new FormatConfig(b[0].getValue(), b[1].getValue());
+		check("JETI_GetFormatConf", lib().JETI_GetFormatConf(handle, b[0], b[1]));
+		var config = new FormatConfig(b[0].getValue(), b[1].getValue());
+		shadow(Setting.format, config.configured());
+		return config;
 	}
 
 	public void setFormatConfig (byte format) {
-		check(lib().JETI_SetFormatConf(handle, format));
+		set(Setting.format, format, "JETI_SetFormatConf", lib().JETI_SetFormatConf(handle, format));
 	}
 
+	/** Always a round trip to the device, since neither the shadow state nor the snapshot knows the previous integration
+	 * time. The configured integration time is remembered in the shadow state. */
 	public IntegrationTimeConfig getIntegrationTimeConfig () {
-		check(lib().JETI_GetTintConf(handle, f[0], f[1]));
-		return new IntegrationTimeConfig(f[0].getValue(), f[1].getValue());
+		check("JETI_GetTintConf", lib().JETI_GetTintConf(handle, f[0], f[1]));
+		var config = new IntegrationTimeConfig(f[0].getValue(), f[1].getValue());
+		shadow(Setting.integrationTime, config.configured());
+		return config;
 	}
 
 	public void setIntegrationTimeConfig (float integrationTime) {
-		check(lib().JETI_SetTintConf(handle, integrationTime));
+		set(Setting.integrationTime, integrationTime, "JETI_SetTintConf", lib().JETI_SetTintConf(handle, integrationTime));
 	}
 
 	public float getMaxIntegrationTimeConfig () {
-		check(lib().JETI_GetMaxTintConf(handle, f[0]));
-		return f[0].getValue();
+		if (shadow != null && shadow.get(Setting.maxIntegrationTime) instanceof Float value) return value;
+		if (configuration != null && configuration.has(Field.maxIntegrationTime)) return configuration.getMaxIntegrationTime();
+		check("JETI_GetMaxTintConf", lib().JETI_GetMaxTintConf(handle, f[0]));
+		return shadow(Setting.maxIntegrationTime, f[0].getValue());
 	}
 
 	public void setMaxIntegrationTimeConfig (float maxIntegrationTime) {
-		check(lib().JETI_SetMaxTintConf(handle, maxIntegrationTime));
+		set(Setting.maxIntegrationTime, maxIntegrationTime, "JETI_SetMaxTintConf",
+			lib().JETI_SetMaxTintConf(handle, maxIntegrationTime));
 	}
 
 	public short getMaxAverageConfig () {
-		check(lib().JETI_GetMaxAverConf(handle, s[0]));
-		return s[0].getValue();
+		if (shadow != null && shadow.get(Setting.maxAverage) instanceof Short value) return value;
+		if (configuration != null && configuration.has(Field.maxAverage)) return configuration.getMaxAverage();
+		check("JETI_GetMaxAverConf", lib().JETI_GetMaxAverConf(handle, s[0]));
+		return shadow(Setting.maxAverage, s[0].getValue());
 	}
 
 	public void setMaxAverageConfig (short maxAverage) {
-		check(lib().JETI_SetMaxAverConf(handle, maxAverage));
+		set(Setting.maxAverage, maxAverage, "JETI_SetMaxAverConf", lib().JETI_SetMaxAverConf(handle, maxAverage));
 	}
 
 	public float getMinIntegrationTimeConfig () {
-		check(lib().JETI_GetMinTintConf(handle, f[0]));
+		if (configuration != null && configuration.has(Field.minIntegrationTime)) return configuration.getMinIntegrationTime();
+		check("JETI_GetMinTintConf", lib().JETI_GetMinTintConf(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public float getImageMinIntegrationTimeConfig () {
-		check(lib().JETI_GetImageMinTintConf(handle, f[0]));
+		check("JETI_GetImageMinTintConf", lib().JETI_GetImageMinTintConf(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public float getChannelMinIntegrationTimeConfig () {
-		check(lib().JETI_GetChanMinTintConf(handle, f[0]));
+		check("JETI_GetChanMinTintConf", lib().JETI_GetChanMinTintConf(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public float getContinuousMinIntegrationTimeConfig () {
-		check(lib().JETI_GetContMinTintConf(handle, f[0]));
+		check("JETI_GetContMinTintConf", lib().JETI_GetContMinTintConf(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public float getContinuousChannelMinIntegrationTimeConfig () {
-		check(lib().JETI_GetContChanMinTintConf(handle, f[0]));
+		check("JETI_GetContChanMinTintConf", lib().JETI_GetContChanMinTintConf(handle, f[0]));
 		return f[0].getValue();
 	}
 
+	/** Always a round trip to the device, since neither the shadow state nor the snapshot knows the previous average. The
+	 * configured average is remembered in the shadow state. */
 	public AverageConfig getAverageConfig () {
-		check(lib().JETI_GetAverConf(handle, s[0], s[1]));
-		return new AverageConfig(s[0].getValue(), s[1].getValue());
+		check("JETI_GetAverConf", lib().JETI_GetAverConf(handle, s[0], s[1]));
+		var config = new AverageConfig(s[0].getValue(), s[1].getValue());
+		shadow(Setting.average, config.configured());
+		return config;
 	}
 
 	public void setAverageConfig (short average) {
-		check(lib().JETI_SetAverConf(handle, average));
+		set(Setting.average, average, "JETI_SetAverConf", lib().JETI_SetAverConf(handle, average));
 	}
 
 	public byte getAdaptationConfig () {
-		check(lib().JETI_GetAdaptConf(handle, b[0]));
-		return b[0].getValue();
+		if (shadow != null && shadow.get(Setting.adaptation) instanceof Byte value) return value;
+		if (configuration != null && configuration.has(Field.adaptation)) return configuration.getAdaptation();
+		check("JETI_GetAdaptConf", lib().JETI_GetAdaptConf(handle, b[0]));
+		return shadow(Setting.adaptation, b[0].getValue());
 	}
 
 	public void setAdaptationConfig (byte mode) {
-		check(lib().JETI_SetAdaptConf(handle, mode));
+		set(Setting.adaptation, mode, "JETI_SetAdaptConf", lib().JETI_SetAdaptConf(handle, mode));
 	}
 
 	public WavelengthRange getWavelengthRangeConfig () {
-		check(lib().JETI_GetWranConf(handle, i[0], i[1], i[2]));
-		return new WavelengthRange(i[0].getValue(), i[1].getValue(), i[2].getValue());
+		if (shadow != null && shadow.get(Setting.wavelengthRange) instanceof WavelengthRange value) return value;
+		if (configuration != null && configuration.has(Field.wavelengthBegin, Field.wavelengthEnd, Field.wavelengthStep))
+			return configuration.getWavelengthRange();
+		check("JETI_GetWranConf", lib().JETI_GetWranConf(handle, i[0], i[1], i[2]));
+		return shadow(Setting.wavelengthRange, new WavelengthRange(i[0].getValue(), i[1].getValue(), i[2].getValue()));
 	}
 
 	public void setWavelengthRangeConfig (int begin, int end, int step) {
-		check(lib().JETI_SetWranConf(handle, begin, end, step));
+		set(Setting.wavelengthRange, new WavelengthRange(begin, end, step), "JETI_SetWranConf",
+			lib().JETI_SetWranConf(handle, begin, end, step));
 	}
 
 	public PDARowConfig getPDARowConfig () {
-		check(lib().JETI_GetPDARowConf(handle, i[0], i[1]));
-		return new PDARowConfig(i[0].getValue(), i[1].getValue());
+		if (shadow != null && shadow.get(Setting.pdaRow) instanceof PDARowConfig value) return value;
+		if (configuration != null && configuration.has(Field.pdaRow, Field.pdaRowNumber)) return configuration.getPDARow();
+		check("JETI_GetPDARowConf", lib().JETI_GetPDARowConf(handle, i[0], i[1]));
+		return shadow(Setting.pdaRow, new PDARowConfig(i[0].getValue(), i[1].getValue()));
 	}
 
 	public void setPDARowConfig (int pdaRow, int rowNumber) {
-		check(lib().JETI_SetPDARowConf(handle, pdaRow, rowNumber));
+		set(Setting.pdaRow, new PDARowConfig(pdaRow, rowNumber), "JETI_SetPDARowConf",
+			lib().JETI_SetPDARowConf(handle, pdaRow, rowNumber));
 	}
 
 	public void setDefault () {
-		check(lib().JETI_SetDefault(handle));
+		clearConfiguration();
+		check("JETI_SetDefault", lib().JETI_SetDefault(handle));
 	}
 
 	public Level getLevel () {
-		check(lib().JETI_GetLevel(handle, i[0], i[1]));
+		check("JETI_GetLevel", lib().JETI_GetLevel(handle, i[0], i[1]));
 		return new Level(i[0].getValue(), i[1].getValue());
 	}
 
@@ -670,92 +899,92 @@ public class Core extends Device<CoreLibrary> {
 
 	public int[] fetchDark (int pixelCount) {
 		var dark = new int[pixelCount];
-		check(lib().JETI_FetchDark(handle, dark));
+		check("JETI_FetchDark", lib().JETI_FetchDark(handle, dark), dark.length * 4);
 		return dark;
 	}
 
 	public int[] fetchLight (int pixelCount) {
 		var light = new int[pixelCount];
-		check(lib().JETI_FetchLight(handle, light));
+		check("JETI_FetchLight", lib().JETI_FetchLight(handle, light), light.length * 4);
 		return light;
 	}
 
 	public int[] fetchReference (int pixelCount) {
 		var reference = new int[pixelCount];
-		check(lib().JETI_FetchRefer(handle, reference));
+		check("JETI_FetchRefer", lib().JETI_FetchRefer(handle, reference), reference.length * 4);
 		return reference;
 	}
 
 	public int[] fetchSample (int pixelCount) {
 		var transRefl = new int[pixelCount];
-		check(lib().JETI_FetchTransRefl(handle, transRefl));
+		check("JETI_FetchTransRefl", lib().JETI_FetchTransRefl(handle, transRefl), transRefl.length * 4);
 		return transRefl;
 	}
 
 	public float[] fetchSpectralRadiance (int begin, int end, float step) {
 		var spectralRadiance = new float[(int)((end - begin) / step) + 1];
-		check(lib().JETI_FetchSprad(handle, spectralRadiance));
+		check("JETI_FetchSprad", lib().JETI_FetchSprad(handle, spectralRadiance), spectralRadiance.length * 4);
 		return spectralRadiance;
 	}
 
 	public float[] fetchSpectralRadianceHiRes (int begin, int end) {
 		var spectralRadiance = new float[(int)((end - begin) / 0.1f) + 1];
-		check(lib().JETI_FetchSpradHiRes(handle, spectralRadiance));
+		check("JETI_FetchSpradHiRes", lib().JETI_FetchSpradHiRes(handle, spectralRadiance), spectralRadiance.length * 4);
 		return spectralRadiance;
 	}
 
 	public float fetchRadiometricValue () {
-		check(lib().JETI_FetchRadio(handle, f[0]));
+		check("JETI_FetchRadio", lib().JETI_FetchRadio(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public float fetchPhotometricValue () {
-		check(lib().JETI_FetchPhoto(handle, f[0]));
+		check("JETI_FetchPhoto", lib().JETI_FetchPhoto(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public XY fetchChromaXY () {
-		check(lib().JETI_FetchChromxy(handle, f[0], f[1]));
+		check("JETI_FetchChromxy", lib().JETI_FetchChromxy(handle, f[0], f[1]));
 		return new XY(f[0].getValue(), f[1].getValue());
 	}
 
 	public UV fetchChromaUV () {
-		check(lib().JETI_FetchChromuv(handle, f[0], f[1]));
+		check("JETI_FetchChromuv", lib().JETI_FetchChromuv(handle, f[0], f[1]));
 		return new UV(f[0].getValue(), f[1].getValue());
 	}
 
 	public DominantWavelength fetchDominantWavelength () {
-		check(lib().JETI_FetchDWLPE(handle, f[0], f[1]));
+		check("JETI_FetchDWLPE", lib().JETI_FetchDWLPE(handle, f[0], f[1]));
 		return new DominantWavelength(f[0].getValue(), f[1].getValue());
 	}
 
 	public float fetchCCT () {
-		check(lib().JETI_FetchCCT(handle, f[0]));
+		check("JETI_FetchCCT", lib().JETI_FetchCCT(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public float fetchDuv () {
-		check(lib().JETI_FetchDuv(handle, f[0]));
+		check("JETI_FetchDuv", lib().JETI_FetchDuv(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public float fetchCRI () {
-		check(lib().JETI_FetchCRI(handle, f[0]));
+		check("JETI_FetchCRI", lib().JETI_FetchCRI(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public XYZ fetchXYZ () {
-		check(lib().JETI_FetchXYZ(handle, f[0], f[1], f[2]));
+		check("JETI_FetchXYZ", lib().JETI_FetchXYZ(handle, f[0], f[1], f[2]));
 		return new XYZ(f[0].getValue(), f[1].getValue(), f[2].getValue());
 	}
 
 	public float fetchAdaptationIntegrationTime () {
-		check(lib().JETI_FetchTiAdapt(handle, f[0]));
+		check("JETI_FetchTiAdapt", lib().JETI_FetchTiAdapt(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public short fetchAdaptationAverage () {
-		check(lib().JETI_FetchAverAdapt(handle, s[0]));
+		check("JETI_FetchAverAdapt", lib().JETI_FetchAverAdapt(handle, s[0]));
 		return s[0].getValue();
 	}
 
@@ -763,104 +992,104 @@ public class Core extends Device<CoreLibrary> {
 
 	public float[] calculateLinearDark (int begin, int end, float step) {
 		var dark = new float[(int)((end - begin) / step) + 1];
-		check(lib().JETI_CalcLintDark(handle, begin, end, step, dark));
+		check("JETI_CalcLintDark", lib().JETI_CalcLintDark(handle, begin, end, step, dark));
 		return dark;
 	}
 
 	public float[] calculateSplineDark (int begin, int end, float step) {
 		var dark = new float[(int)((end - begin) / step) + 1];
-		check(lib().JETI_CalcSplinDark(handle, begin, end, step, dark));
+		check("JETI_CalcSplinDark", lib().JETI_CalcSplinDark(handle, begin, end, step, dark));
 		return dark;
 	}
 
 	public float[] calculateLinearLight (int begin, int end, float step) {
 		var light = new float[(int)((end - begin) / step) + 1];
-		check(lib().JETI_CalcLintLight(handle, begin, end, step, light));
+		check("JETI_CalcLintLight", lib().JETI_CalcLintLight(handle, begin, end, step, light));
 		return light;
 	}
 
 	public float[] calculateSplineLight (int begin, int end, float step) {
 		var light = new float[(int)((end - begin) / step) + 1];
-		check(lib().JETI_CalcSplinLight(handle, begin, end, step, light));
+		check("JETI_CalcSplinLight", lib().JETI_CalcSplinLight(handle, begin, end, step, light));
 		return light;
 	}
 
 	public float[] calculateLinearReference (int begin, int end, float step) {
 		var reference = new float[(int)((end - begin) / step) + 1];
-		check(lib().JETI_CalcLintRefer(handle, begin, end, step, reference));
+		check("JETI_CalcLintRefer", lib().JETI_CalcLintRefer(handle, begin, end, step, reference));
 		return reference;
 	}
 
 	public float[] calculateSplineReference (int begin, int end, float step) {
 		var reference = new float[(int)((end - begin) / step) + 1];
-		check(lib().JETI_CalcSplinRefer(handle, begin, end, step, reference));
+		check("JETI_CalcSplinRefer", lib().JETI_CalcSplinRefer(handle, begin, end, step, reference));
 		return reference;
 	}
 
 	public float[] calculateLinearSample (int begin, int end, float step) {
 		var transRefl = new float[(int)((end - begin) / step) + 1];
-		check(lib().JETI_CalcLintTransRefl(handle, begin, end, step, transRefl));
+		check("JETI_CalcLintTransRefl", lib().JETI_CalcLintTransRefl(handle, begin, end, step, transRefl));
 		return transRefl;
 	}
 
 	public float[] calculateSplineSample (int begin, int end, float step) {
 		var transRefl = new float[(int)((end - begin) / step) + 1];
-		check(lib().JETI_CalcSplinTransRefl(handle, begin, end, step, transRefl));
+		check("JETI_CalcSplinTransRefl", lib().JETI_CalcSplinTransRefl(handle, begin, end, step, transRefl));
 		return transRefl;
 	}
 
 	public float calculateRadiometricValue (int begin, int end) {
-		check(lib().JETI_CalcRadio(handle, begin, end, f[0]));
+		check("JETI_CalcRadio", lib().JETI_CalcRadio(handle, begin, end, f[0]));
 		return f[0].getValue();
 	}
 
 	public float calculatePhotometricValue () {
-		check(lib().JETI_CalcPhoto(handle, f[0]));
+		check("JETI_CalcPhoto", lib().JETI_CalcPhoto(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public XY calculateChromaXY () {
-		check(lib().JETI_CalcChromxy(handle, f[0], f[1]));
+		check("JETI_CalcChromxy", lib().JETI_CalcChromxy(handle, f[0], f[1]));
 		return new XY(f[0].getValue(), f[1].getValue());
 	}
 
 	public XY10 calculateChromaXY10 () {
-		check(lib().JETI_CalcChromxy10(handle, f[0], f[1]));
+		check("JETI_CalcChromxy10", lib().JETI_CalcChromxy10(handle, f[0], f[1]));
 		return new XY10(f[0].getValue(), f[1].getValue());
 	}
 
 	public UV calculateChromaUV () {
-		check(lib().JETI_CalcChromuv(handle, f[0], f[1]));
+		check("JETI_CalcChromuv", lib().JETI_CalcChromuv(handle, f[0], f[1]));
 		return new UV(f[0].getValue(), f[1].getValue());
 	}
 
 	public DominantWavelength calculateDominantWavelength () {
-		check(lib().JETI_CalcDWLPE(handle, f[0], f[1]));
+		check("JETI_CalcDWLPE", lib().JETI_CalcDWLPE(handle, f[0], f[1]));
 		return new DominantWavelength(f[0].getValue(), f[1].getValue());
 	}
 
 	public float calculateCCT () {
-		check(lib().JETI_CalcCCT(handle, f[0]));
+		check("JETI_CalcCCT", lib().JETI_CalcCCT(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public float calculateDuv () {
-		check(lib().JETI_CalcDuv(handle, f[0]));
+		check("JETI_CalcDuv", lib().JETI_CalcDuv(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public float calculateCRI (float cct) {
-		check(lib().JETI_CalcCRI(handle, cct, f[0]));
+		check("JETI_CalcCRI", lib().JETI_CalcCRI(handle, cct, f[0]));
 		return f[0].getValue();
 	}
 
 	public XYZ calculateXYZ () {
-		check(lib().JETI_CalcXYZ(handle, f[0], f[1], f[2]));
+		check("JETI_CalcXYZ", lib().JETI_CalcXYZ(handle, f[0], f[1], f[2]));
 		return new XYZ(f[0].getValue(), f[1].getValue(), f[2].getValue());
 	}
 
 	public AllValues calculateAllValues (int begin, int end) {
-		check(lib().JETI_CalcAllValue(handle, begin, end, f[0], f[1], f[2], f[3], f[4], f[5], f[6], f[7]));
+		check("JETI_CalcAllValue", lib().JETI_CalcAllValue(handle, begin, end, f[0], f[1], f[2], f[3], f[4], f[5], f[6], f[7]));
 		return new AllValues(f[0].getValue(), f[1].getValue(), new XY(f[2].getValue(), f[3].getValue()),
 			new UV(f[4].getValue(), f[5].getValue()), new DominantWavelength(f[6].getValue(), f[7].getValue()));
 	}
@@ -870,17 +1099,17 @@ public class Core extends Device<CoreLibrary> {
 		var dHue = new double[16];
 		var rfi = new double[16];
 		var rfces = new double[99];
-		check(lib().JETI_CalcTM30(handle, (byte)(useTM3015 ? 1 : 0), d[0], d[1], dChroma, dHue, rfi, rfces));
+		check("JETI_CalcTM30", lib().JETI_CalcTM30(handle, (byte)(useTM3015 ? 1 : 0), d[0], d[1], dChroma, dHue, rfi, rfces));
 		return new TM30(d[0].getValue(), d[1].getValue(), dChroma, dHue, rfi, rfces);
 	}
 
 	public PeakFWHM calculatePeakFWHM (float threshold) {
-		check(lib().JETI_CalcPeakFWHM(handle, threshold, f[0], f[1]));
+		check("JETI_CalcPeakFWHM", lib().JETI_CalcPeakFWHM(handle, threshold, f[0], f[1]));
 		return new PeakFWHM(f[0].getValue(), f[1].getValue());
 	}
 
 	public BlueMeasurement calculateBlueMeasurement () {
-		check(lib().JETI_CalcBlueMeasurement(handle, f[0], f[1], f[2], f[3], f[4], f[5]));
+		check("JETI_CalcBlueMeasurement", lib().JETI_CalcBlueMeasurement(handle, f[0], f[1], f[2], f[3], f[4], f[5]));
 		return new BlueMeasurement(f[0].getValue(), f[1].getValue(), f[2].getValue(), f[3].getValue(), f[4].getValue(),
 			f[5].getValue());
 	}
@@ -955,7 +1184,10 @@ public class Core extends Device<CoreLibrary> {
 	static public Core openDevice (int deviceNumber) {
 		var handle = new PointerByReference();
 		check(CoreLibrary.INSTANCE.JETI_OpenDevice(deviceNumber, handle));
-		return new Core(handle.getValue());
+		var device = new Core(handle.getValue());
+		device.serialFrom(deviceNumber, Core::getDeviceSerials);
+		device.opened();
+		return device;
 	}
 
 	static public Core openDevice () {
@@ -966,32 +1198,47 @@ public class Core extends Device<CoreLibrary> {
 	static public Core openComDevice (int comPort, int baudrate) {
 		var handle = new PointerByReference();
 		check(CoreLibrary.INSTANCE.JETI_OpenCOMDevice(comPort, baudrate, handle));
-		return new Core(handle.getValue());
+		var core = new Core(handle.getValue());
+		core.serial = "COM" + comPort;
+		core.opened();
+		return core;
 	}
 
 	static public Core openTcpDevice (String ipAddress) {
 		var handle = new PointerByReference();
 		check(CoreLibrary.INSTANCE.JETI_OpenTCPDevice(ipAddress, handle));
-		return new Core(handle.getValue());
+		var core = new Core(handle.getValue());
+		core.serial = ipAddress;
+		core.opened();
+		return core;
 	}
 
 	static public Core openUsbDevice (String usbSerial) {
 		var handle = new PointerByReference();
 		check(CoreLibrary.INSTANCE.JETI_OpenFTDIDevice(usbSerial, handle));
-		return new Core(handle.getValue());
+		var core = new Core(handle.getValue());
+		core.serial = usbSerial;
+		core.opened();
+		return core;
 	}
 
 	static public Core openBluetoothDevice (long btAddress) {
 		var handle = new PointerByReference();
 		check(CoreLibrary.INSTANCE.JETI_OpenBTDevice(btAddress, handle));
-		return new Core(handle.getValue());
+		var core = new Core(handle.getValue());
+		core.serial = Long.toHexString(btAddress);
+		core.opened();
+		return core;
 	}
 
 	static public Core openBluetoothLeDevice (String devicePath) {
 		var handle = new PointerByReference();
 		char[] pathChars = devicePath.toCharArray();
 		check(CoreLibrary.INSTANCE.JETI_OpenBTLEDevice(pathChars, handle));
-		return new Core(handle.getValue());
+		var core = new Core(handle.getValue());
+		core.serial = devicePath;
+		core.opened();
+		return core;
 	}
 
 	static public DllVersion getDllVersion () {
@@ -0,0 +1,235 @@
+
+package com.esotericsoftware.jeti;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Reuses dark measurements for a {@link SpectroEx}, so a dark measurement is only taken when there is no dark for the
+ * integration time and averaging, the cached dark is too old, or the device temperature has drifted since it was measured. The
+ * cached dark is subtracted from light, reference and sample measurements. Expired darks are discarded when a dark is measured,
+ * and when more than {@link #setMaxEntries(int) max entries} darks are cached the least recently used is discarded. Not thread
+ * safe, like the device.
+ *
+ * <pre>
+ * var cache = new DarkCache(spectroEx, new Core(spectroEx), 0.5f, 10 * 60 * 1000);
+ * float[] light = cache.measureLight(100, 1, 380, 780, 1, null); // Light minus dark.
+ * </pre> */
+public class DarkCache {
+	private final SpectroEx spectroEx;
+	private final Core core;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+		protected boolean removeEldestEntry (Map.Entry<Key, Entry> eldest) {
+			return size() > maxEntries;
+		}
+	};
+	private int maxEntries = 32;
+	private float maxTemperatureDrift;
+	private long maxAge, temperatureInterval = 5000;
+	private float temperature = Float.NaN;
+	private long temperatureTime;
+	private long hits, misses;
+
+	/** @param core Used to read the temperature, may be null to invalidate only by age.
+	 * @param maxTemperatureDrift Degrees Celsius the temperature may change before a dark is measured again.
+	 * @param maxAge Milliseconds before a dark is measured again. */
+	public DarkCache (SpectroEx spectroEx, Core core, float maxTemperatureDrift, long maxAge) {
+		if (spectroEx == null) throw new IllegalArgumentException("spectroEx cannot be null.");
+		this.spectroEx = spectroEx;
+		this.core = core;
+		this.maxTemperatureDrift = maxTemperatureDrift;
+		this.maxAge = maxAge;
+	}
+
+	/** @param maxTemperatureDrift Degrees Celsius the temperature may change before a dark is measured again. */
+	public void setMaxTemperatureDrift (float maxTemperatureDrift) {
+		this.maxTemperatureDrift = maxTemperatureDrift;
+	}
+
+	/** @param maxAge Milliseconds before a dark is measured again. */
+	public void setMaxAge (long maxAge) {
+		this.maxAge = maxAge;
+	}
+
+	/** The number of darks to cache, each a spectrum or pixel data. Default is 32.
+	 * @param maxEntries Must be > 0. */
+	public void setMaxEntries (int maxEntries) {
+		if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be > 0: " + maxEntries);
+		this.maxEntries = maxEntries;
+		for (Iterator<Entry> iter = entries.values().iterator(); entries.size() > maxEntries;) {
+			iter.next();
+			iter.remove();
+		}
+	}
+
+	/** Reading the temperature is a device round trip, so it is read at most this often. Default is 5000.
+	 * @param temperatureInterval Milliseconds. */
+	public void setTemperatureInterval (long temperatureInterval) {
+		this.temperatureInterval = temperatureInterval;
+	}
+
+	/** Discards all cached darks, eg after the device configuration or environment changed. */
+	public void invalidate () {
+		entries.clear();
+		temperature = Float.NaN;
+	}
+
+	/** Returns the number of cached darks. */
+	public int getSize () {
+		return entries.size();
+	}
+
+	/** Returns the number of times a cached dark was used. */
+	public long getHits () {
+		return hits;
+	}
+
+	/** Returns the number of dark measurements taken. */
+	public long getMisses () {
+		return misses;
+	}
+
+	/** Returns the dark spectrum for the integration time and averaging, measuring it if necessary. The returned array must not
+	 * be modified. */
+	public float[] getDarkWaveData (float integrationTime, int averageCount, int beginWavelength, int endWavelength,
+		float stepSize) {
+		return entry(integrationTime, averageCount, beginWavelength, endWavelength, stepSize).wave;
+	}
+
+	/** Returns the dark pixel data for the integration time and averaging, measuring it if necessary. The returned array must not
+	 * be modified. */
+	public int[] getDarkPixelData (float integrationTime, int averageCount) {
+		return entry(integrationTime, averageCount, 0, 0, 0).pixels;
+	}
+
+	/** Measures a light spectrum and subtracts the dark spectrum.
+	 * @param output May be null. */
+	public float[] measureLight (float integrationTime, int averageCount, int beginWavelength, int endWavelength, float stepSize,
+		float[] output) throws InterruptedException {
+		float[] dark = getDarkWaveData(integrationTime, averageCount, beginWavelength, endWavelength, stepSize);
+		spectroEx.startLightMeasurement(integrationTime, averageCount);
+		waitForMeasurement();
+		output = spectroEx.getLightWaveData(beginWavelength, endWavelength, stepSize, output(output, dark.length));
+		return Spectra.subtract(output, dark, output);
+	}
+
+	/** Measures a reference spectrum and subtracts the dark spectrum.
+	 * @param output May be null. */
+	public float[] measureReference (float integrationTime, int averageCount, int beginWavelength, int endWavelength,
+		float stepSize, float[] output) throws InterruptedException {
+		float[] dark = getDarkWaveData(integrationTime, averageCount, beginWavelength, endWavelength, stepSize);
+		spectroEx.startReferenceMeasurement(integrationTime, averageCount);
+		waitForMeasurement();
+		output = spectroEx.getReferenceWaveData(beginWavelength, endWavelength, stepSize, output(output, dark.length));
+		return Spectra.subtract(output, dark, output);
+	}
+
+	/** Measures a sample spectrum and subtracts the dark spectrum.
+	 * @param output May be null. */
+	public float[] measureSample (float integrationTime, int averageCount, int beginWavelength, int endWavelength, float stepSize,
+		float[] output) throws InterruptedException {
+		float[] dark = getDarkWaveData(integrationTime, averageCount, beginWavelength, endWavelength, stepSize);
+		spectroEx.startSampleMeasurement(integrationTime, averageCount);
+		waitForMeasurement();
+		output = spectroEx.getSampleWaveData(beginWavelength, endWavelength, stepSize, output(output, dark.length));
+		return Spectra.subtract(output, dark, output);
+	}
+
+	/** Measures light pixel data and subtracts the dark pixel data.
+	 * @param output May be null. */
+	public int[] measureLightPixels (float integrationTime, int averageCount, int[] output) throws InterruptedException {
+		int[] dark = getDarkPixelData(integrationTime, averageCount);
+		if (output == null) output = new int[dark.length];
+		spectroEx.startLightMeasurement(integrationTime, averageCount);
+		waitForMeasurement();
+		spectroEx.getLightPixelData(output);
+		for (int i = 0, n = dark.length; i < n; i++)
+			output[i] -= dark[i];
+		return output;
+	}
+
+	/** Measures sample pixel data and subtracts the dark pixel data.
+	 * @param output May be null. */
+	public int[] measureSamplePixels (float integrationTime, int averageCount, int[] output) throws InterruptedException {
+		int[] dark = getDarkPixelData(integrationTime, averageCount);
+		if (output == null) output = new int[dark.length];
+		spectroEx.startSampleMeasurement(integrationTime, averageCount);
+		waitForMeasurement();
+		spectroEx.getSamplePixelData(output);
+		for (int i = 0, n = dark.length; i < n; i++)
+			output[i] -= dark[i];
+		return output;
+	}
+
+	private float[] output (float[] output, int length) {
+		if (output == null) return new float[length];
+		if (output.length != length) throw new IllegalArgumentException("output length must be " + length + ": " + output.length);
+		return output;
+	}
+
+	private Entry entry (float integrationTime, int averageCount, int beginWavelength, int endWavelength, float stepSize) {
+		var key = new Key(integrationTime, averageCount, beginWavelength, endWavelength, stepSize);
+		long time = System.currentTimeMillis();
+		float temperature = temperature(time);
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			if (!expired(entry, time, temperature)) {
+				hits++;
+				return entry;
+			}
+			Log.debug("Dark expired: {}", key);
+		}
+
+		misses++;
+		entries.values().removeIf(other -> expired(other, time, temperature));
+		spectroEx.startDarkMeasurement(integrationTime, averageCount);
+		try {
+			waitForMeasurement();
+		} catch (InterruptedException ex) {
+			spectroEx.cancelMeasurement();
+			Thread.currentThread().interrupt();
+			throw new JetiException(JetiSDK.BREAK, "Interrupted waiting for dark measurement.", ex);
+		}
+		entry = new Entry();
+		entry.time = System.currentTimeMillis();
+		entry.temperature = temperature;
+		if (stepSize == 0)
+			entry.pixels = spectroEx.getDarkPixelData(spectroEx.getPixelCount());
+		else
+			entry.wave = spectroEx.getDarkWaveData(beginWavelength, endWavelength, stepSize);
+		entries.put(key, entry);
+		Log.debug("Dark measured: {}", key);
+		return entry;
+	}
+
+	private boolean expired (Entry entry, long time, float temperature) {
+		return time - entry.time > maxAge
+			|| (!Float.isNaN(temperature) && Math.abs(temperature - entry.temperature) > maxTemperatureDrift);
+	}
+
+	/** Returns the device temperature, reading it if the last reading is older than the temperature interval, or NaN if there is
+	 * no core. */
+	private float temperature (long time) {
+		if (core == null) return Float.NaN;
+		if (Float.isNaN(temperature) || time - temperatureTime > temperatureInterval) {
+			temperature = core.getTemperature();
+			temperatureTime = time;
+		}
+		return temperature;
+	}
+
+	private void waitForMeasurement () throws InterruptedException {
+		while (spectroEx.isMeasuring())
+			Thread.sleep(1);
+	}
+
+	/** @param stepSize 0 for pixel data. */
+	private record Key (float integrationTime, int averageCount, int beginWavelength, int endWavelength, float stepSize) {}
+
+	static private class Entry {
+		long time;
+		float temperature;
+		int[] pixels;
+		float[] wave;
+	}
+}
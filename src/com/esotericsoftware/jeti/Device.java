@@ -3,11 +3,18 @@ package com.esotericsoftware.jeti;
 
 import static com.esotericsoftware.jeti.JetiSDK.*;
 
+import java.util.Map;
 import java.util.Objects;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
 import java.util.function.Supplier;
 
+import com.esotericsoftware.jeti.DeviceEvents.Measurement;
+import com.esotericsoftware.jeti.DeviceEvents.NativeCall;
+import com.esotericsoftware.jeti.JetiSDK.DeviceSerials;
+
 import com.sun.jna.Library;
 import com.sun.jna.Pointer;
 import com.sun.jna.ptr.ByteByReference;
@@ -17,11 +24,46 @@ import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.PointerByReference;
 import com.sun.jna.ptr.ShortByReference;
 
+import jdk.jfr.FlightRecorder;
+
 /** @author Nathan Sweet <misc@n4te.com> */
 abstract public class Device<L extends Library> implements AutoCloseable {
-	private final L library;
-	private final Function<Pointer, Integer> close;
+	/** Functions that start a measurement. */
+	static final String[] measurementFunctions = { //
+		"JETI_InitMeasure", "JETI_WaitReadTrigger", // Core
+		"JETI_Measure", "JETI_MeasureAdapt", // Radio
+		"JETI_MeasureEx", "JETI_MeasureAdaptEx", // RadioEx
+		"JETI_DarkSpec", "JETI_LightSpec", "JETI_ReferSpec", "JETI_TransReflSpec", // Spectro
+		"JETI_StartDarkEx", "JETI_StartLightEx", "JETI_StartReferEx", "JETI_StartTransReflEx", "JETI_StartDarkImageEx",
+		"JETI_StartLightImageEx", "JETI_StartChannelDarkEx", "JETI_StartChannelLightEx", "JETI_StartContDarkEx",
+		"JETI_StartContLightEx", "JETI_StartContChannelDarkEx", "JETI_StartContChannelLightEx"}; // SpectroEx
+
+	private final Supplier<L> librarySupplier;
+	private final String closeFunction;
+	private final BiFunction<L, Pointer, Integer> close;
+	private final CallStatistics statistics = new CallStatistics();
+	private final Map<String, IntSupplier> queues = new ConcurrentHashMap<>();
+	private DeviceMonitor monitor;
+	private L library;
 	Pointer handle;
+	/** The serial, or null if it is unknown or has not been read yet. */
+	String serial;
+	/** Reads the serial for the device number the first time {@link #getSerial()} is called, or null. */
+	IntFunction<DeviceSerials> serials;
+	int deviceNumber;
+
+	/** The start of the native call in progress, set by {@link #lib()}. */
+	private long callStart;
+	/** Events begun by {@link #lib()} while a recording is running, or null. */
+	NativeCall callEvent;
+	Measurement startedEvent;
+	/** A measurement that was started and has not completed, or null. */
+	Measurement measurement;
+
+	/** The last values read from or sent to the device, NaN or -1 if unknown. These are never read from the device for
+	 * monitoring, which would interfere with the application's use of the device. */
+	volatile float integrationTime = Float.NaN, temperature = Float.NaN;
+	volatile int lastError = -1;
 
 	final ByteByReference[] b;
 	final ShortByReference[] s;
@@ -30,14 +72,20 @@ abstract public class Device<L extends Library> implements AutoCloseable {
 	final DoubleByReference[] d;
 	final PointerByReference[] p;
 
-	Device (L library, Pointer handle, Function<Pointer, Integer> close, int byteCount, int shortCount, int intCount,
-		int floatCount, int doubleCount, int pointerCount) {
+	/** @param library Called to load the native library the first time it is needed, so wrapping a handle costs nothing until a
+	 *           native function is called.
+	 * @param closeFunction The name of the native function that closes the device.
+	 * @param close Called with the library and handle to close the device. */
+	Device (Supplier<L> library, Pointer handle, String closeFunction, BiFunction<L, Pointer, Integer> close, int byteCount,
+		int shortCount, int intCount, int floatCount, int doubleCount, int pointerCount) {
 
 		Objects.requireNonNull(library);
 		Objects.requireNonNull(handle);
+		Objects.requireNonNull(closeFunction);
 		Objects.requireNonNull(close);
-		this.library = library;
+		librarySupplier = library;
 		this.handle = handle;
+		this.closeFunction = closeFunction;
 		this.close = close;
 
 		b = array(ByteByReference[]::new, ByteByReference::new, byteCount);
@@ -55,15 +103,117 @@ abstract public class Device<L extends Library> implements AutoCloseable {
 		return array;
 	}
 
+	/** Returns the library and starts timing a native call, which must be passed to {@link #check(String, int)},
+	 * {@link #call(String, int)} or {@link #status(String, int, IntByReference)} when it returns:
+	 *
+	 * <pre>
+	 * check("JETI_GetTint", lib().JETI_GetTint(handle, f[0]));
+	 * </pre>
+	 *
+	 * The call is timed and recorded directly rather than through a proxy, so recording costs two clock reads and a map lookup.
+	 * Like the device, this is not thread safe. */
 	L lib () {
 		if (handle == null) throw new IllegalStateException("Device is closed.");
+		L library = this.library;
+		if (library == null) this.library = library = librarySupplier.get();
+		if (FlightRecorder.isInitialized()) DeviceEvents.begin(this);
+		callStart = System.nanoTime();
 		return library;
 	}
 
+	/** Records a native call begun with {@link #lib()} and throws if it failed. */
+	void check (String function, int result) {
+		call(function, result);
+		check(result);
+	}
+
+	/** Records a native call begun with {@link #lib()} that transfers data and throws if it failed.
+	 * @param bytes The size of the data the call read or wrote. */
+	void check (String function, int result, int bytes) {
+		call(function, result, bytes);
+		check(result);
+	}
+
+	/** Records a native call begun with {@link #lib()}.
+	 * @return The result. */
+	int call (String function, int result) {
+		return record(function, result, -1, 0);
+	}
+
+	/** Records a native call begun with {@link #lib()} that transfers data.
+	 * @param bytes The size of the data the call read or wrote.
+	 * @return The result. */
+	int call (String function, int result, int bytes) {
+		return record(function, result, -1, bytes);
+	}
+
+	/** Records a native call begun with {@link #lib()} that reports the measurement status.
+	 * @param measuring Set by the call, nonzero while measuring.
+	 * @return The result. */
+	int status (String function, int result, IntByReference measuring) {
+		return record(function, result, measuring.getValue(), 0);
+	}
+
+	private int record (String function, int result, int measuring, int bytes) {
+		statistics.record(function, System.nanoTime() - callStart, result);
+		if (Log.TRACE) Log.trace("{}: {}", function, result);
+		if (callEvent != null || startedEvent != null || measurement != null)
+			DeviceEvents.after(this, function, result, measuring, bytes);
+		return result;
+	}
+
+	/** Registers the device's MBean if {@link DeviceMonitor#enabled}. Called by the open methods after the device is constructed,
+	 * so a device that wraps the handle of another device is not registered a second time. */
+	void opened () {
+		if (DeviceMonitor.enabled) monitor = DeviceMonitor.register(this);
+	}
+
+	/** Returns the device serial number, the connection address if the serial is unknown, or null. For a device opened by number,
+	 * the serial is read the first time this is called rather than when the device is opened. */
+	public String getSerial () {
+		IntFunction<DeviceSerials> serials = this.serials;
+		if (serials != null) {
+			this.serials = null;
+			serial = serial(deviceNumber, serials);
+		}
+		return serial;
+	}
+
+	/** Sets how {@link #getSerial()} reads the serial for a device opened by number. */
+	void serialFrom (int deviceNumber, IntFunction<DeviceSerials> serials) {
+		this.deviceNumber = deviceNumber;
+		this.serials = serials;
+	}
+
+	/** Returns the latency and error codes of each native function called through this device. */
+	public CallStatistics getCallStatistics () {
+		return statistics;
+	}
+
+	/** Reports the number of items waiting in a queue that feeds or drains this device, for monitoring.
+	 * @param depth May be null to stop reporting the queue. */
+	public void monitorQueue (String name, IntSupplier depth) {
+		if (depth == null)
+			queues.remove(name);
+		else
+			queues.put(name, depth);
+	}
+
+	Map<String, IntSupplier> queues () {
+		return queues;
+	}
+
 	public void close () {
 		if (handle != null) {
-			check(close.apply(handle));
-			handle = null;
+			try {
+				check(closeFunction, close.apply(lib(), handle));
+				handle = null;
+			} finally {
+				if (monitor != null) {
+					monitor.unregister();
+					monitor = null;
+				}
+			}
 		}
 	}
 
@@ -71,7 +221,18 @@ abstract public class Device<L extends Library> implements AutoCloseable {
 		return handle == null;
 	}
 
+	/** Returns the device serial for the specified device number, or null if it cannot be read. */
+	static String serial (int deviceNumber, IntFunction<DeviceSerials> serials) {
+		try {
+			DeviceSerials serial = serials.apply(deviceNumber);
+			return serial.device().isEmpty() ? serial.electronics() : serial.device();
+		} catch (JetiException ex) {
+			Log.debug("Unable to read device serial: " + deviceNumber, ex);
+			return null;
+		}
+	}
+
 	static void check (int result) {
-		if (result != SUCCESS) throw new JetiException(result);
+		if (result != SUCCESS) throw JetiException.stackless ? JetiException.get(result) : new JetiException(result);
 	}
 }
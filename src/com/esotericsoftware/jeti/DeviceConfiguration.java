@@ -0,0 +1,337 @@
+
+package com.esotericsoftware.jeti;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+
+import com.esotericsoftware.jeti.Core.Border;
+import com.esotericsoftware.jeti.Core.CorrectionRange;
+import com.esotericsoftware.jeti.Core.PDARowConfig;
+import com.esotericsoftware.jeti.Core.WavelengthRange;
+import com.esotericsoftware.jeti.Profile.Setting;
+
+/** A snapshot of a device's configuration, decoded from the parameter block read with one transfer by
+ * {@link Core#readConfiguration(Layout)}, instead of a round trip to the device for each getter.
+ * <p>
+ * The parameter block format depends on the device and firmware and is not documented. No verified {@link Layout} exists for
+ * any device model, so none is provided and this class cannot be used until one is built. A layout is built for a device model
+ * and firmware by placing each field known to be in the block, then checked once with {@link #verify(Core)}, which compares
+ * each field with its getter. Only after a snapshot is passed to {@link Core#useConfiguration(DeviceConfiguration)} do the
+ * core's getters for its fields answer from it. Any configuration write through the core discards the snapshot.
+ *
+ * <pre>
+ * Layout layout = new Layout(ByteOrder.LITTLE_ENDIAN).with(Field.pixelCount, 0).with(Field.distance, 16);
+ * DeviceConfiguration configuration = core.readConfiguration(layout);
+ * if (configuration.verify(core).isEmpty()) core.useConfiguration(configuration);
+ * </pre> */
+public class DeviceConfiguration {
+	private final ByteBuffer block;
+	private final Layout layout;
+
+	public DeviceConfiguration (byte[] parameterBlock, Layout layout) {
+		block = ByteBuffer.wrap(parameterBlock.clone()).order(layout.order);
+		this.layout = layout;
+	}
+
+	public Layout getLayout () {
+		return layout;
+	}
+
+	/** Returns true if the layout has all the fields and they are within the parameter block. */
+	public boolean has (Field... fields) {
+		for (Field field : fields) {
+			int offset = layout.offsets[field.ordinal()];
+			if (offset == -1 || offset + field.size > block.capacity()) return false;
+		}
+		return true;
+	}
+
+	/** Returns an integer field.
+	 * @throws IllegalArgumentException if the field is not in the layout or is a float. */
+	public int getInt (Field field) {
+		if (field.floating) throw new IllegalArgumentException("Field is a float: " + field);
+		int offset = offset(field);
+		return switch (field.size) {
+		case 1 -> block.get(offset);
+		case 2 -> block.getShort(offset);
+		default -> block.getInt(offset);
+		};
+	}
+
+	/** Returns a float field.
+	 * @throws IllegalArgumentException if the field is not in the layout or is not a float. */
+	public float getFloat (Field field) {
+		if (!field.floating) throw new IllegalArgumentException("Field is not a float: " + field);
+		return block.getFloat(offset(field));
+	}
+
+	private int offset (Field field) {
+		if (!has(field)) throw new IllegalArgumentException("Field is not in the layout: " + field);
+		return layout.offsets[field.ordinal()];
+	}
+
+	public int getPixelCount () {
+		return getInt(Field.pixelCount);
+	}
+
+	public byte getPixelBinning () {
+		return (byte)getInt(Field.pixelBinning);
+	}
+
+	public byte getADCResolution () {
+		return (byte)getInt(Field.adcResolution);
+	}
+
+	public Border getBorder () {
+		return new Border((byte)getInt(Field.borderMin), (byte)getInt(Field.borderMax));
+	}
+
+	public int getScanDelay () {
+		return getInt(Field.scanDelay);
+	}
+
+	public int getSplitTime () {
+		return getInt(Field.splitTime);
+	}
+
+	public int getDistance () {
+		return getInt(Field.distance);
+	}
+
+	public short getTriggerTimeout () {
+		return (short)getInt(Field.triggerTimeout);
+	}
+
+	public boolean getOpticalTrigger () {
+		return getInt(Field.opticalTrigger) != 0;
+	}
+
+	public boolean getCorrectionStatus () {
+		return getInt(Field.correctionStatus) != 0;
+	}
+
+	public CorrectionRange getCorrectionRange () {
+		return new CorrectionRange(getInt(Field.correctionStart), getInt(Field.correctionEnd));
+	}
+
+	public CorrectionRange getOffsetCorrectionRange () {
+		return new CorrectionRange(getInt(Field.offsetCorrectionStart), getInt(Field.offsetCorrectionEnd));
+	}
+
+	/** Returns the configured function, see {@link Core#getFunctionConfig()}. */
+	public byte getFunction () {
+		return (byte)getInt(Field.function);
+	}
+
+	/** Returns the configured format, see {@link Core#getFormatConfig()}. */
+	public byte getFormat () {
+		return (byte)getInt(Field.format);
+	}
+
+	public byte getAdaptation () {
+		return (byte)getInt(Field.adaptation);
+	}
+
+	/** Returns the configured integration time, see {@link Core#getIntegrationTimeConfig()}. */
+	public float getIntegrationTime () {
+		return getFloat(Field.integrationTime);
+	}
+
+	public float getMinIntegrationTime () {
+		return getFloat(Field.minIntegrationTime);
+	}
+
+	public float getMaxIntegrationTime () {
+		return getFloat(Field.maxIntegrationTime);
+	}
+
+	/** Returns the configured average count, see {@link Core#getAverageConfig()}. */
+	public short getAverage () {
+		return (short)getInt(Field.average);
+	}
+
+	public short getMaxAverage () {
+		return (short)getInt(Field.maxAverage);
+	}
+
+	public WavelengthRange getWavelengthRange () {
+		return new WavelengthRange(getInt(Field.wavelengthBegin), getInt(Field.wavelengthEnd), getInt(Field.wavelengthStep));
+	}
+
+	public PDARowConfig getPDARow () {
+		return new PDARowConfig(getInt(Field.pdaRow), getInt(Field.pdaRowNumber));
+	}
+
+	public float getFit () {
+		return getFloat(Field.fit);
+	}
+
+	/** Compares each field in the snapshot with the value its getter reads from the device. This takes a round trip per field, so
+	 * is meant to be done once per device model and firmware to check the layout. The core's snapshot and shadow state are
+	 * suspended, so every getter reads from the device.
+	 * @return The fields that differ. */
+	public EnumSet<Field> verify (Core core) {
+		DeviceConfiguration saved = core.configuration;
+		EnumMap<Setting, Object> shadow = core.shadow;
+		core.configuration = null;
+		core.shadow = null;
+		try {
+			var mismatched = EnumSet.noneOf(Field.class);
+			for (Field field : Field.values) {
+				if (!has(field)) continue;
+				Object expected = switch (field) {
+				case pixelCount -> core.getPixelCount();
+				case pixelBinning -> core.getPixelBinning();
+				case adcResolution -> core.getADCResolution();
+				case borderMin -> core.getBorder().min();
+				case borderMax -> core.getBorder().max();
+				case scanDelay -> core.getScanDelay();
+				case splitTime -> core.getSplitTime();
+				case distance -> core.getDistance();
+				case triggerTimeout -> core.getTriggerTimeout();
+				case opticalTrigger -> core.getOpticalTrigger() ? 1 : 0;
+				case correctionStatus -> core.getCorrectionStatus() ? 1 : 0;
+				case correctionStart -> core.getCorrectionRange().start();
+				case correctionEnd -> core.getCorrectionRange().end();
+				case offsetCorrectionStart -> core.getOffsetCorrectionRange().start();
+				case offsetCorrectionEnd -> core.getOffsetCorrectionRange().end();
+				case function -> core.getFunctionConfig().configured();
+				case format -> core.getFormatConfig().configured();
+				case adaptation -> core.getAdaptationConfig();
+				case integrationTime -> core.getIntegrationTimeConfig().configured();
+				case minIntegrationTime -> core.getMinIntegrationTimeConfig();
+				case maxIntegrationTime -> core.getMaxIntegrationTimeConfig();
+				case average -> core.getAverageConfig().configured();
+				case maxAverage -> core.getMaxAverageConfig();
+				case wavelengthBegin -> core.getWavelengthRangeConfig().begin();
+				case wavelengthEnd -> core.getWavelengthRangeConfig().end();
+				case wavelengthStep -> core.getWavelengthRangeConfig().step();
+				case pdaRow -> core.getPDARowConfig().pdaRow();
+				case pdaRowNumber -> core.getPDARowConfig().rowNumber();
+				case fit -> core.getFit();
+				};
+				double actual = field.floating ? getFloat(field) : getInt(field);
+				if (((Number)expected).doubleValue() != actual) mismatched.add(field);
+			}
+			return mismatched;
+		} finally {
+			core.configuration = saved;
+			core.shadow = shadow;
+		}
+	}
+
+	public String toString () {
+		var buffer = new StringBuilder(512);
+		for (Field field : Field.values) {
+			if (!has(field)) continue;
+			if (buffer.length() > 0) buffer.append(", ");
+			buffer.append(field).append('=');
+			if (field.floating)
+				buffer.append(getFloat(field));
+			else
+				buffer.append(getInt(field));
+		}
+		return buffer.toString();
+	}
+
+	public enum Field {
+		pixelCount(4), //
+		pixelBinning(1), //
+		adcResolution(1), //
+		borderMin(1), //
+		borderMax(1), //
+		scanDelay(4), //
+		splitTime(4), //
+		/** In mm. */
+		distance(4), //
+		triggerTimeout(2), //
+		/** 0 or 1. */
+		opticalTrigger(1), //
+		/** 0 or 1. */
+		correctionStatus(1), //
+		correctionStart(4), //
+		correctionEnd(4), //
+		offsetCorrectionStart(4), //
+		offsetCorrectionEnd(4), //
+		function(1), //
+		format(1), //
+		adaptation(1), //
+		/** In ms. */
+		integrationTime(4, true), //
+		/** In ms. */
+		minIntegrationTime(4, true), //
+		/** In ms. */
+		maxIntegrationTime(4, true), //
+		average(2), //
+		maxAverage(2), //
+		/** In nm. */
+		wavelengthBegin(4), //
+		/** In nm. */
+		wavelengthEnd(4), //
+		/** In nm. */
+		wavelengthStep(4), //
+		pdaRow(4), //
+		pdaRowNumber(4), //
+		fit(4, true);
+
+		static final Field[] values = values();
+
+		/** In bytes. */
+		final int size;
+		final boolean floating;
+
+		Field (int size) {
+			this(size, false);
+		}
+
+		Field (int size, boolean floating) {
+			this.size = size;
+			this.floating = floating;
+		}
+	}
+
+	/** The offset of each field in the parameter block. Immutable. */
+	static public class Layout {
+		final int[] offsets;
+		final ByteOrder order;
+
+		/** Creates a layout with no fields. Integer and float fields are read with the byte order. */
+		public Layout (ByteOrder order) {
+			offsets = new int[Field.values.length];
+			Arrays.fill(offsets, -1);
+			this.order = order;
+		}
+
+		private Layout (int[] offsets, ByteOrder order) {
+			this.offsets = offsets;
+			this.order = order;
+		}
+
+		/** Returns a copy of this layout with the field at the offset. */
+		public Layout with (Field field, int offset) {
+			if (offset < 0) throw new IllegalArgumentException("offset must be >= 0: " + offset);
+			int[] offsets = this.offsets.clone();
+			offsets[field.ordinal()] = offset;
+			return new Layout(offsets, order);
+		}
+
+		/** Returns a copy of this layout without the fields, so their getters read from the device. */
+		public Layout without (Field... fields) {
+			int[] offsets = this.offsets.clone();
+			for (Field field : fields)
+				offsets[field.ordinal()] = -1;
+			return new Layout(offsets, order);
+		}
+
+		public Layout order (ByteOrder order) {
+			return new Layout(offsets, order);
+		}
+
+		public String toString () {
+			return Arrays.toString(offsets) + " " + order;
+		}
+	}
+}
@@ -0,0 +1,378 @@
+
+package com.esotericsoftware.jeti;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/** Emulates network devices speaking the ASCII command protocol, for testing transports such as {@link TcpDevice} without
+ * hardware. Each connection is a separate device with its own serial number. All connections are served by one thread, so one
+ * emulator can simulate hundreds of devices.
+ * <p>
+ * Responses can be delayed by a latency with random jitter, and limited to the bandwidth of a serial port baud rate. Faults can
+ * be injected: a fraction of commands get no response, which the client sees as a timeout (0x08), and a fraction are answered
+ * with NAK and device busy (0x0E).
+ * <p>
+ * The emulator speaks the framing of the ASCII command protocol, but its commands are an invented set resembling the device's
+ * commands, not the firmware's actual command set. Responses are shaped like a device's but the values are synthetic. Commands,
+ * each terminated by a carriage return:
+ * <ul>
+ * <li>{@code *IDN?} Identification.
+ * <li>{@code *RST} Resets the configuration.
+ * <li>{@code *PARA:SERNO?} Serial number.
+ * <li>{@code *PARA:PIX?} Pixel count.
+ * <li>{@code *CONF:TINT?} and {@code *CONF:TINT <ms>} Integration time.
+ * <li>{@code *MEAS:DARK <ms> <average>} and {@code *MEAS:LIGHT <ms> <average>} Measures, responding after the integration time
+ * times the average count.
+ * <li>{@code *FETCH:DARK?} and {@code *FETCH:LIGHT?} Pixel counts of the last measurement, separated by commas.
+ * <li>{@code *FETCH:SPRAD?} Spectral radiance of the last light measurement, 380 to 780 nm in 1 nm steps, separated by commas.
+ * </ul>
+ * Successful commands without a value are answered with a lone ACK, without a terminator. Unknown commands are answered with a
+ * lone NAK, and commands with invalid arguments with NAK and error 0x0B.
+ *
+ * <pre>
+ * try (var emulator = new DeviceEmulator(0)) {
+ * 	emulator.setLatency(5, 2);
+ * 	emulator.setBaudRate(115200);
+ * 	emulator.start();
+ * 	var device = TcpDevice.open("localhost", emulator.getPort());
+ * }
+ * </pre> */
+public class DeviceEmulator implements AutoCloseable {
+	static private final byte[] ACK = {TcpDevice.ACK}, NAK = {TcpDevice.NAK};
+
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private final PriorityQueue<Response> responses = new PriorityQueue<>();
+	private SplittableRandom random = new SplittableRandom(0);
+	private Thread thread;
+	private volatile boolean closed;
+	private volatile float latency, jitter, timeoutRate, busyRate;
+	private volatile int baudRate, pixelCount = 1024;
+	private int connections;
+	private long sequence;
+
+	/** @param port May be 0 to choose a free port, see {@link #getPort()}. */
+	public DeviceEmulator (int port) throws IOException {
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress("localhost", port), 1024);
+		server.configureBlocking(false);
+		selector = Selector.open();
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	public int getPort () {
+		return server.socket().getLocalPort();
+	}
+
+	/** @param latency Milliseconds before each response.
+	 * @param jitter Up to this many milliseconds are randomly added to the latency. */
+	public void setLatency (float latency, float jitter) {
+		this.latency = latency;
+		this.jitter = jitter;
+	}
+
+	/** Limits each device's responses to the bandwidth of a serial port using 10 bits per byte.
+	 * @param baudRate 0 for unlimited. */
+	public void setBaudRate (int baudRate) {
+		this.baudRate = baudRate;
+	}
+
+	/** @param timeoutRate The fraction of commands that get no response, from 0 to 1.
+	 * @param busyRate The fraction of commands answered with device busy, from 0 to 1. */
+	public void setFaults (float timeoutRate, float busyRate) {
+		this.timeoutRate = timeoutRate;
+		this.busyRate = busyRate;
+	}
+
+	public void setPixelCount (int pixelCount) {
+		this.pixelCount = pixelCount;
+	}
+
+	/** Sets the seed for jitter, faults and spectrum noise, so runs can be repeated. Must be called before {@link #start()}. */
+	public void setSeed (long seed) {
+		random = new SplittableRandom(seed);
+	}
+
+	public void start () {
+		if (thread != null) throw new IllegalStateException("Already started.");
+		thread = new Thread(this::run, "DeviceEmulator " + getPort());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void close () {
+		closed = true;
+		selector.wakeup();
+		if (thread == null) {
+			try {
+				selector.close();
+				server.close();
+			} catch (IOException ignored) {
+			}
+			return;
+		}
+		try {
+			thread.join(1000);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run () {
+		try {
+			while (!closed) {
+				long now = System.nanoTime();
+				Response response;
+				while ((response = responses.peek()) != null && now - response.time >= 0) {
+					responses.poll();
+					response.device.write(response.bytes);
+				}
+				if (response == null)
+					selector.select();
+				else
+					selector.select(Math.max(1, (response.time - now + 999_999) / 1_000_000));
+				for (SelectionKey key : selector.selectedKeys()) {
+					if (!key.isValid()) continue;
+					if (key.isAcceptable()) {
+						SocketChannel channel = server.accept();
+						if (channel == null) continue;
+						channel.configureBlocking(false);
+						var device = new EmulatedDevice(channel, String.format("EMU%05d", ++connections));
+						device.key = channel.register(selector, SelectionKey.OP_READ, device);
+						continue;
+					}
+					var device = (EmulatedDevice)key.attachment();
+					try {
+						if (key.isWritable()) device.flush();
+						if (key.isValid() && key.isReadable()) device.read();
+					} catch (IOException ex) {
+						device.close();
+					}
+				}
+				selector.selectedKeys().clear();
+			}
+		} catch (IOException | ClosedSelectorException ex) {
+			if (!closed) Log.error("Device emulator failed.", ex);
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				try {
+					key.channel().close();
+				} catch (IOException ignored) {
+				}
+			}
+			try {
+				selector.close();
+				server.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	private class EmulatedDevice {
+		final SocketChannel channel;
+		final String serial;
+		final ByteBuffer input = ByteBuffer.allocate(1024);
+		final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+		SelectionKey key;
+		float integrationTime = 10;
+		int[] dark, light;
+		float[] radiance;
+		/** When the last response is written, to keep responses in order and limit bandwidth. */
+		long busyUntil;
+
+		EmulatedDevice (SocketChannel channel, String serial) {
+			this.channel = channel;
+			this.serial = serial;
+		}
+
+		void read () throws IOException {
+			if (channel.read(input) == -1) {
+				close();
+				return;
+			}
+			input.flip();
+			byte[] bytes = input.array();
+			int start = 0;
+			for (int i = 0, n = input.limit(); i < n; i++) {
+				if (bytes[i] != TcpDevice.TERMINATOR) continue;
+				command(new String(bytes, start, i - start, US_ASCII).trim());
+				start = i + 1;
+			}
+			input.position(start);
+			input.compact();
+			if (!input.hasRemaining()) { // Line too long.
+				input.clear();
+				respond(nak(0x0B), 0);
+			}
+		}
+
+		void command (String command) {
+			if (random.nextFloat() < timeoutRate) return;
+			if (random.nextFloat() < busyRate) {
+				respond(nak(0x0E), 0);
+				return;
+			}
+			String[] args = command.split("\\s+");
+			String value = null;
+			float delay = 0;
+			try {
+				switch (args[0].toUpperCase(Locale.ROOT)) {
+				case "*IDN?" -> value = "JETI Device Emulator," + serial;
+				case "*RST" -> {
+					integrationTime = 10;
+					dark = light = null;
+					radiance = null;
+				}
+				case "*PARA:SERNO?" -> value = serial;
+				case "*PARA:PIX?" -> value = Integer.toString(pixelCount);
+				case "*CONF:TINT?" -> value = Float.toString(integrationTime);
+				case "*CONF:TINT" -> integrationTime = Float.parseFloat(args[1]);
+				case "*MEAS:DARK", "*MEAS:LIGHT" -> {
+					float tint = args.length > 1 ? Float.parseFloat(args[1]) : integrationTime;
+					int average = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+					if (tint <= 0 || average < 1) throw new IllegalArgumentException();
+					delay = tint * average;
+					if (args[0].equalsIgnoreCase("*MEAS:DARK"))
+						dark = pixels(tint, false);
+					else {
+						light = pixels(tint, true);
+						radiance = radiance();
+					}
+				}
+				case "*FETCH:DARK?" -> value = join(dark);
+				case "*FETCH:LIGHT?" -> value = join(light);
+				case "*FETCH:SPRAD?" -> value = join(radiance);
+				default -> {
+					respond(NAK, 0);
+					return;
+				}
+				}
+			} catch (RuntimeException ex) { // Invalid argument or no measurement.
+				respond(nak(0x0B), 0);
+				return;
+			}
+			respond(value == null ? ACK : (value + '\r').getBytes(US_ASCII), delay);
+		}
+
+		/** Synthetic pixel counts: a dark offset with noise and, for light, a broad peak proportional to the integration time. */
+		int[] pixels (float integrationTime, boolean light) {
+			var pixels = new int[pixelCount];
+			for (int i = 0; i < pixelCount; i++) {
+				double value = 1000 + random.nextGaussian() * 5;
+				if (light) {
+					double x = (i - pixelCount * 0.5) / (pixelCount * 0.15);
+					value += integrationTime * 200 * Math.exp(-x * x);
+				}
+				pixels[i] = (int)Math.min(65535, Math.max(0, value));
+			}
+			return pixels;
+		}
+
+		float[] radiance () {
+			var radiance = new float[401];
+			for (int i = 0; i < radiance.length; i++) {
+				double x = (i - 175) / 60.0;
+				radiance[i] = (float)(0.01 * Math.exp(-x * x) * (1 + random.nextGaussian() * 0.001));
+			}
+			return radiance;
+		}
+
+		String join (int[] values) {
+			var buffer = new StringBuilder(values.length * 6);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) buffer.append(',');
+				buffer.append(values[i]);
+			}
+			return buffer.toString();
+		}
+
+		String join (float[] values) {
+			var buffer = new StringBuilder(values.length * 12);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) buffer.append(',');
+				buffer.append(values[i]);
+			}
+			return buffer.toString();
+		}
+
+		byte[] nak (int errorCode) {
+			return String.format("%c%02X\r", (char)TcpDevice.NAK, errorCode).getBytes(US_ASCII);
+		}
+
+		/** Schedules a response after the latency, jitter, delay and the time to transmit it at the baud rate.
+		 * @param delay Milliseconds. */
+		void respond (byte[] bytes, float delay) {
+			long now = System.nanoTime();
+			float millis = latency + delay;
+			if (jitter > 0) millis += random.nextFloat() * jitter;
+			// Jitter must not reorder responses.
+			long time = Math.max(now + (long)(millis * 1_000_000), busyUntil);
+			int baudRate = DeviceEmulator.this.baudRate;
+			if (baudRate > 0) time += bytes.length * 10 * 1_000_000_000L / baudRate;
+			busyUntil = time;
+			responses.add(new Response(time, sequence++, this, bytes));
+		}
+
+		void write (byte[] bytes) {
+			if (!channel.isOpen()) return;
+			output.add(ByteBuffer.wrap(bytes));
+			try {
+				flush();
+			} catch (IOException ex) {
+				close();
+			}
+		}
+
+		void flush () throws IOException {
+			ByteBuffer buffer;
+			while ((buffer = output.peek()) != null) {
+				channel.write(buffer);
+				if (buffer.hasRemaining()) {
+					key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					return;
+				}
+				output.poll();
+			}
+			key.interestOps(SelectionKey.OP_READ);
+		}
+
+		void close () {
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	/** A response waiting to be written. */
+	private record Response (long time, long sequence, EmulatedDevice device, byte[] bytes) implements Comparable<Response> {
+		public int compareTo (Response other) {
+			int result = Long.compare(time - other.time, 0);
+			return result != 0 ? result : Long.compare(sequence, other.sequence);
+		}
+	}
+
+	/** Runs an emulator until the process is stopped.
+	 * @param args [port] [latency ms] [jitter ms] [baud rate] */
+	static public void main (String[] args) throws IOException, InterruptedException {
+		var emulator = new DeviceEmulator(args.length > 0 ? Integer.parseInt(args[0]) : 0);
+		if (args.length > 2) emulator.setLatency(Float.parseFloat(args[1]), Float.parseFloat(args[2]));
+		if (args.length > 3) emulator.setBaudRate(Integer.parseInt(args[3]));
+		emulator.start();
+		Log.info("Device emulator listening on port: {}", emulator.getPort());
+		emulator.thread.join();
+	}
+}
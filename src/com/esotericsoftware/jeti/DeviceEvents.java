@@ -0,0 +1,128 @@
+
+package com.esotericsoftware.jeti;
+
+import static com.esotericsoftware.jeti.JetiSDK.*;
+
+import java.util.Set;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Java Flight Recorder events for native calls and measurements made through a {@link Device}. Events are only created while
+ * a recording has enabled them, so without a recording a native call allocates nothing for them. The events record the serial
+ * the device already knows, so committing an event never reads from the device. */
+class DeviceEvents {
+	/** Measurement functions which return when the measurement is complete. */
+	static private final Set<String> synchronousMeasurements = Set.of("JETI_WaitReadTrigger", "JETI_DarkSpec", "JETI_LightSpec",
+		"JETI_ReferSpec", "JETI_TransReflSpec");
+
+	static private final Set<String> cancelFunctions = Set.of("JETI_Break", "JETI_MeasureBreak", "JETI_MeasureBreakEx",
+		"JETI_SpectroBreakEx");
+
+	static private final Set<String> measurementFunctions = Set.of(Device.measurementFunctions);
+
+	static private EventType callType, measurementType;
+
+	private DeviceEvents () {
+	}
+
+	/** Called before a native function is called, when a recording may be running. Begins the events that are enabled. */
+	static void begin (Device<?> device) {
+		EventType callType = DeviceEvents.callType, measurementType = DeviceEvents.measurementType;
+		if (callType == null) {
+			DeviceEvents.callType = callType = EventType.getEventType(NativeCall.class);
+			DeviceEvents.measurementType = measurementType = EventType.getEventType(Measurement.class);
+		}
+		if (callType.isEnabled()) {
+			var call = new NativeCall();
+			call.begin();
+			device.callEvent = call;
+		}
+		if (measurementType.isEnabled()) {
+			// The function is not known yet, so the event is discarded after the call if it did not start a measurement.
+			var started = new Measurement();
+			started.begin();
+			device.startedEvent = started;
+		}
+	}
+
+	/** Called after a native function returns.
+	 * @param measuring The measurement status reported by the function, or -1 if it does not report it.
+	 * @param bytes The size of the data the function read or wrote. */
+	static void after (Device<?> device, String function, int result, int measuring, int bytes) {
+		NativeCall call = device.callEvent;
+		if (call != null) {
+			device.callEvent = null;
+			call.end();
+			if (call.shouldCommit()) {
+				call.deviceType = device.getClass().getSimpleName();
+				call.deviceSerial = device.serial;
+				call.function = function;
+				call.errorCode = result;
+				call.bytes = bytes;
+				call.commit();
+			}
+		}
+
+		Measurement started = device.startedEvent;
+		device.startedEvent = null;
+		if (started != null && measurementFunctions.contains(function)) {
+			started.deviceType = device.getClass().getSimpleName();
+			started.deviceSerial = device.serial;
+			started.function = function;
+			started.integrationTime = device.integrationTime;
+			if (result != SUCCESS || synchronousMeasurements.contains(function)) {
+				started.errorCode = result;
+				started.commit();
+			} else
+				device.measurement = started;
+			return;
+		}
+
+		Measurement pending = device.measurement;
+		if (pending == null) return;
+		if (measuring != -1) {
+			if (result == SUCCESS && measuring != 0) return;
+		} else if (cancelFunctions.contains(function)) {
+			if (result == SUCCESS) pending.cancelled = true;
+		} else
+			return;
+		pending.errorCode = result;
+		if (Float.isNaN(pending.integrationTime)) pending.integrationTime = device.integrationTime;
+		pending.commit();
+		device.measurement = null;
+	}
+
+	@Name("com.esotericsoftware.jeti.NativeCall")
+	@Label("Native Call")
+	@Category({"JETI"})
+	@Description("A call to a JETI SDK function.")
+	@StackTrace(false)
+	static class NativeCall extends Event {
+		@Label("Device Type") String deviceType;
+		@Label("Device Serial") String deviceSerial;
+		@Label("Function") String function;
+		@Label("Error Code") int errorCode;
+		@Label("Bytes") @DataAmount @Description("The size of the data the call read or wrote.") int bytes;
+	}
+
+	@Name("com.esotericsoftware.jeti.Measurement")
+	@Label("Measurement")
+	@Category({"JETI"})
+	@Description("A measurement, from the call that starts it until a status call reports it is complete, it is cancelled, or "
+		+ "it fails.")
+	static class Measurement extends Event {
+		@Label("Device Type") String deviceType;
+		@Label("Device Serial") String deviceSerial;
+		@Label("Function") String function;
+		@Label("Integration Time") @Description("Milliseconds, NaN if unknown.") float integrationTime = Float.NaN;
+		@Label("Error Code") int errorCode;
+		@Label("Cancelled") boolean cancelled;
+	}
+}
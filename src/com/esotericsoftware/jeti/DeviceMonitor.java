@@ -0,0 +1,158 @@
+
+package com.esotericsoftware.jeti;
+
+import static com.esotericsoftware.jeti.JetiSDK.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.esotericsoftware.jeti.CallStatistics.FunctionSnapshot;
+
+import com.sun.jna.Pointer;
+
+/** Registers a {@link DeviceMonitorMXBean} for each device while it is open, named
+ * <code>com.esotericsoftware.jeti:type=RadioEx,handle=1a2b3c</code>. Disabled by default because starting the platform MBean
+ * server slows startup. Enable with <code>-Djeti.jmx=true</code> or by setting {@link #enabled} before opening devices. */
+public class DeviceMonitor implements DeviceMonitorMXBean {
+	static public volatile boolean enabled = Boolean.getBoolean("jeti.jmx");
+
+	private final Device<?> device;
+	private final ObjectName name;
+	private long sampleTime = System.nanoTime(), sampleCalls, sampleMeasurements;
+	private double callRate, measurementRate;
+
+	private DeviceMonitor (Device<?> device, ObjectName name) {
+		this.device = device;
+		this.name = name;
+	}
+
+	/** @return The monitor, or null if it could not be registered. */
+	static DeviceMonitor register (Device<?> device) {
+		try {
+			var name = new ObjectName("com.esotericsoftware.jeti:type=" + device.getClass().getSimpleName() + ",handle="
+				+ Long.toHexString(Pointer.nativeValue(device.handle)));
+			var monitor = new DeviceMonitor(device, name);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, name);
+			return monitor;
+		} catch (JMException ex) {
+			Log.warn("Unable to register device MBean.", ex);
+			return null;
+		}
+	}
+
+	void unregister () {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (JMException ex) {
+			Log.warn("Unable to unregister device MBean: " + name, ex);
+		}
+	}
+
+	public String getType () {
+		return device.getClass().getSimpleName();
+	}
+
+	public String getSerial () {
+		return device.serial;
+	}
+
+	public long getCalls () {
+		return device.getCallStatistics().calls();
+	}
+
+	public double getCallRate () {
+		sample();
+		return callRate;
+	}
+
+	public long getMeasurements () {
+		return device.getCallStatistics().calls(Device.measurementFunctions);
+	}
+
+	public double getMeasurementRate () {
+		sample();
+		return measurementRate;
+	}
+
+	synchronized private void sample () {
+		long time = System.nanoTime();
+		double seconds = (time - sampleTime) / 1e9;
+		if (seconds < 1) return;
+		long calls = getCalls(), measurements = getMeasurements();
+		// Counts decrease when the statistics are reset.
+		callRate = Math.max(0, calls - sampleCalls) / seconds;
+		measurementRate = Math.max(0, measurements - sampleMeasurements) / seconds;
+		sampleTime = time;
+		sampleCalls = calls;
+		sampleMeasurements = measurements;
+	}
+
+	public Map<String, Double> getLatencyMean () {
+		return latency(snapshot -> (long)snapshot.latency().mean());
+	}
+
+	public Map<String, Double> getLatency50 () {
+		return latency(snapshot -> snapshot.latency().percentile(50));
+	}
+
+	public Map<String, Double> getLatency99 () {
+		return latency(snapshot -> snapshot.latency().percentile(99));
+	}
+
+	public Map<String, Double> getLatencyMax () {
+		return latency(snapshot -> snapshot.latency().max());
+	}
+
+	private Map<String, Double> latency (ToLongFunction<FunctionSnapshot> nanos) {
+		var latency = new TreeMap<String, Double>();
+		for (FunctionSnapshot snapshot : device.getCallStatistics().snapshot().values())
+			latency.put(snapshot.function(), nanos.applyAsLong(snapshot) / 1000d);
+		return latency;
+	}
+
+	public Map<String, Long> getErrorCounts () {
+		var counts = new TreeMap<String, Long>();
+		device.getCallStatistics().errors()
+			.forEach( (code, count) -> counts.put("0x" + Integer.toHexString(code) + " " + getErrorMessage(code), count));
+		return counts;
+	}
+
+	public int getLastErrorCode () {
+		return device.getCallStatistics().getLastError();
+	}
+
+	public String getLastErrorMessage () {
+		return getErrorMessage(getLastErrorCode());
+	}
+
+	public String getLastErrorFunction () {
+		return device.getCallStatistics().getLastErrorFunction();
+	}
+
+	public int getDeviceLastError () {
+		return device.lastError;
+	}
+
+	public float getIntegrationTime () {
+		return device.integrationTime;
+	}
+
+	public float getTemperature () {
+		return device.temperature;
+	}
+
+	public Map<String, Integer> getQueueDepths () {
+		var depths = new TreeMap<String, Integer>();
+		device.queues().forEach( (name, depth) -> depths.put(name, depth.getAsInt()));
+		return depths;
+	}
+
+	public void resetStatistics () {
+		device.getCallStatistics().reset();
+	}
+}
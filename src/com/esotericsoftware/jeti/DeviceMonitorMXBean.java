@@ -0,0 +1,65 @@
+
+package com.esotericsoftware.jeti;
+
+import java.util.Map;
+
+/** JMX view of an open {@link Device}. Values come from calls the application already makes, so reading them never
+ * communicates with the device. */
+public interface DeviceMonitorMXBean {
+	/** The device class, eg RadioEx. */
+	String getType ();
+
+	/** The device serial number, the connection address if the serial is unknown, or null. For a device opened by number, null
+	 * until the application has read the serial, since monitoring never calls the SDK. */
+	String getSerial ();
+
+	/** Native calls since opened or reset. */
+	long getCalls ();
+
+	/** Native calls per second, averaged over at least one second. */
+	double getCallRate ();
+
+	/** Measurements started since opened or reset. */
+	long getMeasurements ();
+
+	/** Measurements started per second, averaged over at least one second. */
+	double getMeasurementRate ();
+
+	/** Mean latency in microseconds for each native function. */
+	Map<String, Double> getLatencyMean ();
+
+	/** 50th percentile latency in microseconds for each native function. */
+	Map<String, Double> getLatency50 ();
+
+	/** 99th percentile latency in microseconds for each native function. */
+	Map<String, Double> getLatency99 ();
+
+	/** Maximum latency in microseconds for each native function. */
+	Map<String, Double> getLatencyMax ();
+
+	/** Number of times each error code was returned, keyed by the hex code and message. */
+	Map<String, Long> getErrorCounts ();
+
+	/** The last non-zero code returned by a native function, or 0. */
+	int getLastErrorCode ();
+
+	String getLastErrorMessage ();
+
+	/** The native function that returned the last error, or null. */
+	String getLastErrorFunction ();
+
+	/** The last value returned by Core getLastError, or -1 if it has not been called. */
+	int getDeviceLastError ();
+
+	/** The last integration time read from or sent to the device in milliseconds, or NaN. */
+	float getIntegrationTime ();
+
+	/** The last temperature read from the device in degrees Celsius, or NaN. */
+	float getTemperature ();
+
+	/** Number of items waiting in each queue reported by {@link Device#monitorQueue(String, java.util.function.IntSupplier)}. */
+	Map<String, Integer> getQueueDepths ();
+
+	/** Clears the call statistics. */
+	void resetStatistics ();
+}
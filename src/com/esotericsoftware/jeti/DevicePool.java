@@ -0,0 +1,419 @@
+
+package com.esotericsoftware.jeti;
+
+import static com.esotericsoftware.jeti.JetiSDK.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/** Hands out exclusive leases on a few identical devices to many concurrent clients. Clients wait in a queue per tenant and
+ * tenants are served round robin, so a tenant with many requests cannot starve the others. A tenant can be limited to a number
+ * of leases at once.
+ * <p>
+ * When a lease is closed the device is checked, by default with {@link Core#getLastError()} and {@link Core#isMeasuring()}. A
+ * device that fails the check or was {@link Lease#invalidate() invalidated} is closed, then reopened on the pool's thread before
+ * it is leased again. A lease held longer than the {@link #setLeaseTimeout(long) lease timeout} expires: it no longer counts
+ * toward the tenant's quota and {@link Lease#getDevice()} throws, but the device is not closed while the holder may still be
+ * using it. It is recycled when the lease is closed. Device calls are made without holding the pool's lock, so throughput
+ * scales with the number of devices.
+ *
+ * <pre>
+ * try (var pool = DevicePool.openRadioEx()) {
+ * 	// For each request:
+ * 	try (var lease = pool.acquire(client, 10, TimeUnit.SECONDS)) {
+ * 		if (lease == null) return; // Busy.
+ * 		RadioEx radioEx = lease.getDevice();
+ * 		radioEx.measure(0, 1, 5);
+ * 		// ...
+ * 	}
+ * }
+ * </pre> */
+public class DevicePool<D extends Device<?>> implements AutoCloseable {
+	private final IntFunction<D> open;
+	private final ArrayList<Slot<D>> slots = new ArrayList<>();
+	private final ArrayDeque<Slot<D>> idle = new ArrayDeque<>();
+	private final HashMap<String, Tenant<D>> tenants = new HashMap<>();
+	/** Tenants with waiters, in the order they are served. */
+	private final ArrayDeque<Tenant<D>> turns = new ArrayDeque<>();
+	private final HashMap<String, Integer> quotas = new HashMap<>();
+	private final ScheduledExecutorService scheduler;
+	private volatile Predicate<Lease<D>> healthCheck = DevicePool::defaultHealthCheck;
+	private int defaultQuota = Integer.MAX_VALUE;
+	private volatile long leaseTimeout = 60000, reopenDelay = 5000;
+	private int waiting, recycled;
+	private boolean closed;
+
+	/** Opens the devices. A device that fails to open is retried on the pool's thread.
+	 * @param open Called with an index from 0 to count - 1 to open or reopen a device. */
+	public DevicePool (int count, IntFunction<D> open) {
+		if (count < 1) throw new IllegalArgumentException("count must be > 0: " + count);
+		this.open = open;
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			var thread = new Thread(runnable, "DevicePool");
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int i = 0; i < count; i++) {
+			var slot = new Slot<D>(i);
+			slots.add(slot);
+			try {
+				slot.device = open.apply(i);
+				idle.add(slot);
+			} catch (RuntimeException ex) {
+				Log.warn("Unable to open pooled device: " + i, ex);
+				scheduler.schedule( () -> reopen(slot), reopenDelay, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/** Returns a pool of all connected {@link RadioEx} devices. */
+	static public DevicePool<RadioEx> openRadioEx () {
+		int count = RadioEx.getDeviceCount();
+		if (count <= 0) throw new JetiException(INVALID_DEVICE_NUMBER, "No RadioEx device found.");
+		return new DevicePool<>(count, RadioEx::openDevice);
+	}
+
+	/** Returns a pool of all connected devices opened with {@link Core}. */
+	static public DevicePool<Core> openCore () {
+		int count = Core.getDeviceCount();
+		if (count <= 0) throw new JetiException(INVALID_DEVICE_NUMBER, "No device found.");
+		return new DevicePool<>(count, Core::openDevice);
+	}
+
+	/** Waits for a device. Requests from a tenant are served in order, and tenants take turns.
+	 * @param tenant Identifies the client for fairness and {@link #setQuota(String, int) quotas}.
+	 * @return The lease, which must be closed to return the device, or null if the timeout elapsed.
+	 * @throws IllegalStateException if the pool is closed. */
+	public Lease<D> acquire (String tenant, long timeout, TimeUnit unit) throws InterruptedException {
+		if (tenant == null) throw new IllegalArgumentException("tenant cannot be null.");
+		var waiter = new CompletableFuture<Lease<D>>();
+		Tenant<D> state;
+		synchronized (this) {
+			if (closed) throw new IllegalStateException("Pool is closed.");
+			state = tenants.computeIfAbsent(tenant, name -> new Tenant<>(name, quotas.getOrDefault(name, defaultQuota)));
+			if (state.waiters.isEmpty()) turns.add(state);
+			state.waiters.add(waiter);
+			waiting++;
+			dispatch();
+		}
+		try {
+			return waiter.get(timeout, unit);
+		} catch (ExecutionException ex) {
+			throw new IllegalStateException("Pool is closed.");
+		} catch (TimeoutException ex) {
+			if (cancel(state, waiter)) return null;
+			return waiter.join(); // Leased while timing out.
+		} catch (InterruptedException ex) {
+			if (!cancel(state, waiter)) waiter.join().close(); // Leased while interrupted.
+			throw ex;
+		}
+	}
+
+	/** @return False if the waiter was already given a lease. */
+	private synchronized boolean cancel (Tenant<D> tenant, CompletableFuture<Lease<D>> waiter) {
+		if (waiter.isDone()) return false;
+		tenant.waiters.remove(waiter);
+		waiting--;
+		if (tenant.waiters.isEmpty()) {
+			turns.remove(tenant);
+			if (tenant.leased == 0) tenants.remove(tenant.name);
+		}
+		return true;
+	}
+
+	/** Gives idle devices to waiting tenants, one per turn. */
+	private void dispatch () {
+		int skipped = 0;
+		while (!idle.isEmpty() && skipped < turns.size()) {
+			Tenant<D> tenant = turns.poll();
+			if (tenant.leased >= tenant.quota) { // Waits for one of its leases to be returned.
+				turns.add(tenant);
+				skipped++;
+				continue;
+			}
+			skipped = 0;
+			CompletableFuture<Lease<D>> waiter = tenant.waiters.poll();
+			waiting--;
+			if (!tenant.waiters.isEmpty()) turns.add(tenant);
+			Slot<D> slot = idle.poll();
+			var lease = new Lease<>(this, slot, tenant);
+			tenant.leased++;
+			slot.leases++;
+			long leaseTimeout = this.leaseTimeout;
+			if (leaseTimeout > 0) lease.timeout = scheduler.schedule( () -> expire(lease), leaseTimeout, TimeUnit.MILLISECONDS);
+			waiter.complete(lease);
+		}
+	}
+
+	/** Revokes a lease that was held too long. Its device is recycled when the holder closes the lease. */
+	private void expire (Lease<D> lease) {
+		synchronized (this) {
+			if (lease.state != Lease.active) return;
+			lease.state = Lease.expired;
+			released(lease);
+		}
+		Log.warn("Lease expired: {} {}", lease.tenant.name, lease.slot.device.getSerial());
+	}
+
+	void release (Lease<D> lease) {
+		boolean expired;
+		synchronized (this) {
+			expired = lease.state == Lease.expired;
+			if (!expired && lease.state != Lease.active) return;
+			lease.state = expired ? Lease.returned : Lease.returning;
+		}
+		if (expired) { // The holder is done with the device, so it can be closed.
+			recycle(lease.slot);
+			return;
+		}
+		if (lease.timeout != null) lease.timeout.cancel(false);
+		boolean healthy = !lease.invalid && healthy(lease);
+		synchronized (this) {
+			lease.state = Lease.returned;
+			released(lease);
+			if (healthy) {
+				if (closed)
+					close(lease.slot);
+				else {
+					idle.add(lease.slot);
+					dispatch();
+				}
+				return;
+			}
+		}
+		recycle(lease.slot);
+	}
+
+	private void released (Lease<D> lease) {
+		Tenant<D> tenant = lease.tenant;
+		tenant.leased--;
+		if (tenant.leased == 0 && tenant.waiters.isEmpty()) tenants.remove(tenant.name);
+		dispatch(); // The tenant may be under its quota again.
+	}
+
+	private boolean healthy (Lease<D> lease) {
+		try {
+			if (healthCheck.test(lease)) return true;
+			Log.warn("Pooled device failed health check: {}", lease.slot.device.getSerial());
+		} catch (RuntimeException ex) {
+			Log.warn("Pooled device failed health check: " + lease.slot.device.getSerial(), ex);
+		}
+		return false;
+	}
+
+	static private boolean defaultHealthCheck (Lease<?> lease) {
+		Core core = lease.getCore();
+		return core.getLastError() == SUCCESS && !core.isMeasuring();
+	}
+
+	/** Closes a device that is no longer leased and, unless the pool is closed, reopens it on the pool's thread. The device is
+	 * closed before the reopen is scheduled, so it is not left open if the pool closes first. */
+	private void recycle (Slot<D> slot) {
+		close(slot);
+		synchronized (this) {
+			recycled++;
+			if (!closed) scheduler.execute( () -> reopen(slot));
+		}
+	}
+
+	/** Opens a device on the pool's thread, then makes it available. */
+	private void reopen (Slot<D> slot) {
+		D device;
+		try {
+			device = open.apply(slot.index);
+		} catch (RuntimeException ex) {
+			Log.warn("Unable to reopen pooled device: " + slot.index, ex);
+			synchronized (this) {
+				if (!closed) scheduler.schedule( () -> reopen(slot), reopenDelay, TimeUnit.MILLISECONDS);
+			}
+			return;
+		}
+		synchronized (this) {
+			slot.device = device;
+			slot.leases = 0;
+			if (closed) {
+				close(slot);
+				return;
+			}
+			idle.add(slot);
+			dispatch();
+		}
+	}
+
+	private void close (Slot<D> slot) {
+		D device = slot.device;
+		if (device == null) return;
+		slot.device = null;
+		slot.core = null;
+		try {
+			device.close();
+		} catch (RuntimeException ex) {
+			Log.debug("Unable to close pooled device: " + slot.index, ex);
+		}
+	}
+
+	/** Sets the most leases a tenant can hold at once. Its other requests wait while other tenants are served.
+	 * @param quota Integer.MAX_VALUE for no limit. */
+	public synchronized void setQuota (String tenant, int quota) {
+		if (quota < 1) throw new IllegalArgumentException("quota must be > 0: " + quota);
+		quotas.put(tenant, quota);
+		Tenant<D> state = tenants.get(tenant);
+		if (state != null) state.quota = quota;
+		dispatch();
+	}
+
+	/** Sets the quota of tenants without one. Default is no limit. */
+	public synchronized void setDefaultQuota (int quota) {
+		if (quota < 1) throw new IllegalArgumentException("quota must be > 0: " + quota);
+		defaultQuota = quota;
+		for (Tenant<D> tenant : tenants.values())
+			if (!quotas.containsKey(tenant.name)) tenant.quota = quota;
+		dispatch();
+	}
+
+	/** Sets how long a lease may be held before it is revoked and its device recycled. Applies to new leases.
+	 * @param leaseTimeout Milliseconds, or 0 for no timeout. Default is 60000. */
+	public void setLeaseTimeout (long leaseTimeout) {
+		this.leaseTimeout = leaseTimeout;
+	}
+
+	/** @param reopenDelay Milliseconds to wait before retrying a device that failed to open. Default is 5000. */
+	public void setReopenDelay (long reopenDelay) {
+		this.reopenDelay = reopenDelay;
+	}
+
+	/** Sets the check made when a lease is closed. A device that fails the check or throws is recycled. Default checks that
+	 * {@link Core#getLastError()} is {@link JetiSDK#SUCCESS} and the device is not {@link Core#isMeasuring() measuring}. */
+	public void setHealthCheck (Predicate<Lease<D>> healthCheck) {
+		if (healthCheck == null) throw new IllegalArgumentException("healthCheck cannot be null.");
+		this.healthCheck = healthCheck;
+	}
+
+	public int getSize () {
+		return slots.size();
+	}
+
+	/** Returns the number of devices available to lease. */
+	public synchronized int getIdleCount () {
+		return idle.size();
+	}
+
+	/** Returns the number of requests waiting for a device. */
+	public synchronized int getWaitingCount () {
+		return waiting;
+	}
+
+	/** Returns the number of times a device was closed and reopened. */
+	public synchronized int getRecycledCount () {
+		return recycled;
+	}
+
+	/** Closes idle devices and fails waiting requests. Leased devices are closed when returned. */
+	public void close () {
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+			for (Tenant<D> tenant : turns)
+				for (CompletableFuture<Lease<D>> waiter : tenant.waiters)
+					waiter.completeExceptionally(new IllegalStateException("Pool is closed."));
+			turns.clear();
+			waiting = 0;
+			for (Slot<D> slot : idle)
+				close(slot);
+			idle.clear();
+		}
+		scheduler.shutdownNow();
+	}
+
+	/** Exclusive use of a pooled device until closed. */
+	static public class Lease<D extends Device<?>> implements AutoCloseable {
+		static final int active = 0, returning = 1, returned = 2, expired = 3;
+
+		private final DevicePool<D> pool;
+		final Slot<D> slot;
+		final Tenant<D> tenant;
+		final long time = System.currentTimeMillis();
+		ScheduledFuture<?> timeout;
+		volatile int state;
+		volatile boolean invalid;
+
+		Lease (DevicePool<D> pool, Slot<D> slot, Tenant<D> tenant) {
+			this.pool = pool;
+			this.slot = slot;
+			this.tenant = tenant;
+		}
+
+		/** @throws IllegalStateException if the lease was closed or expired. */
+		public D getDevice () {
+			int state = this.state;
+			if (state == expired) throw new IllegalStateException("Lease expired.");
+			if (state == returned) throw new IllegalStateException("Lease is closed.");
+			return slot.device;
+		}
+
+		/** Returns a {@link Core} for the device, which is the device itself for a pool of Core devices. */
+		public Core getCore () {
+			D device = getDevice();
+			if (device instanceof Core core) return core;
+			Core core = slot.core;
+			if (core == null) slot.core = core = new Core(device);
+			return core;
+		}
+
+		public String getTenant () {
+			return tenant.name;
+		}
+
+		/** Returns the milliseconds since the device was leased. */
+		public long getAge () {
+			return System.currentTimeMillis() - time;
+		}
+
+		/** Returns the number of times the device was leased since it was opened. */
+		public int getLeaseCount () {
+			return slot.leases;
+		}
+
+		/** Recycles the device when the lease is closed without a health check, eg after it failed with an error. */
+		public void invalidate () {
+			invalid = true;
+		}
+
+		/** Returns the device to the pool. */
+		public void close () {
+			pool.release(this);
+		}
+	}
+
+	static class Slot<D extends Device<?>> {
+		final int index;
+		volatile D device;
+		volatile Core core;
+		int leases;
+
+		Slot (int index) {
+			this.index = index;
+		}
+	}
+
+	static class Tenant<D extends Device<?>> {
+		final String name;
+		final ArrayDeque<CompletableFuture<Lease<D>>> waiters = new ArrayDeque<>();
+		int quota, leased;
+
+		Tenant (String name, int quota) {
+			this.name = name;
+			this.quota = quota;
+		}
+	}
+}
@@ -0,0 +1,304 @@
+
+package com.esotericsoftware.jeti;
+
+/** Computes temporal light artefact metrics from fast photometric samples, eg from
+ * {@link SpectroEx#getContinuousChannelLightData()}, where {@link Core#getFlickerFrequency()} gives only the frequency.
+ * <p>
+ * The samples are Hann windowed and transformed with a real FFT of the next power of two, with twiddle factors, bit reversal
+ * table and buffers allocated once for the maximum sample count, so {@link #analyze(float[], int, float) analyzing} does not
+ * allocate. The metrics are read with the getters after each analysis:
+ * <ul>
+ * <li>Percent flicker (modulation depth) and flicker index, from the samples (IES RP-16). These are exact when the samples span
+ * whole periods.
+ * <li>The dominant frequency.
+ * <li>SVM, the stroboscopic visibility measure (IEC TR 63158), from spectral components between 80 and 2000 Hz.
+ * <li>A Pst style short-term flicker severity for steady flicker, from components up to 80 Hz weighted by the IEC 61000-4-15
+ * eye-brain filter. This is an estimate, not a certified PstLM measurement, see {@link #setPstReference(float)}.
+ * </ul>
+ *
+ * <pre>
+ * var analyzer = new FlickerAnalyzer(65536);
+ * analyzer.analyze(samples, samples.length, 20000);
+ * float svm = analyzer.getSVM();
+ * </pre> */
+public class FlickerAnalyzer {
+	/** IEC 61000-4-15 eye-brain weighting filter. */
+	static private final double K = 1.74802, lambda = 2 * Math.PI * 4.05981, omega1 = 2 * Math.PI * 9.15494,
+		omega2 = 2 * Math.PI * 2.27979, omega3 = 2 * Math.PI * 1.22535, omega4 = 2 * Math.PI * 21.9;
+	static private final double weightAt8_8 = eyeBrain(8.8);
+
+	private final int maxSamples, size, half;
+	private final double[] cos, sin;
+	private final int[] reverse;
+	private final double[] re, im, modulation;
+	private final float[] window, converted;
+	private int windowCount = -1;
+
+	private int count;
+	private float sampleRate, pstReference = 0.003f;
+	private float mean, min, max, percentFlicker, flickerIndex, frequency, svm, pst;
+
+	/** @param maxSamples The most samples that will be analyzed at once. */
+	public FlickerAnalyzer (int maxSamples) {
+		if (maxSamples < 4) throw new IllegalArgumentException("maxSamples must be >= 4: " + maxSamples);
+		this.maxSamples = maxSamples;
+		size = Integer.highestOneBit(maxSamples - 1) << 1;
+		half = size >> 1;
+
+		// e^(-2 pi i k / size) for the complex FFT of size / 2 (every other entry) and the real FFT's split.
+		cos = new double[half];
+		sin = new double[half];
+		for (int k = 0; k < half; k++) {
+			double angle = 2 * Math.PI * k / size;
+			cos[k] = Math.cos(angle);
+			sin[k] = -Math.sin(angle);
+		}
+		reverse = new int[half];
+		int bits = Integer.numberOfTrailingZeros(half);
+		for (int i = 0; i < half; i++)
+			reverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+
+		re = new double[half];
+		im = new double[half];
+		modulation = new double[half + 1];
+		window = new float[maxSamples];
+		converted = new float[maxSamples];
+	}
+
+	/** Analyzes unsigned 16 bit samples, eg channel data.
+	 * @param sampleRate In Hz. */
+	public void analyze (short[] samples, int count, float sampleRate) {
+		if (count > maxSamples) throw new IllegalArgumentException("count must be <= " + maxSamples + ": " + count);
+		for (int i = 0; i < count; i++)
+			converted[i] = samples[i] & 0xffff;
+		analyze(converted, count, sampleRate);
+	}
+
+	/** @param samples Photometric values, such as luminance or counts, which must be proportional to light.
+	 * @param sampleRate In Hz. */
+	public void analyze (float[] samples, int count, float sampleRate) {
+		if (count < 4 || count > maxSamples)
+			throw new IllegalArgumentException("count must be 4 to " + maxSamples + ": " + count);
+		if (sampleRate <= 0) throw new IllegalArgumentException("sampleRate must be > 0: " + sampleRate);
+		this.count = count;
+		this.sampleRate = sampleRate;
+
+		// Time domain.
+		double sum = 0;
+		float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++) {
+			float value = samples[i];
+			sum += value;
+			if (value < min) min = value;
+			if (value > max) max = value;
+		}
+		double mean = sum / count;
+		double above = 0;
+		for (int i = 0; i < count; i++)
+			if (samples[i] > mean) above += samples[i] - mean;
+		this.mean = (float)mean;
+		this.min = min;
+		this.max = max;
+		percentFlicker = max + min > 0 ? 100 * (max - min) / (max + min) : Float.NaN;
+		flickerIndex = sum > 0 ? (float)(above / sum) : Float.NaN;
+
+		// Frequency domain: the windowed samples minus the mean, so the mean does not leak into low frequencies.
+		if (windowCount != count) {
+			for (int i = 0; i < count; i++)
+				window[i] = (float)(0.5 - 0.5 * Math.cos(2 * Math.PI * i / count));
+			windowCount = count;
+		}
+		for (int n = 0, i = 0; n < half; n++, i += 2) {
+			re[n] = i < count ? (samples[i] - mean) * window[i] : 0;
+			im[n] = i + 1 < count ? (samples[i + 1] - mean) * window[i + 1] : 0;
+		}
+		fft();
+		spectrum(mean);
+
+		frequency = dominantFrequency();
+		svm = svm();
+		pst = pst();
+	}
+
+	/** In place radix-2 FFT of the re and im arrays. */
+	private void fft () {
+		double[] re = this.re, im = this.im, cos = this.cos, sin = this.sin;
+		int[] reverse = this.reverse;
+		int n = half;
+		for (int i = 0; i < n; i++) {
+			int j = reverse[i];
+			if (i < j) {
+				double t = re[i];
+				re[i] = re[j];
+				re[j] = t;
+				t = im[i];
+				im[i] = im[j];
+				im[j] = t;
+			}
+		}
+		for (int length = 2; length <= n; length <<= 1) {
+			int halfLength = length >> 1, stride = (n / length) << 1;
+			for (int i = 0; i < n; i += length) {
+				for (int k = 0, w = 0; k < halfLength; k++, w += stride) {
+					int a = i + k, b = a + halfLength;
+					double wr = cos[w], wi = sin[w];
+					double tr = re[b] * wr - im[b] * wi, ti = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - tr;
+					im[b] = im[a] - ti;
+					re[a] += tr;
+					im[a] += ti;
+				}
+			}
+		}
+	}
+
+	/** Splits the packed complex FFT into the real FFT's bins and stores each bin's amplitude relative to the mean. */
+	private void spectrum (double mean) {
+		double scale = mean > 0 ? 4 / (count * mean) : 0; // Hann coherent gain is 1/2.
+		for (int k = 0; k <= half; k++) {
+			int a = k == half ? 0 : k, b = k == 0 ? 0 : half - k;
+			double zr = re[a], zi = im[a], cr = re[b], ci = -im[b];
+			double er = (zr + cr) * 0.5, ei = (zi + ci) * 0.5; // Even samples.
+			double or = (zi - ci) * 0.5, oi = -(zr - cr) * 0.5; // Odd samples.
+			double wr = k == half ? -1 : cos[k], wi = k == half ? 0 : sin[k];
+			double xr = er + wr * or - wi * oi, xi = ei + wr * oi + wi * or;
+			modulation[k] = Math.sqrt(xr * xr + xi * xi) * scale;
+		}
+	}
+
+	private float dominantFrequency () {
+		int peak = 1;
+		for (int k = 2; k <= half; k++)
+			if (modulation[k] > modulation[peak]) peak = k;
+		if (modulation[peak] == 0) return 0;
+		double offset = 0;
+		if (peak < half) { // Parabolic interpolation of the log amplitudes.
+			double a = Math.log(modulation[peak - 1] + 1e-30), b = Math.log(modulation[peak]);
+			double c = Math.log(modulation[peak + 1] + 1e-30);
+			double denominator = a - 2 * b + c;
+			if (denominator < 0) offset = 0.5 * (a - c) / denominator;
+		}
+		return (float)((peak + offset) * sampleRate / size);
+	}
+
+	/** Returns the bins in a window's main lobe on each side of a peak. */
+	private int lobe () {
+		return (int)Math.ceil(2.0 * size / count);
+	}
+
+	/** Returns the sum of the squared bin modulations for a sinusoid of modulation 1, to convert bin energy to modulation. */
+	private double energy () {
+		return 1.5 * size / count; // Hann equivalent noise bandwidth is 1.5 bins of the unpadded length.
+	}
+
+	private float svm () {
+		if (!(mean > 0)) return Float.NaN;
+		double binWidth = sampleRate / (double)size, energy = energy();
+		int first = Math.max(1, (int)Math.ceil(80 / binWidth)), last = Math.min(half - 1, (int)(2000 / binWidth));
+		int lobe = lobe();
+		double sum = 0;
+		for (int k = first; k <= last; k++) {
+			double m = modulation[k];
+			if (m == 0) continue;
+			// A component is the largest bin of its main lobe, so side lobes are not counted. Its energy is the lobe's.
+			int start = Math.max(1, k - lobe), end = Math.min(half, k + lobe);
+			double lobeEnergy = 0;
+			boolean peak = true;
+			for (int i = start; i <= end; i++) {
+				double other = modulation[i];
+				if (other > m || (other == m && i < k)) {
+					peak = false;
+					break;
+				}
+				lobeEnergy += other * other;
+			}
+			if (!peak) continue;
+			double f = k * binWidth;
+			double threshold = 1 / (1 + Math.exp(-0.00518 * (f - 306.6))) + 20 * Math.exp(-f / 27.12);
+			sum += Math.pow(Math.sqrt(lobeEnergy / energy) / threshold, 3.7);
+		}
+		return (float)Math.pow(sum, 1 / 3.7);
+	}
+
+	private float pst () {
+		if (!(mean > 0)) return Float.NaN;
+		double binWidth = sampleRate / (double)size;
+		int last = Math.min(half, (int)(80 / binWidth));
+		double sum = 0;
+		for (int k = 1; k <= last; k++) {
+			double f = k * binWidth;
+			double weight = eyeBrain(f) / weightAt8_8 / Math.sqrt(1 + Math.pow(f / 35, 12)); // 35 Hz 6th order Butterworth.
+			double m = modulation[k] * weight;
+			sum += m * m;
+		}
+		return (float)(Math.sqrt(sum / energy()) / pstReference);
+	}
+
+	/** Returns the gain of the IEC 61000-4-15 eye-brain weighting filter. */
+	static private double eyeBrain (double frequency) {
+		double w = 2 * Math.PI * frequency;
+		double resonance = K * omega1 * w / Math.sqrt(Math.pow(omega1 * omega1 - w * w, 2) + Math.pow(2 * lambda * w, 2));
+		return resonance * Math.sqrt(1 + Math.pow(w / omega2, 2))
+			/ (Math.sqrt(1 + Math.pow(w / omega3, 2)) * Math.sqrt(1 + Math.pow(w / omega4, 2)));
+	}
+
+	/** Sets the modulation of sinusoidal flicker at 8.8 Hz, where the eye is most sensitive, for which {@link #getPst()} is 1.
+	 * @param pstReference Default is 0.003, about the threshold of visibility. */
+	public void setPstReference (float pstReference) {
+		if (pstReference <= 0) throw new IllegalArgumentException("pstReference must be > 0: " + pstReference);
+		this.pstReference = pstReference;
+	}
+
+	public float getMean () {
+		return mean;
+	}
+
+	public float getMin () {
+		return min;
+	}
+
+	public float getMax () {
+		return max;
+	}
+
+	/** Returns 100 * (max - min) / (max + min). */
+	public float getPercentFlicker () {
+		return percentFlicker;
+	}
+
+	/** Returns the area above the mean divided by the total area, from 0 to 1. */
+	public float getFlickerIndex () {
+		return flickerIndex;
+	}
+
+	/** Returns the frequency of the largest component, in Hz. */
+	public float getFrequency () {
+		return frequency;
+	}
+
+	/** Returns the stroboscopic visibility measure. 1 is the threshold of visibility for an average observer. */
+	public float getSVM () {
+		return svm;
+	}
+
+	/** Returns the short-term flicker severity estimate for steady flicker. 1 is about the threshold of visibility. */
+	public float getPst () {
+		return pst;
+	}
+
+	/** Returns the number of bins in the spectrum, from 0 Hz to half the sample rate. */
+	public int getBinCount () {
+		return half + 1;
+	}
+
+	/** Returns the frequency of a bin of the last analysis, in Hz. */
+	public float getBinFrequency (int bin) {
+		return bin * sampleRate / size;
+	}
+
+	/** Returns the amplitude of a bin of the last analysis relative to the mean. A sinusoid's amplitude is spread over a few
+	 * bins. */
+	public float getBinModulation (int bin) {
+		return (float)modulation[bin];
+	}
+}
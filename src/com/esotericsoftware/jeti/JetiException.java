@@ -3,8 +3,15 @@ package com.esotericsoftware.jeti;
 
 import static com.esotericsoftware.jeti.JetiSDK.*;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /** @author Nathan Sweet <misc@n4te.com> */
 public class JetiException extends RuntimeException {
+	/** Shared exceptions for the SDK error codes, created when first requested. */
+	static private final AtomicReferenceArray<JetiException> shared = new AtomicReferenceArray<>(0x101);
+
+	static volatile boolean stackless;
+
 	private final int errorCode;
 
 	public JetiException (int errorCode) {
@@ -22,7 +29,34 @@ public class JetiException extends RuntimeException {
 		this.errorCode = errorCode;
 	}
 
+	/** Creates an exception without a stack trace or suppressed exceptions, so it is cheap to create and can be shared. */
+	private JetiException (int errorCode, String message, Throwable cause, boolean writableStackTrace) {
+		super(message, cause, false, writableStackTrace);
+		this.errorCode = errorCode;
+	}
+
 	public int getErrorCode () {
 		return errorCode;
 	}
+
+	/** Returns an exception for the error code that has no stack trace and is shared by all threads, or a new one without a stack
+	 * trace for error codes the SDK does not define. The shared exception is created the first time its error code is requested.
+	 * @param errorCode Must not be {@link JetiSDK#SUCCESS}. */
+	static public JetiException get (int errorCode) {
+		if (errorCode == SUCCESS) throw new IllegalArgumentException("errorCode cannot be SUCCESS.");
+		if (errorCode < 0 || errorCode >= shared.length())
+			return new JetiException(errorCode, getErrorMessage(errorCode), null, false);
+		JetiException ex = shared.get(errorCode);
+		if (ex != null) return ex;
+		ex = new JetiException(errorCode, getErrorMessage(errorCode), null, false);
+		JetiException existing = shared.compareAndExchange(errorCode, null, ex);
+		return existing != null ? existing : ex;
+	}
+
+	/** When true, a failed native call throws the {@link #get(int) shared} exception for its error code instead of creating
+	 * one with a stack trace. This avoids the allocation and stack walk when errors are expected, such as polling a busy device,
+	 * but the exception no longer shows where it was thrown. Default is false. */
+	static public void setStackless (boolean stackless) {
+		JetiException.stackless = stackless;
+	}
 }
@@ -3,11 +3,29 @@ package com.esotericsoftware.jeti;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
 
 /** @author Nathan Sweet <misc@n4te.com> */
 public class JetiSDK {
@@ -19,6 +37,8 @@ public class JetiSDK {
 		"jeti_spectro_ex64.dll"};
 
 	static public final int SUCCESS = 0;
+	static public final int TIMEOUT = 0x00000008;
+	static public final int BREAK = 0x00000009;
 	static public final int INVALID_ARGUMENT = 0x0000000D;
 	static public final int INVALID_DEVICE_NUMBER = 0x00000013;
 
@@ -30,23 +50,39 @@ public class JetiSDK {
 	private JetiSDK () {
 	}
 
+	/** Extracts all {@link #libraries} to a cache directory for the current user in the temp directory, reusing files from
+	 * previous runs when their content is unchanged. */
 	static public void initialize () {
+		initialize(libraries);
+	}
+
+	/** Extracts only the specified libraries to a cache directory for the current user in the temp directory, reusing files from
+	 * previous runs when their content is unchanged. Libraries not extracted cannot be loaded.
+	 * <p>
+	 * The cache directory is only used when it is owned by the current user and, on POSIX file systems, cannot be written by
+	 * other users, since a library placed there would be loaded. Otherwise the libraries are extracted to a new temporary
+	 * directory.
+	 * @param libraries Entries from {@link #libraries}. */
+	static public void initialize (String... libraries) {
 		if (initialized) return;
 		synchronized (JetiSDK.class) {
 			if (initialized) return;
 			Path dir = null;
 			try {
-				dir = Paths.get(System.getProperty("java.io.tmpdir"), "jeti");
-				Files.createDirectory(dir);
-				extractLibraries(dir);
-			} catch (Throwable ignored) {
-				deleteLibraries(dir);
+				NativeLibrary[] all = nativeLibraries(JetiSDK.libraries);
+				dir = cacheDir().resolve(version(all));
+				Files.createDirectories(dir);
+				extractLibraries(dir, libraries == JetiSDK.libraries ? all : nativeLibraries(libraries), false);
+			} catch (Throwable ex) {
+				Log.warn("Unable to use native library cache, extracting to a temporary directory: " + dir, ex);
+				Path tempDir = null;
 				try {
-					dir = Files.createTempDirectory("jeti-");
-					extractLibraries(dir);
-				} catch (Throwable ex) {
-					deleteLibraries(dir);
-					throw new RuntimeException("Unable to initialize the JETI SDK.", ex);
+					tempDir = Files.createTempDirectory("jeti-");
+					extractLibraries(tempDir, nativeLibraries(libraries), false);
+					deleteOnExit(tempDir, libraries);
+				} catch (Throwable ex2) {
+					if (tempDir != null) deleteLibraries(tempDir, libraries);
+					throw new RuntimeException("Unable to initialize the JETI SDK.", ex2);
 				}
 			}
 			initialized = true;
@@ -54,14 +90,22 @@ public class JetiSDK {
 		}
 	}
 
+	/** Extracts all {@link #libraries} to the specified directory, reusing files already there when their content is
+	 * unchanged. */
 	static public void initialize (Path dir) {
+		initialize(dir, libraries);
+	}
+
+	/** Extracts only the specified libraries to the specified directory, reusing files already there when their content is
+	 * unchanged. Libraries not extracted cannot be loaded.
+	 * @param libraries Entries from {@link #libraries}. */
+	static public void initialize (Path dir, String... libraries) {
 		if (initialized) return;
 		synchronized (JetiSDK.class) {
 			if (initialized) return;
 			try {
-				extractLibraries(dir);
+				extractLibraries(dir, nativeLibraries(libraries), true);
 			} catch (Throwable ex) {
-				deleteLibraries(dir);
 				throw new RuntimeException("Unable to initialize the JETI SDK.", ex);
 			}
 			initialized = true;
@@ -69,24 +113,93 @@ public class JetiSDK {
 		}
 	}
 
-	static private void extractLibraries (Path dir) throws IOException {
-		for (String library : libraries) {
-			try (InputStream input = JetiSDK.class.getResourceAsStream("/" + library)) {
-				if (input != null) {
-					Path path = dir.resolve(library);
-					Files.copy(input, path, StandardCopyOption.REPLACE_EXISTING);
-					path.toFile().deleteOnExit();
-					Log.debug("Extracted native library: " + path);
-				} else
-					Log.warn("Native library not found: " + library);
-			}
+	static private NativeLibrary[] nativeLibraries (String[] libraries) throws IOException {
+		var nativeLibraries = new NativeLibrary[libraries.length];
+		for (int i = 0; i < libraries.length; i++)
+			nativeLibraries[i] = NativeLibrary.of(libraries[i]);
+		return nativeLibraries;
+	}
+
+	/** Returns the current user's cache directory, creating it if needed.
+	 * @throws IOException if the directory is a link, is not owned by the current user, or can be written by other users. On
+	 *            Windows a directory owned by the Administrators group is accepted, since that is the owner of files an
+	 *            administrator creates, and the directory only needs to be writable. */
+	static private Path cacheDir () throws IOException {
+		String user = System.getProperty("user.name");
+		Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "jeti-" + user.replaceAll("[^A-Za-z0-9._-]", "_"));
+		boolean posix = dir.getFileSystem().supportedFileAttributeViews().contains("posix");
+		try {
+			if (posix)
+				Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+			else
+				Files.createDirectory(dir);
+		} catch (FileAlreadyExistsException ignored) {
+		}
+
+		if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) throw new IOException("Cache is not a directory: " + dir);
+		UserPrincipal owner = Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS);
+		UserPrincipalLookupService lookup = dir.getFileSystem().getUserPrincipalLookupService();
+		if (!owner.equals(lookup.lookupPrincipalByName(user)) && (posix || !administrators(lookup, owner)))
+			throw new IOException("Cache directory is owned by another user: " + owner);
+		if (!Files.isWritable(dir)) throw new IOException("Cache directory is not writable: " + dir);
+		if (posix) {
+			Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS);
+			if (permissions.contains(PosixFilePermission.GROUP_WRITE) || permissions.contains(PosixFilePermission.OTHERS_WRITE))
+				throw new IOException("Cache directory can be written by other users: " + dir);
+		}
+		return dir;
+	}
+
+	static private boolean administrators (UserPrincipalLookupService lookup, UserPrincipal owner) {
+		try {
+			return owner.equals(lookup.lookupPrincipalByGroupName("Administrators"));
+		} catch (IOException ex) { // No such group.
+			return false;
+		}
+	}
+
+	/** Returns a name for the cache directory that changes when the content of any library changes. */
+	static private String version (NativeLibrary[] nativeLibraries) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new RuntimeException(ex);
+		}
+		for (NativeLibrary library : nativeLibraries) {
+			if (library.url == null) continue;
+			digest.update(library.name.getBytes(StandardCharsets.UTF_8));
+			digest.update(ByteBuffer.allocate(16).putLong(library.size).putLong(library.crc).flip());
+		}
+		return HexFormat.of().formatHex(digest.digest(), 0, 16);
+	}
+
+	/** @param verify True to read files already in the directory to check their content, false if the directory is specific to
+	 *           the libraries' content and only the current user can write to it. */
+	static private void extractLibraries (Path dir, NativeLibrary[] nativeLibraries, boolean verify) throws IOException {
+		try {
+			Arrays.stream(nativeLibraries).parallel().forEach(library -> {
+				try {
+					library.extract(dir, verify);
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			});
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
 		}
 
 		System.setProperty("jna.library.path", dir.toString());
-		Log.debug("Native library path: " + dir);
+		Log.debug("Native library path: {}", dir);
+	}
+
+	static private void deleteOnExit (Path dir, String[] libraries) {
+		dir.toFile().deleteOnExit();
+		for (String library : libraries)
+			dir.resolve(library).toFile().deleteOnExit();
 	}
 
-	static private void deleteLibraries (Path dir) {
+	static private void deleteLibraries (Path dir, String[] libraries) {
 		for (String library : libraries)
 			delete(dir.resolve(library));
 		delete(dir);
@@ -99,6 +212,87 @@ public class JetiSDK {
 		}
 	}
 
+	/** A library resource with the size and CRC of its content. For a resource in a JAR these come from the JAR's directory, so
+	 * the content is only read when it needs to be extracted. The cache directory's name is a hash of every library's size and
+	 * CRC, and only the current user can write to it, so a cached file with the expected size is used without reading it. Files
+	 * in a directory specified by the application are read to check their CRC. */
+	static private class NativeLibrary {
+		final String name;
+		final URL url;
+		final long size, crc;
+
+		private NativeLibrary (String name, URL url, long size, long crc) {
+			this.name = name;
+			this.url = url;
+			this.size = size;
+			this.crc = crc;
+		}
+
+		static NativeLibrary of (String name) throws IOException {
+			URL url = JetiSDK.class.getResource("/" + name);
+			if (url == null) return new NativeLibrary(name, null, -1, -1);
+			URLConnection connection = url.openConnection();
+			if (connection instanceof JarURLConnection jar) {
+				connection.setUseCaches(false);
+				JarEntry entry = jar.getJarEntry();
+				if (entry.getSize() != -1 && entry.getCrc() != -1) {
+					jar.getJarFile().close();
+					return new NativeLibrary(name, url, entry.getSize(), entry.getCrc());
+				}
+			}
+			try (InputStream input = connection.getInputStream()) {
+				var crc = new CRC32();
+				long size = update(crc, input);
+				return new NativeLibrary(name, url, size, crc.getValue());
+			}
+		}
+
+		void extract (Path dir, boolean verify) throws IOException {
+			if (url == null) {
+				Log.warn("Native library not found: {}", name);
+				return;
+			}
+			Path path = dir.resolve(name);
+			if (matches(path, verify)) {
+				Log.debug("Native library is current: {}", path);
+				return;
+			}
+			Path temp = Files.createTempFile(dir, name, ".tmp");
+			try {
+				try (InputStream input = url.openStream()) {
+					Files.copy(input, temp, StandardCopyOption.REPLACE_EXISTING);
+				}
+				try {
+					Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (IOException ex) {
+					// Another process may have extracted it first and loaded it, preventing replacement.
+					if (!matches(path, verify)) throw ex;
+				}
+			} finally {
+				delete(temp);
+			}
+			Log.debug("Extracted native library: {}", path);
+		}
+
+		private boolean matches (Path path, boolean verify) throws IOException {
+			if (!Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) || Files.size(path) != size) return false;
+			if (!verify) return true;
+			var crc = new CRC32();
+			try (InputStream input = Files.newInputStream(path)) {
+				update(crc, input);
+			}
+			return crc.getValue() == this.crc;
+		}
+
+		static private long update (CRC32 crc, InputStream input) throws IOException {
+			var buffer = new byte[64 * 1024];
+			long size = 0;
+			for (int count; (count = input.read(buffer)) != -1; size += count)
+				crc.update(buffer, 0, count);
+			return size;
+		}
+	}
+
 	static String string (byte[] bytes) {
 		if (bytes == null) return "";
 		int length = 0;
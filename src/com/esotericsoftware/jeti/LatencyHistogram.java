@@ -0,0 +1,118 @@
+
+package com.esotericsoftware.jeti;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A lock-free histogram of nanosecond latencies with log-linear buckets: each power of two is split into 16 buckets, so values
+ * are recorded with at most 1/16 (6.25%) error. Values up to 2^40 ns (about 18 minutes) are tracked, larger values are clamped.
+ * Recording is safe from any thread and never blocks. */
+public class LatencyHistogram {
+	static private final int subBucketBits = 4, subBuckets = 1 << subBucketBits, maxExponent = 40;
+	static private final long maxValue = (1L << (maxExponent + 1)) - 1;
+	static final int bucketCount = (maxExponent - subBucketBits + 2) * subBuckets;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(bucketCount);
+	private final AtomicLong total = new AtomicLong(), max = new AtomicLong();
+
+	public void record (long nanos) {
+		if (nanos < 0) nanos = 0;
+		buckets.incrementAndGet(index(nanos));
+		total.addAndGet(nanos);
+		long current;
+		while (nanos > (current = max.get()))
+			if (max.compareAndSet(current, nanos)) break;
+	}
+
+	public long count () {
+		long count = 0;
+		for (int i = 0; i < bucketCount; i++)
+			count += buckets.get(i);
+		return count;
+	}
+
+	public void reset () {
+		for (int i = 0; i < bucketCount; i++)
+			buckets.set(i, 0);
+		total.set(0);
+		max.set(0);
+	}
+
+	/** Copies the current counts. Values recorded concurrently may or may not be included. */
+	public Snapshot snapshot () {
+		var counts = new long[bucketCount];
+		long count = 0;
+		for (int i = 0; i < bucketCount; i++)
+			count += counts[i] = buckets.get(i);
+		return new Snapshot(counts, count, total.get(), max.get());
+	}
+
+	static int index (long value) {
+		if (value < subBuckets) return (int)value;
+		if (value > maxValue) value = maxValue;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		return (exponent - subBucketBits + 1) * subBuckets + (int)((value >>> (exponent - subBucketBits)) & (subBuckets - 1));
+	}
+
+	/** Returns the smallest value recorded in the bucket. */
+	static long lowestValue (int index) {
+		if (index < subBuckets) return index;
+		int exponent = index / subBuckets + subBucketBits - 1;
+		return (long)(subBuckets + index % subBuckets) << (exponent - subBucketBits);
+	}
+
+	/** Returns the largest value recorded in the bucket. */
+	static long highestValue (int index) {
+		return index == bucketCount - 1 ? maxValue : lowestValue(index + 1) - 1;
+	}
+
+	static public class Snapshot {
+		private final long[] counts;
+		private final long count, total, max;
+
+		Snapshot (long[] counts, long count, long total, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.total = total;
+			this.max = max;
+		}
+
+		public long count () {
+			return count;
+		}
+
+		/** @return Nanoseconds. */
+		public long total () {
+			return total;
+		}
+
+		/** @return Nanoseconds. */
+		public long max () {
+			return max;
+		}
+
+		/** @return Nanoseconds, or 0 if no values were recorded. */
+		public double mean () {
+			return count == 0 ? 0 : total / (double)count;
+		}
+
+		/** @param percentile 0 to 100.
+		 * @return The largest value of the bucket containing the percentile in nanoseconds, at most {@link #max()}, or 0 if no
+		 *         values were recorded. */
+		public long percentile (double percentile) {
+			if (count == 0) return 0;
+			long target = Math.max(1, (long)Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+			long seen = 0;
+			for (int i = 0; i < bucketCount; i++) {
+				seen += counts[i];
+				if (seen >= target) return Math.min(highestValue(i), max);
+			}
+			return max;
+		}
+
+		public String toString () {
+			return String.format("count=%d, mean=%.1fus, p50=%.1fus, p99=%.1fus, max=%.1fus", count, mean() / 1000,
+				percentile(50) / 1000f, percentile(99) / 1000f, max / 1000f);
+		}
+	}
+}
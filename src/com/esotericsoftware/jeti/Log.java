@@ -3,6 +3,11 @@ package com.esotericsoftware.jeti;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
 
 /** @author Nathan Sweet <misc@n4te.com> */
 public class Log {
@@ -77,6 +82,23 @@ public class Log {
 		if (ERROR) logger.log(LEVEL_ERROR, message, null);
 	}
 
+	/** @param message Only called if the level is enabled. */
+	static public void error (Supplier<String> message) {
+		if (ERROR) logger.log(LEVEL_ERROR, message.get(), null);
+	}
+
+	/** @param format The first "{}" is replaced with the argument. Formatting only occurs if the level is enabled, and may occur
+	 *           later on another thread. */
+	static public void error (String format, Object arg) {
+		if (ERROR) logger.log(LEVEL_ERROR, format, arg, null, null);
+	}
+
+	/** @param format The first two "{}" are replaced with the arguments. Formatting only occurs if the level is enabled, and may
+	 *           occur later on another thread. */
+	static public void error (String format, Object arg1, Object arg2) {
+		if (ERROR) logger.log(LEVEL_ERROR, format, arg1, arg2, null);
+	}
+
 	static public void warn (String message, Throwable ex) {
 		if (WARN) logger.log(LEVEL_WARN, message, ex);
 	}
@@ -85,6 +107,23 @@ public class Log {
 		if (WARN) logger.log(LEVEL_WARN, message, null);
 	}
 
+	/** @param message Only called if the level is enabled. */
+	static public void warn (Supplier<String> message) {
+		if (WARN) logger.log(LEVEL_WARN, message.get(), null);
+	}
+
+	/** @param format The first "{}" is replaced with the argument. Formatting only occurs if the level is enabled, and may occur
+	 *           later on another thread. */
+	static public void warn (String format, Object arg) {
+		if (WARN) logger.log(LEVEL_WARN, format, arg, null, null);
+	}
+
+	/** @param format The first two "{}" are replaced with the arguments. Formatting only occurs if the level is enabled, and may
+	 *           occur later on another thread. */
+	static public void warn (String format, Object arg1, Object arg2) {
+		if (WARN) logger.log(LEVEL_WARN, format, arg1, arg2, null);
+	}
+
 	static public void info (String message, Throwable ex) {
 		if (INFO) logger.log(LEVEL_INFO, message, ex);
 	}
@@ -93,6 +132,23 @@ public class Log {
 		if (INFO) logger.log(LEVEL_INFO, message, null);
 	}
 
+	/** @param message Only called if the level is enabled. */
+	static public void info (Supplier<String> message) {
+		if (INFO) logger.log(LEVEL_INFO, message.get(), null);
+	}
+
+	/** @param format The first "{}" is replaced with the argument. Formatting only occurs if the level is enabled, and may occur
+	 *           later on another thread. */
+	static public void info (String format, Object arg) {
+		if (INFO) logger.log(LEVEL_INFO, format, arg, null, null);
+	}
+
+	/** @param format The first two "{}" are replaced with the arguments. Formatting only occurs if the level is enabled, and may
+	 *           occur later on another thread. */
+	static public void info (String format, Object arg1, Object arg2) {
+		if (INFO) logger.log(LEVEL_INFO, format, arg1, arg2, null);
+	}
+
 	static public void debug (String message, Throwable ex) {
 		if (DEBUG) logger.log(LEVEL_DEBUG, message, ex);
 	}
@@ -101,6 +157,23 @@ public class Log {
 		if (DEBUG) logger.log(LEVEL_DEBUG, message, null);
 	}
 
+	/** @param message Only called if the level is enabled. */
+	static public void debug (Supplier<String> message) {
+		if (DEBUG) logger.log(LEVEL_DEBUG, message.get(), null);
+	}
+
+	/** @param format The first "{}" is replaced with the argument. Formatting only occurs if the level is enabled, and may occur
+	 *           later on another thread. */
+	static public void debug (String format, Object arg) {
+		if (DEBUG) logger.log(LEVEL_DEBUG, format, arg, null, null);
+	}
+
+	/** @param format The first two "{}" are replaced with the arguments. Formatting only occurs if the level is enabled, and may
+	 *           occur later on another thread. */
+	static public void debug (String format, Object arg1, Object arg2) {
+		if (DEBUG) logger.log(LEVEL_DEBUG, format, arg1, arg2, null);
+	}
+
 	static public void trace (String message, Throwable ex) {
 		if (TRACE) logger.log(LEVEL_TRACE, message, ex);
 	}
@@ -109,6 +182,41 @@ public class Log {
 		if (TRACE) logger.log(LEVEL_TRACE, message, null);
 	}
 
+	/** @param message Only called if the level is enabled. */
+	static public void trace (Supplier<String> message) {
+		if (TRACE) logger.log(LEVEL_TRACE, message.get(), null);
+	}
+
+	/** @param format The first "{}" is replaced with the argument. Formatting only occurs if the level is enabled, and may occur
+	 *           later on another thread. */
+	static public void trace (String format, Object arg) {
+		if (TRACE) logger.log(LEVEL_TRACE, format, arg, null, null);
+	}
+
+	/** @param format The first two "{}" are replaced with the arguments. Formatting only occurs if the level is enabled, and may
+	 *           occur later on another thread. */
+	static public void trace (String format, Object arg1, Object arg2) {
+		if (TRACE) logger.log(LEVEL_TRACE, format, arg1, arg2, null);
+	}
+
+	/** Replaces the first two "{}" in the format with the arguments. */
+	static public String format (String format, Object arg1, Object arg2) {
+		int index = format.indexOf("{}");
+		if (index == -1) return format;
+		var builder = new StringBuilder(format.length() + 32);
+		builder.append(format, 0, index);
+		builder.append(arg1);
+		int start = index + 2;
+		index = format.indexOf("{}", start);
+		if (index != -1) {
+			builder.append(format, start, index);
+			builder.append(arg2);
+			start = index + 2;
+		}
+		builder.append(format, start, format.length());
+		return builder.toString();
+	}
+
 	private Log () {
 	}
 
@@ -116,9 +224,20 @@ public class Log {
 		private final long firstLogTime = System.currentTimeMillis();
 
 		public void log (int level, String message, Throwable ex) {
+			log(System.currentTimeMillis(), level, message, ex);
+		}
+
+		/** Formats the message and logs it. Subclasses may format later on another thread, so arguments should not be modified
+		 * after they are logged. */
+		public void log (int level, String format, Object arg1, Object arg2, Throwable ex) {
+			log(level, format(format, arg1, arg2), ex);
+		}
+
+		/** @param currentTime When the message was logged, see {@link System#currentTimeMillis()}. */
+		protected void log (long currentTime, int level, String message, Throwable ex) {
 			StringBuilder builder = new StringBuilder(256);
 
-			long time = System.currentTimeMillis() - firstLogTime;
+			long time = currentTime - firstLogTime;
 			long minutes = time / (1000 * 60);
 			long seconds = time / (1000) % 60;
 			if (minutes <= 9) builder.append('0');
@@ -151,4 +270,174 @@ public class Log {
 			System.out.println(message);
 		}
 	}
+
+	/** Hands messages to a background thread which formats them and passes them to another logger, so logging costs the calling
+	 * thread little more than a few field writes. Messages are stored in a ring buffer allocated up front. When the buffer is
+	 * full messages are dropped and counted rather than blocking the calling thread. When idle, the background thread parks until
+	 * the next message is added. A logger which overrides {@link Logger#log(int, String, Throwable)} receives the messages
+	 * through that method, otherwise messages are logged with the time they were added. */
+	static public class AsyncLogger extends Logger implements AutoCloseable {
+		private final Logger logger;
+		private final boolean overridden;
+		private final Entry[] entries;
+		private final AtomicLongArray published;
+		private final int mask;
+		private final AtomicLong tail = new AtomicLong();
+		private final LongAdder dropped = new LongAdder();
+		private final Thread thread, shutdownHook;
+		private volatile long head;
+		private volatile boolean running = true, waiting;
+
+		/** Uses a buffer of 4096 messages and logs them with a new {@link Logger}. */
+		public AsyncLogger () {
+			this(new Logger(), 4096);
+		}
+
+		/** @param logger Receives the messages on the background thread.
+		 * @param capacity The maximum number of messages waiting to be logged, rounded up to a power of two. */
+		public AsyncLogger (Logger logger, int capacity) {
+			if (capacity < 1) throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+			this.logger = logger;
+			overridden = overridesLog(logger);
+			capacity = Integer.highestOneBit(capacity - 1) << 1;
+			if (capacity == 0) capacity = 1;
+			entries = new Entry[capacity];
+			for (int i = 0; i < capacity; i++)
+				entries[i] = new Entry();
+			published = new AtomicLongArray(capacity);
+			for (int i = 0; i < capacity; i++)
+				published.set(i, i - capacity);
+			mask = capacity - 1;
+
+			thread = new Thread(this::run, "Log");
+			thread.setDaemon(true);
+			thread.start();
+			shutdownHook = new Thread(this::drain, "Log shutdown");
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
+		}
+
+		public void log (int level, String message, Throwable ex) {
+			add(level, message, null, null, false, ex);
+		}
+
+		public void log (int level, String format, Object arg1, Object arg2, Throwable ex) {
+			add(level, format, arg1, arg2, true, ex);
+		}
+
+		private void add (int level, String message, Object arg1, Object arg2, boolean format, Throwable ex) {
+			long sequence;
+			do {
+				sequence = tail.get();
+				if (sequence - head >= entries.length || !running) {
+					dropped.increment();
+					return;
+				}
+			} while (!tail.compareAndSet(sequence, sequence + 1));
+
+			int index = (int)sequence & mask;
+			Entry entry = entries[index];
+			entry.time = System.currentTimeMillis();
+			entry.level = level;
+			entry.message = message;
+			entry.arg1 = arg1;
+			entry.arg2 = arg2;
+			entry.format = format;
+			entry.ex = ex;
+			published.set(index, sequence);
+			if (waiting) LockSupport.unpark(thread);
+		}
+
+		private void run () {
+			int idle = 0;
+			while (running) {
+				if (poll())
+					idle = 0;
+				else if (idle < 100) {
+					idle++;
+					Thread.onSpinWait();
+				} else {
+					// Set before checking for a message, so either the check sees it or the producer sees waiting and unparks.
+					waiting = true;
+					if (!ready() && running) LockSupport.park();
+					waiting = false;
+				}
+			}
+		}
+
+		private boolean ready () {
+			long sequence = head;
+			return published.get((int)sequence & mask) == sequence;
+		}
+
+		/** Logs the next message, if it has been published.
+		 * @return false if there was no message. */
+		private boolean poll () {
+			long sequence = head;
+			int index = (int)sequence & mask;
+			if (published.get(index) != sequence) return false;
+			Entry entry = entries[index];
+			String message = entry.format ? format(entry.message, entry.arg1, entry.arg2) : entry.message;
+			long time = entry.time;
+			int level = entry.level;
+			Throwable ex = entry.ex;
+			entry.message = null;
+			entry.arg1 = null;
+			entry.arg2 = null;
+			entry.ex = null;
+			head = sequence + 1;
+			try {
+				if (overridden)
+					logger.log(level, message, ex);
+				else
+					logger.log(time, level, message, ex);
+			} catch (Throwable ignored) {
+			}
+			return true;
+		}
+
+		/** Stops the background thread, then logs messages until every message that was added has been logged, including any
+		 * still being written by another thread. */
+		synchronized private void drain () {
+			running = false;
+			LockSupport.unpark(thread);
+			try {
+				thread.join();
+			} catch (InterruptedException ignored) {
+			}
+			while (head != tail.get())
+				if (!poll()) Thread.onSpinWait();
+		}
+
+		/** Returns the number of messages dropped because the buffer was full. */
+		public long getDropped () {
+			return dropped.sum();
+		}
+
+		/** Logs the waiting messages and stops the background thread. Messages logged afterward are dropped. */
+		public void close () {
+			drain();
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException ignored) { // Shutting down.
+			}
+		}
+
+		static private boolean overridesLog (Logger logger) {
+			try {
+				var method = logger.getClass().getMethod("log", int.class, String.class, Throwable.class);
+				return method.getDeclaringClass() != Logger.class;
+			} catch (NoSuchMethodException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+
+		static private class Entry {
+			long time;
+			int level;
+			String message;
+			Object arg1, arg2;
+			boolean format;
+			Throwable ex;
+		}
+	}
 }
@@ -0,0 +1,368 @@
+
+package com.esotericsoftware.jeti;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.esotericsoftware.jeti.SpectrumStream.Viewer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/** Serves measurements from devices over HTTP, so many consumers share a device instead of each opening its own handle.
+ * Concurrent requests for a device's latest spectrum share a single measurement, and a spectrum is reused for the
+ * {@link #setFreshness(long) freshness} time.
+ * <p>
+ * Endpoints:
+ * <ul>
+ * <li><code>GET /devices</code>: JSON array of device names.
+ * <li><code>GET /devices/{name}/latest</code>: JSON object with <code>device</code>, <code>time</code> (ms since epoch),
+ * <code>begin</code> (nm), <code>step</code> (nm) and <code>values</code>. The <code>maxAge</code> query parameter overrides the
+ * freshness time in milliseconds, 0 to always measure.
+ * <li><code>GET /devices/{name}/latest.bin</code>: the same spectrum, big endian: time int64, begin int32, step float32, count
+ * int32, then count float32 values.
+ * <li><code>GET /devices/{name}/stream</code>: server-sent events of live spectra, see {@link SpectrumStream}.
+ * </ul>
+ * A failed measurement responds with 503 and a JSON object with <code>error</code> (the {@link JetiException#getErrorCode()
+ * error code}) and <code>message</code>.
+ *
+ * <pre>
+ * var server = new MeasurementServer(8080);
+ * server.addDevice("line1", 380, 1, MeasurementServer.radioEx(radioEx, 100, 1, 380, 780, 1));
+ * server.start();
+ * </pre> */
+public class MeasurementServer implements AutoCloseable {
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final ConcurrentHashMap<String, Source> sources = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, SpectrumStream> streams = new ConcurrentHashMap<>();
+	private volatile long freshness = 1000, measureTimeout = 60_000;
+
+	/** Listens on the loopback interface only, so the server is reachable from this machine but not the network.
+	 * @param port 0 for any free port. */
+	public MeasurementServer (int port) throws IOException {
+		this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+
+	/** @param address Use {@code new InetSocketAddress(port)} to listen on all interfaces, or the address of one interface. The
+	 *           server has no authentication, so it should only be reachable from trusted networks. */
+	public MeasurementServer (InetSocketAddress address) throws IOException {
+		server = HttpServer.create(address, 0);
+		server.setExecutor(executor);
+	}
+
+	public void start () {
+		server.createContext("/devices", this::handle);
+		server.start();
+	}
+
+	public int getPort () {
+		return server.getAddress().getPort();
+	}
+
+	/** Serves a device's spectra.
+	 * @param name Used in the URL path, must not contain '/'.
+	 * @param begin The wavelength of the first value, in nm.
+	 * @param step The wavelength between values, in nm.
+	 * @param measure Called on a request thread to measure, never concurrently for the same device. */
+	public void addDevice (String name, int begin, float step, Measure measure) {
+		checkName(name);
+		if (measure == null) throw new IllegalArgumentException("measure cannot be null.");
+		sources.put(name, new Source(name, begin, step, measure));
+	}
+
+	/** Serves a live stream of a device's spectra. The stream is not closed by the server. */
+	public void addStream (String name, SpectrumStream stream) {
+		checkName(name);
+		if (stream == null) throw new IllegalArgumentException("stream cannot be null.");
+		streams.put(name, stream);
+	}
+
+	static private void checkName (String name) {
+		if (name == null || name.isEmpty() || name.indexOf('/') != -1)
+			throw new IllegalArgumentException("Invalid name: " + name);
+	}
+
+	public void removeDevice (String name) {
+		sources.remove(name);
+		streams.remove(name);
+	}
+
+	/** @param freshness Milliseconds a spectrum is reused for requests of the latest spectrum. Default is 1000. */
+	public void setFreshness (long freshness) {
+		this.freshness = freshness;
+	}
+
+	/** @param measureTimeout Milliseconds a request waits for a measurement started by another request before it fails with
+	 *           {@link JetiSDK#TIMEOUT}. Default is 60000. */
+	public void setMeasureTimeout (long measureTimeout) {
+		this.measureTimeout = measureTimeout;
+	}
+
+	/** Returns the latest spectrum of a device, measuring if the last spectrum is older than maxAge. Concurrent calls share a
+	 * single measurement.
+	 * @throws IllegalArgumentException if the device is unknown.
+	 * @throws JetiException if the measurement failed, or {@link JetiSDK#TIMEOUT} if waiting for a measurement started by another
+	 *            call took longer than the {@link #setMeasureTimeout(long) measure timeout}. */
+	public Spectrum getLatest (String name, long maxAge) throws InterruptedException {
+		Source source = sources.get(name);
+		if (source == null) throw new IllegalArgumentException("Unknown device: " + name);
+		return source.latest(maxAge, measureTimeout);
+	}
+
+	private void handle (HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				respond(exchange, 405, "text/plain", bytes("Method not allowed."));
+				return;
+			}
+			String path = exchange.getRequestURI().getPath();
+			if (path.equals("/devices") || path.equals("/devices/")) {
+				var names = new TreeSet<>(sources.keySet());
+				names.addAll(streams.keySet());
+				var json = new StringBuilder(64).append('[');
+				for (String name : names) {
+					if (json.length() > 1) json.append(',');
+					string(json, name);
+				}
+				respond(exchange, 200, "application/json", bytes(json.append(']').toString()));
+				return;
+			}
+			String[] parts = path.substring("/devices/".length()).split("/");
+			if (parts.length == 2 && parts[1].equals("stream") && streams.containsKey(parts[0])) {
+				stream(exchange, streams.get(parts[0]));
+				return;
+			}
+			boolean binary = parts.length == 2 && parts[1].equals("latest.bin");
+			if (parts.length != 2 || !(binary || parts[1].equals("latest")) || !sources.containsKey(parts[0])) {
+				respond(exchange, 404, "text/plain", bytes("Not found."));
+				return;
+			}
+
+			long maxAge = freshness;
+			String query = exchange.getRequestURI().getQuery();
+			if (query != null) {
+				for (String parameter : query.split("&")) {
+					if (!parameter.startsWith("maxAge=")) continue;
+					try {
+						maxAge = Long.parseLong(parameter.substring(7));
+					} catch (NumberFormatException ex) {
+						respond(exchange, 400, "text/plain", bytes("Invalid maxAge: " + parameter.substring(7)));
+						return;
+					}
+				}
+			}
+
+			Spectrum spectrum;
+			try {
+				spectrum = getLatest(parts[0], maxAge);
+			} catch (JetiException ex) {
+				var json = new StringBuilder(128).append("{\"error\":").append(ex.getErrorCode()).append(",\"message\":");
+				string(json, ex.getMessage());
+				respond(exchange, 503, "application/json", bytes(json.append('}').toString()));
+				return;
+			}
+			if (binary)
+				respond(exchange, 200, "application/octet-stream", binary(spectrum));
+			else
+				respond(exchange, 200, "application/json", bytes(json(parts[0], spectrum)));
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} catch (IOException ex) {
+			Log.debug("Unable to respond: " + exchange.getRequestURI(), ex);
+		} catch (RuntimeException ex) {
+			Log.error("Request failed: " + exchange.getRequestURI(), ex);
+			respond(exchange, 500, "text/plain", bytes("Internal error."));
+		}
+	}
+
+	/** Sends the stream's events until the viewer disconnects or the stream or server is closed. */
+	private void stream (HttpExchange exchange, SpectrumStream stream) throws IOException, InterruptedException {
+		Viewer viewer;
+		try {
+			viewer = stream.subscribe();
+		} catch (IllegalStateException ex) {
+			respond(exchange, 404, "text/plain", bytes("Not found."));
+			return;
+		}
+		try {
+			exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+			exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream output = exchange.getResponseBody();
+			byte[] event;
+			while ((event = viewer.next(15, TimeUnit.SECONDS)) != null) {
+				output.write(event);
+				output.flush();
+			}
+			output.close();
+		} finally {
+			stream.unsubscribe(viewer);
+		}
+	}
+
+	static private void respond (HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(body);
+		}
+	}
+
+	static private byte[] bytes (String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	static String json (String device, Spectrum spectrum) {
+		float[] values = spectrum.values();
+		var json = new StringBuilder(64 + values.length * 10).append("{\"device\":");
+		string(json, device);
+		json.append(",\"time\":").append(spectrum.time());
+		json.append(",\"begin\":").append(spectrum.begin());
+		json.append(",\"step\":");
+		number(json, spectrum.step());
+		json.append(",\"values\":[");
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) json.append(',');
+			number(json, values[i]);
+		}
+		return json.append("]}").toString();
+	}
+
+	static byte[] binary (Spectrum spectrum) {
+		float[] values = spectrum.values();
+		ByteBuffer buffer = ByteBuffer.allocate(20 + values.length * 4);
+		buffer.putLong(spectrum.time()).putInt(spectrum.begin()).putFloat(spectrum.step()).putInt(values.length);
+		buffer.asFloatBuffer().put(values);
+		return buffer.array();
+	}
+
+	/** Writes a number, or null for NaN and infinity which JSON does not allow. */
+	static void number (StringBuilder json, float value) {
+		if (Float.isFinite(value))
+			json.append(value);
+		else
+			json.append("null");
+	}
+
+	static void string (StringBuilder json, String value) {
+		if (value == null) {
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		for (int i = 0, n = value.length(); i < n; i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"' -> json.append("\\\"");
+			case '\\' -> json.append("\\\\");
+			case '\n' -> json.append("\\n");
+			case '\r' -> json.append("\\r");
+			case '\t' -> json.append("\\t");
+			default -> {
+				if (c < 0x20)
+					json.append(String.format("\\u%04x", (int)c));
+				else
+					json.append(c);
+			}
+			}
+		}
+		json.append('"');
+	}
+
+	/** Returns a measure function that measures spectral radiance with a RadioEx. Calls are synchronized on the device. */
+	static public Measure radioEx (RadioEx radioEx, float integrationTime, int averageCount, int beginWavelength,
+		int endWavelength, int step) {
+		return () -> {
+			synchronized (radioEx) {
+				radioEx.measure(integrationTime, averageCount, step);
+				while (radioEx.isMeasuring())
+					Thread.sleep(1);
+				return radioEx.getSpectralRadiance(beginWavelength, endWavelength, step);
+			}
+		};
+	}
+
+	/** Stops the server, waiting at most 1 second for requests to complete. Streams are ended for their viewers. */
+	public void close () {
+		server.stop(1);
+		executor.shutdownNow();
+	}
+
+	/** A device and its latest spectrum. */
+	static private class Source {
+		final String name;
+		final int begin;
+		final float step;
+		final Measure measure;
+		volatile Spectrum latest;
+		private CompletableFuture<Spectrum> pending;
+
+		Source (String name, int begin, float step, Measure measure) {
+			this.name = name;
+			this.begin = begin;
+			this.step = step;
+			this.measure = measure;
+		}
+
+		Spectrum latest (long maxAge, long timeout) throws InterruptedException {
+			Spectrum spectrum = latest;
+			if (spectrum != null && System.currentTimeMillis() - spectrum.time() <= maxAge) return spectrum;
+			CompletableFuture<Spectrum> pending, leader = null;
+			synchronized (this) {
+				pending = this.pending;
+				if (pending == null) this.pending = pending = leader = new CompletableFuture<>();
+			}
+			if (leader == null) { // Shares the measurement in progress.
+				try {
+					return pending.get(timeout, TimeUnit.MILLISECONDS);
+				} catch (ExecutionException ex) {
+					if (ex.getCause() instanceof RuntimeException cause) throw cause;
+					throw new RuntimeException("Measurement failed: " + name, ex.getCause());
+				} catch (TimeoutException ex) {
+					throw new JetiException(JetiSDK.TIMEOUT, "Timed out waiting for measurement: " + name, ex);
+				}
+			}
+			try {
+				long time = System.currentTimeMillis();
+				spectrum = new Spectrum(time, begin, step, measure.measure());
+				latest = spectrum;
+				leader.complete(spectrum);
+				return spectrum;
+			} catch (InterruptedException ex) {
+				leader.completeExceptionally(new JetiException(JetiSDK.BREAK, "Measurement interrupted: " + name, ex));
+				throw ex;
+			} catch (Throwable ex) { // Followers must not wait for a measurement that failed with an error.
+				leader.completeExceptionally(ex);
+				throw ex;
+			} finally {
+				synchronized (this) {
+					this.pending = null;
+				}
+			}
+		}
+	}
+
+	/** Makes a measurement. */
+	public interface Measure {
+		float[] measure () throws InterruptedException;
+	}
+
+	/** A measured spectrum.
+	 * @param time Milliseconds since epoch when the measurement started.
+	 * @param begin The wavelength of the first value, in nm.
+	 * @param step The wavelength between values, in nm. */
+	public record Spectrum (long time, int begin, float step, float[] values) {}
+}
@@ -0,0 +1,301 @@
+
+package com.esotericsoftware.jeti;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Processes measurements in stages, each on its own executor, so acquiring a measurement overlaps processing the previous ones.
+ * A fixed number of {@link Frame frames} is allocated up front and reused: the first stage takes a free frame and fills it,
+ * each stage passes it to the next through a bounded queue, and after the last stage it is free again. When all frames are in
+ * use the first stage waits, so a slow stage limits the rate of acquisition rather than growing memory.
+ * <p>
+ * A stage that throws an exception fails only that frame, which is freed. A stage that throws an error, such as
+ * {@link OutOfMemoryError}, fails the pipeline: acquisition stops, the frames already in the pipeline are drained, and
+ * {@link #getFailure()} returns the error.
+ *
+ * <pre>
+ * var pipeline = new Pipeline(4, length, 0, 2) //
+ * 	.stage("acquire", Pipeline.acquireLight(spectroEx, 380, 780, 1, 100, 1)) //
+ * 	.stage("dark", Pipeline.subtractDark(dark)) //
+ * 	.stage("colorimetry", Pipeline.colorimetry(380, 1)) //
+ * 	.stage("persist", frame -> write(frame.spectrum, (Colorimetry)frame.result));
+ * pipeline.start();
+ * </pre> */
+public class Pipeline implements AutoCloseable {
+	private final ArrayBlockingQueue<Frame> free;
+	private final int queueCapacity;
+	private final ArrayList<StageRunner> stages = new ArrayList<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private volatile boolean running;
+	private volatile Throwable failure;
+
+	/** @param frameCount The number of frames that can be in the pipeline at once.
+	 * @param spectrumLength The length of each frame's {@link Frame#spectrum}.
+	 * @param pixelCount The length of each frame's {@link Frame#pixels}.
+	 * @param queueCapacity The number of frames that can wait between two stages. */
+	public Pipeline (int frameCount, int spectrumLength, int pixelCount, int queueCapacity) {
+		if (frameCount < 1) throw new IllegalArgumentException("frameCount must be > 0: " + frameCount);
+		if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be > 0: " + queueCapacity);
+		this.queueCapacity = queueCapacity;
+		free = new ArrayBlockingQueue<>(frameCount);
+		for (int i = 0; i < frameCount; i++)
+			free.add(new Frame(spectrumLength, pixelCount));
+	}
+
+	/** Adds a stage which runs on its own thread. The first stage added fills frames, which usually acquires a measurement. */
+	public Pipeline stage (String name, Stage stage) {
+		return stage(name, null, stage);
+	}
+
+	/** Adds a stage which runs on the specified executor. The stage occupies one of the executor's threads until the pipeline is
+	 * closed. The first stage added fills frames, which usually acquires a measurement.
+	 * @param executor May be null to run on a new thread which is stopped when the pipeline is closed. */
+	public Pipeline stage (String name, ExecutorService executor, Stage stage) {
+		if (running) throw new IllegalStateException("Pipeline is running.");
+		StageRunner previous = stages.isEmpty() ? null : stages.get(stages.size() - 1);
+		stages.add(new StageRunner(name, executor, stage, previous == null ? null : new ArrayBlockingQueue<>(queueCapacity),
+			previous));
+		return this;
+	}
+
+	public void start () {
+		if (stages.isEmpty()) throw new IllegalStateException("No stages.");
+		if (running) throw new IllegalStateException("Pipeline is running.");
+		failure = null;
+		running = true;
+		for (int i = 0, n = stages.size(); i < n; i++) {
+			StageRunner runner = stages.get(i);
+			runner.next = i + 1 < n ? stages.get(i + 1) : null;
+			runner.start();
+		}
+	}
+
+	public boolean isRunning () {
+		return running;
+	}
+
+	/** Returns the error which failed the pipeline, or null. */
+	public Throwable getFailure () {
+		return failure;
+	}
+
+	private void fail (String name, Throwable ex) {
+		Log.error("Pipeline failed, stage: " + name, ex);
+		if (failure == null) failure = ex;
+		running = false;
+	}
+
+	/** Stops acquiring frames and waits for the frames in the pipeline to be processed by every stage. */
+	public void close () {
+		running = false;
+		boolean interrupted = false;
+		for (StageRunner runner : stages) {
+			try {
+				runner.future.get();
+			} catch (InterruptedException ex) {
+				interrupted = true;
+			} catch (Exception ignored) { // Logged by the stage.
+			}
+			if (runner.ownExecutor) runner.executor.shutdown();
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	/** Reports the number of frames waiting for each stage on the device's MBean, see {@link DeviceMonitor}. */
+	public void monitorQueues (Device<?> device) {
+		for (StageRunner runner : stages)
+			if (runner.input != null) device.monitorQueue(runner.name, runner.input::size);
+	}
+
+	public List<StageStatistics> getStatistics () {
+		var statistics = new ArrayList<StageStatistics>(stages.size());
+		long time = System.nanoTime();
+		for (StageRunner runner : stages) {
+			long elapsed = time - runner.startTime;
+			double utilization = elapsed <= 0 ? 0 : Math.min(1, runner.busy.get() / (double)elapsed);
+			statistics.add(new StageStatistics(runner.name, runner.frames.get(), runner.errors.get(), utilization,
+				runner.input == null ? 0 : runner.input.size()));
+		}
+		return statistics;
+	}
+
+	private class StageRunner implements Runnable {
+		final String name;
+		final Stage stage;
+		final ExecutorService executor;
+		final boolean ownExecutor;
+		final ArrayBlockingQueue<Frame> input;
+		final StageRunner previous;
+		final AtomicLong frames = new AtomicLong(), errors = new AtomicLong(), busy = new AtomicLong();
+		StageRunner next;
+		volatile boolean done;
+		long startTime;
+		Future<?> future;
+
+		StageRunner (String name, ExecutorService executor, Stage stage, ArrayBlockingQueue<Frame> input, StageRunner previous) {
+			this.name = name;
+			this.stage = stage;
+			this.input = input;
+			this.previous = previous;
+			ownExecutor = executor == null;
+			this.executor = ownExecutor ? Executors.newSingleThreadExecutor(runnable -> {
+				var thread = new Thread(runnable, "Pipeline " + name);
+				thread.setDaemon(true);
+				return thread;
+			}) : executor;
+		}
+
+		void start () {
+			done = false;
+			startTime = System.nanoTime();
+			future = executor.submit(this);
+		}
+
+		public void run () {
+			try {
+				while (true) {
+					Frame frame;
+					if (input == null) {
+						if (!running) break;
+						frame = free.poll(10, TimeUnit.MILLISECONDS);
+						if (frame == null) continue;
+						frame.sequence = sequence.getAndIncrement();
+						frame.result = null;
+					} else {
+						// Finish once the previous stage is done and nothing is left to process.
+						boolean previousDone = previous.done;
+						frame = input.poll(10, TimeUnit.MILLISECONDS);
+						if (frame == null) {
+							if (previousDone) break;
+							continue;
+						}
+					}
+
+					long start = System.nanoTime();
+					boolean passed;
+					try {
+						stage.process(frame);
+						frames.incrementAndGet();
+						passed = true;
+					} catch (Exception ex) {
+						errors.incrementAndGet();
+						Log.error("Pipeline stage failed: " + name, ex);
+						passed = false;
+					} catch (Throwable ex) {
+						errors.incrementAndGet();
+						fail(name, ex);
+						passed = false;
+					}
+					busy.addAndGet(System.nanoTime() - start);
+
+					if (!passed || next == null || !pass(frame)) free.put(frame);
+				}
+			} catch (InterruptedException ex) {
+				Log.debug("Pipeline stage interrupted: {}", name);
+			} catch (Throwable ex) {
+				fail(name, ex);
+			} finally {
+				done = true;
+			}
+		}
+
+		/** Waits for room in the next stage's queue.
+		 * @return false if the next stage stopped, so the frame will not be processed. */
+		private boolean pass (Frame frame) throws InterruptedException {
+			while (!next.input.offer(frame, 10, TimeUnit.MILLISECONDS))
+				if (next.done) return false;
+			return true;
+		}
+	}
+
+	public interface Stage {
+		void process (Frame frame) throws Exception;
+	}
+
+	/** A measurement passed between stages. Frames are reused, so stages must not keep references to a frame or its arrays after
+	 * processing it. */
+	static public class Frame {
+		/** The working spectrum, which stages usually modify in place. */
+		public final float[] spectrum;
+		/** Raw pixel data, if the pipeline was created with a pixel count. */
+		public final int[] pixels;
+		/** Increases by one for each frame the first stage fills. */
+		public long sequence;
+		/** When the frame was acquired, see {@link System#nanoTime()}. */
+		public long time;
+		/** In milliseconds. */
+		public float integrationTime;
+		/** Set by a stage, for example to colorimetric values. Cleared when the frame is reused. */
+		public Object result;
+
+		Frame (int spectrumLength, int pixelCount) {
+			spectrum = new float[spectrumLength];
+			pixels = new int[pixelCount];
+		}
+	}
+
+	/** @param utilization The fraction of time since the pipeline started that the stage has spent processing, from 0 to 1.
+	 * @param queued Frames waiting for the stage. */
+	public record StageStatistics (String name, long frames, long errors, double utilization, int queued) {}
+
+	/** Returns a stage which takes a light measurement and stores the spectrum in the frame. */
+	static public Stage acquireLight (SpectroEx spectroEx, int beginWavelength, int endWavelength, float stepSize,
+		float integrationTime, int averageCount) {
+		return frame -> {
+			spectroEx.startLightMeasurement(integrationTime, averageCount);
+			while (spectroEx.isMeasuring())
+				Thread.sleep(1);
+			frame.time = System.nanoTime();
+			frame.integrationTime = integrationTime;
+			spectroEx.getLightWaveData(beginWavelength, endWavelength, stepSize, frame.spectrum);
+		};
+	}
+
+	/** Returns a stage which takes a light measurement and stores the spectrum minus the cached dark spectrum in the frame. */
+	static public Stage acquireLight (DarkCache darkCache, int beginWavelength, int endWavelength, float stepSize,
+		float integrationTime, int averageCount) {
+		return frame -> {
+			darkCache.measureLight(integrationTime, averageCount, beginWavelength, endWavelength, stepSize, frame.spectrum);
+			frame.time = System.nanoTime();
+			frame.integrationTime = integrationTime;
+		};
+	}
+
+	/** Returns a stage which takes a light measurement and stores the raw pixel data in the frame. */
+	static public Stage acquireLightPixels (SpectroEx spectroEx, float integrationTime, int averageCount) {
+		return frame -> {
+			spectroEx.startLightMeasurement(integrationTime, averageCount);
+			while (spectroEx.isMeasuring())
+				Thread.sleep(1);
+			frame.time = System.nanoTime();
+			frame.integrationTime = integrationTime;
+			spectroEx.getLightPixelData(frame.pixels);
+		};
+	}
+
+	/** Returns a stage which subtracts the dark spectrum from the frame's spectrum. */
+	static public Stage subtractDark (float[] darkSpectrum) {
+		return frame -> Spectra.subtract(frame.spectrum, darkSpectrum, frame.spectrum);
+	}
+
+	/** Returns a stage which sets the frame's result to the {@link Spectra#colorimetry(float[], float, float) colorimetry} of its
+	 * spectrum. This is calculated in Java, so unlike the device's colorimetry functions it does not use the device and can run
+	 * while the next measurement is acquired.
+	 * @param beginWavelength The wavelength of the first value of the frame's spectrum, in nm.
+	 * @param stepSize The wavelength between values, in nm. */
+	static public Stage colorimetry (float beginWavelength, float stepSize) {
+		return frame -> frame.result = Spectra.colorimetry(frame.spectrum, beginWavelength, stepSize);
+	}
+
+	/** Returns a stage which divides the frame's spectrum by the reference spectrum.
+	 * @param referenceSpectrum Should already have the dark spectrum subtracted. */
+	static public Stage normalize (float[] referenceSpectrum) {
+		return frame -> Spectra.divide(frame.spectrum, referenceSpectrum, frame.spectrum);
+	}
+}
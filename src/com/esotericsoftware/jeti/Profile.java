@@ -0,0 +1,154 @@
+
+package com.esotericsoftware.jeti;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.esotericsoftware.jeti.Core.CorrectionRange;
+import com.esotericsoftware.jeti.Core.PDARowConfig;
+import com.esotericsoftware.jeti.Core.WavelengthRange;
+
+/** Measurement settings applied to a device together with {@link Core#apply(Profile)}. Only settings that were set are applied.
+ * With {@link Core#setShadowEnabled(boolean) shadow state} enabled, settings the device already has are not sent.
+ *
+ * <pre>
+ * var product = new Profile().integrationTime(100).average(4).wavelengthRange(380, 780, 1).correction(true).strayLight(true);
+ * core.setShadowEnabled(true);
+ * core.apply(product); // Sends only the settings that differ from the previous profile.
+ * </pre> */
+public class Profile {
+	final EnumMap<Setting, Object> values = new EnumMap<>(Setting.class);
+
+	/** @param integrationTime In milliseconds. */
+	public Profile integrationTime (float integrationTime) {
+		values.put(Setting.integrationTime, integrationTime);
+		return this;
+	}
+
+	public Profile average (int average) {
+		values.put(Setting.average, (short)average);
+		return this;
+	}
+
+	public Profile maxIntegrationTime (float maxIntegrationTime) {
+		values.put(Setting.maxIntegrationTime, maxIntegrationTime);
+		return this;
+	}
+
+	public Profile adaptation (byte mode) {
+		values.put(Setting.adaptation, mode);
+		return this;
+	}
+
+	public Profile wavelengthRange (int begin, int end, int step) {
+		values.put(Setting.wavelengthRange, new WavelengthRange(begin, end, step));
+		return this;
+	}
+
+	public Profile syncMode (boolean syncMode) {
+		values.put(Setting.syncMode, syncMode);
+		return this;
+	}
+
+	/** @param frequency In Hz. */
+	public Profile syncFrequency (float frequency) {
+		values.put(Setting.syncFrequency, frequency);
+		return this;
+	}
+
+	/** @param triggerMode See {@link Core#setTrigger(int)}. */
+	public Profile trigger (int triggerMode) {
+		values.put(Setting.trigger, triggerMode);
+		return this;
+	}
+
+	public Profile triggerTimeout (short timeout) {
+		values.put(Setting.triggerTimeout, timeout);
+		return this;
+	}
+
+	public Profile correction (boolean enabled) {
+		values.put(Setting.correction, enabled);
+		return this;
+	}
+
+	public Profile correctionRange (int start, int end) {
+		values.put(Setting.correctionRange, new CorrectionRange(start, end));
+		return this;
+	}
+
+	public Profile offsetCorrectionRange (int start, int end) {
+		values.put(Setting.offsetCorrectionRange, new CorrectionRange(start, end));
+		return this;
+	}
+
+	public Profile strayLight (boolean enabled) {
+		values.put(Setting.strayLight, enabled);
+		return this;
+	}
+
+	/** @param distance In mm. */
+	public Profile distance (int distance) {
+		values.put(Setting.distance, distance);
+		return this;
+	}
+
+	public Profile scanDelay (int delay) {
+		values.put(Setting.scanDelay, delay);
+		return this;
+	}
+
+	public Profile maxAverage (int maxAverage) {
+		values.put(Setting.maxAverage, (short)maxAverage);
+		return this;
+	}
+
+	/** @param function See {@link Core#setFunctionConfig(byte)}. */
+	public Profile function (byte function) {
+		values.put(Setting.function, function);
+		return this;
+	}
+
+	/** @param format See {@link Core#setFormatConfig(byte)}. */
+	public Profile format (byte format) {
+		values.put(Setting.format, format);
+		return this;
+	}
+
+	public Profile pdaRow (int pdaRow, int rowNumber) {
+		values.put(Setting.pdaRow, new PDARowConfig(pdaRow, rowNumber));
+		return this;
+	}
+
+	/** Returns the settings that were set. */
+	public Map<Setting, Object> getValues () {
+		return Map.copyOf(values);
+	}
+
+	public String toString () {
+		return values.toString();
+	}
+
+	/** A setting tracked by the shadow state, see {@link Core#setShadowEnabled(boolean)}. Profiles are applied in this order. */
+	public enum Setting {
+		wavelengthRange, //
+		maxIntegrationTime, //
+		integrationTime, //
+		average, //
+		adaptation, //
+		syncMode, //
+		syncFrequency, //
+		trigger, //
+		triggerTimeout, //
+		correction, //
+		correctionRange, //
+		offsetCorrectionRange, //
+		strayLight, //
+		distance, //
+		scanDelay, //
+		maxAverage, //
+		function, //
+		format, //
+		pdaRow
+	}
+}
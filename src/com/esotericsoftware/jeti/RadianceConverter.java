@@ -0,0 +1,147 @@
+
+package com.esotericsoftware.jeti;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import com.esotericsoftware.jeti.Core.Calibration;
+
+/** Converts raw pixel counts to spectral radiance in Java, so raw frames can be fetched once with {@link Core#fetchLight(int)}
+ * or {@link SpectroEx#getLightPixelData(int)}, converted off the device thread, and converted again later with a corrected
+ * calibration.
+ * <p>
+ * For each wavelength of the output grid, the dark corrected counts of the two pixels around it are interpolated linearly,
+ * divided by the integration time, then multiplied by the calibration value at that wavelength and the calibration's integration
+ * time. The calibration values are the radiance per count at the calibration's integration time, on the calibration's wavelength
+ * grid. The pixel indices, weights and calibration factors for the output grid are computed once, so a conversion is one pass
+ * over the output. The converter is immutable and thread safe.
+ *
+ * <pre>
+ * var converter = new RadianceConverter(core.readCalibration(0), fit, core.getPixelCount(), 380, 780, 1);
+ * float[] radiance = converter.convert(light, dark, integrationTime);
+ * </pre> */
+public class RadianceConverter {
+	private final int pixelCount;
+	private final int[] lower, upper;
+	private final float[] fraction, factor;
+
+	/** @param calibration The values are radiance per count at its integration time, from its begin to end wavelength.
+	 * @param fit The coefficients of the polynomial that gives the wavelength in nm of a pixel index, lowest order first. The
+	 *           wavelengths must be strictly increasing or decreasing over the pixels.
+	 * @param pixelCount The number of pixels in a raw frame.
+	 * @param begin The first wavelength of the output, in nm.
+	 * @param end The last wavelength of the output, in nm.
+	 * @param step The wavelength between output values, in nm. */
+	public RadianceConverter (Calibration calibration, double[] fit, int pixelCount, float begin, float end, float step) {
+		if (pixelCount < 2) throw new IllegalArgumentException("pixelCount must be >= 2: " + pixelCount);
+		if (step <= 0) throw new IllegalArgumentException("step must be > 0: " + step);
+		if (end < begin) throw new IllegalArgumentException("end must be >= begin: " + end + " < " + begin);
+		if (fit.length == 0) throw new IllegalArgumentException("fit cannot be empty.");
+		int calibrationStep = calibration.step();
+		if (calibrationStep <= 0) throw new IllegalArgumentException("Calibration step must be > 0: " + calibrationStep);
+		int calibrationCount = (calibration.end() - calibration.begin()) / calibrationStep + 1;
+		if (calibrationCount < 1 || calibration.values().length < calibrationCount)
+			throw new IllegalArgumentException("Calibration must have " + calibrationCount + " values.");
+		if (calibration.integrationTime() <= 0)
+			throw new IllegalArgumentException("Calibration integration time must be > 0: " + calibration.integrationTime());
+		this.pixelCount = pixelCount;
+
+		// Pixel wavelengths in increasing order.
+		var wavelengths = new double[pixelCount];
+		for (int p = 0; p < pixelCount; p++) {
+			double wavelength = 0;
+			for (int k = fit.length - 1; k >= 0; k--)
+				wavelength = wavelength * p + fit[k];
+			wavelengths[p] = wavelength;
+		}
+		boolean reversed = wavelengths[0] > wavelengths[pixelCount - 1];
+		if (reversed) {
+			for (int i = 0, j = pixelCount - 1; i < j; i++, j--) {
+				double temp = wavelengths[i];
+				wavelengths[i] = wavelengths[j];
+				wavelengths[j] = temp;
+			}
+		}
+		for (int p = 1; p < pixelCount; p++)
+			if (!(wavelengths[p] > wavelengths[p - 1])) throw new IllegalArgumentException("fit wavelengths must be monotonic.");
+
+		int count = (int)((end - begin) / step + 1);
+		lower = new int[count];
+		upper = new int[count];
+		fraction = new float[count];
+		factor = new float[count];
+		double[] values = calibration.values();
+		for (int i = 0; i < count; i++) {
+			double wavelength = begin + i * (double)step;
+			double c = (wavelength - calibration.begin()) / calibrationStep;
+			int index = Arrays.binarySearch(wavelengths, wavelength);
+			if (index < 0) index = -index - 2; // The pixel below.
+			if (index >= pixelCount - 1 && wavelength == wavelengths[pixelCount - 1]) index = pixelCount - 2;
+			if (index < 0 || index >= pixelCount - 1 || c < 0 || c > calibrationCount - 1) {
+				lower[i] = -1;
+				continue;
+			}
+			int ci = Math.min((int)c, calibrationCount - 2);
+			double calibrationValue = calibrationCount == 1 ? values[0] : values[ci] + (values[ci + 1] - values[ci]) * (c - ci);
+			double f = (wavelength - wavelengths[index]) / (wavelengths[index + 1] - wavelengths[index]);
+			if (reversed) {
+				lower[i] = pixelCount - 1 - index;
+				upper[i] = pixelCount - 2 - index;
+			} else {
+				lower[i] = index;
+				upper[i] = index + 1;
+			}
+			fraction[i] = (float)f;
+			factor[i] = (float)(calibrationValue * calibration.integrationTime());
+		}
+	}
+
+	/** Returns the number of values in the output grid. */
+	public int getCount () {
+		return factor.length;
+	}
+
+	public float[] convert (int[] light, int[] dark, float integrationTime) {
+		return convert(light, dark, integrationTime, new float[factor.length]);
+	}
+
+	/** @param light Raw counts with at least the pixel count values.
+	 * @param dark Raw dark counts with at least the pixel count values, or null if the light is already dark corrected.
+	 * @param integrationTime The integration time of the light, in ms.
+	 * @param output Must have {@link #getCount()} values. Wavelengths outside the pixels or the calibration are NaN.
+	 * @return The output array. */
+	public float[] convert (int[] light, int[] dark, float integrationTime, float[] output) {
+		if (light.length < pixelCount) throw new IllegalArgumentException("light must have at least " + pixelCount + " values.");
+		if (dark != null && dark.length < pixelCount)
+			throw new IllegalArgumentException("dark must have at least " + pixelCount + " values.");
+		if (integrationTime <= 0) throw new IllegalArgumentException("integrationTime must be > 0: " + integrationTime);
+		int[] lower = this.lower, upper = this.upper;
+		float[] fraction = this.fraction, factor = this.factor;
+		int count = factor.length;
+		if (output.length != count) throw new IllegalArgumentException("output must have " + count + " values.");
+		float scale = 1 / integrationTime;
+		for (int i = 0; i < count; i++) {
+			int a = lower[i];
+			if (a == -1) {
+				output[i] = Float.NaN;
+				continue;
+			}
+			int b = upper[i];
+			float countA = light[a], countB = light[b];
+			if (dark != null) {
+				countA -= dark[a];
+				countB -= dark[b];
+			}
+			output[i] = (countA + (countB - countA) * fraction[i]) * factor[i] * scale;
+		}
+		return output;
+	}
+
+	/** Converts many frames in parallel using the common fork join pool.
+	 * @param dark Subtracted from every frame, may be null. */
+	public float[][] convert (int[][] light, int[] dark, float integrationTime) {
+		var outputs = new float[light.length][];
+		IntStream.range(0, light.length).parallel().forEach(i -> outputs[i] = convert(light[i], dark, integrationTime));
+		return outputs;
+	}
+}
@@ -23,104 +23,112 @@ public class Radio extends Device<RadioLibrary> {
 	private final float[] cri = new float[17];
 
 	private Radio (Pointer handle) {
-		super(RadioLibrary.INSTANCE, handle, RadioLibrary.INSTANCE::JETI_CloseRadio, 0, 1, 1, 3, 0, 0);
+		super(() -> RadioLibrary.INSTANCE, handle, "JETI_CloseRadio", RadioLibrary::JETI_CloseRadio, 0, 1, 1, 3, 0, 0);
 	}
 
 	public void measure () {
-		check(lib().JETI_Measure(handle));
+		check("JETI_Measure", lib().JETI_Measure(handle));
 	}
 
 	public void measureWithAdaptation () {
-		check(lib().JETI_MeasureAdapt(handle));
+		check("JETI_MeasureAdapt", lib().JETI_MeasureAdapt(handle));
 	}
 
 	public void prepareMeasurement () {
-		check(lib().JETI_PrepareMeasure(handle));
+		check("JETI_PrepareMeasure", lib().JETI_PrepareMeasure(handle));
 	}
 
 	public boolean isMeasuring () {
-		check(lib().JETI_MeasureStatus(handle, i[0]));
+		check(status("JETI_MeasureStatus", lib().JETI_MeasureStatus(handle, i[0]), i[0]));
 		return i[0].getValue() != 0;
 	}
 
+	/** Reads the measurement status without throwing, for polling loops. No exception is created on failure, though JNA still
+	 * allocates to pass the call's arguments.
+	 * @param measuring Receives nonzero while measuring.
+	 * @return The status code of the call, {@link JetiSDK#SUCCESS} if the holder was set. */
+	public int getMeasureStatus (IntByReference measuring) {
+		return status("JETI_MeasureStatus", lib().JETI_MeasureStatus(handle, measuring), measuring);
+	}
+
 	public AdaptationStatus getAdaptationStatus () {
-		check(lib().JETI_MeasureAdaptStatus(handle, f[0], s[0], i[0]));
+		check(status("JETI_MeasureAdaptStatus", lib().JETI_MeasureAdaptStatus(handle, f[0], s[0], i[0]), i[0]));
 		return new AdaptationStatus(f[0].getValue(), s[0].getValue(), i[0].getValue() != 0);
 	}
 
 	public void cancelMeasurement () {
-		check(lib().JETI_MeasureBreak(handle));
+		check("JETI_MeasureBreak", lib().JETI_MeasureBreak(handle));
 	}
 
 	public float[] getSpectralRadiance () {
 		var spectralData = new float[SPECTRUM_SIZE];
-		check(lib().JETI_SpecRad(handle, spectralData));
+		check("JETI_SpecRad", lib().JETI_SpecRad(handle, spectralData), spectralData.length * 4);
 		return spectralData;
 	}
 
 	public float getRadiometricValue () {
-		check(lib().JETI_Radio(handle, f[0]));
+		check("JETI_Radio", lib().JETI_Radio(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public float getPhotometricValue () {
-		check(lib().JETI_Photo(handle, f[0]));
+		check("JETI_Photo", lib().JETI_Photo(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public XY getChromaXY () {
-		check(lib().JETI_Chromxy(handle, f[0], f[1]));
+		check("JETI_Chromxy", lib().JETI_Chromxy(handle, f[0], f[1]));
 		return new XY(f[0].getValue(), f[1].getValue());
 	}
 
 	public XY10 getChromaXY10 () {
-		check(lib().JETI_Chromxy10(handle, f[0], f[1]));
+		check("JETI_Chromxy10", lib().JETI_Chromxy10(handle, f[0], f[1]));
 		return new XY10(f[0].getValue(), f[1].getValue());
 	}
 
 	public UV getChromaUV () {
-		check(lib().JETI_Chromuv(handle, f[0], f[1]));
+		check("JETI_Chromuv", lib().JETI_Chromuv(handle, f[0], f[1]));
 		return new UV(f[0].getValue(), f[1].getValue());
 	}
 
 	public XYZ getXYZ () {
-		check(lib().JETI_ChromXYZ(handle, f[0], f[1], f[2]));
+		check("JETI_ChromXYZ", lib().JETI_ChromXYZ(handle, f[0], f[1], f[2]));
 		return new XYZ(f[0].getValue(), f[1].getValue(), f[2].getValue());
 	}
 
 	public DominantWavelength getDominantWavelength () {
-		check(lib().JETI_DWLPE(handle, f[0], f[1]));
+		check("JETI_DWLPE", lib().JETI_DWLPE(handle, f[0], f[1]));
 		return new DominantWavelength(f[0].getValue(), f[1].getValue());
 	}
 
 	public float getCCT () {
-		check(lib().JETI_CCT(handle, f[0]));
+		check("JETI_CCT", lib().JETI_CCT(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public float getDuv () {
-		check(lib().JETI_Duv(handle, f[0]));
+		check("JETI_Duv", lib().JETI_Duv(handle, f[0]));
 		return f[0].getValue();
 	}
 
 	public CRI getCRI () {
-		check(lib().JETI_CRI(handle, cri));
+		check("JETI_CRI", lib().JETI_CRI(handle, cri));
 		float[] samples = new float[15];
 		System.arraycopy(cri, 2, samples, 0, 15);
 		return new CRI(cri[0], cri[0] / 0.0054f, cri[1], samples);
 	}
 
 	public float getIntegrationTime () {
-		check(lib().JETI_RadioTint(handle, f[0]));
-		return f[0].getValue();
+		check("JETI_RadioTint", lib().JETI_RadioTint(handle, f[0]));
+		return integrationTime = f[0].getValue();
 	}
 
 	public void setMeasurementDistance (int mm) {
-		check(lib().JETI_SetMeasDist(handle, mm));
+		check("JETI_SetMeasDist", lib().JETI_SetMeasDist(handle, mm));
 	}
 
 	public int getMeasurementDistance () {
-		check(lib().JETI_GetMeasDist(handle, i[0]));
+		check("JETI_GetMeasDist", lib().JETI_GetMeasDist(handle, i[0]));
 		return i[0].getValue();
 	}
 
@@ -141,7 +149,10 @@ public class Radio extends Device<RadioLibrary> {
 	static public Radio openDevice (int deviceNumber) {
 		var handle = new PointerByReference();
 		check(RadioLibrary.INSTANCE.JETI_OpenRadio(deviceNumber, handle));
-		return new Radio(handle.getValue());
+		var device = new Radio(handle.getValue());
+		device.serialFrom(deviceNumber, Radio::getDeviceSerials);
+		device.opened();
+		return device;
 	}
 
 	static public Radio openDevice () {
@@ -0,0 +1,221 @@
+
+package com.esotericsoftware.jeti;
+
+import java.util.BitSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Retries calls to a device that fail with a transient error and stops calling a device that keeps failing. Each device should
+ * have its own instance, so one unresponsive device fails fast without slowing calls to others.
+ * <p>
+ * A call that throws a {@link JetiException} with a {@link #setRetryable(int...) retryable} error code is retried after an
+ * exponential backoff with full jitter, up to a number of attempts and a total time. Other error codes are thrown immediately.
+ * After a number of consecutive retryable failures the circuit opens: calls fail immediately with a {@link CircuitOpenException}
+ * without calling the device until the open time has passed, then a single trial call is allowed. If it succeeds the circuit
+ * closes, otherwise it opens again. A failure that opens the circuit is thrown without waiting to retry.
+ *
+ * <pre>
+ * var resilience = new Resilience(radioEx);
+ * XYZ xyz = resilience.call(() -> {
+ * 	radioEx.measure(0, 1, 5);
+ * 	while (radioEx.isMeasuring())
+ * 		Thread.sleep(1);
+ * 	return radioEx.getXYZ();
+ * });
+ * </pre> */
+public class Resilience {
+	/** Error codes retried by default: timeout, could not receive, device busy and invalid checksum. */
+	static public final int[] defaultRetryable = {0x08, 0x0A, 0x0E, 0x11};
+
+	private final String name;
+	private final BitSet retryable = new BitSet(256);
+	private int maxAttempts = 3;
+	private long baseDelay = 10, maxDelay = 1000, maxRetryTime = 5000;
+	private int failureThreshold = 5;
+	private long openTime = 5000;
+
+	private State state = State.closed;
+	private int failures, lastErrorCode;
+	private long openedAt;
+	private boolean trialRunning;
+
+	/** Names the resilience after the device's type and serial. The device is not used, so a serial which has not been read yet
+	 * is not read, and the device number is used instead. */
+	public Resilience (Device<?> device) {
+		this(device.getClass().getSimpleName() + " "
+			+ (device.serial == null && device.serials != null ? "#" + device.deviceNumber : device.serial));
+	}
+
+	/** @param name Used in log and exception messages. */
+	public Resilience (String name) {
+		this.name = name;
+		for (int errorCode : defaultRetryable)
+			retryable.set(errorCode);
+	}
+
+	/** Sets the error codes that are retried and count toward opening the circuit. Others are thrown immediately. */
+	public void setRetryable (int... errorCodes) {
+		retryable.clear();
+		for (int errorCode : errorCodes)
+			retryable.set(errorCode);
+	}
+
+	public boolean isRetryable (int errorCode) {
+		return errorCode >= 0 && retryable.get(errorCode);
+	}
+
+	/** @param maxAttempts The most times a call is made, including the first. Default is 3.
+	 * @param baseDelay Milliseconds of the first backoff. Each retry doubles it. Default is 10.
+	 * @param maxDelay The most milliseconds of a backoff. Default is 1000.
+	 * @param maxRetryTime No retry starts after this many milliseconds since the first attempt. Default is 5000. */
+	public void setRetry (int maxAttempts, long baseDelay, long maxDelay, long maxRetryTime) {
+		if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be > 0: " + maxAttempts);
+		this.maxAttempts = maxAttempts;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.maxRetryTime = maxRetryTime;
+	}
+
+	/** @param failureThreshold The number of consecutive retryable failures that opens the circuit. Default is 5.
+	 * @param openTime Milliseconds the circuit stays open before a trial call. Default is 5000. */
+	public void setCircuitBreaker (int failureThreshold, long openTime) {
+		if (failureThreshold < 1) throw new IllegalArgumentException("failureThreshold must be > 0: " + failureThreshold);
+		this.failureThreshold = failureThreshold;
+		this.openTime = openTime;
+	}
+
+	public synchronized State getState () {
+		if (state == State.open && System.currentTimeMillis() - openedAt >= openTime) return State.halfOpen;
+		return state;
+	}
+
+	/** Closes the circuit, eg after the device was reopened. */
+	public synchronized void reset () {
+		state = State.closed;
+		failures = 0;
+		trialRunning = false;
+	}
+
+	public void run (Runnable call) {
+		call( () -> {
+			call.run();
+			return null;
+		});
+	}
+
+	/** Calls the device, retrying transient errors. An InterruptedException thrown by the call or while waiting to retry is
+	 * thrown as a JetiException with {@link JetiSDK#BREAK}.
+	 * @throws JetiException if the call fails with an error that is not retryable, the retries are exhausted, or the failure
+	 *            opened the circuit.
+	 * @throws CircuitOpenException if the circuit is open. */
+	public <T> T call (Call<T> call) {
+		long start = System.currentTimeMillis();
+		for (int attempt = 1;; attempt++) {
+			boolean trial = acquire();
+			try {
+				T result = call.call();
+				succeeded();
+				return result;
+			} catch (JetiException ex) {
+				int errorCode = ex.getErrorCode();
+				if (!isRetryable(errorCode)) {
+					if (trial) released();
+					throw ex;
+				}
+				if (failed(errorCode)) throw ex; // The retry would fail fast.
+				long delay = delay(attempt);
+				if (attempt >= maxAttempts || System.currentTimeMillis() - start + delay > maxRetryTime) throw ex;
+				Log.debug("Retrying after error: {} {}", name, ex.getMessage());
+				sleep(delay, ex);
+			} catch (InterruptedException ex) {
+				if (trial) released();
+				Thread.currentThread().interrupt();
+				throw new JetiException(JetiSDK.BREAK, "Interrupted: " + name, ex);
+			} catch (RuntimeException ex) {
+				if (trial) released();
+				throw ex;
+			}
+		}
+	}
+
+	/** Returns the backoff before the specified attempt's retry: a random time up to the exponential delay. */
+	long delay (int attempt) {
+		long delay = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 30));
+		return delay <= 0 ? 0 : ThreadLocalRandom.current().nextLong(delay + 1);
+	}
+
+	private void sleep (long delay, JetiException cause) {
+		try {
+			Thread.sleep(delay);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			var interrupted = new JetiException(JetiSDK.BREAK, "Interrupted: " + name, ex);
+			interrupted.addSuppressed(cause);
+			throw interrupted;
+		}
+	}
+
+	/** Checks the circuit before a call.
+	 * @return True if the call is the trial call of a half open circuit.
+	 * @throws CircuitOpenException if the circuit is open. */
+	private synchronized boolean acquire () {
+		if (state == State.closed) return false;
+		if (state == State.open) {
+			if (System.currentTimeMillis() - openedAt < openTime) throw open();
+			state = State.halfOpen;
+		}
+		if (trialRunning) throw open(); // Only one trial call.
+		trialRunning = true;
+		return true;
+	}
+
+	private CircuitOpenException open () {
+		return new CircuitOpenException(lastErrorCode,
+			"Circuit open, last error 0x" + Integer.toHexString(lastErrorCode) + ": " + name);
+	}
+
+	private synchronized void succeeded () {
+		if (state != State.closed) Log.info("Circuit closed: {}", name);
+		state = State.closed;
+		failures = 0;
+		trialRunning = false;
+	}
+
+	/** @return True if the circuit is open. */
+	private synchronized boolean failed (int errorCode) {
+		lastErrorCode = errorCode;
+		trialRunning = false;
+		if (state == State.halfOpen || ++failures >= failureThreshold) {
+			if (state == State.closed) Log.warn("Circuit opened, last error 0x{}: {}", Integer.toHexString(errorCode), name);
+			state = State.open;
+			openedAt = System.currentTimeMillis();
+		}
+		return state == State.open;
+	}
+
+	/** The trial call ended without a result that says anything about the device. */
+	private synchronized void released () {
+		trialRunning = false;
+	}
+
+	/** Thrown when a call is refused because the circuit is open. The error code is that of the last failure which counted toward
+	 * opening the circuit, so code that handles device errors by code still works, while the type tells a refused call from a
+	 * failed one. */
+	static public class CircuitOpenException extends JetiException {
+		public CircuitOpenException (int lastErrorCode, String message) {
+			super(lastErrorCode, message);
+		}
+	}
+
+	public interface Call<T> {
+		T call () throws InterruptedException;
+	}
+
+	public enum State {
+		/** Calls are made. */
+		closed,
+		/** Calls fail immediately. */
+		open,
+		/** The next call is a trial. */
+		halfOpen
+	}
+}
@@ -3,8 +3,44 @@ package com.esotericsoftware.jeti;
 
 import java.util.Objects;
 
+import com.esotericsoftware.jeti.JetiSDK.XY;
+import com.esotericsoftware.jeti.JetiSDK.XYZ;
+
 /** @author Nathan Sweet <misc@n4te.com> */
 public class Spectra {
+	/** The CIE 1931 2° color matching functions x, y and z from 380 to 780 nm in 5 nm steps, interleaved. */
+	static private final float[] cie1931 = { //
+		0.001368f, 0.000039f, 0.00645f, 0.002236f, 0.000064f, 0.01055f, 0.004243f, 0.00012f, 0.02005f, //
+		0.00765f, 0.000217f, 0.03621f, 0.01431f, 0.000396f, 0.06785f, 0.02319f, 0.00064f, 0.1102f, //
+		0.04351f, 0.00121f, 0.2074f, 0.07763f, 0.00218f, 0.3713f, 0.13438f, 0.004f, 0.6456f, //
+		0.21477f, 0.0073f, 1.03905f, 0.2839f, 0.0116f, 1.3856f, 0.3285f, 0.01684f, 1.62296f, //
+		0.34828f, 0.023f, 1.74706f, 0.34806f, 0.0298f, 1.7826f, 0.3362f, 0.038f, 1.77211f, //
+		0.3187f, 0.048f, 1.7441f, 0.2908f, 0.06f, 1.6692f, 0.2511f, 0.0739f, 1.5281f, //
+		0.19536f, 0.09098f, 1.28764f, 0.1421f, 0.1126f, 1.0419f, 0.09564f, 0.13902f, 0.81295f, //
+		0.05795f, 0.1693f, 0.6162f, 0.03201f, 0.20802f, 0.46518f, 0.0147f, 0.2586f, 0.3533f, //
+		0.0049f, 0.323f, 0.272f, 0.0024f, 0.4073f, 0.2123f, 0.0093f, 0.503f, 0.1582f, //
+		0.0291f, 0.6082f, 0.1117f, 0.06327f, 0.71f, 0.07825f, 0.1096f, 0.7932f, 0.05725f, //
+		0.1655f, 0.862f, 0.04216f, 0.22575f, 0.91485f, 0.02984f, 0.2904f, 0.954f, 0.0203f, //
+		0.3597f, 0.9803f, 0.0134f, 0.43345f, 0.99495f, 0.00875f, 0.51205f, 1f, 0.00575f, //
+		0.5945f, 0.995f, 0.0039f, 0.6784f, 0.9786f, 0.00275f, 0.7621f, 0.952f, 0.0021f, //
+		0.8425f, 0.9154f, 0.0018f, 0.9163f, 0.87f, 0.00165f, 0.9786f, 0.8163f, 0.0014f, //
+		1.0263f, 0.757f, 0.0011f, 1.0567f, 0.6949f, 0.001f, 1.0622f, 0.631f, 0.0008f, //
+		1.0456f, 0.5668f, 0.0006f, 1.0026f, 0.503f, 0.00034f, 0.9384f, 0.4412f, 0.00024f, //
+		0.85445f, 0.381f, 0.00019f, 0.7514f, 0.321f, 0.0001f, 0.6424f, 0.265f, 0.00005f, //
+		0.5419f, 0.217f, 0.00003f, 0.4479f, 0.175f, 0.00002f, 0.3608f, 0.1382f, 0.00001f, //
+		0.2835f, 0.107f, 0, 0.2187f, 0.0816f, 0, 0.1649f, 0.061f, 0, //
+		0.1212f, 0.04458f, 0, 0.0874f, 0.032f, 0, 0.0636f, 0.0232f, 0, //
+		0.04677f, 0.017f, 0, 0.0329f, 0.01192f, 0, 0.0227f, 0.00821f, 0, //
+		0.01584f, 0.005723f, 0, 0.011359f, 0.004102f, 0, 0.008111f, 0.002929f, 0, //
+		0.00579f, 0.002091f, 0, 0.004109f, 0.001484f, 0, 0.002899f, 0.001047f, 0, //
+		0.002049f, 0.00074f, 0, 0.00144f, 0.00052f, 0, 0.001f, 0.000361f, 0, //
+		0.00069f, 0.000249f, 0, 0.000476f, 0.000172f, 0, 0.000332f, 0.00012f, 0, //
+		0.000235f, 0.000085f, 0, 0.000166f, 0.00006f, 0, 0.000117f, 0.000042f, 0, //
+		0.000083f, 0.00003f, 0, 0.000059f, 0.000021f, 0, 0.000042f, 0.000015f, 0};
+
+	/** The maximum luminous efficacy, in lm/W. */
+	static private final float km = 683;
+
 	private Spectra () {
 	}
 
@@ -15,13 +51,49 @@ public class Spectra {
 		if (lightSpectrum.length != darkSpectrum.length || lightSpectrum.length != referenceSpectrum.length)
 			throw new IllegalArgumentException("All spectra must have the same length.");
 
-		var transmittance = new float[lightSpectrum.length];
-		for (int i = 0; i < lightSpectrum.length; i++) {
+		return transmittance(lightSpectrum, darkSpectrum, referenceSpectrum, new float[lightSpectrum.length]);
+	}
+
+	/** @param output May be one of the input arrays.
+	 * @return The output array. */
+	static public float[] transmittance (float[] lightSpectrum, float[] darkSpectrum, float[] referenceSpectrum,
+		float[] output) {
+		int n = lightSpectrum.length;
+		if (darkSpectrum.length != n || referenceSpectrum.length != n || output.length != n)
+			throw new IllegalArgumentException("All spectra must have the same length.");
+		for (int i = 0; i < n; i++) {
 			float correctedLight = lightSpectrum[i] - darkSpectrum[i];
 			float correctedReference = referenceSpectrum[i] - darkSpectrum[i];
-			transmittance[i] = correctedReference > 0 ? correctedLight / correctedReference : 0;
+			output[i] = correctedReference > 0 ? correctedLight / correctedReference : 0;
 		}
-		return transmittance;
+		return output;
+	}
+
+	/** Stores the spectrum minus the dark spectrum in the output.
+	 * @param output May be one of the input arrays.
+	 * @return The output array. */
+	static public float[] subtract (float[] spectrum, float[] darkSpectrum, float[] output) {
+		int n = spectrum.length;
+		if (darkSpectrum.length != n || output.length != n)
+			throw new IllegalArgumentException("All spectra must have the same length.");
+		for (int i = 0; i < n; i++)
+			output[i] = spectrum[i] - darkSpectrum[i];
+		return output;
+	}
+
+	/** Stores the spectrum divided by the reference spectrum in the output, or 0 where the reference is not positive. Both
+	 * spectra should already have the dark spectrum subtracted.
+	 * @param output May be one of the input arrays.
+	 * @return The output array. */
+	static public float[] divide (float[] spectrum, float[] referenceSpectrum, float[] output) {
+		int n = spectrum.length;
+		if (referenceSpectrum.length != n || output.length != n)
+			throw new IllegalArgumentException("All spectra must have the same length.");
+		for (int i = 0; i < n; i++) {
+			float reference = referenceSpectrum[i];
+			output[i] = reference > 0 ? spectrum[i] / reference : 0;
+		}
+		return output;
 	}
 
 	static public float[] reflectance (float[] lightSpectrum, float[] darkSpectrum, float[] referenceSpectrum) {
@@ -35,4 +107,53 @@ public class Spectra {
 			absorbance[i] = transmittance[i] > 0 ? (float)-Math.log10(transmittance[i]) : Float.POSITIVE_INFINITY;
 		return absorbance;
 	}
+
+	/** Calculates the CIE 1931 tristimulus values of a spectrum. The color matching functions are interpolated linearly at each
+	 * wavelength of the spectrum and are 0 outside 380 to 780 nm. Y is photometric, eg luminance in cd/m² for spectral radiance
+	 * in W/(sr m² nm).
+	 * @param beginWavelength The wavelength of the first value, in nm.
+	 * @param stepSize The wavelength between values, in nm. */
+	static public XYZ xyz (float[] spectrum, float beginWavelength, float stepSize) {
+		if (stepSize <= 0) throw new IllegalArgumentException("stepSize must be > 0: " + stepSize);
+		float[] cmf = cie1931;
+		int last = cmf.length / 3 - 1;
+		double x = 0, y = 0, z = 0;
+		for (int i = 0, n = spectrum.length; i < n; i++) {
+			float position = (beginWavelength + i * stepSize - 380) / 5;
+			if (position < 0 || position > last) continue;
+			int index = Math.min((int)position, last - 1);
+			float fraction = position - index, value = spectrum[i];
+			int a = index * 3, b = a + 3;
+			x += value * (cmf[a] + (cmf[b] - cmf[a]) * fraction);
+			y += value * (cmf[a + 1] + (cmf[b + 1] - cmf[a + 1]) * fraction);
+			z += value * (cmf[a + 2] + (cmf[b + 2] - cmf[a + 2]) * fraction);
+		}
+		double scale = km * stepSize;
+		return new XYZ((float)(x * scale), (float)(y * scale), (float)(z * scale));
+	}
+
+	/** Returns the CIE 1931 chromaticity coordinates of the tristimulus values, or 0,0 if they sum to 0. */
+	static public XY chromaticity (XYZ xyz) {
+		float sum = xyz.x() + xyz.y() + xyz.z();
+		if (sum == 0) return new XY(0, 0);
+		return new XY(xyz.x() / sum, xyz.y() / sum);
+	}
+
+	/** Returns the correlated color temperature in K using McCamy's approximation, which is within a few K of the exact value
+	 * from about 2000 to 12500 K for chromaticities near the Planckian locus. */
+	static public float cct (XY xy) {
+		double n = (xy.x() - 0.3320) / (0.1858 - xy.y());
+		return (float)(((449 * n + 3525) * n + 6823.3) * n + 5520.33);
+	}
+
+	/** Colorimetric values calculated from a spectrum by {@link Spectra#colorimetry(float[], float, float)}. */
+	public record Colorimetry (XYZ xyz, XY xy, float cct) {}
+
+	/** Calculates the tristimulus values, chromaticity and correlated color temperature of a spectrum, see
+	 * {@link #xyz(float[], float, float)}. */
+	static public Colorimetry colorimetry (float[] spectrum, float beginWavelength, float stepSize) {
+		XYZ xyz = xyz(spectrum, beginWavelength, stepSize);
+		XY xy = chromaticity(xyz);
+		return new Colorimetry(xyz, xy, cct(xy));
+	}
 }
@@ -14,36 +14,40 @@ import com.sun.jna.ptr.ShortByReference;
 /** @author Nathan Sweet <misc@n4te.com> */
 public class Spectro extends Device<SpectroLibrary> {
 	private Spectro (Pointer handle) {
-		super(SpectroLibrary.INSTANCE, handle, SpectroLibrary.INSTANCE::JETI_CloseSpectro, 0, 0, 0, 1, 0, 0);
+		super(() -> SpectroLibrary.INSTANCE, handle, "JETI_CloseSpectro", SpectroLibrary::JETI_CloseSpectro, 0, 0, 0, 1, 0, 0);
 	}
 
 	public float[] measureDarkSpectrum (float integrationTime) {
 		var darkData = new float[SPECTRUM_SIZE];
-		check(lib().JETI_DarkSpec(handle, integrationTime, darkData));
+		this.integrationTime = integrationTime;
+		check("JETI_DarkSpec", lib().JETI_DarkSpec(handle, integrationTime, darkData), darkData.length * 4);
 		return darkData;
 	}
 
 	public float[] measureLightSpectrum (float integrationTime) {
 		var lightData = new float[SPECTRUM_SIZE];
-		check(lib().JETI_LightSpec(handle, integrationTime, lightData));
+		this.integrationTime = integrationTime;
+		check("JETI_LightSpec", lib().JETI_LightSpec(handle, integrationTime, lightData), lightData.length * 4);
 		return lightData;
 	}
 
 	public float[] measureReferenceSpectrum (float integrationTime) {
 		var referenceData = new float[SPECTRUM_SIZE];
-		check(lib().JETI_ReferSpec(handle, integrationTime, referenceData));
+		this.integrationTime = integrationTime;
+		check("JETI_ReferSpec", lib().JETI_ReferSpec(handle, integrationTime, referenceData), referenceData.length * 4);
 		return referenceData;
 	}
 
 	public float[] measureSampleSpectrum (float integrationTime) {
 		var transReflData = new float[SPECTRUM_SIZE];
-		check(lib().JETI_TransReflSpec(handle, integrationTime, transReflData));
+		this.integrationTime = integrationTime;
+		check("JETI_TransReflSpec", lib().JETI_TransReflSpec(handle, integrationTime, transReflData));
 		return transReflData;
 	}
 
 	public float getIntegrationTime () {
-		check(lib().JETI_SpectroTint(handle, f[0]));
-		return f[0].getValue();
+		check("JETI_SpectroTint", lib().JETI_SpectroTint(handle, f[0]));
+		return integrationTime = f[0].getValue();
 	}
 
 	static public int getDeviceCount () {
@@ -63,7 +67,10 @@ public class Spectro extends Device<SpectroLibrary> {
 	static public Spectro openDevice (int deviceNumber) {
 		var handle = new PointerByReference();
 		check(SpectroLibrary.INSTANCE.JETI_OpenSpectro(deviceNumber, handle));
-		return new Spectro(handle.getValue());
+		var device = new Spectro(handle.getValue());
+		device.serialFrom(deviceNumber, Spectro::getDeviceSerials);
+		device.opened();
+		return device;
 	}
 
 	static public Spectro openDevice () {
@@ -3,6 +3,8 @@ package com.esotericsoftware.jeti;
 
 import static com.esotericsoftware.jeti.JetiSDK.*;
 
+import java.util.function.Supplier;
+
 import com.esotericsoftware.jeti.JetiSDK.DeviceSerials;
 import com.esotericsoftware.jeti.JetiSDK.DllVersion;
 
@@ -14,204 +16,283 @@ import com.sun.jna.ptr.ShortByReference;
 /** @author Nathan Sweet <misc@n4te.com> */
 public class SpectroEx extends Device<SpectroExLibrary> {
 	private SpectroEx (Pointer handle) {
-		super(SpectroExLibrary.INSTANCE, handle, SpectroExLibrary.INSTANCE::JETI_CloseSpectroEx, 0, 0, 1, 1, 0, 0);
+		this(() -> SpectroExLibrary.INSTANCE, handle);
+	}
+
+	/** @param library Called to load the library the first time it is needed. */
+	SpectroEx (Supplier<SpectroExLibrary> library, Pointer handle) {
+		super(library, handle, "JETI_CloseSpectroEx", SpectroExLibrary::JETI_CloseSpectroEx, 0, 0, 1, 1, 0, 0);
 	}
 
 	// Dark measurement functions
 
 	public void startDarkMeasurement (float integrationTime, int averageCount) {
-		check(lib().JETI_StartDarkEx(handle, integrationTime, (short)averageCount));
+		this.integrationTime = integrationTime;
+		check("JETI_StartDarkEx", lib().JETI_StartDarkEx(handle, integrationTime, (short)averageCount));
 	}
 
 	public int[] getDarkPixelData (int pixelCount) {
-		var darkData = new int[pixelCount];
-		check(lib().JETI_DarkPixEx(handle, darkData));
+		return getDarkPixelData(new int[pixelCount]);
+	}
+
+	/** @param darkData Must have a length of at least the pixel count.
+	 * @return The specified array. */
+	public int[] getDarkPixelData (int[] darkData) {
+		check("JETI_DarkPixEx", lib().JETI_DarkPixEx(handle, darkData), darkData.length * 4);
 		return darkData;
 	}
 
 	public float[] getDarkWaveData (int beginWavelength, int endWavelength, float stepSize) {
 		int dataSize = (int)((endWavelength - beginWavelength) / stepSize + 1);
-		var darkData = new float[dataSize];
-		check(lib().JETI_DarkWaveEx(handle, beginWavelength, endWavelength, stepSize, darkData));
+		return getDarkWaveData(beginWavelength, endWavelength, stepSize, new float[dataSize]);
+	}
+
+	/** @param darkData Must have a length of at least <code>(endWavelength - beginWavelength) / stepSize + 1</code>.
+	 * @return The specified array. */
+	public float[] getDarkWaveData (int beginWavelength, int endWavelength, float stepSize, float[] darkData) {
+		int dataSize = (int)((endWavelength - beginWavelength) / stepSize + 1);
+		if (darkData.length < dataSize)
+			throw new IllegalArgumentException("darkData length must be >= " + dataSize + ": " + darkData.length);
+		check("JETI_DarkWaveEx", lib().JETI_DarkWaveEx(handle, beginWavelength, endWavelength, stepSize, darkData), dataSize * 4);
 		return darkData;
 	}
 
 	// Light measurement functions
 
 	public void startLightMeasurement (float integrationTime, int averageCount) {
-		check(lib().JETI_StartLightEx(handle, integrationTime, (short)averageCount));
+		this.integrationTime = integrationTime;
+		check("JETI_StartLightEx", lib().JETI_StartLightEx(handle, integrationTime, (short)averageCount));
 	}
 
 	public void prepareLightMeasurement (float integrationTime, int averageCount) {
-		check(lib().JETI_PrepareLightEx(handle, integrationTime, (short)averageCount));
+		this.integrationTime = integrationTime;
+		check("JETI_PrepareLightEx", lib().JETI_PrepareLightEx(handle, integrationTime, (short)averageCount));
 	}
 
 	public int[] getLightPixelData (int pixelCount) {
-		var lightData = new int[pixelCount];
-		check(lib().JETI_LightPixEx(handle, lightData));
+		return getLightPixelData(new int[pixelCount]);
+	}
+
+	/** @param lightData Must have a length of at least the pixel count.
+	 * @return The specified array. */
+	public int[] getLightPixelData (int[] lightData) {
+		check("JETI_LightPixEx", lib().JETI_LightPixEx(handle, lightData), lightData.length * 4);
 		return lightData;
 	}
 
 	public float[] getLightWaveData (int beginWavelength, int endWavelength, float stepSize) {
 		int dataSize = (int)((endWavelength - beginWavelength) / stepSize + 1);
-		var lightData = new float[dataSize];
-		check(lib().JETI_LightWaveEx(handle, beginWavelength, endWavelength, stepSize, lightData));
+		return getLightWaveData(beginWavelength, endWavelength, stepSize, new float[dataSize]);
+	}
+
+	/** @param lightData Must have a length of at least <code>(endWavelength - beginWavelength) / stepSize + 1</code>.
+	 * @return The specified array. */
+	public float[] getLightWaveData (int beginWavelength, int endWavelength, float stepSize, float[] lightData) {
+		int dataSize = (int)((endWavelength - beginWavelength) / stepSize + 1);
+		if (lightData.length < dataSize)
+			throw new IllegalArgumentException("lightData length must be >= " + dataSize + ": " + lightData.length);
+		check("JETI_LightWaveEx",
+			lib().JETI_LightWaveEx(handle, beginWavelength, endWavelength, stepSize, lightData), dataSize * 4);
 		return lightData;
 	}
 
 	// Reference measurement functions
 
 	public void startReferenceMeasurement (float integrationTime, int averageCount) {
-		check(lib().JETI_StartReferEx(handle, integrationTime, (short)averageCount));
+		this.integrationTime = integrationTime;
+		check("JETI_StartReferEx", lib().JETI_StartReferEx(handle, integrationTime, (short)averageCount));
 	}
 
 	public void prepareReferenceMeasurement (float integrationTime, int averageCount) {
-		check(lib().JETI_PrepareReferEx(handle, integrationTime, (short)averageCount));
+		this.integrationTime = integrationTime;
+		check("JETI_PrepareReferEx", lib().JETI_PrepareReferEx(handle, integrationTime, (short)averageCount));
 	}
 
 	public int[] getReferencePixelData (int pixelCount) {
-		var referenceData = new int[pixelCount];
-		check(lib().JETI_ReferPixEx(handle, referenceData));
+		return getReferencePixelData(new int[pixelCount]);
+	}
+
+	/** @param referenceData Must have a length of at least the pixel count.
+	 * @return The specified array. */
+	public int[] getReferencePixelData (int[] referenceData) {
+		check("JETI_ReferPixEx", lib().JETI_ReferPixEx(handle, referenceData), referenceData.length * 4);
 		return referenceData;
 	}
 
 	public float[] getReferenceWaveData (int beginWavelength, int endWavelength, float stepSize) {
 		int dataSize = (int)((endWavelength - beginWavelength) / stepSize + 1);
-		var referenceData = new float[dataSize];
-		check(lib().JETI_ReferWaveEx(handle, beginWavelength, endWavelength, stepSize, referenceData));
+		return getReferenceWaveData(beginWavelength, endWavelength, stepSize, new float[dataSize]);
+	}
+
+	/** @param referenceData Must have a length of at least <code>(endWavelength - beginWavelength) / stepSize + 1</code>.
+	 * @return The specified array. */
+	public float[] getReferenceWaveData (int beginWavelength, int endWavelength, float stepSize, float[] referenceData) {
+		int dataSize = (int)((endWavelength - beginWavelength) / stepSize + 1);
+		if (referenceData.length < dataSize)
+			throw new IllegalArgumentException("referenceData length must be >= " + dataSize + ": " + referenceData.length);
+		check("JETI_ReferWaveEx",
+			lib().JETI_ReferWaveEx(handle, beginWavelength, endWavelength, stepSize, referenceData), dataSize * 4);
 		return referenceData;
 	}
 
 	// Sample measurement functions
 
 	public void startSampleMeasurement (float integrationTime, int averageCount) {
-		check(lib().JETI_StartTransReflEx(handle, integrationTime, (short)averageCount));
+		this.integrationTime = integrationTime;
+		check("JETI_StartTransReflEx", lib().JETI_StartTransReflEx(handle, integrationTime, (short)averageCount));
 	}
 
 	public void prepareSampleMeasurement (float integrationTime, int averageCount) {
-		check(lib().JETI_PrepareTransReflEx(handle, integrationTime, (short)averageCount));
+		this.integrationTime = integrationTime;
+		check("JETI_PrepareTransReflEx", lib().JETI_PrepareTransReflEx(handle, integrationTime, (short)averageCount));
 	}
 
 	public int[] getSamplePixelData (int pixelCount) {
-		var transReflData = new int[pixelCount];
-		check(lib().JETI_TransReflPixEx(handle, transReflData));
+		return getSamplePixelData(new int[pixelCount]);
+	}
+
+	/** @param transReflData Must have a length of at least the pixel count.
+	 * @return The specified array. */
+	public int[] getSamplePixelData (int[] transReflData) {
+		check("JETI_TransReflPixEx", lib().JETI_TransReflPixEx(handle, transReflData), transReflData.length * 4);
 		return transReflData;
 	}
 
 	public float[] getSampleWaveData (int beginWavelength, int endWavelength, float stepSize) {
 		int dataSize = (int)((endWavelength - beginWavelength) / stepSize + 1);
-		var transReflData = new float[dataSize];
-		check(lib().JETI_TransReflWaveEx(handle, beginWavelength, endWavelength, stepSize, transReflData));
+		return getSampleWaveData(beginWavelength, endWavelength, stepSize, new float[dataSize]);
+	}
+
+	/** @param transReflData Must have a length of at least <code>(endWavelength - beginWavelength) / stepSize + 1</code>.
+	 * @return The specified array. */
+	public float[] getSampleWaveData (int beginWavelength, int endWavelength, float stepSize, float[] transReflData) {
+		int dataSize = (int)((endWavelength - beginWavelength) / stepSize + 1);
+		if (transReflData.length < dataSize)
+			throw new IllegalArgumentException("transReflData length must be >= " + dataSize + ": " + transReflData.length);
+		check("JETI_TransReflWaveEx",
+			lib().JETI_TransReflWaveEx(handle, beginWavelength, endWavelength, stepSize, transReflData), dataSize * 4);
 		return transReflData;
 	}
 
 	// Image measurement functions
 
 	public void startDarkImageMeasurement (float integrationTime) {
-		check(lib().JETI_StartDarkImageEx(handle, integrationTime));
+		this.integrationTime = integrationTime;
+		check("JETI_StartDarkImageEx", lib().JETI_StartDarkImageEx(handle, integrationTime));
 	}
 
 	public short[] getDarkImageData () {
 		var darkImageData = new short[SPECTRUM_SIZE]; // BOZO - Size?
-		check(lib().JETI_DarkImageEx(handle, darkImageData));
+		check("JETI_DarkImageEx", lib().JETI_DarkImageEx(handle, darkImageData), darkImageData.length * 2);
 		return darkImageData;
 	}
 
 	public void startLightImageMeasurement (float integrationTime) {
-		check(lib().JETI_StartLightImageEx(handle, integrationTime));
+		this.integrationTime = integrationTime;
+		check("JETI_StartLightImageEx", lib().JETI_StartLightImageEx(handle, integrationTime));
 	}
 
 	public short[] getLightImageData () {
 		var lightImageData = new short[SPECTRUM_SIZE];
-		check(lib().JETI_LightImageEx(handle, lightImageData));
+		check("JETI_LightImageEx", lib().JETI_LightImageEx(handle, lightImageData), lightImageData.length * 2);
 		return lightImageData;
 	}
 
 	// Channel measurement functions
 
 	public void startChannelDarkMeasurement (float integrationTime, int averageCount) {
-		check(lib().JETI_StartChannelDarkEx(handle, integrationTime, (short)averageCount));
+		this.integrationTime = integrationTime;
+		check("JETI_StartChannelDarkEx", lib().JETI_StartChannelDarkEx(handle, integrationTime, (short)averageCount));
 	}
 
 	public short[] getChannelDarkData () {
 		var darkData = new short[SPECTRUM_SIZE]; // BOZO - Size?
-		check(lib().JETI_ChannelDarkEx(handle, darkData));
+		check("JETI_ChannelDarkEx", lib().JETI_ChannelDarkEx(handle, darkData), darkData.length * 2);
 		return darkData;
 	}
 
 	public void startChannelLightMeasurement (float integrationTime, int averageCount) {
-		check(lib().JETI_StartChannelLightEx(handle, integrationTime, (short)averageCount));
+		this.integrationTime = integrationTime;
+		check("JETI_StartChannelLightEx", lib().JETI_StartChannelLightEx(handle, integrationTime, (short)averageCount));
 	}
 
 	public short[] getChannelLightData () {
 		var lightData = new short[SPECTRUM_SIZE]; // BOZO - Size?
-		check(lib().JETI_ChannelLightEx(handle, lightData));
+		check("JETI_ChannelLightEx", lib().JETI_ChannelLightEx(handle, lightData), lightData.length * 2);
 		return lightData;
 	}
 
 	// Continuous measurement functions
 
 	public void startContinuousDarkMeasurement (float interval, int count) {
-		check(lib().JETI_StartContDarkEx(handle, interval, count));
+		check("JETI_StartContDarkEx", lib().JETI_StartContDarkEx(handle, interval, count));
 	}
 
 	public short[] getContinuousDarkData () {
 		var darkData = new short[SPECTRUM_SIZE]; // BOZO - Size?
-		check(lib().JETI_ContDarkEx(handle, darkData));
+		check("JETI_ContDarkEx", lib().JETI_ContDarkEx(handle, darkData), darkData.length * 2);
 		return darkData;
 	}
 
 	public void startContinuousLightMeasurement (float interval, int count) {
-		check(lib().JETI_StartContLightEx(handle, interval, count));
+		check("JETI_StartContLightEx", lib().JETI_StartContLightEx(handle, interval, count));
 	}
 
 	public short[] getContinuousLightData () {
 		var lightData = new short[SPECTRUM_SIZE]; // BOZO - Size?
-		check(lib().JETI_ContLightEx(handle, lightData));
+		check("JETI_ContLightEx", lib().JETI_ContLightEx(handle, lightData), lightData.length * 2);
 		return lightData;
 	}
 
 	public void startContinuousChannelDarkMeasurement (float interval, int count) {
-		check(lib().JETI_StartContChannelDarkEx(handle, interval, count));
+		check("JETI_StartContChannelDarkEx", lib().JETI_StartContChannelDarkEx(handle, interval, count));
 	}
 
 	public short[] getContinuousChannelDarkData () {
 		var darkData = new short[SPECTRUM_SIZE]; // BOZO - Size?
-		check(lib().JETI_ContChannelDarkEx(handle, darkData));
+		check("JETI_ContChannelDarkEx", lib().JETI_ContChannelDarkEx(handle, darkData), darkData.length * 2);
 		return darkData;
 	}
 
 	public void startContinuousChannelLightMeasurement (float interval, int count) {
-		check(lib().JETI_StartContChannelLightEx(handle, interval, count));
+		check("JETI_StartContChannelLightEx", lib().JETI_StartContChannelLightEx(handle, interval, count));
 	}
 
 	public short[] getContinuousChannelLightData () {
 		var lightData = new short[SPECTRUM_SIZE]; // BOZO - Size?
-		check(lib().JETI_ContChannelLightEx(handle, lightData));
+		check("JETI_ContChannelLightEx", lib().JETI_ContChannelLightEx(handle, lightData), lightData.length * 2);
 		return lightData;
 	}
 
 	// Device status and control
 
 	public boolean isMeasuring () {
-		check(lib().JETI_SpectroStatusEx(handle, i[0]));
+		check(status("JETI_SpectroStatusEx", lib().JETI_SpectroStatusEx(handle, i[0]), i[0]));
 		return i[0].getValue() != 0;
 	}
 
+	/** Reads the measurement status without throwing, for polling loops. No exception is created on failure, though JNA still
+	 * allocates to pass the call's arguments.
+	 * @param measuring Receives nonzero while measuring.
+	 * @return The status code of the call, {@link JetiSDK#SUCCESS} if the holder was set. */
+	public int getMeasureStatus (IntByReference measuring) {
+		return status("JETI_SpectroStatusEx", lib().JETI_SpectroStatusEx(handle, measuring), measuring);
+	}
+
 	public void cancelMeasurement () {
-		check(lib().JETI_SpectroBreakEx(handle));
+		check("JETI_SpectroBreakEx", lib().JETI_SpectroBreakEx(handle));
 	}
 
 	// Device parameters
 
 	public int getPixelCount () {
-		check(lib().JETI_PixelCountEx(handle, i[0]));
+		check("JETI_PixelCountEx", lib().JETI_PixelCountEx(handle, i[0]));
 		return i[0].getValue();
 	}
 
 	public float getIntegrationTime () {
-		check(lib().JETI_SpectroTintEx(handle, f[0]));
-		return f[0].getValue();
+		check("JETI_SpectroTintEx", lib().JETI_SpectroTintEx(handle, f[0]));
+		return integrationTime = f[0].getValue();
 	}
 
 	static public int getDeviceCount () {
@@ -231,7 +312,10 @@ public class SpectroEx extends Device<SpectroExLibrary> {
 	static public SpectroEx openDevice (int deviceNumber) {
 		var handle = new PointerByReference();
 		check(SpectroExLibrary.INSTANCE.JETI_OpenSpectroEx(deviceNumber, handle));
-		return new SpectroEx(handle.getValue());
+		var device = new SpectroEx(handle.getValue());
+		device.serialFrom(deviceNumber, SpectroEx::getDeviceSerials);
+		device.opened();
+		return device;
 	}
 
 	static public SpectroEx openDevice () {
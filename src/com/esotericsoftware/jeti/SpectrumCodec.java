@@ -0,0 +1,420 @@
+
+package com.esotericsoftware.jeti;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/** Compresses spectra and time series of spectra for archiving, eg from {@link RadioEx#getSpectralRadianceHiRes(int, int)}.
+ * <p>
+ * Timestamps are stored as the delta of the delta from the previous frame, which is a single bit for a regular interval.
+ * Lossless values are stored Gorilla style: each value's float bits are XORed with a prediction and only the meaningful bits of
+ * the XOR are written, reusing the previous leading and trailing zero counts when the bits fit. The prediction is the previous
+ * wavelength's value for the first frame, then the same wavelength's value in the previous frame. NaN, infinity and -0 are
+ * kept exactly.
+ * <p>
+ * In lossy mode values are quantized to a multiple of twice the max error, so decoded values differ by at most the max error
+ * (plus float rounding of the decoded value). The quantized values are stored as the difference from the same prediction, in a
+ * variable number of bits. Values must be finite.
+ *
+ * <pre>
+ * var encoder = new SpectrumCodec.Encoder(spectrum.length);
+ * // For each frame:
+ * encoder.write(System.currentTimeMillis(), spectrum);
+ * // When the block is full:
+ * archive.write(encoder.toBytes());
+ * encoder.reset();
+ *
+ * var decoder = new SpectrumCodec.Decoder(bytes);
+ * while (decoder.next())
+ * 	process(decoder.getTime(), decoder.getSpectrum());
+ * </pre> */
+public class SpectrumCodec {
+	static private final int lossless = 0, lossy = 1;
+	static private final long maxQuantized = 1L << 53;
+
+	private SpectrumCodec () {
+	}
+
+	/** Returns a single spectrum compressed losslessly. */
+	static public byte[] encode (float[] spectrum) {
+		var encoder = new Encoder(spectrum.length);
+		encoder.write(0, spectrum);
+		return encoder.toBytes();
+	}
+
+	/** Returns the first spectrum in the data. */
+	static public float[] decode (byte[] data) {
+		var decoder = new Decoder(data);
+		if (!decoder.next()) throw new IllegalArgumentException("The data has no spectra.");
+		return decoder.getSpectrum().clone();
+	}
+
+	/** Writes frames of the same number of values to a growing buffer. Writing does not allocate once the buffer is large
+	 * enough. Not thread safe. */
+	static public class Encoder {
+		private final int count;
+		private final float maxError;
+		private final double quantum;
+		private final int[] previousBits;
+		private final long[] previousQuantized;
+		private byte[] bytes = new byte[256];
+		private long position;
+		private int frames, leading = -1, trailing;
+		private long previousTime, previousDelta;
+
+		/** Creates a lossless encoder.
+		 * @param count The number of values per frame. */
+		public Encoder (int count) {
+			this(count, 0);
+		}
+
+		/** @param count The number of values per frame.
+		 * @param maxError The max difference between a value and its decoded value, or 0 for lossless. */
+		public Encoder (int count, float maxError) {
+			if (count < 0) throw new IllegalArgumentException("count must be >= 0: " + count);
+			if (!(maxError >= 0) || maxError == Float.POSITIVE_INFINITY)
+				throw new IllegalArgumentException("maxError must be >= 0: " + maxError);
+			this.count = count;
+			this.maxError = maxError;
+			quantum = maxError * 2d;
+			previousBits = maxError == 0 ? new int[count] : null;
+			previousQuantized = maxError == 0 ? null : new long[count];
+			header();
+		}
+
+		/** Discards all frames, so the next frame starts a new block. */
+		public void reset () {
+			Arrays.fill(bytes, 0, (int)((position + 7) >>> 3), (byte)0);
+			position = 0;
+			frames = 0;
+			leading = -1;
+			header();
+		}
+
+		private void header () {
+			if (maxError == 0) {
+				bits(lossless, 8);
+				bits(count, 32);
+			} else {
+				bits(lossy, 8);
+				bits(count, 32);
+				bits(Float.floatToIntBits(maxError), 32);
+			}
+		}
+
+		/** @param time Usually ms since epoch.
+		 * @param spectrum Must have count values. */
+		public void write (long time, float[] spectrum) {
+			if (spectrum.length != count) throw new IllegalArgumentException("spectrum must have " + count + " values.");
+			if (previousQuantized != null) {
+				// Validate before writing so a failed frame does not corrupt the block.
+				for (int i = 0; i < count; i++) {
+					double quantized = Math.rint(spectrum[i] / quantum);
+					if (!(Math.abs(quantized) < maxQuantized)) {
+						throw new IllegalArgumentException(
+							"Value cannot be quantized with maxError " + maxError + ": " + spectrum[i] + " at index: " + i);
+					}
+				}
+			}
+			ensureCapacity(count * 80L + 256);
+			bits(1, 1);
+			writeTime(time);
+			if (previousQuantized != null)
+				writeQuantized(spectrum);
+			else
+				writeLossless(spectrum);
+			frames++;
+		}
+
+		private void writeTime (long time) {
+			if (frames == 0) {
+				bits(time, 64);
+				previousDelta = 0;
+			} else {
+				long delta = time - previousTime;
+				long zigzag = zigzag(delta - previousDelta);
+				if (zigzag == 0)
+					bits(0, 1);
+				else if (zigzag >>> 7 == 0) {
+					bits(0b10, 2);
+					bits(zigzag, 7);
+				} else if (zigzag >>> 9 == 0) {
+					bits(0b110, 3);
+					bits(zigzag, 9);
+				} else if (zigzag >>> 12 == 0) {
+					bits(0b1110, 4);
+					bits(zigzag, 12);
+				} else {
+					bits(0b1111, 4);
+					bits(zigzag, 64);
+				}
+				previousDelta = delta;
+			}
+			previousTime = time;
+		}
+
+		private void writeLossless (float[] spectrum) {
+			int[] previousBits = this.previousBits;
+			boolean first = frames == 0;
+			int prediction = 0;
+			for (int i = 0; i < count; i++) {
+				int value = Float.floatToRawIntBits(spectrum[i]);
+				if (!first) prediction = previousBits[i];
+				int xor = value ^ prediction;
+				if (xor == 0)
+					bits(0, 1);
+				else {
+					int leading = Integer.numberOfLeadingZeros(xor), trailing = Integer.numberOfTrailingZeros(xor);
+					if (this.leading != -1 && leading >= this.leading && trailing >= this.trailing
+						&& leading - this.leading + trailing - this.trailing <= 10) {
+						// The meaningful bits fit in the previous window, which is not much larger than a new window with its
+						// header.
+						bits(0b10, 2);
+						bits(xor >>> this.trailing, 32 - this.leading - this.trailing);
+					} else {
+						int length = 32 - leading - trailing;
+						bits(0b11, 2);
+						bits(leading, 5);
+						bits(length - 1, 5);
+						bits(xor >>> trailing, length);
+						this.leading = leading;
+						this.trailing = trailing;
+					}
+				}
+				previousBits[i] = value;
+				prediction = value;
+			}
+		}
+
+		private void writeQuantized (float[] spectrum) {
+			long[] previousQuantized = this.previousQuantized;
+			boolean first = frames == 0;
+			long prediction = 0;
+			for (int i = 0; i < count; i++) {
+				long value = (long)Math.rint(spectrum[i] / quantum);
+				if (!first) prediction = previousQuantized[i];
+				long zigzag = zigzag(value - prediction);
+				if (zigzag == 0)
+					bits(0, 1);
+				else if (zigzag >>> 4 == 0) {
+					bits(0b10, 2);
+					bits(zigzag, 4);
+				} else if (zigzag >>> 8 == 0) {
+					bits(0b110, 3);
+					bits(zigzag, 8);
+				} else if (zigzag >>> 16 == 0) {
+					bits(0b1110, 4);
+					bits(zigzag, 16);
+				} else {
+					bits(0b1111, 4);
+					bits(zigzag, 64);
+				}
+				previousQuantized[i] = value;
+				prediction = value;
+			}
+		}
+
+		/** Writes the low bits of the value, most significant first. */
+		private void bits (long value, int bits) {
+			byte[] bytes = this.bytes;
+			long position = this.position;
+			while (bits > 0) {
+				int index = (int)(position >>> 3), free = 8 - (int)(position & 7);
+				int n = Math.min(free, bits);
+				bits -= n;
+				bytes[index] = (byte)(bytes[index] | (int)(value >>> bits & ((1 << n) - 1)) << (free - n));
+				position += n;
+			}
+			this.position = position;
+		}
+
+		private void ensureCapacity (long bits) {
+			long needed = (position + bits + 7) >>> 3;
+			if (needed > Integer.MAX_VALUE - 8) throw new IllegalStateException("Block is too large, call reset.");
+			if (needed > bytes.length)
+				bytes = Arrays.copyOf(bytes, (int)Math.min(Integer.MAX_VALUE - 8, Math.max(needed, bytes.length * 2L)));
+		}
+
+		/** Returns the number of frames written since the last reset. */
+		public int getFrameCount () {
+			return frames;
+		}
+
+		/** Returns the size in bytes of {@link #toBytes()}. */
+		public int getSize () {
+			return (int)((position + 1 + 7) >>> 3);
+		}
+
+		/** Returns the block so far. More frames can be written afterward. */
+		public byte[] toBytes () {
+			// The end marker is a 0 bit, which the zeroed buffer already has.
+			return Arrays.copyOf(bytes, getSize());
+		}
+	}
+
+	/** Reads the frames of a block. Reading does not allocate after the first frame. Not thread safe. */
+	static public class Decoder {
+		private final byte[] bytes;
+		private final long end;
+		private final int count;
+		private final boolean quantized;
+		private final double quantum;
+		private float[] spectrum;
+		private int[] previousBits;
+		private long[] previousQuantized;
+		private long position;
+		private int frames, leading, trailing;
+		private long time, previousDelta;
+
+		public Decoder (byte[] data) {
+			this(data, 0, data.length);
+		}
+
+		public Decoder (byte[] data, int offset, int length) {
+			Objects.checkFromIndexSize(offset, length, data.length);
+			bytes = data;
+			position = offset * 8L;
+			end = (offset + (long)length) * 8;
+			if (end - position < 40) throw new IllegalArgumentException("Invalid data.");
+			int mode = (int)bits(8);
+			count = (int)bits(32);
+			if (count < 0) throw new IllegalArgumentException("Invalid count: " + count);
+			if (mode == lossless) {
+				quantized = false;
+				quantum = 0;
+			} else if (mode == lossy) {
+				quantized = true;
+				quantum = Float.intBitsToFloat((int)bits(32)) * 2d;
+			} else
+				throw new IllegalArgumentException("Invalid mode: " + mode);
+		}
+
+		/** Reads the next frame.
+		 * @return False if there are no more frames. */
+		public boolean next () {
+			if (position >= end || bits(1) == 0) return false;
+			if (frames == 0) {
+				// Each value takes at least 1 bit, so a count the data cannot hold is rejected before it is allocated.
+				if (count > end - position) throw new IllegalArgumentException("Invalid count: " + count);
+				spectrum = new float[count];
+				if (quantized)
+					previousQuantized = new long[count];
+				else
+					previousBits = new int[count];
+			}
+			readTime();
+			if (quantized)
+				readQuantized();
+			else
+				readLossless();
+			frames++;
+			return true;
+		}
+
+		private void readTime () {
+			if (frames == 0) {
+				time = bits(64);
+				previousDelta = 0;
+				return;
+			}
+			long zigzag;
+			if (bits(1) == 0)
+				zigzag = 0;
+			else if (bits(1) == 0)
+				zigzag = bits(7);
+			else if (bits(1) == 0)
+				zigzag = bits(9);
+			else if (bits(1) == 0)
+				zigzag = bits(12);
+			else
+				zigzag = bits(64);
+			previousDelta += unzigzag(zigzag);
+			time += previousDelta;
+		}
+
+		private void readLossless () {
+			float[] spectrum = this.spectrum;
+			int[] previousBits = this.previousBits;
+			boolean first = frames == 0;
+			int prediction = 0;
+			for (int i = 0; i < count; i++) {
+				if (!first) prediction = previousBits[i];
+				int value = prediction;
+				if (bits(1) == 1) {
+					if (bits(1) == 1) {
+						leading = (int)bits(5);
+						trailing = 32 - leading - ((int)bits(5) + 1);
+					}
+					value ^= (int)bits(32 - leading - trailing) << trailing;
+				}
+				previousBits[i] = value;
+				spectrum[i] = Float.intBitsToFloat(value);
+				prediction = value;
+			}
+		}
+
+		private void readQuantized () {
+			float[] spectrum = this.spectrum;
+			long[] previousQuantized = this.previousQuantized;
+			boolean first = frames == 0;
+			long prediction = 0;
+			for (int i = 0; i < count; i++) {
+				if (!first) prediction = previousQuantized[i];
+				long zigzag;
+				if (bits(1) == 0)
+					zigzag = 0;
+				else if (bits(1) == 0)
+					zigzag = bits(4);
+				else if (bits(1) == 0)
+					zigzag = bits(8);
+				else if (bits(1) == 0)
+					zigzag = bits(16);
+				else
+					zigzag = bits(64);
+				long value = prediction + unzigzag(zigzag);
+				previousQuantized[i] = value;
+				spectrum[i] = (float)(value * quantum);
+				prediction = value;
+			}
+		}
+
+		private long bits (int bits) {
+			if (position + bits > end) throw new IllegalArgumentException("Truncated data.");
+			byte[] bytes = this.bytes;
+			long position = this.position, value = 0;
+			while (bits > 0) {
+				int index = (int)(position >>> 3), available = 8 - (int)(position & 7);
+				int n = Math.min(available, bits);
+				value = value << n | (bytes[index] >>> (available - n) & ((1 << n) - 1));
+				bits -= n;
+				position += n;
+			}
+			this.position = position;
+			return value;
+		}
+
+		/** Returns the number of values per frame. */
+		public int getCount () {
+			return count;
+		}
+
+		/** Returns the time of the current frame. */
+		public long getTime () {
+			return time;
+		}
+
+		/** Returns the values of the current frame, or null before the first frame is read. The array is reused by
+		 * {@link #next()}. */
+		public float[] getSpectrum () {
+			return spectrum;
+		}
+	}
+
+	static private long zigzag (long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static private long unzigzag (long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,224 @@
+
+package com.esotericsoftware.jeti;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.esotericsoftware.jeti.MeasurementServer.Measure;
+
+/** Streams live spectra to many viewers as server-sent events, see {@link MeasurementServer#addStream(String, SpectrumStream)}.
+ * Each spectrum is encoded once for all viewers: values are quantized to a multiple of the quantum, then sent as a keyframe or
+ * as the difference from the previous frame, which is usually a single byte per value. A viewer that falls behind has its
+ * queued frames dropped and resumes at the next keyframe, so one slow viewer never delays the others or the device.
+ * <p>
+ * Events are <code>key</code> and <code>delta</code>, with JSON data. Both have <code>sequence</code>, <code>time</code> (ms
+ * since epoch) and <code>data</code>. A keyframe also has <code>begin</code> (nm), <code>step</code> (nm), <code>quantum</code>
+ * and <code>count</code>. The data is base64 of one zigzag varint per value. For a keyframe each is the difference from the
+ * previous value's quantized value, starting from 0. For a delta each is the difference from the same value in the previous
+ * frame. A value is its quantized value times the quantum.
+ *
+ * <pre>
+ * var stream = new SpectrumStream(380, 1, 0.0001f);
+ * stream.start(MeasurementServer.radioEx(radioEx, 100, 1, 380, 780, 1));
+ * server.addStream("line1", stream);
+ * </pre> */
+public class SpectrumStream implements AutoCloseable {
+	static private final byte[] keepAlive = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+	static private final byte[] end = new byte[0];
+
+	private final int begin;
+	private final float step, quantum;
+	private final CopyOnWriteArrayList<Viewer> viewers = new CopyOnWriteArrayList<>();
+	private int keyframeInterval = 50, viewerBuffer = 4;
+	private int[] last = new int[0];
+	private byte[] varints = new byte[0];
+	private long sequence, dropped;
+	private int sinceKeyframe;
+	private boolean keyframeRequested;
+	private Thread thread;
+	private volatile boolean closed;
+
+	/** @param begin The wavelength of the first value, in nm.
+	 * @param step The wavelength between values, in nm.
+	 * @param quantum The precision values are sent with. */
+	public SpectrumStream (int begin, float step, float quantum) {
+		if (quantum <= 0) throw new IllegalArgumentException("quantum must be > 0: " + quantum);
+		this.begin = begin;
+		this.step = step;
+		this.quantum = quantum;
+	}
+
+	/** Starts a thread that measures and publishes spectra while there are viewers.
+	 * @param measure Called repeatedly. An exception is logged and the measurement retried after 1 second. */
+	public synchronized void start (Measure measure) {
+		if (thread != null) throw new IllegalStateException("Already started.");
+		thread = new Thread( () -> {
+			while (!closed) {
+				try {
+					synchronized (this) {
+						while (viewers.isEmpty() && !closed)
+							wait();
+					}
+					if (closed) break;
+					publish(measure.measure());
+				} catch (InterruptedException ex) {
+					break;
+				} catch (RuntimeException ex) {
+					Log.warn("Unable to measure spectrum for stream.", ex);
+					try {
+						Thread.sleep(1000);
+					} catch (InterruptedException ex2) {
+						break;
+					}
+				}
+			}
+		}, "SpectrumStream");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/** Encodes a spectrum and queues it for each viewer. */
+	public synchronized void publish (float[] values) {
+		if (closed) return;
+		int count = values.length;
+		boolean key = keyframeRequested || sinceKeyframe >= keyframeInterval || last.length != count;
+		if (last.length != count) last = new int[count];
+		if (varints.length < count * 5) varints = new byte[count * 5];
+
+		int size = 0, previous = 0;
+		int[] last = this.last;
+		for (int i = 0; i < count; i++) {
+			int quantized = quantize(values[i]);
+			int delta = quantized - (key ? previous : last[i]);
+			previous = quantized;
+			last[i] = quantized;
+			int zigzag = (delta << 1) ^ (delta >> 31);
+			while ((zigzag & ~0x7f) != 0) {
+				varints[size++] = (byte)((zigzag & 0x7f) | 0x80);
+				zigzag >>>= 7;
+			}
+			varints[size++] = (byte)zigzag;
+		}
+
+		var event = new StringBuilder(64 + size * 4 / 3);
+		event.append("id: ").append(sequence).append("\nevent: ").append(key ? "key" : "delta");
+		event.append("\ndata: {\"sequence\":").append(sequence).append(",\"time\":").append(System.currentTimeMillis());
+		if (key) {
+			event.append(",\"begin\":").append(begin).append(",\"step\":").append(step);
+			event.append(",\"quantum\":").append(quantum).append(",\"count\":").append(count);
+		}
+		event.append(",\"data\":\"");
+		event.append(Base64.getEncoder().encodeToString(Arrays.copyOf(varints, size)));
+		event.append("\"}\n\n");
+		publish(new Frame(key, event.toString().getBytes(StandardCharsets.US_ASCII)));
+
+		sequence++;
+		if (key) {
+			sinceKeyframe = 1;
+			keyframeRequested = false;
+		} else
+			sinceKeyframe++;
+	}
+
+	private int quantize (float value) {
+		if (Float.isNaN(value)) return 0;
+		return (int)Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, Math.round((double)value / quantum)));
+	}
+
+	private void publish (Frame frame) {
+		for (Viewer viewer : viewers) {
+			if (viewer.resync) {
+				if (!frame.key) continue;
+				viewer.resync = false;
+			}
+			if (!viewer.frames.offer(frame.bytes)) { // Fell behind, resume at the next keyframe.
+				viewer.frames.clear();
+				viewer.resync = true;
+				keyframeRequested = true;
+				dropped++;
+			}
+		}
+	}
+
+	/** Adds a viewer, which receives frames starting with the next keyframe. */
+	synchronized Viewer subscribe () {
+		if (closed) throw new IllegalStateException("Stream is closed.");
+		var viewer = new Viewer(viewerBuffer);
+		viewers.add(viewer);
+		keyframeRequested = true;
+		notifyAll();
+		return viewer;
+	}
+
+	void unsubscribe (Viewer viewer) {
+		viewers.remove(viewer);
+	}
+
+	/** @param keyframeInterval The most frames between keyframes. Default is 50. */
+	public synchronized void setKeyframeInterval (int keyframeInterval) {
+		if (keyframeInterval < 1) throw new IllegalArgumentException("keyframeInterval must be > 0: " + keyframeInterval);
+		this.keyframeInterval = keyframeInterval;
+	}
+
+	/** @param viewerBuffer The number of frames queued for a viewer before it is considered behind. Applies to new viewers.
+	 *           Default is 4. */
+	public synchronized void setViewerBuffer (int viewerBuffer) {
+		if (viewerBuffer < 1) throw new IllegalArgumentException("viewerBuffer must be > 0: " + viewerBuffer);
+		this.viewerBuffer = viewerBuffer;
+	}
+
+	public int getViewerCount () {
+		return viewers.size();
+	}
+
+	/** Returns the number of frames published. */
+	public synchronized long getFrameCount () {
+		return sequence;
+	}
+
+	/** Returns the number of times a viewer fell behind and frames were dropped. */
+	public synchronized long getDroppedCount () {
+		return dropped;
+	}
+
+	/** Stops the measurement thread and ends the stream for all viewers. */
+	public void close () {
+		Thread thread;
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+			notifyAll();
+			thread = this.thread;
+			for (Viewer viewer : viewers) {
+				viewer.frames.clear();
+				viewer.frames.offer(end);
+			}
+		}
+		if (thread != null) thread.interrupt();
+	}
+
+	private record Frame (boolean key, byte[] bytes) {}
+
+	/** Frames waiting to be sent to a viewer. */
+	static class Viewer {
+		final ArrayBlockingQueue<byte[]> frames;
+		volatile boolean resync = true;
+
+		Viewer (int capacity) {
+			frames = new ArrayBlockingQueue<>(capacity);
+		}
+
+		/** Returns the next frame's event bytes, a keep alive comment if none arrived within the timeout, or null if the stream
+		 * ended. */
+		byte[] next (long timeout, TimeUnit unit) throws InterruptedException {
+			byte[] frame = frames.poll(timeout, unit);
+			if (frame == null) return keepAlive;
+			if (frame == end) return null;
+			return frame;
+		}
+	}
+}
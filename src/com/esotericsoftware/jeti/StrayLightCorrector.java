@@ -0,0 +1,220 @@
+
+package com.esotericsoftware.jeti;
+
+import java.util.stream.IntStream;
+
+/** Corrects stray light in Java by multiplying spectra with a correction matrix, so raw pixel data that was already fetched or
+ * archived can be corrected without {@link Core#setStrayLightMatrixEnabled(boolean)}.
+ * <p>
+ * The matrix is stored once as a flat row-major float array. A single spectrum is multiplied four rows at a time, so each input
+ * value is loaded once for four independent sums. A batch is split into chunks of spectra that are corrected in parallel, and
+ * each chunk is multiplied one block of rows at a time with four spectra per pass. A block has as many rows as fit in 256 KB,
+ * about the size of a core's L2 cache, so the block is read from cache rather than memory for every spectrum in the chunk. The
+ * corrector is immutable and thread safe.
+ *
+ * <pre>
+ * var corrector = StrayLightCorrector.fromSpread(spread); // Or new StrayLightCorrector(correction).
+ * float[][] corrected = corrector.correct(rawFrames);
+ * </pre> */
+public class StrayLightCorrector {
+	/** The size in bytes of the rows of the matrix multiplied with each spectrum in a chunk before moving to the next rows. */
+	static private final int blockBytes = 256 * 1024;
+	static private final int chunk = 64;
+
+	private final int count;
+	private final float[] matrix;
+
+	/** @param correction The square matrix that multiplies a spectrum to correct it, indexed [row][column]. */
+	public StrayLightCorrector (float[][] correction) {
+		count = correction.length;
+		if (count == 0) throw new IllegalArgumentException("correction cannot be empty.");
+		matrix = new float[count * count];
+		for (int i = 0; i < count; i++) {
+			if (correction[i].length != count) throw new IllegalArgumentException("correction must be square.");
+			System.arraycopy(correction[i], 0, matrix, i * count, count);
+		}
+	}
+
+	private StrayLightCorrector (int count, float[] matrix) {
+		this.count = count;
+		this.matrix = matrix;
+	}
+
+	/** Creates a corrector from a stray light distribution matrix D, where a measured spectrum is (I + D) times the true
+	 * spectrum. The correction matrix is the inverse of I + D, computed once by Gauss-Jordan elimination.
+	 * @param spread The square matrix D, indexed [row][column]. Each column is the fraction of the light at that pixel which
+	 *           falls on the other pixels, with the in-band values set to 0. */
+	static public StrayLightCorrector fromSpread (float[][] spread) {
+		int n = spread.length;
+		if (n == 0) throw new IllegalArgumentException("spread cannot be empty.");
+		var a = new double[n][];
+		for (int i = 0; i < n; i++) {
+			if (spread[i].length != n) throw new IllegalArgumentException("spread must be square.");
+			var row = new double[n * 2];
+			for (int j = 0; j < n; j++)
+				row[j] = spread[i][j];
+			row[i] += 1;
+			row[n + i] = 1;
+			a[i] = row;
+		}
+		for (int column = 0; column < n; column++) {
+			int pivot = column;
+			for (int i = column + 1; i < n; i++)
+				if (Math.abs(a[i][column]) > Math.abs(a[pivot][column])) pivot = i;
+			if (Math.abs(a[pivot][column]) < 1e-12) throw new IllegalArgumentException("I + spread is singular.");
+			double[] row = a[pivot];
+			a[pivot] = a[column];
+			a[column] = row;
+			double scale = 1 / row[column];
+			for (int j = column; j < n * 2; j++)
+				row[j] *= scale;
+			for (int i = 0; i < n; i++) {
+				if (i == column) continue;
+				double[] other = a[i];
+				double factor = other[column];
+				if (factor == 0) continue;
+				for (int j = column; j < n * 2; j++)
+					other[j] -= factor * row[j];
+			}
+		}
+		var matrix = new float[n * n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				matrix[i * n + j] = (float)a[i][n + j];
+		return new StrayLightCorrector(n, matrix);
+	}
+
+	/** Returns the number of values in a spectrum. */
+	public int getCount () {
+		return count;
+	}
+
+	public float[] correct (float[] spectrum) {
+		return correct(spectrum, new float[count]);
+	}
+
+	/** @param pixels Raw or dark corrected pixel counts, eg from {@link Core#fetchLight(int)}. Must have at least count
+	 *           values. */
+	public float[] correct (int[] pixels) {
+		return correct(floats(pixels), new float[count]);
+	}
+
+	/** @param spectrum Must have count values.
+	 * @param output Must have count values and cannot be the spectrum.
+	 * @return The output array. */
+	public float[] correct (float[] spectrum, float[] output) {
+		if (spectrum.length != count || output.length != count)
+			throw new IllegalArgumentException("spectrum and output must have " + count + " values.");
+		if (spectrum == output) throw new IllegalArgumentException("output cannot be the spectrum.");
+		float[] matrix = this.matrix;
+		int n = count, i = 0;
+		for (; i + 3 < n; i += 4) {
+			int r0 = i * n, r1 = r0 + n, r2 = r1 + n, r3 = r2 + n;
+			float a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+			for (int j = 0; j < n; j++) {
+				float x = spectrum[j];
+				a0 += matrix[r0 + j] * x;
+				a1 += matrix[r1 + j] * x;
+				a2 += matrix[r2 + j] * x;
+				a3 += matrix[r3 + j] * x;
+			}
+			output[i] = a0;
+			output[i + 1] = a1;
+			output[i + 2] = a2;
+			output[i + 3] = a3;
+		}
+		for (; i < n; i++) {
+			int row = i * n;
+			float a = 0;
+			for (int j = 0; j < n; j++)
+				a += matrix[row + j] * spectrum[j];
+			output[i] = a;
+		}
+		return output;
+	}
+
+	/** Corrects many spectra in parallel.
+	 * @param pixels Each must have at least count values. */
+	public float[][] correct (int[][] pixels) {
+		var spectra = new float[pixels.length][];
+		for (int i = 0; i < pixels.length; i++)
+			spectra[i] = floats(pixels[i]);
+		return correct(spectra);
+	}
+
+	/** Corrects many spectra in parallel. */
+	public float[][] correct (float[][] spectra) {
+		var outputs = new float[spectra.length][];
+		for (int i = 0; i < spectra.length; i++)
+			outputs[i] = new float[count];
+		return correct(spectra, outputs);
+	}
+
+	/** Corrects many spectra in parallel using the common fork join pool.
+	 * @param spectra Each must have count values.
+	 * @param outputs Each must have count values. May be the spectra array, in which case each spectrum is replaced.
+	 * @return The outputs array. */
+	public float[][] correct (float[][] spectra, float[][] outputs) {
+		int total = spectra.length;
+		if (outputs.length != total) throw new IllegalArgumentException("outputs must have " + total + " values.");
+		for (int i = 0; i < total; i++) {
+			if (spectra[i].length != count) throw new IllegalArgumentException("Each spectrum must have " + count + " values.");
+			if (outputs[i].length != count) throw new IllegalArgumentException("Each output must have " + count + " values.");
+		}
+		IntStream.range(0, (total + chunk - 1) / chunk).parallel().forEach(index -> {
+			int start = index * chunk, end = Math.min(start + chunk, total);
+			var inputs = new float[end - start][];
+			for (int i = start; i < end; i++)
+				inputs[i - start] = spectra[i] == outputs[i] ? spectra[i].clone() : spectra[i];
+			multiply(inputs, outputs, start);
+		});
+		return outputs;
+	}
+
+	/** Multiplies the chunk one block of rows at a time, with four spectra per pass over a block. */
+	private void multiply (float[][] inputs, float[][] outputs, int offset) {
+		float[] matrix = this.matrix;
+		int n = count, size = inputs.length, rowBlock = Math.max(1, blockBytes / (n * 4));
+		for (int blockStart = 0; blockStart < n; blockStart += rowBlock) {
+			int blockEnd = Math.min(blockStart + rowBlock, n), s = 0;
+			for (; s + 3 < size; s += 4) {
+				float[] x0 = inputs[s], x1 = inputs[s + 1], x2 = inputs[s + 2], x3 = inputs[s + 3];
+				int o = offset + s;
+				float[] y0 = outputs[o], y1 = outputs[o + 1], y2 = outputs[o + 2], y3 = outputs[o + 3];
+				for (int i = blockStart; i < blockEnd; i++) {
+					int row = i * n;
+					float a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+					for (int j = 0; j < n; j++) {
+						float m = matrix[row + j];
+						a0 += m * x0[j];
+						a1 += m * x1[j];
+						a2 += m * x2[j];
+						a3 += m * x3[j];
+					}
+					y0[i] = a0;
+					y1[i] = a1;
+					y2[i] = a2;
+					y3[i] = a3;
+				}
+			}
+			for (; s < size; s++) {
+				float[] x = inputs[s], y = outputs[offset + s];
+				for (int i = blockStart; i < blockEnd; i++) {
+					int row = i * n;
+					float a = 0;
+					for (int j = 0; j < n; j++)
+						a += matrix[row + j] * x[j];
+					y[i] = a;
+				}
+			}
+		}
+	}
+
+	private float[] floats (int[] pixels) {
+		if (pixels.length < count) throw new IllegalArgumentException("pixels must have at least " + count + " values.");
+		var spectrum = new float[count];
+		for (int i = 0; i < count; i++)
+			spectrum[i] = pixels[i];
+		return spectrum;
+	}
+}
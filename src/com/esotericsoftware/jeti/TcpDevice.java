@@ -0,0 +1,375 @@
+
+package com.esotericsoftware.jeti;
+
+import static java.nio.charset.StandardCharsets.*;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Speaks the ASCII command protocol to a network device directly, without the DLL. Commands are terminated by a carriage
+ * return. A command containing {@code ?} is a query, answered by a line terminated by a carriage return which may start with ACK
+ * (0x06), which is removed. Other commands are answered by ACK alone. Any command may be answered by NAK (0x15), optionally
+ * followed by a two digit hex error code, which fails the command with a {@link JetiException}. A lone ACK or NAK is a complete
+ * response without a terminator, and a terminator that follows one is ignored. A NAK that ends the received data fails its
+ * command with error 0x0B, and an error code that arrives for it later is ignored.
+ * <p>
+ * Commands are pipelined: {@link #send(String)} queues the command without waiting for the responses to earlier commands, up to
+ * {@link #setMaxInFlight(int) a limit} are written to the device, and responses complete the commands in the order they were
+ * sent. Reads and writes are non-blocking and done by the {@link TcpDriver} I/O thread the device was assigned. A command that
+ * gets no response within its timeout fails with {@link JetiSDK#TIMEOUT}. If its response never arrives, the connection is closed
+ * rather than matching later responses to the wrong commands. Methods can be called from any thread.
+ *
+ * <pre>
+ * try (var device = TcpDevice.open("192.168.0.10", 10001)) {
+ * 	String serial = device.sendCommand("*PARA:SERNO?", 1000);
+ * }
+ * </pre> */
+public class TcpDevice implements AutoCloseable {
+	static public final byte ACK = 0x06, NAK = 0x15, TERMINATOR = '\r';
+
+	private final String address;
+	final SocketChannel channel;
+	private final TcpDriver.Loop loop;
+	SelectionKey key;
+	private final ConcurrentLinkedQueue<Command> queue = new ConcurrentLinkedQueue<>();
+	private final LinkedBlockingQueue<String> unsolicited = new LinkedBlockingQueue<>();
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile int timeout = 10000, maxInFlight = 16;
+	private volatile boolean closed;
+
+	// I/O thread.
+	private final ArrayDeque<Command> inFlight = new ArrayDeque<>();
+	private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+	private byte[] line = new byte[256];
+	private int lineLength;
+	/** Hex digits of the error code received after a NAK, or -1 if not receiving a NAK. */
+	private int nakDigits = -1, nakCode;
+	/** Hex digits to ignore after a NAK that was completed before its error code arrived. */
+	private int ignoreDigits;
+	/** True after a lone ACK or NAK, when a following terminator is ignored. */
+	private boolean ignoreTerminator;
+
+	TcpDevice (String address, SocketChannel channel, TcpDriver.Loop loop) throws IOException {
+		this.address = address;
+		this.channel = channel;
+		this.loop = loop;
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+	}
+
+	/** Connects to the device using a shared {@link TcpDriver}, blocking until connected.
+	 * @param port The device's command port, see the device manual. */
+	static public TcpDevice open (String host, int port) throws IOException {
+		return TcpDriver.shared().connect(host, port);
+	}
+
+	/** @param timeout Milliseconds {@link #send(String)} waits for a response. Default is 10000. */
+	public void setTimeout (int timeout) {
+		this.timeout = timeout;
+	}
+
+	/** @param maxInFlight The number of commands written to the device before their responses are received. Default is 16. */
+	public void setMaxInFlight (int maxInFlight) {
+		if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be > 0: " + maxInFlight);
+		this.maxInFlight = maxInFlight;
+		loop.ready(this);
+	}
+
+	/** Sends a command with the default timeout, see {@link #send(String, int)}. */
+	public CompletableFuture<String> send (String command) {
+		return send(command, timeout);
+	}
+
+	/** Sends a command and returns a future completed with its response, without the terminator or ACK. The future fails with a
+	 * {@link JetiException} if the device responds with NAK, no response is received in time, or the connection is closed.
+	 * @param command Without the terminator.
+	 * @param timeout Milliseconds, including the time the command waits to be written. */
+	public CompletableFuture<String> send (String command, int timeout) {
+		byte[] bytes = command.getBytes(US_ASCII);
+		var response = new CompletableFuture<String>();
+		pending.incrementAndGet();
+		response.whenComplete((value, ex) -> pending.decrementAndGet());
+		queue(new Command(ByteBuffer.allocate(bytes.length + 1).put(bytes).put(TERMINATOR).flip(), response, timeout,
+			command.indexOf('?') != -1));
+		return response;
+	}
+
+	/** Sends a command and waits for its response, like {@link Core#sendCommand(String)}.
+	 * @param timeout Milliseconds.
+	 * @throws JetiException with {@link JetiSDK#TIMEOUT} if no response is received in time. */
+	public String sendCommand (String command, int timeout) {
+		return get(send(command, timeout), timeout + 1000); // The I/O thread times out the command.
+	}
+
+	/** Writes data without expecting a response, like {@link Core#deviceWrite(String, int, int)}. Lines received when no command
+	 * is waiting for a response can be read with {@link #deviceReadTerminated(int)}.
+	 * @param data Must include the terminator, if any. */
+	public void deviceWrite (String data) {
+		if (closed) throw new JetiException(0x14, "Device not connected: " + address);
+		queue(new Command(ByteBuffer.wrap(data.getBytes(US_ASCII)), null, 0, false));
+	}
+
+	private void queue (Command command) {
+		queue.add(command);
+		if (closed)
+			failQueued(null);
+		else
+			loop.ready(this);
+	}
+
+	/** Waits for a line received when no command was waiting for a response, like {@link Core#deviceReadTerminated(int, int)}.
+	 * @param timeout Milliseconds.
+	 * @return The line without the terminator.
+	 * @throws JetiException with {@link JetiSDK#TIMEOUT} if no line is received in time. */
+	public String deviceReadTerminated (int timeout) {
+		try {
+			String line = unsolicited.poll(timeout, TimeUnit.MILLISECONDS);
+			if (line == null) throw new JetiException(JetiSDK.TIMEOUT, "Timeout waiting for data: " + address);
+			return line;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new JetiException(JetiSDK.BREAK, "Interrupted waiting for data: " + address, ex);
+		}
+	}
+
+	/** Waits for a response future returned by {@link #send(String)}.
+	 * @param timeout Milliseconds. */
+	static public String get (CompletableFuture<String> response, int timeout) {
+		try {
+			return response.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException ex) {
+			throw new JetiException(JetiSDK.TIMEOUT, "Timeout waiting for response.", ex);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new JetiException(JetiSDK.BREAK, "Interrupted waiting for response.", ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof JetiException jetiEx)
+				throw new JetiException(jetiEx.getErrorCode(), jetiEx.getMessage(), ex);
+			throw new JetiException(0x0A, "Could not receive from device.", ex.getCause());
+		}
+	}
+
+	public String getAddress () {
+		return address;
+	}
+
+	public boolean isClosed () {
+		return closed;
+	}
+
+	/** Returns the number of commands waiting for a response. */
+	public int getPending () {
+		return pending.get();
+	}
+
+	public void close () {
+		if (closed) return;
+		closed = true;
+		loop.ready(this);
+	}
+
+	/** Moves queued commands to the device, up to the in flight limit, and writes as much as possible without blocking. Called on
+	 * the I/O thread. */
+	void flush () throws IOException {
+		Command command;
+		while (inFlight.size() < maxInFlight && (command = queue.poll()) != null) {
+			if (command.response != null) {
+				if (command.response.isDone()) continue; // Timed out before it was written.
+				inFlight.add(command);
+			}
+			output.add(command.bytes);
+		}
+		ByteBuffer buffer;
+		while ((buffer = output.peek()) != null) {
+			channel.write(buffer);
+			if (buffer.hasRemaining()) {
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return;
+			}
+			output.poll();
+		}
+		key.interestOps(SelectionKey.OP_READ);
+	}
+
+	/** Fails commands that have timed out. Called on the I/O thread.
+	 * @return The next time a command times out, or {@link Long#MAX_VALUE}. */
+	long expire (long now) {
+		long next = Long.MAX_VALUE;
+		for (Command command : queue) {
+			if (command.response == null) continue;
+			if (now - command.deadline >= 0)
+				command.timeout();
+			else
+				next = Math.min(next, command.deadline);
+		}
+		boolean head = true;
+		for (Command command : inFlight) {
+			if (!command.response.isDone()) {
+				if (now - command.deadline >= 0)
+					command.timeout();
+				else
+					next = Math.min(next, command.deadline);
+			}
+			if (head && command.response.isDone()) {
+				// The response to a timed out command must arrive before later responses can be matched.
+				long abandon = command.deadline + command.timeout;
+				if (now - abandon >= 0) {
+					disconnect(new IOException("No response after timeout: " + address));
+					return Long.MAX_VALUE;
+				}
+				next = Math.min(next, abandon);
+			}
+			head = false;
+		}
+		return next;
+	}
+
+	/** Called on the I/O thread. */
+	void read () throws IOException {
+		int count = channel.read(readBuffer);
+		if (count == -1) throw new IOException("Connection closed by device: " + address);
+		readBuffer.flip();
+		byte[] bytes = readBuffer.array();
+		for (int i = readBuffer.position(), n = readBuffer.limit(); i < n; i++)
+			read(bytes[i]);
+		// A NAK with no error code yet is complete once nothing more has arrived.
+		if (nakDigits == 0) {
+			nak(true);
+			ignoreDigits = 2;
+		}
+		readBuffer.clear();
+		flush(); // Responses free room for more commands in flight.
+	}
+
+	private void read (byte b) {
+		if (nakDigits != -1) {
+			int digit = Character.digit(b, 16);
+			if (digit != -1 && nakDigits < 2) {
+				nakCode = nakCode << 4 | digit;
+				if (++nakDigits == 2) nak(true);
+				return;
+			}
+			nak(b != TERMINATOR);
+			if (b == TERMINATOR) return;
+		}
+		if (ignoreDigits > 0) {
+			if (Character.digit(b, 16) != -1) {
+				ignoreDigits--;
+				return;
+			}
+			ignoreDigits = 0;
+		}
+		if (ignoreTerminator) {
+			ignoreTerminator = false;
+			if (b == TERMINATOR) return;
+		}
+		if (lineLength == 0) {
+			if (b == NAK) {
+				nakDigits = 0;
+				nakCode = 0;
+				return;
+			}
+			if (b == ACK) {
+				Command command = inFlight.peek();
+				if (command == null || !command.query) {
+					// A lone ACK answers a command that is not a query.
+					received();
+					ignoreTerminator = true;
+				}
+				return; // Removed from the start of a query's response.
+			}
+		}
+		if (b == TERMINATOR) {
+			received();
+			lineLength = 0;
+		} else {
+			if (lineLength == line.length) {
+				var newLine = new byte[line.length << 1];
+				System.arraycopy(line, 0, newLine, 0, lineLength);
+				line = newLine;
+			}
+			line[lineLength++] = b;
+		}
+	}
+
+	/** Completes the oldest command waiting for a response with the received line. */
+	private void received () {
+		Command command = inFlight.poll();
+		String value = new String(line, 0, lineLength, US_ASCII);
+		if (command != null && command.response != null)
+			command.response.complete(value); // Ignored if it timed out.
+		else
+			unsolicited.add(value);
+	}
+
+	/** Fails the oldest command waiting for a response with the received NAK.
+	 * @param ignoreTerminator True if the NAK was not ended by a terminator. */
+	private void nak (boolean ignoreTerminator) {
+		int errorCode = nakDigits == 2 ? nakCode : 0x0B; // Command not supported or invalid argument.
+		nakDigits = -1;
+		this.ignoreTerminator = ignoreTerminator;
+		var ex = new JetiException(errorCode);
+		Command command = inFlight.poll();
+		if (command != null && command.response != null)
+			command.response.completeExceptionally(ex);
+		else
+			Log.debug("Unsolicited NAK: {} {}", address, ex.getMessage());
+	}
+
+	/** Closes the connection and fails all commands waiting for a response. Called on the I/O thread. */
+	void disconnect (Exception cause) {
+		if (cause != null) Log.warn("TCP device connection failed: " + address, cause);
+		closed = true;
+		if (key != null) key.cancel();
+		try {
+			channel.close();
+		} catch (IOException ignored) {
+		}
+		Command command;
+		while ((command = inFlight.poll()) != null)
+			command.fail(address, cause);
+		output.clear();
+		failQueued(cause);
+	}
+
+	private void failQueued (Exception cause) {
+		Command command;
+		while ((command = queue.poll()) != null)
+			if (command.response != null) command.fail(address, cause);
+	}
+
+	static private class Command {
+		final ByteBuffer bytes;
+		final CompletableFuture<String> response;
+		final long timeout, deadline;
+		final boolean query;
+
+		Command (ByteBuffer bytes, CompletableFuture<String> response, int timeout, boolean query) {
+			this.bytes = bytes;
+			this.response = response;
+			this.query = query;
+			this.timeout = timeout * 1_000_000L;
+			deadline = System.nanoTime() + this.timeout;
+		}
+
+		void timeout () {
+			response.completeExceptionally(new JetiException(JetiSDK.TIMEOUT, "Timeout waiting for response."));
+		}
+
+		void fail (String address, Exception cause) {
+			response.completeExceptionally(new JetiException(0x14, "Device not connected: " + address, cause));
+		}
+	}
+}
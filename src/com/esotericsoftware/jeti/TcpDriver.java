@@ -0,0 +1,184 @@
+
+package com.esotericsoftware.jeti;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Multiplexes many {@link TcpDevice} connections on a few I/O threads, each with a {@link Selector}. All reads, writes and
+ * timeouts for a device are handled by the I/O thread it was assigned when connected, so hundreds of devices need no more threads
+ * than the driver was created with.
+ *
+ * <pre>
+ * try (var driver = new TcpDriver(2)) {
+ * 	var devices = new ArrayList&lt;TcpDevice&gt;();
+ * 	for (String host : hosts)
+ * 		devices.add(driver.connect(host, 10001));
+ * 	var responses = devices.stream().map(device -> device.send("*PARA:SERNO?")).toList();
+ * }
+ * </pre> */
+public class TcpDriver implements AutoCloseable {
+	static private TcpDriver shared;
+
+	private final Loop[] loops;
+	private final AtomicInteger next = new AtomicInteger();
+	private volatile boolean closed;
+
+	/** Creates a driver with one I/O thread. */
+	public TcpDriver () throws IOException {
+		this(1);
+	}
+
+	public TcpDriver (int threads) throws IOException {
+		if (threads < 1) throw new IllegalArgumentException("threads must be > 0: " + threads);
+		loops = new Loop[threads];
+		try {
+			for (int i = 0; i < threads; i++)
+				loops[i] = new Loop(i);
+		} catch (IOException ex) {
+			for (Loop loop : loops) {
+				if (loop == null) continue;
+				loop.closed = true;
+				loop.selector.wakeup();
+			}
+			throw ex;
+		}
+	}
+
+	/** Returns a driver with one I/O thread that is shared by devices opened with {@link TcpDevice#open(String, int)}. */
+	static synchronized TcpDriver shared () throws IOException {
+		if (shared == null) shared = new TcpDriver(1);
+		return shared;
+	}
+
+	/** Connects to a device, blocking until connected.
+	 * @param port The device's command port, see the device manual. */
+	public TcpDevice connect (String host, int port) throws IOException {
+		if (closed) throw new IOException("Driver is closed.");
+		SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+		try {
+			Loop loop = loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+			var device = new TcpDevice(host + ":" + port, channel, loop);
+			loop.register(device);
+			return device;
+		} catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/** Closes all devices and stops the I/O threads. */
+	public void close () {
+		if (closed) return;
+		closed = true;
+		for (Loop loop : loops) {
+			if (loop == null) continue;
+			loop.closed = true;
+			loop.selector.wakeup();
+			try {
+				loop.thread.join(1000);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/** An I/O thread and its selector. */
+	static class Loop implements Runnable {
+		final Selector selector;
+		final Thread thread;
+		private final ConcurrentLinkedQueue<TcpDevice> registrations = new ConcurrentLinkedQueue<>();
+		private final ConcurrentLinkedQueue<TcpDevice> ready = new ConcurrentLinkedQueue<>();
+		private final ArrayList<TcpDevice> devices = new ArrayList<>();
+		volatile boolean closed;
+
+		Loop (int index) throws IOException {
+			selector = Selector.open();
+			thread = new Thread(this, "TcpDriver " + index);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		void register (TcpDevice device) {
+			registrations.add(device);
+			selector.wakeup();
+		}
+
+		/** Wakes the I/O thread to write the device's queued commands or close it. */
+		void ready (TcpDevice device) {
+			ready.add(device);
+			selector.wakeup();
+		}
+
+		public void run () {
+			try {
+				while (!closed) {
+					long now = System.nanoTime();
+					long wait = Long.MAX_VALUE;
+					for (int i = devices.size() - 1; i >= 0; i--) {
+						TcpDevice device = devices.get(i);
+						long deadline = device.expire(now);
+						if (device.isClosed()) {
+							devices.remove(i);
+							device.disconnect(null);
+						} else if (deadline != Long.MAX_VALUE) //
+							wait = Math.min(wait, deadline - now);
+					}
+					if (wait == Long.MAX_VALUE)
+						selector.select();
+					else
+						selector.select(Math.max(1, (wait + 999_999) / 1_000_000));
+					if (closed) break;
+
+					TcpDevice device;
+					while ((device = registrations.poll()) != null) {
+						try {
+							device.key = device.channel.register(selector, SelectionKey.OP_READ, device);
+							devices.add(device);
+							device.flush();
+						} catch (IOException ex) {
+							device.disconnect(ex);
+						}
+					}
+					while ((device = ready.poll()) != null) {
+						if (device.key == null || device.isClosed()) continue;
+						try {
+							device.flush();
+						} catch (IOException ex) {
+							device.disconnect(ex);
+						}
+					}
+
+					for (SelectionKey key : selector.selectedKeys()) {
+						device = (TcpDevice)key.attachment();
+						try {
+							if (key.isValid() && key.isWritable()) device.flush();
+							if (key.isValid() && key.isReadable()) device.read();
+						} catch (IOException ex) {
+							device.disconnect(ex);
+						}
+					}
+					selector.selectedKeys().clear();
+				}
+			} catch (IOException | ClosedSelectorException ex) {
+				if (!closed) Log.error("TCP driver failed.", ex);
+			} finally {
+				for (TcpDevice device : devices)
+					device.disconnect(null);
+				TcpDevice device;
+				while ((device = registrations.poll()) != null)
+					device.disconnect(null);
+				try {
+					selector.close();
+				} catch (IOException ignored) {
+				}
+			}
+		}
+	}
+}
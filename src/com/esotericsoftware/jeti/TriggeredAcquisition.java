@@ -0,0 +1,212 @@
+
+package com.esotericsoftware.jeti;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/** Takes a measurement for each hardware trigger on a dedicated thread. The measurement is re-armed as soon as a trigger is read,
+ * before the frame is handed to the consumer, to keep the gap where triggers are missed short. Frames are stored in a ring buffer
+ * allocated when started, with buffers sized to the device's pixel count, so no memory is allocated per trigger. When the
+ * consumer falls behind and the ring buffer is full, triggers are still read but their frames are dropped.
+ * <p>
+ * The core must not be used by other threads while acquiring, including by {@link #close()}, which only signals the acquisition
+ * thread. That thread waits for triggers in slices of at most {@link #closeInterval} milliseconds, then cancels the
+ * measurement itself. There must be a single consumer.
+ *
+ * <pre>
+ * try (var acquisition = new TriggeredAcquisition(core, 1, 1000, 64)) {
+ * 	acquisition.start();
+ * 	while (...) {
+ * 		Frame frame = acquisition.poll(1, TimeUnit.SECONDS);
+ * 		if (frame != null) process(frame.pixels);
+ * 	}
+ * }
+ * </pre> */
+public class TriggeredAcquisition implements AutoCloseable {
+	/** The longest the acquisition thread waits for a trigger before checking if it was closed, in milliseconds. */
+	static public final int closeInterval = 100;
+
+	private final Core core;
+	private final int triggerMode, timeout, capacity;
+	private final Semaphore available = new Semaphore(0);
+	private Frame[] frames;
+	private int[] scratch;
+	private Thread thread;
+	private volatile boolean running;
+	private volatile Exception failure;
+	private long triggerPeriod;
+
+	// Producer.
+	private volatile long head, triggers, dropped, missed;
+	private long lastTime;
+
+	// Consumer.
+	private volatile long tail;
+	private Frame current;
+
+	/** @param triggerMode See {@link Core#setTrigger(int)}.
+	 * @param timeout Milliseconds to wait for each trigger before the measurement is re-armed, at most {@link #closeInterval}.
+	 *           Waiting is repeated until closed.
+	 * @param capacity The number of frames the ring buffer holds. */
+	public TriggeredAcquisition (Core core, int triggerMode, int timeout, int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+		this.core = core;
+		this.triggerMode = triggerMode;
+		this.timeout = timeout;
+		this.capacity = capacity;
+	}
+
+	/** Sets the expected time between triggers, so triggers missed while re-arming can be counted from gaps between frames.
+	 * @param triggerPeriod In milliseconds, or 0 to not count missed triggers. */
+	public void setTriggerPeriod (float triggerPeriod) {
+		this.triggerPeriod = (long)(triggerPeriod * 1_000_000);
+	}
+
+	/** Sets the trigger mode, allocates the ring buffer and starts the acquisition thread. */
+	public void start () {
+		if (thread != null) throw new IllegalStateException("Already started.");
+		core.setTrigger(triggerMode);
+		allocate(core.getPixelCount());
+		running = true;
+		thread = new Thread(this::run, "Triggered acquisition");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+		thread.start();
+	}
+
+	void allocate (int pixelCount) {
+		frames = new Frame[capacity];
+		for (int i = 0; i < capacity; i++)
+			frames[i] = new Frame(pixelCount);
+		scratch = new int[pixelCount];
+	}
+
+	private void run () {
+		int timeout = Math.min(this.timeout, closeInterval);
+		try {
+			core.prepareTriggeredMeasurement();
+			while (running) {
+				int[] pixels = claim();
+				int result = core.readTrigger(pixels, timeout);
+				if (result != JetiSDK.SUCCESS) {
+					if (!running) break; // Closed.
+					if (result != JetiSDK.TIMEOUT) throw new JetiException(result);
+					core.prepareTriggeredMeasurement();
+					continue;
+				}
+				long time = System.nanoTime();
+				if (running) core.prepareTriggeredMeasurement(); // Re-arm before publishing.
+				publish(pixels, time);
+			}
+			// Closed, cancel the measurement armed for the next trigger.
+			try {
+				core.cancelMeasurement();
+			} catch (JetiException ex) {
+				Log.debug("Unable to cancel triggered measurement.", ex);
+			}
+		} catch (Exception ex) {
+			if (running) {
+				failure = ex;
+				Log.error("Triggered acquisition failed.", ex);
+			}
+		} finally {
+			running = false;
+			available.release(); // Wake the consumer.
+		}
+	}
+
+	/** Returns the buffer the next trigger is read into: the next free frame, or a scratch buffer if the ring buffer is full. */
+	int[] claim () {
+		if (head - tail < capacity) return frames[(int)(head % capacity)].pixels;
+		return scratch;
+	}
+
+	/** Makes the frame read into the claimed buffer available to the consumer. */
+	void publish (int[] pixels, long time) {
+		if (triggerPeriod > 0 && lastTime != 0) {
+			long gaps = Math.round((time - lastTime) / (double)triggerPeriod) - 1;
+			if (gaps > 0) missed += gaps;
+		}
+		lastTime = time;
+		long sequence = triggers++;
+		if (pixels == scratch) {
+			dropped++;
+			return;
+		}
+		Frame frame = frames[(int)(head % capacity)];
+		frame.sequence = sequence;
+		frame.time = time;
+		frame.missedTriggers = missed;
+		head++;
+		available.release();
+	}
+
+	/** Returns the oldest frame not yet returned, waiting if necessary. The frame is valid until the next call to poll.
+	 * @return May be null if the timeout elapsed or acquisition has stopped.
+	 * @throws IllegalStateException if acquisition failed and all frames have been returned. */
+	public Frame poll (long timeout, TimeUnit unit) throws InterruptedException {
+		if (current != null) {
+			current = null;
+			tail++; // Release the previous frame.
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (tail == head) {
+			if (!running && thread != null) {
+				if (failure != null) throw new IllegalStateException("Triggered acquisition failed.", failure);
+				return null;
+			}
+			available.drainPermits();
+			if (tail != head) break;
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) return null;
+			available.tryAcquire(remaining, TimeUnit.NANOSECONDS);
+		}
+		return current = frames[(int)(tail % capacity)];
+	}
+
+	public boolean isRunning () {
+		return running;
+	}
+
+	/** Returns the number of triggers read, including dropped frames. */
+	public long getTriggers () {
+		return triggers;
+	}
+
+	/** Returns the number of frames dropped because the ring buffer was full. */
+	public long getDropped () {
+		return dropped;
+	}
+
+	/** Returns the number of triggers inferred as missed, see {@link #setTriggerPeriod(float)}. */
+	public long getMissedTriggers () {
+		return missed;
+	}
+
+	/** Stops acquiring and waits for the acquisition thread to cancel the measurement waiting for a trigger. */
+	public void close () {
+		if (thread == null || !running) return;
+		running = false;
+		try {
+			thread.join(closeInterval + 1000L);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** A triggered measurement. Frames are reused, so references to a frame or its pixels must not be kept after the next
+	 * poll. */
+	static public class Frame {
+		public final int[] pixels;
+		/** The number of triggers read before this one, including dropped frames. */
+		public long sequence;
+		/** When the trigger was read, see {@link System#nanoTime()}. */
+		public long time;
+		/** The number of triggers inferred as missed up to this frame. */
+		public long missedTriggers;
+
+		Frame (int pixelCount) {
+			pixels = new int[pixelCount];
+		}
+	}
+}
@@ -0,0 +1,228 @@
+
+package com.esotericsoftware.jeti;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/** Reduces continuous readings to the min, max, mean and standard deviation of luminance, CCT and each spectrum value per time
+ * window, so long-term monitoring stores a summary per window instead of every frame.
+ * <p>
+ * Windows are aligned to multiples of the slide. With a slide equal to the window the windows are tumbling, otherwise each
+ * frame is in window / slide overlapping windows. Frames are accumulated with Welford's algorithm into one pane per slide in
+ * preallocated arrays, and a window's panes are merged when it closes, so adding a frame does not allocate and its cost does
+ * not depend on the number of overlapping windows. A window closes when a frame at or after its end is added, or on
+ * {@link #flush()}. Frames older than the current pane are dropped.
+ *
+ * <pre>
+ * var aggregator = new WindowAggregator(401, 60_000, 10_000); // 1 minute windows every 10 seconds.
+ * aggregator.setListener(summary -> store.write(summary));
+ * // For each frame:
+ * aggregator.add(System.currentTimeMillis(), luminance, cct, spectrum);
+ * </pre> */
+public class WindowAggregator {
+	private final int count;
+	private final long window, slide;
+	private final Pane[] panes;
+	private final Pane merged;
+	private long pane = Long.MIN_VALUE;
+	private long late;
+	private Consumer<Summary> listener;
+
+	/** Creates an aggregator with tumbling windows.
+	 * @param count The number of spectrum values per frame, may be 0. */
+	public WindowAggregator (int count, long window) {
+		this(count, window, window);
+	}
+
+	/** @param count The number of spectrum values per frame, may be 0.
+	 * @param window The length of a window, in the unit of the frame times.
+	 * @param slide The time between the start of windows. The window must be a multiple of it. */
+	public WindowAggregator (int count, long window, long slide) {
+		if (count < 0) throw new IllegalArgumentException("count must be >= 0: " + count);
+		if (slide <= 0) throw new IllegalArgumentException("slide must be > 0: " + slide);
+		if (window < slide || window % slide != 0)
+			throw new IllegalArgumentException("window must be a multiple of slide: " + window + ", " + slide);
+		this.count = count;
+		this.window = window;
+		this.slide = slide;
+		panes = new Pane[(int)(window / slide)];
+		for (int i = 0; i < panes.length; i++)
+			panes[i] = new Pane(count + 2);
+		merged = new Pane(count + 2);
+	}
+
+	/** @param listener Called with each closed window that has frames, on the thread that added the frame or flushed. */
+	public void setListener (Consumer<Summary> listener) {
+		this.listener = listener;
+	}
+
+	/** Adds a frame.
+	 * @param luminance May be NaN if unknown.
+	 * @param cct May be NaN if unknown.
+	 * @param spectrum Must have count values, or may be null if count is 0. NaN values are skipped. */
+	public void add (long time, float luminance, float cct, float[] spectrum) {
+		if (count > 0 && (spectrum == null || spectrum.length != count))
+			throw new IllegalArgumentException("spectrum must have " + count + " values.");
+		Pane pane = pane(time);
+		if (pane == null) return;
+		pane.frames++;
+		pane.add(0, luminance);
+		pane.add(1, cct);
+		for (int i = 0; i < count; i++)
+			pane.add(i + 2, spectrum[i]);
+	}
+
+	/** Adds a frame of pixel counts, eg from {@link TriggeredAcquisition}.
+	 * @param pixels Must have at least count values. */
+	public void add (long time, float luminance, float cct, int[] pixels) {
+		if (pixels.length < count) throw new IllegalArgumentException("pixels must have at least " + count + " values.");
+		Pane pane = pane(time);
+		if (pane == null) return;
+		pane.frames++;
+		pane.add(0, luminance);
+		pane.add(1, cct);
+		for (int i = 0; i < count; i++)
+			pane.add(i + 2, pixels[i]);
+	}
+
+	/** Returns the pane for the time, closing windows that end at or before it, or null if the time is too old. */
+	private Pane pane (long time) {
+		long index = Math.floorDiv(time, slide);
+		if (pane == Long.MIN_VALUE)
+			pane = index;
+		else if (index < pane) {
+			late++;
+			return null;
+		} else
+			advance(index);
+		return panes[Math.floorMod(index, panes.length)];
+	}
+
+	/** Closes windows until the pane index is current. */
+	private void advance (long index) {
+		while (pane < index) {
+			emit(pane);
+			pane++;
+			panes[Math.floorMod(pane, panes.length)].clear();
+			if (index - pane > panes.length && empty()) pane = index; // Skip the gap.
+		}
+	}
+
+	private boolean empty () {
+		for (Pane pane : panes)
+			if (pane.frames > 0) return false;
+		return true;
+	}
+
+	/** Emits the window that ends with the pane, if it has frames. */
+	private void emit (long lastPane) {
+		merged.clear();
+		for (int i = 0; i < panes.length; i++)
+			merged.merge(panes[Math.floorMod(lastPane - i, panes.length)]);
+		if (merged.frames == 0 || listener == null) return;
+
+		float[] min = new float[count], max = new float[count], mean = new float[count], deviation = new float[count];
+		for (int i = 0; i < count; i++) {
+			int c = i + 2;
+			boolean empty = merged.n[c] == 0;
+			min[i] = empty ? Float.NaN : merged.min[c];
+			max[i] = empty ? Float.NaN : merged.max[c];
+			mean[i] = (float)merged.mean(c);
+			deviation[i] = (float)merged.standardDeviation(c);
+		}
+		long end = (lastPane + 1) * slide;
+		listener.accept(new Summary(end - window, end, merged.frames, merged.stats(0), merged.stats(1), min, max, mean,
+			deviation));
+	}
+
+	/** Closes all windows that have frames, including those that have not ended. The next frame starts new windows. */
+	public void flush () {
+		if (pane == Long.MIN_VALUE) return;
+		advance(pane + panes.length);
+		for (Pane pane : panes)
+			pane.clear();
+		pane = Long.MIN_VALUE;
+	}
+
+	/** Returns the number of frames dropped because they were older than the current pane. */
+	public long getLateCount () {
+		return late;
+	}
+
+	/** Welford accumulators for the frames in one slide. Channel 0 is luminance, 1 is CCT, then the spectrum. */
+	static private class Pane {
+		int frames;
+		final int[] n;
+		final double[] mean, m2;
+		final float[] min, max;
+
+		Pane (int channels) {
+			n = new int[channels];
+			mean = new double[channels];
+			m2 = new double[channels];
+			min = new float[channels];
+			max = new float[channels];
+			clear();
+		}
+
+		void clear () {
+			frames = 0;
+			Arrays.fill(n, 0);
+			Arrays.fill(mean, 0);
+			Arrays.fill(m2, 0);
+			Arrays.fill(min, Float.POSITIVE_INFINITY);
+			Arrays.fill(max, Float.NEGATIVE_INFINITY);
+		}
+
+		void add (int c, float value) {
+			if (Float.isNaN(value)) return;
+			int n = ++this.n[c];
+			double delta = value - mean[c];
+			mean[c] += delta / n;
+			m2[c] += delta * (value - mean[c]);
+			if (value < min[c]) min[c] = value;
+			if (value > max[c]) max[c] = value;
+		}
+
+		/** Adds another pane's frames, with Chan's parallel form of Welford's algorithm. */
+		void merge (Pane other) {
+			if (other.frames == 0) return;
+			frames += other.frames;
+			for (int c = 0, channels = n.length; c < channels; c++) {
+				int nb = other.n[c];
+				if (nb == 0) continue;
+				int na = n[c], total = na + nb;
+				double delta = other.mean[c] - mean[c];
+				mean[c] += delta * nb / total;
+				m2[c] += other.m2[c] + delta * delta * ((double)na * nb / total);
+				n[c] = total;
+				if (other.min[c] < min[c]) min[c] = other.min[c];
+				if (other.max[c] > max[c]) max[c] = other.max[c];
+			}
+		}
+
+		double mean (int c) {
+			return n[c] == 0 ? Double.NaN : mean[c];
+		}
+
+		/** Returns the sample standard deviation, 0 for one value. */
+		double standardDeviation (int c) {
+			if (n[c] == 0) return Double.NaN;
+			return n[c] == 1 ? 0 : Math.sqrt(m2[c] / (n[c] - 1));
+		}
+
+		Stats stats (int c) {
+			if (n[c] == 0) return new Stats(0, Float.NaN, Float.NaN, Float.NaN, Float.NaN);
+			return new Stats(n[c], min[c], max[c], (float)mean(c), (float)standardDeviation(c));
+		}
+	}
+
+	/** @param count The number of values, which excludes NaN. */
+	public record Stats (int count, float min, float max, float mean, float standardDeviation) {}
+
+	/** The statistics of one window. Spectrum values that were NaN in every frame are NaN.
+	 * @param start The start of the window, inclusive.
+	 * @param end The end of the window, exclusive. */
+	public record Summary (long start, long end, int frames, Stats luminance, Stats cct, float[] spectrumMin, float[] spectrumMax,
+		float[] spectrumMean, float[] spectrumStandardDeviation) {}
+}
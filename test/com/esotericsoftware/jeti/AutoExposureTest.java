@@ -0,0 +1,61 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class AutoExposureTest extends JetiTest {
+	@Test
+	@DisplayName("Converge in few exposures for dim, bright and saturated sources")
+	void testConverge () {
+		var autoExposure = new AutoExposure(null);
+		autoExposure.setIntegrationTimeRange(0.1f, 10000);
+		// Percent per millisecond of integration time, with a 5% dark offset. The offset is unknown for the first source.
+		assertTrue(exposures(autoExposure, 10, 0.5f) <= 3);
+		// Then the first exposure predicts the integration time, and the second confirms it.
+		assertTrue(exposures(autoExposure, 10, 1) <= 2);
+		assertTrue(exposures(autoExposure, 10, 2) <= 2);
+		assertTrue(exposures(autoExposure, 100, 0.1f) <= 2);
+		assertTrue(exposures(autoExposure, 1, 7) <= 2);
+		assertTrue(exposures(autoExposure, 100, 0.3f) <= 2);
+		// A first exposure within 1% of the dark offset is below the resolution of the level.
+		assertTrue(exposures(autoExposure, 10, 0.05f) <= 3);
+		// A saturated exposure only gives the direction.
+		assertTrue(exposures(autoExposure, 100, 40) <= 4);
+		// Warm started from a similar source.
+		assertEquals(1, exposures(autoExposure, 160, 0.48f));
+	}
+
+	@Test
+	@DisplayName("Stop at the integration time limits")
+	void testClamp () {
+		var autoExposure = new AutoExposure(null);
+		autoExposure.setIntegrationTimeRange(1, 100);
+		autoExposure.start();
+		assertEquals(100, autoExposure.next(50, percent(50, 0.0001f)));
+		assertEquals(100, autoExposure.next(100, percent(100, 0.0001f)));
+		autoExposure.start();
+		assertEquals(1, autoExposure.next(1, 100));
+	}
+
+	/** Returns the number of exposures to converge on a simulated detector. */
+	private int exposures (AutoExposure autoExposure, float time, float percentPerMillisecond) {
+		autoExposure.start();
+		for (int exposures = 1; exposures <= 10; exposures++) {
+			int percent = percent(time, percentPerMillisecond);
+			float next = autoExposure.next(time, percent);
+			if (next == time) {
+				assertEquals(80, percent, 10);
+				return exposures;
+			}
+			time = next;
+		}
+		return fail("Did not converge.");
+	}
+
+	private int percent (float time, float percentPerMillisecond) {
+		return (int)Math.min(100, 5 + time * percentPerMillisecond);
+	}
+}
@@ -0,0 +1,64 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.jeti.CallStatistics.FunctionSnapshot;
+
+public class CallStatisticsTest extends JetiTest {
+	@Test
+	@DisplayName("Histogram buckets cover every value")
+	void testBuckets () {
+		for (int i = 0; i < LatencyHistogram.bucketCount; i++) {
+			assertEquals(i, LatencyHistogram.index(LatencyHistogram.lowestValue(i)));
+			assertEquals(i, LatencyHistogram.index(LatencyHistogram.highestValue(i)));
+		}
+		assertEquals(LatencyHistogram.bucketCount - 1, LatencyHistogram.index(Long.MAX_VALUE));
+	}
+
+	@Test
+	@DisplayName("Histogram percentiles")
+	void testPercentiles () {
+		var histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++)
+			histogram.record(i * 1000L);
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(1000, snapshot.count());
+		assertEquals(1_000_000, snapshot.max());
+		assertEquals(500_500, snapshot.mean(), 0.001);
+		assertEquals(500_000, snapshot.percentile(50), 500_000 / 16);
+		assertEquals(990_000, snapshot.percentile(99), 990_000 / 16);
+		assertEquals(1_000_000, snapshot.percentile(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.snapshot().count());
+		assertEquals(0, histogram.snapshot().percentile(50));
+	}
+
+	@Test
+	@DisplayName("Record native calls and error codes")
+	void testInstrument () {
+		var device = new TestDevice();
+		device.measure(10, JetiSDK.SUCCESS);
+		assertThrows(JetiException.class, () -> device.measure(10, 0x08));
+		assertThrows(JetiException.class, () -> device.measure(10, 0x08));
+		assertThrows(JetiException.class, () -> device.measure(10, 0x0E));
+		device.isMeasuring();
+
+		CallStatistics statistics = device.getCallStatistics();
+		FunctionSnapshot snapshot = statistics.snapshot("JETI_Measure");
+		assertEquals(4, snapshot.calls());
+		assertEquals(3, snapshot.errorCount());
+		assertEquals(Map.of(0x08, 2L, 0x0E, 1L), snapshot.errors());
+		assertEquals(Map.of(0x08, 2L, 0x0E, 1L), statistics.errors());
+		assertEquals(1, statistics.snapshot("JETI_MeasureStatus").calls());
+		assertEquals(5, statistics.calls());
+		assertEquals(0x0E, statistics.getLastError());
+		assertNull(statistics.snapshot("JETI_Other"));
+	}
+}
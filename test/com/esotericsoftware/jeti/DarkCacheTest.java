@@ -0,0 +1,151 @@
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.FloatByReference;
+import com.sun.jna.ptr.IntByReference;
+
+public class DarkCacheTest extends JetiTest {
+	private int darks, temperatureReads;
+	private float temperature = 25;
+
+	private final SpectroEx spectroEx = new SpectroEx(() -> TestDevice.library(SpectroExLibrary.class, Map.of( //
+		"JETI_StartDarkEx", args -> {
+			darks++;
+			return JetiSDK.SUCCESS;
+		}, //
+		"JETI_SpectroStatusEx", args -> {
+			((IntByReference)args[1]).setValue(0);
+			return JetiSDK.SUCCESS;
+		}, //
+		"JETI_DarkWaveEx", args -> {
+			Arrays.fill((float[])args[4], darks);
+			return JetiSDK.SUCCESS;
+		}, //
+		"JETI_LightWaveEx", args -> {
+			Arrays.fill((float[])args[4], 10);
+			return JetiSDK.SUCCESS;
+		}, //
+		"JETI_PixelCountEx", args -> {
+			((IntByReference)args[1]).setValue(4);
+			return JetiSDK.SUCCESS;
+		})), new Pointer(0x1234));
+
+	private final Core core = new Core(() -> TestDevice.library(CoreLibrary.class, Map.of( //
+		"JETI_GetTemperature", args -> {
+			temperatureReads++;
+			((FloatByReference)args[1]).setValue(temperature);
+			return JetiSDK.SUCCESS;
+		})), new Pointer(0x1234));
+
+	@Test
+	@DisplayName("Cache a dark for each integration time, averaging and wavelength range")
+	void testKey () {
+		var cache = new DarkCache(spectroEx, null, 0.5f, Long.MAX_VALUE);
+		float[] dark = cache.getDarkWaveData(100, 1, 380, 780, 1);
+		assertEquals(401, dark.length);
+		assertSame(dark, cache.getDarkWaveData(100, 1, 380, 780, 1));
+		assertEquals(1, darks);
+		assertEquals(1, cache.getHits());
+
+		cache.getDarkWaveData(200, 1, 380, 780, 1);
+		cache.getDarkWaveData(100, 2, 380, 780, 1);
+		cache.getDarkWaveData(100, 1, 400, 780, 1);
+		cache.getDarkWaveData(100, 1, 380, 780, 5);
+		assertEquals(4, cache.getDarkPixelData(100, 1).length);
+		assertEquals(6, darks);
+		assertEquals(6, cache.getMisses());
+
+		cache.invalidate();
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		assertEquals(7, darks);
+	}
+
+	@Test
+	@DisplayName("Measure a dark again when the cached dark is too old")
+	void testMaxAge () {
+		var cache = new DarkCache(spectroEx, null, 0.5f, -1);
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		assertEquals(2, darks);
+		cache.setMaxAge(Long.MAX_VALUE);
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		assertEquals(2, darks);
+	}
+
+	@Test
+	@DisplayName("Discard expired and least recently used darks")
+	void testEviction () {
+		var cache = new DarkCache(spectroEx, null, 0.5f, Long.MAX_VALUE);
+		cache.setMaxEntries(2);
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		cache.getDarkWaveData(200, 1, 380, 780, 1);
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		cache.getDarkWaveData(300, 1, 380, 780, 1);
+		assertEquals(2, cache.getSize());
+		assertEquals(3, darks);
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		assertEquals(3, darks);
+		cache.getDarkWaveData(200, 1, 380, 780, 1);
+		assertEquals(4, darks);
+
+		cache.setMaxEntries(1);
+		assertEquals(1, cache.getSize());
+
+		// Measuring a dark discards the darks which have expired.
+		cache.setMaxEntries(8);
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		assertEquals(2, cache.getSize());
+		cache.setMaxAge(-1);
+		cache.getDarkWaveData(300, 1, 380, 780, 1);
+		assertEquals(1, cache.getSize());
+	}
+
+	@Test
+	@DisplayName("Measure a dark again when the temperature drifts")
+	void testTemperatureDrift () {
+		var cache = new DarkCache(spectroEx, core, 0.5f, Long.MAX_VALUE);
+		cache.setTemperatureInterval(-1);
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		temperature = 25.4f;
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		assertEquals(1, darks);
+		temperature = 26;
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		assertEquals(2, darks);
+		temperature = 25;
+		cache.setMaxTemperatureDrift(2);
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		assertEquals(2, darks);
+		assertEquals(4, temperatureReads);
+	}
+
+	@Test
+	@DisplayName("Read the temperature at most once per interval")
+	void testTemperatureInterval () {
+		var cache = new DarkCache(spectroEx, core, 0.5f, Long.MAX_VALUE);
+		cache.setTemperatureInterval(Long.MAX_VALUE);
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		temperature = 30;
+		cache.getDarkWaveData(100, 1, 380, 780, 1);
+		assertEquals(1, temperatureReads);
+		assertEquals(1, darks);
+	}
+
+	@Test
+	@DisplayName("Subtract the cached dark from light measurements")
+	void testMeasureLight () throws InterruptedException {
+		var cache = new DarkCache(spectroEx, null, 0.5f, Long.MAX_VALUE);
+		float[] light = cache.measureLight(100, 1, 380, 780, 1, null);
+		for (float value : light)
+			assertEquals(9, value);
+		assertEquals(1, darks);
+	}
+}
@@ -0,0 +1,79 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.jeti.Core.CorrectionRange;
+import com.esotericsoftware.jeti.Core.WavelengthRange;
+import com.esotericsoftware.jeti.DeviceConfiguration.Field;
+import com.esotericsoftware.jeti.DeviceConfiguration.Layout;
+
+public class DeviceConfigurationTest extends JetiTest {
+	static private final Layout layout = new Layout(ByteOrder.LITTLE_ENDIAN) //
+		.with(Field.pixelCount, 0) //
+		.with(Field.borderMin, 6) //
+		.with(Field.borderMax, 7) //
+		.with(Field.distance, 16) //
+		.with(Field.triggerTimeout, 20) //
+		.with(Field.correctionStatus, 23) //
+		.with(Field.correctionStart, 24) //
+		.with(Field.correctionEnd, 28) //
+		.with(Field.integrationTime, 44) //
+		.with(Field.average, 56) //
+		.with(Field.wavelengthBegin, 60) //
+		.with(Field.wavelengthEnd, 64) //
+		.with(Field.wavelengthStep, 68);
+
+	@Test
+	@DisplayName("Decode the parameter block with a layout")
+	void testDecode () {
+		ByteBuffer block = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+		block.putInt(0, 1024);
+		block.put(6, (byte)2).put(7, (byte)98);
+		block.putInt(16, 500);
+		block.putShort(20, (short)3000);
+		block.put(23, (byte)1);
+		block.putInt(24, 380).putInt(28, 780);
+		block.putFloat(44, 12.5f);
+		block.putShort(56, (short)4);
+		block.putInt(60, 380).putInt(64, 780).putInt(68, 5);
+
+		var configuration = new DeviceConfiguration(block.array(), layout);
+		assertEquals(1024, configuration.getPixelCount());
+		assertEquals(2, configuration.getBorder().min());
+		assertEquals(98, configuration.getBorder().max());
+		assertEquals(500, configuration.getDistance());
+		assertEquals(3000, configuration.getTriggerTimeout());
+		assertTrue(configuration.getCorrectionStatus());
+		assertEquals(new CorrectionRange(380, 780), configuration.getCorrectionRange());
+		assertEquals(12.5f, configuration.getIntegrationTime());
+		assertEquals(4, configuration.getAverage());
+		assertEquals(new WavelengthRange(380, 780, 5), configuration.getWavelengthRange());
+		assertTrue(configuration.toString().contains("distance=500"));
+
+		assertThrows(IllegalArgumentException.class, () -> configuration.getFloat(Field.distance));
+		assertFalse(configuration.has(Field.fit));
+		assertThrows(IllegalArgumentException.class, configuration::getFit);
+		assertFalse(new DeviceConfiguration(new byte[16], layout).has(Field.distance));
+	}
+
+	@Test
+	@DisplayName("Adjust the layout")
+	void testLayout () {
+		ByteBuffer block = ByteBuffer.allocate(256).order(ByteOrder.BIG_ENDIAN);
+		block.putInt(100, 750);
+		Layout moved = layout.with(Field.distance, 100).without(Field.pixelCount).order(ByteOrder.BIG_ENDIAN);
+		var configuration = new DeviceConfiguration(block.array(), moved);
+		assertEquals(750, configuration.getDistance());
+		assertFalse(configuration.has(Field.pixelCount));
+		assertTrue(configuration.has(Field.average));
+		assertThrows(IllegalArgumentException.class, configuration::getPixelCount);
+		assertEquals(16, layout.offsets[Field.distance.ordinal()]);
+	}
+}
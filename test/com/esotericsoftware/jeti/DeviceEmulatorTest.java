@@ -0,0 +1,72 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class DeviceEmulatorTest extends JetiTest {
+	@Test
+	@DisplayName("Emulate many devices with latency and jitter")
+	void testDevices () throws Exception {
+		try (var emulator = new DeviceEmulator(0); var driver = new TcpDriver(2)) {
+			emulator.setLatency(2, 5);
+			emulator.setPixelCount(256);
+			emulator.start();
+
+			var devices = new ArrayList<TcpDevice>();
+			for (int i = 0; i < 100; i++)
+				devices.add(driver.connect("localhost", emulator.getPort()));
+			var serials = new ArrayList<CompletableFuture<String>>();
+			for (TcpDevice device : devices)
+				serials.add(device.send("*PARA:SERNO?"));
+			var unique = new HashSet<String>();
+			for (CompletableFuture<String> serial : serials)
+				unique.add(TcpDevice.get(serial, 5000));
+			assertEquals(100, unique.size());
+
+			TcpDevice device = devices.get(0);
+			// Pipelined responses stay in order despite jitter.
+			CompletableFuture<String> tint = device.send("*CONF:TINT 5");
+			CompletableFuture<String> measure = device.send("*MEAS:LIGHT 5 2");
+			CompletableFuture<String> pixels = device.send("*FETCH:LIGHT?");
+			CompletableFuture<String> pixelCount = device.send("*PARA:PIX?");
+			assertEquals("", TcpDevice.get(tint, 5000));
+			assertEquals("", TcpDevice.get(measure, 5000));
+			assertEquals(256, TcpDevice.get(pixels, 5000).split(",").length);
+			assertEquals("256", TcpDevice.get(pixelCount, 5000));
+			assertEquals(401, device.sendCommand("*FETCH:SPRAD?", 5000).split(",").length);
+
+			var ex = assertThrows(JetiException.class, () -> device.sendCommand("*BOGUS", 5000));
+			assertEquals(0x0B, ex.getErrorCode());
+		}
+	}
+
+	@Test
+	@DisplayName("Limit bandwidth and inject faults")
+	void testFaults () throws Exception {
+		try (var emulator = new DeviceEmulator(0); var driver = new TcpDriver()) {
+			emulator.setBaudRate(9600);
+			emulator.start();
+			TcpDevice device = driver.connect("localhost", emulator.getPort());
+
+			// 25 bytes at 960 bytes per second.
+			long start = System.nanoTime();
+			device.sendCommand("*IDN?", 5000);
+			assertTrue(System.nanoTime() - start >= 25_000_000L);
+
+			emulator.setFaults(0, 1);
+			var ex = assertThrows(JetiException.class, () -> device.sendCommand("*IDN?", 5000));
+			assertEquals(0x0E, ex.getErrorCode());
+
+			emulator.setFaults(1, 0);
+			ex = assertThrows(JetiException.class, () -> device.sendCommand("*IDN?", 50));
+			assertEquals(JetiSDK.TIMEOUT, ex.getErrorCode());
+		}
+	}
+}
@@ -0,0 +1,69 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.jna.Pointer;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class DeviceEventsTest extends JetiTest {
+	@Test
+	@DisplayName("Record native call and measurement events")
+	void testEvents () throws Exception {
+		Path file = Files.createTempFile("jeti", ".jfr");
+		try (var recording = new Recording()) {
+			recording.enable("com.esotericsoftware.jeti.NativeCall");
+			recording.enable("com.esotericsoftware.jeti.Measurement");
+			recording.start();
+
+			var device = new TestDevice();
+			device.measure(25, JetiSDK.SUCCESS);
+			device.isMeasuring();
+			assertThrows(JetiException.class, () -> device.measure(50, 0x0E));
+
+			// The serial of a device opened by number is not read to record an event.
+			var core = new Core( () -> TestDevice.library(CoreLibrary.class, Map.of()), new Pointer(0x1234));
+			core.serialFrom(0, deviceNumber -> {
+				throw new AssertionError("The serial was read.");
+			});
+			core.fetchDark(100);
+
+			recording.stop();
+			recording.dump(file);
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			List<RecordedEvent> calls = events.stream()
+				.filter(event -> event.getEventType().getName().equals("com.esotericsoftware.jeti.NativeCall")).toList();
+			List<RecordedEvent> measurements = events.stream()
+				.filter(event -> event.getEventType().getName().equals("com.esotericsoftware.jeti.Measurement")).toList();
+
+			assertEquals(4, calls.size());
+			assertEquals("TEST1234", calls.get(0).getString("deviceSerial"));
+			assertEquals("JETI_Measure", calls.get(0).getString("function"));
+			assertEquals(0x0E, calls.get(2).getInt("errorCode"));
+			assertEquals(0, calls.get(0).getInt("bytes"));
+			assertEquals("JETI_FetchDark", calls.get(3).getString("function"));
+			assertNull(calls.get(3).getString("deviceSerial"));
+			assertEquals(400, calls.get(3).getInt("bytes"));
+
+			assertEquals(2, measurements.size());
+			assertEquals(25, measurements.get(0).getFloat("integrationTime"));
+			assertEquals(0, measurements.get(0).getInt("errorCode"));
+			assertEquals(50, measurements.get(1).getFloat("integrationTime"));
+			assertEquals(0x0E, measurements.get(1).getInt("errorCode"));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
@@ -0,0 +1,86 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+
+public class DeviceMonitorTest extends JetiTest {
+	@Test
+	@DisplayName("Register an MBean while a device is open")
+	void testRegister () throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		var name = new ObjectName("com.esotericsoftware.jeti:type=TestDevice,handle=1234");
+		DeviceMonitor.enabled = true;
+		try {
+			var device = new TestDevice();
+			assertTrue(server.isRegistered(name));
+			new Core(device);
+			assertFalse(server.isRegistered(new ObjectName("com.esotericsoftware.jeti:type=Core,handle=1234")));
+
+			assertThrows(JetiException.class, () -> device.measure(10, 0x0E));
+			device.measure(10, JetiSDK.SUCCESS);
+			device.monitorQueue("frames", () -> 3);
+
+			DeviceMonitorMXBean monitor = JMX.newMXBeanProxy(server, name, DeviceMonitorMXBean.class);
+			assertEquals("TestDevice", monitor.getType());
+			assertEquals("TEST1234", monitor.getSerial());
+			assertEquals(2, monitor.getCalls());
+			assertEquals(2, monitor.getMeasurements());
+			assertEquals(0x0E, monitor.getLastErrorCode());
+			assertEquals("Device busy", monitor.getLastErrorMessage());
+			assertEquals("JETI_Measure", monitor.getLastErrorFunction());
+			assertEquals(Map.of("0xe Device busy", 1L), monitor.getErrorCounts());
+			assertEquals(Map.of("frames", 3), monitor.getQueueDepths());
+			assertTrue(monitor.getLatencyMax().containsKey("JETI_Measure"));
+			assertTrue(Float.isNaN(monitor.getTemperature()));
+
+			monitor.resetStatistics();
+			assertEquals(0, monitor.getCalls());
+
+			device.close();
+			assertFalse(server.isRegistered(name));
+		} finally {
+			DeviceMonitor.enabled = false;
+		}
+	}
+
+	@Test
+	@DisplayName("Unregister the MBean when closing fails")
+	void testCloseFailure () throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		var name = new ObjectName("com.esotericsoftware.jeti:type=TestDevice,handle=1234");
+		DeviceMonitor.enabled = true;
+		try {
+			var device = new TestDevice(new TestDevice.TestLibrary() {
+				public int JETI_Measure (Pointer handle, float integrationTime, int result) {
+					return result;
+				}
+
+				public int JETI_MeasureStatus (Pointer handle, IntByReference status) {
+					return JetiSDK.SUCCESS;
+				}
+
+				public int JETI_Close (Pointer handle) {
+					return 0x0E;
+				}
+			});
+			assertTrue(server.isRegistered(name));
+			assertThrows(JetiException.class, device::close);
+			assertFalse(server.isRegistered(name));
+		} finally {
+			DeviceMonitor.enabled = false;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.jeti.DevicePool.Lease;
+
+public class DevicePoolTest extends JetiTest {
+	@Test
+	@DisplayName("Tenants take turns")
+	void testFairness () throws Exception {
+		try (var pool = new DevicePool<>(1, i -> new TestDevice())) {
+			pool.setHealthCheck(lease -> true);
+			Lease<TestDevice> first = pool.acquire("a", 1, TimeUnit.SECONDS);
+			List<String> order = Collections.synchronizedList(new ArrayList<>());
+			var threads = new ArrayList<Thread>();
+			for (String tenant : new String[] {"a", "a", "a", "b"}) {
+				threads.add(Thread.startVirtualThread( () -> {
+					try (Lease<TestDevice> lease = pool.acquire(tenant, 5, TimeUnit.SECONDS)) {
+						order.add(lease.getTenant());
+					} catch (InterruptedException ignored) {
+					}
+				}));
+				while (pool.getWaitingCount() < threads.size())
+					Thread.sleep(1);
+			}
+			first.close();
+			for (Thread thread : threads)
+				thread.join();
+			assertEquals(List.of("a", "b", "a", "a"), order);
+			assertEquals(1, pool.getIdleCount());
+		}
+	}
+
+	@Test
+	@DisplayName("Limit the leases a tenant holds at once")
+	void testQuota () throws Exception {
+		try (var pool = new DevicePool<>(2, i -> new TestDevice())) {
+			pool.setHealthCheck(lease -> true);
+			pool.setQuota("a", 1);
+			Lease<TestDevice> lease = pool.acquire("a", 1, TimeUnit.SECONDS);
+			assertNull(pool.acquire("a", 20, TimeUnit.MILLISECONDS));
+			assertEquals(0, pool.getWaitingCount());
+			try (Lease<TestDevice> other = pool.acquire("b", 1, TimeUnit.SECONDS)) {
+				assertNotNull(other);
+			}
+			lease.close();
+			assertThrows(IllegalStateException.class, lease::getDevice);
+			try (Lease<TestDevice> again = pool.acquire("a", 1, TimeUnit.SECONDS)) {
+				assertNotNull(again.getDevice());
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Recycle devices that fail the health check or are held too long")
+	void testRecycle () throws Exception {
+		var opened = new AtomicInteger();
+		var healthy = new AtomicInteger(1);
+		try (var pool = new DevicePool<>(1, i -> {
+			opened.incrementAndGet();
+			return new TestDevice();
+		})) {
+			pool.setHealthCheck(lease -> !lease.getDevice().isMeasuring() && healthy.get() == 1);
+			Lease<TestDevice> lease = pool.acquire("a", 1, TimeUnit.SECONDS);
+			TestDevice device = lease.getDevice();
+			lease.close();
+			lease = pool.acquire("a", 1, TimeUnit.SECONDS);
+			assertSame(device, lease.getDevice());
+			assertEquals(2, lease.getLeaseCount());
+
+			healthy.set(0);
+			lease.close();
+			lease = pool.acquire("a", 1, TimeUnit.SECONDS);
+			assertNotSame(device, lease.getDevice());
+			assertTrue(device.isClosed());
+			assertEquals(2, opened.get());
+			assertEquals(1, pool.getRecycledCount());
+
+			pool.setLeaseTimeout(20);
+			lease.close(); // Recycled, unhealthy.
+			healthy.set(1);
+			Lease<TestDevice> held = pool.acquire("a", 1, TimeUnit.SECONDS);
+			TestDevice heldDevice = held.getDevice();
+			for (int i = 0; i < 100 && held.state != Lease.expired; i++)
+				Thread.sleep(10);
+			assertThrows(IllegalStateException.class, held::getDevice);
+			// The holder may still be using the device, so it stays open and out of the pool until the lease is closed.
+			assertFalse(heldDevice.isClosed());
+			assertNull(pool.acquire("b", 50, TimeUnit.MILLISECONDS));
+			pool.setLeaseTimeout(0);
+			held.close();
+			assertTrue(heldDevice.isClosed());
+			Lease<TestDevice> next = pool.acquire("b", 1, TimeUnit.SECONDS);
+			assertNotSame(heldDevice, next.getDevice());
+			held.close(); // Ignored.
+			next.close();
+			assertEquals(4, opened.get());
+			assertEquals(3, pool.getRecycledCount());
+		}
+	}
+
+	@Test
+	@DisplayName("Close a recycled device even if the pool closes before it is reopened")
+	void testCloseWhileRecycling () throws Exception {
+		var pool = new DevicePool<>(1, i -> new TestDevice());
+		pool.setHealthCheck(lease -> false);
+		Lease<TestDevice> lease = pool.acquire("a", 1, TimeUnit.SECONDS);
+		TestDevice device = lease.getDevice();
+		lease.close();
+		pool.close();
+		assertTrue(device.isClosed());
+	}
+}
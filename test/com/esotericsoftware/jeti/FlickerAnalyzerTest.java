@@ -0,0 +1,88 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class FlickerAnalyzerTest extends JetiTest {
+	@Test
+	@DisplayName("Compute the metrics of sinusoidal flicker")
+	void testSine () {
+		var analyzer = new FlickerAnalyzer(100_000);
+		float sampleRate = 20000;
+		float[] samples = sine(100_000, sampleRate, 100, 100, 0.5f);
+		analyzer.analyze(samples, samples.length, sampleRate);
+		assertEquals(50, analyzer.getPercentFlicker(), 0.01);
+		assertEquals(0.5 / Math.PI, analyzer.getFlickerIndex(), 0.001);
+		assertEquals(100, analyzer.getFrequency(), 0.05);
+		double threshold = 1 / (1 + Math.exp(-0.00518 * (100 - 306.6))) + 20 * Math.exp(-100 / 27.12);
+		assertEquals(0.5 / threshold, analyzer.getSVM(), 0.5 / threshold * 0.03);
+		assertTrue(analyzer.getPst() < 0.1); // 100 Hz is not visible as flicker.
+
+		// Pst reference.
+		samples = sine(60_000, 1000, 8.8f, 1000, 0.003f);
+		analyzer.analyze(samples, samples.length, 1000);
+		assertEquals(8.8, analyzer.getFrequency(), 0.01);
+		assertEquals(1, analyzer.getPst(), 0.03);
+		assertEquals(0, analyzer.getSVM(), 0.01);
+
+		// Steady light.
+		samples = sine(10_000, 1000, 10, 5, 0);
+		analyzer.analyze(samples, samples.length, 1000);
+		assertEquals(0, analyzer.getPercentFlicker());
+		assertEquals(0, analyzer.getPst(), 1e-6);
+	}
+
+	@Test
+	@DisplayName("Sum harmonics in SVM")
+	void testHarmonics () {
+		var analyzer = new FlickerAnalyzer(32768);
+		float sampleRate = 32768;
+		var samples = new float[32768];
+		for (int i = 0; i < samples.length; i++) {
+			double t = i / (double)sampleRate;
+			samples[i] = (float)(1 + 0.2 * Math.sin(2 * Math.PI * 100 * t) + 0.1 * Math.sin(2 * Math.PI * 300 * t));
+		}
+		analyzer.analyze(samples, samples.length, sampleRate);
+		double sum = 0;
+		for (double[] component : new double[][] {{100, 0.2}, {300, 0.1}}) {
+			double f = component[0];
+			double threshold = 1 / (1 + Math.exp(-0.00518 * (f - 306.6))) + 20 * Math.exp(-f / 27.12);
+			sum += Math.pow(component[1] / threshold, 3.7);
+		}
+		assertEquals(Math.pow(sum, 1 / 3.7), analyzer.getSVM(), 0.01);
+	}
+
+	@Test
+	@DisplayName("Analyze without allocating")
+	void testAllocation () {
+		var analyzer = new FlickerAnalyzer(65536);
+		float[] samples = sine(50_000, 10000, 120, 1, 0.3f);
+		var shorts = new short[50_000];
+		for (int i = 0; i < shorts.length; i++)
+			shorts[i] = (short)(samples[i] * 30000);
+		for (int i = 0; i < 3; i++) {
+			analyzer.analyze(samples, samples.length, 10000);
+			analyzer.analyze(shorts, shorts.length, 10000);
+		}
+		var threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long before = threads.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < 10; i++) {
+			analyzer.analyze(samples, samples.length, 10000);
+			analyzer.analyze(shorts, shorts.length, 10000);
+		}
+		assertTrue(threads.getCurrentThreadAllocatedBytes() - before < 1024);
+		assertEquals(30, analyzer.getPercentFlicker(), 0.1);
+	}
+
+	static float[] sine (int count, float sampleRate, float frequency, float mean, float modulation) {
+		var samples = new float[count];
+		for (int i = 0; i < count; i++)
+			samples[i] = (float)(mean * (1 + modulation * Math.sin(2 * Math.PI * frequency * i / sampleRate)));
+		return samples;
+	}
+}
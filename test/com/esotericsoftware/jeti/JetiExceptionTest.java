@@ -0,0 +1,41 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class JetiExceptionTest extends JetiTest {
+	@Test
+	@DisplayName("Shared exceptions are reused and have no stack trace")
+	void testShared () {
+		JetiException ex = JetiException.get(JetiSDK.TIMEOUT);
+		assertSame(ex, JetiException.get(JetiSDK.TIMEOUT));
+		assertEquals(JetiSDK.TIMEOUT, ex.getErrorCode());
+		assertEquals(JetiSDK.getErrorMessage(JetiSDK.TIMEOUT), ex.getMessage());
+		assertEquals(0, ex.getStackTrace().length);
+		ex.addSuppressed(new RuntimeException());
+		assertEquals(0, ex.getSuppressed().length);
+
+		JetiException unknown = JetiException.get(0x1234);
+		assertEquals(0x1234, unknown.getErrorCode());
+		assertEquals(0, unknown.getStackTrace().length);
+
+		assertThrows(IllegalArgumentException.class, () -> JetiException.get(JetiSDK.SUCCESS));
+	}
+
+	@Test
+	@DisplayName("Throw shared exceptions from failed calls when stackless")
+	void testStackless () {
+		var ex = assertThrows(JetiException.class, () -> Device.check(0x0E));
+		assertNotSame(JetiException.get(0x0E), ex);
+		assertTrue(ex.getStackTrace().length > 0);
+		JetiException.setStackless(true);
+		try {
+			assertSame(JetiException.get(0x0E), assertThrows(JetiException.class, () -> Device.check(0x0E)));
+		} finally {
+			JetiException.setStackless(false);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.jeti.Log.AsyncLogger;
+import com.esotericsoftware.jeti.Log.Logger;
+
+public class LogTest extends JetiTest {
+	@Test
+	@DisplayName("Format parameterized messages")
+	void testFormat () {
+		assertEquals("a 1 b 2 c", Log.format("a {} b {} c", 1, 2));
+		assertEquals("a 1 b null", Log.format("a {} b {}", 1, null));
+		assertEquals("no args", Log.format("no args", 1, 2));
+		assertEquals("1", Log.format("{}", 1, 2));
+	}
+
+	@Test
+	@DisplayName("Async logger preserves order")
+	void testAsyncOrder () {
+		var messages = new ArrayList<String>();
+		try (var logger = new AsyncLogger(new Collector(messages), 16)) {
+			for (int i = 0; i < 10; i++)
+				logger.log(Log.LEVEL_INFO, "message {}", i, null, null);
+		}
+		assertEquals(10, messages.size());
+		for (int i = 0; i < 10; i++)
+			assertTrue(messages.get(i).endsWith("message " + i), messages.get(i));
+	}
+
+	@Test
+	@DisplayName("Async logger drops messages when full")
+	void testAsyncDrop () throws InterruptedException {
+		var messages = new ArrayList<String>();
+		var blocked = new CountDownLatch(1);
+		var release = new CountDownLatch(1);
+		var collector = new Collector(messages) {
+			protected void print (String message) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ignored) {
+				}
+				super.print(message);
+			}
+		};
+		try (var logger = new AsyncLogger(collector, 4)) {
+			logger.log(Log.LEVEL_INFO, "first", null);
+			blocked.await();
+			for (int i = 0; i < 10; i++)
+				logger.log(Log.LEVEL_INFO, "message {}", i, null, null);
+			assertEquals(6, logger.getDropped());
+			release.countDown();
+		}
+		assertEquals(5, messages.size());
+	}
+
+	@Test
+	@DisplayName("Async logger wakes when idle")
+	void testAsyncWake () throws InterruptedException {
+		var logged = new CountDownLatch(3);
+		var collector = new Collector(new ArrayList<>()) {
+			protected void print (String message) {
+				logged.countDown();
+			}
+		};
+		try (var logger = new AsyncLogger(collector, 4)) {
+			for (int i = 0; i < 3; i++) {
+				Thread.sleep(20); // Long enough for the background thread to park.
+				logger.log(Log.LEVEL_INFO, "message", null);
+			}
+			assertTrue(logged.await(5, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	@DisplayName("Async logger passes messages to a logger's override")
+	void testAsyncOverride () {
+		var messages = new ArrayList<String>();
+		var collector = new Logger() {
+			public void log (int level, String message, Throwable ex) {
+				messages.add(level + " " + message);
+			}
+		};
+		try (var logger = new AsyncLogger(collector, 4)) {
+			logger.log(Log.LEVEL_WARN, "message {}", 1, null, null);
+			logger.log(Log.LEVEL_INFO, "message", null);
+		}
+		assertEquals(List.of(Log.LEVEL_WARN + " message 1", Log.LEVEL_INFO + " message"), messages);
+	}
+
+	static class Collector extends Logger {
+		private final List<String> messages;
+
+		Collector (List<String> messages) {
+			this.messages = messages;
+		}
+
+		protected void print (String message) {
+			synchronized (messages) {
+				messages.add(message);
+			}
+		}
+	}
+}
@@ -0,0 +1,162 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MeasurementServerTest extends JetiTest {
+	@Test
+	@DisplayName("Coalesce concurrent requests and cache within the freshness time")
+	void testCoalesce () throws Exception {
+		var measurements = new AtomicInteger();
+		try (var server = new MeasurementServer(0)) {
+			server.addDevice("a", 380, 1, () -> {
+				Thread.sleep(100);
+				int count = measurements.incrementAndGet();
+				return new float[] {count, 2, Float.NaN};
+			});
+			server.setFreshness(60000);
+			server.start();
+
+			var client = HttpClient.newHttpClient();
+			var responses = new ArrayList<CompletableFuture<HttpResponse<String>>>();
+			for (int i = 0; i < 20; i++)
+				responses.add(client.sendAsync(request(server, "/devices/a/latest"), BodyHandlers.ofString()));
+			for (var response : responses) {
+				assertEquals(200, response.get().statusCode());
+				assertTrue(response.get().body().contains("\"values\":[1.0,2.0,null]"), response.get().body());
+			}
+			assertEquals(1, measurements.get());
+
+			HttpResponse<byte[]> binary = client.send(request(server, "/devices/a/latest.bin"), BodyHandlers.ofByteArray());
+			assertEquals(1, measurements.get());
+			ByteBuffer buffer = ByteBuffer.wrap(binary.body());
+			assertTrue(buffer.getLong() > 0);
+			assertEquals(380, buffer.getInt());
+			assertEquals(1, buffer.getFloat());
+			assertEquals(3, buffer.getInt());
+			assertEquals(1, buffer.getFloat());
+
+			String body = client.send(request(server, "/devices/a/latest?maxAge=0"), BodyHandlers.ofString()).body();
+			assertTrue(body.contains("\"values\":[2.0,"), body);
+			assertEquals("[\"a\"]", client.send(request(server, "/devices"), BodyHandlers.ofString()).body());
+			assertEquals(404, client.send(request(server, "/devices/b/latest"), BodyHandlers.ofString()).statusCode());
+		}
+	}
+
+	@Test
+	@DisplayName("Respond with the error code when a measurement fails")
+	void testError () throws Exception {
+		try (var server = new MeasurementServer(0)) {
+			server.addDevice("a", 380, 1, () -> {
+				throw new JetiException(0x0E);
+			});
+			server.start();
+			HttpResponse<String> response = HttpClient.newHttpClient().send(request(server, "/devices/a/latest"),
+				BodyHandlers.ofString());
+			assertEquals(503, response.statusCode());
+			assertTrue(response.body().startsWith("{\"error\":14,"), response.body());
+		}
+	}
+
+	@Test
+	@DisplayName("Fail waiting requests when a measurement throws an error or takes too long")
+	void testSharedFailure () throws Exception {
+		var started = new CountDownLatch(1);
+		var release = new CountDownLatch(1);
+		var error = new AssertionError("Measure error.");
+		try (var server = new MeasurementServer(0)) {
+			server.addDevice("a", 380, 1, () -> {
+				started.countDown();
+				release.await();
+				throw error;
+			});
+			server.start();
+
+			var leader = CompletableFuture.runAsync( () -> {
+				try {
+					server.getLatest("a", 0);
+				} catch (InterruptedException ignored) {
+				}
+			});
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			var follower = new CompletableFuture<Throwable>();
+			var thread = new Thread( () -> {
+				try {
+					server.getLatest("a", 0);
+					follower.complete(null);
+				} catch (Throwable ex) {
+					follower.complete(ex);
+				}
+			});
+			thread.start();
+			while (thread.getState() != Thread.State.TIMED_WAITING)
+				sleep(1);
+			release.countDown();
+			assertSame(error, follower.get(5, TimeUnit.SECONDS).getCause());
+			var ex = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+			assertSame(error, ex.getCause());
+
+			// A request waiting for a measurement started by another request gives up after the measure timeout.
+			var measuring = new CountDownLatch(1);
+			var blocked = new CountDownLatch(1);
+			server.addDevice("b", 380, 1, () -> {
+				measuring.countDown();
+				blocked.await();
+				return new float[1];
+			});
+			server.setMeasureTimeout(50);
+			CompletableFuture.runAsync( () -> {
+				try {
+					server.getLatest("b", 0);
+				} catch (InterruptedException ignored) {
+				}
+			});
+			assertTrue(measuring.await(5, TimeUnit.SECONDS));
+			var timeout = assertThrows(JetiException.class, () -> server.getLatest("b", 0));
+			assertEquals(JetiSDK.TIMEOUT, timeout.getErrorCode());
+			blocked.countDown();
+		}
+	}
+
+	@Test
+	@DisplayName("Stream live spectra as server-sent events")
+	void testStream () throws Exception {
+		try (var server = new MeasurementServer(0); var stream = new SpectrumStream(380, 1, 0.01f)) {
+			stream.start( () -> {
+				Thread.sleep(10);
+				return new float[] {1, 2, 3};
+			});
+			server.addStream("a", stream);
+			server.start();
+			HttpResponse<Stream<String>> response = HttpClient.newHttpClient().send(request(server, "/devices/a/stream"),
+				BodyHandlers.ofLines());
+			assertEquals("text/event-stream", response.headers().firstValue("Content-Type").orElse(null));
+			List<String> lines = response.body().limit(8).toList();
+			assertEquals("event: key", lines.get(1));
+			assertTrue(lines.get(2).contains("\"count\":3"), lines.get(2));
+			assertEquals("event: delta", lines.get(5));
+		}
+	}
+
+	private HttpRequest request (MeasurementServer server, String path) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path)).build();
+	}
+}
@@ -0,0 +1,101 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.jeti.Pipeline.StageStatistics;
+
+public class PipelineTest extends JetiTest {
+	@Test
+	@DisplayName("Process frames in order through every stage")
+	void testPipeline () throws InterruptedException {
+		var results = new ArrayList<Float>();
+		var finished = new CountDownLatch(100);
+		var dark = new float[] {1, 1, 1};
+		var reference = new float[] {2, 2, 2};
+		var pipeline = new Pipeline(3, 3, 0, 1) //
+			.stage("acquire", frame -> {
+				if (frame.sequence >= 100) {
+					sleep(1);
+					throw new IllegalStateException("Done.");
+				}
+				Arrays.fill(frame.spectrum, frame.sequence + 1);
+			}) //
+			.stage("dark", Pipeline.subtractDark(dark)) //
+			.stage("reference", Pipeline.normalize(reference)) //
+			.stage("persist", frame -> {
+				results.add(frame.spectrum[0]);
+				finished.countDown();
+			});
+		Log.NONE();
+		try {
+			pipeline.start();
+			assertTrue(finished.await(10, TimeUnit.SECONDS));
+			pipeline.close();
+		} finally {
+			Log.TRACE();
+		}
+
+		assertEquals(100, results.size());
+		for (int i = 0; i < 100; i++)
+			assertEquals(i / 2f, results.get(i));
+
+		List<StageStatistics> statistics = pipeline.getStatistics();
+		assertEquals(4, statistics.size());
+		assertEquals("acquire", statistics.get(0).name());
+		assertEquals(100, statistics.get(0).frames());
+		assertTrue(statistics.get(0).errors() > 0);
+		for (StageStatistics stage : statistics.subList(1, 4)) {
+			assertEquals(100, stage.frames());
+			assertEquals(0, stage.errors());
+			assertEquals(0, stage.queued());
+		}
+	}
+
+	@Test
+	@DisplayName("Stop and drain the pipeline when a stage throws an error")
+	void testError () throws InterruptedException {
+		var error = new AssertionError("Stage error.");
+		var persisted = new CountDownLatch(5);
+		var pipeline = new Pipeline(3, 3, 0, 1) //
+			.stage("acquire", frame -> {}) //
+			.stage("process", frame -> {
+				if (frame.sequence == 5) throw error;
+			}) //
+			.stage("persist", frame -> persisted.countDown());
+		Log.NONE();
+		try {
+			pipeline.start();
+			assertTrue(persisted.await(10, TimeUnit.SECONDS));
+			long start = System.nanoTime();
+			while (pipeline.isRunning() && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10))
+				sleep(1);
+			assertFalse(pipeline.isRunning());
+			pipeline.close();
+		} finally {
+			Log.TRACE();
+		}
+		assertSame(error, pipeline.getFailure());
+		assertEquals(1, pipeline.getStatistics().get(1).errors());
+	}
+
+	@Test
+	@DisplayName("Subtract and divide spectra in place")
+	void testInPlace () {
+		float[] spectrum = {5, 9, 3};
+		Spectra.subtract(spectrum, new float[] {1, 1, 1}, spectrum);
+		assertArrayEquals(new float[] {4, 8, 2}, spectrum);
+		Spectra.divide(spectrum, new float[] {2, 4, 0}, spectrum);
+		assertArrayEquals(new float[] {2, 2, 0}, spectrum);
+		assertThrows(IllegalArgumentException.class, () -> Spectra.subtract(spectrum, new float[2], spectrum));
+	}
+}
@@ -0,0 +1,150 @@
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.jeti.DeviceConfiguration.Field;
+import com.esotericsoftware.jeti.DeviceConfiguration.Layout;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+
+public class ProfileTest extends JetiTest {
+	private int writes, distanceReads, distance = 700, setDistanceResult = JetiSDK.SUCCESS;
+
+	private final Core core = new Core( () -> TestDevice.library(CoreLibrary.class, Map.of( //
+		"JETI_GetDistance", args -> {
+			distanceReads++;
+			((IntByReference)args[1]).setValue(distance);
+			return JetiSDK.SUCCESS;
+		}, //
+		"JETI_SetDistance", args -> {
+			writes++;
+			if (setDistanceResult == JetiSDK.SUCCESS) distance = (Integer)args[1];
+			return setDistanceResult;
+		}, //
+		"JETI_SetTintConf", args -> {
+			writes++;
+			return JetiSDK.SUCCESS;
+		}, //
+		"JETI_SetAverConf", args -> {
+			writes++;
+			return JetiSDK.SUCCESS;
+		}, //
+		"JETI_SetSDelay", args -> {
+			writes++;
+			return JetiSDK.SUCCESS;
+		})), new Pointer(0x1234));
+
+	@Test
+	@DisplayName("Apply every setting of a profile")
+	void testApply () {
+		var profile = new Profile().wavelengthRange(380, 780, 1).maxIntegrationTime(1000).integrationTime(100).average(4)
+			.adaptation((byte)1).syncMode(false).syncFrequency(50).trigger(0).triggerTimeout((short)1000).correction(true)
+			.correctionRange(10, 20).offsetCorrectionRange(1, 5).strayLight(true).distance(500).scanDelay(2).maxAverage(8)
+			.function((byte)1).format((byte)0).pdaRow(1, 2);
+		assertEquals(Profile.Setting.values().length, profile.getValues().size());
+		assertEquals(Profile.Setting.values().length, core.apply(profile));
+		assertEquals(500, distance);
+	}
+
+	@Test
+	@DisplayName("Skip settings the shadow state knows the device has")
+	void testSkipEqual () {
+		core.setShadowEnabled(true);
+		var profile = new Profile().integrationTime(100).average(4).distance(500);
+		assertEquals(3, core.apply(profile));
+		assertEquals(0, core.apply(profile));
+		assertEquals(1, core.apply(profile.average(8)));
+		assertEquals(4, writes);
+
+		// Getters answer from the shadow state.
+		assertEquals(500, core.getDistance());
+		assertEquals(0, distanceReads);
+
+		// Settings read from the device are remembered.
+		core.clearConfiguration();
+		assertEquals(500, core.getDistance());
+		assertEquals(1, distanceReads);
+		assertEquals(0, core.apply(new Profile().distance(500)));
+	}
+
+	@Test
+	@DisplayName("Forget a setting when its write fails")
+	void testFailedWrite () {
+		ByteBuffer block = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 500);
+		Layout layout = new Layout(ByteOrder.LITTLE_ENDIAN).with(Field.distance, 0);
+		core.useConfiguration(new DeviceConfiguration(block.array(), layout));
+		core.setShadowEnabled(true);
+		core.setDistance(600);
+		assertEquals(600, core.getDistance());
+		assertNull(core.getConfiguration());
+		assertEquals(0, distanceReads);
+
+		setDistanceResult = JetiSDK.TIMEOUT;
+		assertThrows(JetiException.class, () -> core.setDistance(800));
+		// Neither the shadow state nor a snapshot answers, since the write may or may not have happened.
+		assertEquals(600, core.getDistance());
+		assertEquals(1, distanceReads);
+
+		// Without shadow state, the snapshot is discarded too.
+		core.setShadowEnabled(false);
+		core.useConfiguration(new DeviceConfiguration(block.array(), layout));
+		assertThrows(JetiException.class, () -> core.setDistance(800));
+		assertNull(core.getConfiguration());
+		assertEquals(600, core.getDistance());
+		assertEquals(2, distanceReads);
+	}
+
+	@Test
+	@DisplayName("Discard the snapshot on writes that are not settings")
+	void testOtherWrites () {
+		ByteBuffer block = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 500);
+		var configuration = new DeviceConfiguration(block.array(), new Layout(ByteOrder.LITTLE_ENDIAN).with(Field.distance, 0));
+		Runnable[] writes = {() -> core.setCalibration((byte)1), () -> core.setChannelConfig("1"),
+			() -> core.setExposureConfig((byte)1), () -> core.setDarkModeConfig((byte)1), () -> core.setCutoffStatus(true),
+			() -> core.setCorrectionCoefficients(new float[4]), () -> core.deleteCalibration(1),
+			() -> core.writeCalibration(1, "", "", 380, 780, 1, 100, new double[401])};
+		for (Runnable write : writes) {
+			core.useConfiguration(configuration);
+			write.run();
+			assertNull(core.getConfiguration());
+		}
+	}
+
+	@Test
+	@DisplayName("Verify a layout against the device rather than the shadow state")
+	void testVerify () {
+		core.setShadowEnabled(true);
+		core.setDistance(600);
+		distance = 500; // Changed by other means.
+		ByteBuffer block = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 500);
+		var configuration = new DeviceConfiguration(block.array(), new Layout(ByteOrder.LITTLE_ENDIAN).with(Field.distance, 0));
+		assertTrue(configuration.verify(core).isEmpty());
+		assertEquals(1, distanceReads);
+
+		// The shadow state is restored.
+		assertEquals(600, core.getDistance());
+		assertEquals(1, distanceReads);
+	}
+
+	@Test
+	@DisplayName("Discard the shadow state on reset and set default")
+	void testReset () {
+		core.setShadowEnabled(true);
+		var profile = new Profile().integrationTime(100).distance(500);
+		assertEquals(2, core.apply(profile));
+		core.reset();
+		assertEquals(2, core.apply(profile));
+		core.setDefault();
+		assertEquals(2, core.apply(profile));
+		core.hardReset();
+		assertEquals(2, core.apply(profile));
+		assertEquals(0, core.apply(profile));
+	}
+}
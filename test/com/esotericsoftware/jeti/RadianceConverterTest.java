@@ -0,0 +1,52 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.jeti.Core.Calibration;
+
+public class RadianceConverterTest extends JetiTest {
+	@Test
+	@DisplayName("Convert raw counts to radiance on a wavelength grid")
+	void testConvert () {
+		var values = new double[2048];
+		for (int i = 0; i <= 80; i++)
+			values[i] = 0.001 * (1 + (380 + i * 5) / 1000d);
+		var calibration = new Calibration("RAD", "", 380, 780, 5, 100, values);
+		var light = new int[1024];
+		var dark = new int[1024];
+		var reversedLight = new int[1024];
+		for (int p = 0; p < 1024; p++) {
+			light[p] = 1000 + p;
+			dark[p] = 100;
+			reversedLight[1023 - p] = light[p] - dark[p];
+		}
+
+		var converter = new RadianceConverter(calibration, new double[] {300, 0.5}, 1024, 370, 790, 0.5f);
+		assertEquals(841, converter.getCount());
+		float[] radiance = converter.convert(light, dark, 50);
+		for (int i = 0; i < radiance.length; i++) {
+			double wavelength = 370 + i * 0.5;
+			if (wavelength < 380 || wavelength > 780) {
+				assertTrue(Float.isNaN(radiance[i]), "Index: " + i);
+				continue;
+			}
+			double counts = 900 + (wavelength - 300) / 0.5;
+			double expected = counts / 50 * 100 * 0.001 * (1 + wavelength / 1000);
+			assertEquals(expected, radiance[i], expected * 1e-5, "Index: " + i);
+		}
+
+		// Wavelengths decreasing over the pixels.
+		var reversed = new RadianceConverter(calibration, new double[] {811.5, -0.5}, 1024, 370, 790, 0.5f);
+		assertArrayEquals(radiance, reversed.convert(reversedLight, null, 50), 1e-4f);
+
+		float[][] batch = converter.convert(new int[][] {light, light}, dark, 50);
+		assertArrayEquals(radiance, batch[1]);
+
+		assertThrows(IllegalArgumentException.class,
+			() -> new RadianceConverter(calibration, new double[] {300, 0.5, -0.01}, 1024, 380, 780, 1));
+	}
+}
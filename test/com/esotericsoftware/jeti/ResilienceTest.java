@@ -0,0 +1,124 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.jeti.Resilience.CircuitOpenException;
+import com.esotericsoftware.jeti.Resilience.State;
+import com.sun.jna.Pointer;
+
+public class ResilienceTest extends JetiTest {
+	@Test
+	@DisplayName("Retry transient errors, throw others immediately")
+	void testRetry () {
+		var resilience = new Resilience("test");
+		resilience.setRetry(3, 1, 5, 1000);
+		var calls = new AtomicInteger();
+		assertEquals("ok", resilience.call( () -> {
+			if (calls.incrementAndGet() < 3) throw new JetiException(0x0E, "Busy");
+			return "ok";
+		}));
+		assertEquals(3, calls.get());
+
+		calls.set(0);
+		var ex = assertThrows(JetiException.class, () -> resilience.run( () -> {
+			calls.incrementAndGet();
+			throw new JetiException(0x0D, "Invalid parameter");
+		}));
+		assertEquals(0x0D, ex.getErrorCode());
+		assertEquals(1, calls.get());
+
+		calls.set(0);
+		assertThrows(JetiException.class, () -> resilience.run( () -> {
+			calls.incrementAndGet();
+			throw new JetiException(0x08, "Timeout");
+		}));
+		assertEquals(3, calls.get());
+	}
+
+	@Test
+	@DisplayName("Open the circuit after repeated failures and close it after a successful trial")
+	void testCircuitBreaker () {
+		var resilience = new Resilience("test");
+		resilience.setRetry(1, 0, 0, 0);
+		resilience.setCircuitBreaker(3, 50);
+		var calls = new AtomicInteger();
+		Runnable failing = () -> {
+			calls.incrementAndGet();
+			throw new JetiException(0x0A, "Could not receive");
+		};
+		for (int i = 0; i < 3; i++)
+			assertThrows(JetiException.class, () -> resilience.run(failing));
+		assertEquals(State.open, resilience.getState());
+
+		// Fails fast without calling the device.
+		var ex = assertThrows(CircuitOpenException.class, () -> resilience.run(failing));
+		assertEquals(0x0A, ex.getErrorCode());
+		assertEquals(3, calls.get());
+
+		sleep(60);
+		assertEquals(State.halfOpen, resilience.getState());
+		assertThrows(JetiException.class, () -> resilience.run(failing)); // Failed trial opens it again.
+		assertEquals(4, calls.get());
+		assertEquals(State.open, resilience.getState());
+
+		sleep(60);
+		assertEquals(1, resilience.call( () -> 1));
+		assertEquals(State.closed, resilience.getState());
+	}
+
+	@Test
+	@DisplayName("Name the resilience after a device without reading its serial")
+	void testDeviceName () {
+		var core = new Core( () -> TestDevice.library(CoreLibrary.class, Map.of()), new Pointer(0x1234));
+		core.serialFrom(3, deviceNumber -> {
+			throw new AssertionError("The serial was read.");
+		});
+		var resilience = new Resilience(core);
+		resilience.setRetry(1, 0, 0, 0);
+		resilience.setCircuitBreaker(1, 60_000);
+		assertThrows(JetiException.class, () -> resilience.run( () -> {
+			throw new JetiException(0x0A, "Could not receive");
+		}));
+		var ex = assertThrows(CircuitOpenException.class, () -> resilience.run( () -> {}));
+		assertTrue(ex.getMessage().endsWith(": Core #3"), ex.getMessage());
+	}
+
+	@Test
+	@DisplayName("Throw the failure that opens the circuit without waiting to retry")
+	void testOpenWithoutBackoff () {
+		var resilience = new Resilience("test");
+		resilience.setRetry(5, 10_000, 10_000, 60_000);
+		resilience.setCircuitBreaker(1, 60_000);
+		var calls = new AtomicInteger();
+		long start = System.nanoTime();
+		var ex = assertThrows(JetiException.class, () -> resilience.run( () -> {
+			calls.incrementAndGet();
+			throw new JetiException(0x08, "Timeout");
+		}));
+		assertFalse(ex instanceof CircuitOpenException);
+		assertEquals(1, calls.get());
+		assertTrue(System.nanoTime() - start < 5_000_000_000L);
+		assertEquals(State.open, resilience.getState());
+	}
+
+	@Test
+	@DisplayName("Back off exponentially with jitter up to the maximum delay")
+	void testDelay () {
+		var resilience = new Resilience("test");
+		resilience.setRetry(10, 10, 100, 5000);
+		for (int i = 0; i < 100; i++) {
+			long delay = resilience.delay(1);
+			assertTrue(delay >= 0 && delay <= 10);
+			delay = resilience.delay(3);
+			assertTrue(delay >= 0 && delay <= 40);
+			assertTrue(resilience.delay(10) <= 100);
+		}
+	}
+}
@@ -3,6 +3,8 @@ package com.esotericsoftware.jeti;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Arrays;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -123,4 +125,34 @@ public class SpectraTest extends JetiTest {
 			Spectra.absorbance(spectrum2, spectrum1, spectrum1);
 		});
 	}
+
+	@Test
+	@DisplayName("Calculate colorimetry of known illuminants")
+	void testColorimetry () {
+		// Equal energy.
+		var flat = new float[401];
+		Arrays.fill(flat, 1);
+		Spectra.Colorimetry colorimetry = Spectra.colorimetry(flat, 380, 1);
+		assertEquals(1 / 3f, colorimetry.xy().x(), 0.0005f);
+		assertEquals(1 / 3f, colorimetry.xy().y(), 0.0005f);
+		assertEquals(683 * 106.857f, colorimetry.xyz().y(), 683 * 0.2f);
+
+		// CIE illuminant A, a Planckian radiator at 2856 K, at 5 nm and 1 nm steps.
+		for (int step : new int[] {5, 1}) {
+			var planck = new float[400 / step + 1];
+			for (int i = 0; i < planck.length; i++) {
+				double wavelength = (380 + i * step) * 1e-9;
+				planck[i] = (float)(1e-15 / (Math.pow(wavelength, 5) * (Math.exp(1.4388e-2 / (wavelength * 2856)) - 1)));
+			}
+			colorimetry = Spectra.colorimetry(planck, 380, step);
+			assertEquals(0.4476f, colorimetry.xy().x(), 0.0005f);
+			assertEquals(0.4074f, colorimetry.xy().y(), 0.0005f);
+			assertEquals(2856, colorimetry.cct(), 10);
+		}
+
+		// Values outside the color matching functions are ignored.
+		var wide = new float[501];
+		Arrays.fill(wide, 1);
+		assertEquals(Spectra.xyz(flat, 380, 1).y(), Spectra.xyz(wide, 330, 1).y(), 0.01f);
+	}
 }
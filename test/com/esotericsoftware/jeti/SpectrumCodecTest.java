@@ -0,0 +1,128 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class SpectrumCodecTest extends JetiTest {
+	@Test
+	@DisplayName("Round trip a time series losslessly")
+	void testLossless () {
+		var random = new Random(1);
+		var encoder = new SpectrumCodec.Encoder(4001);
+		var times = new ArrayList<Long>();
+		var frames = new ArrayList<float[]>();
+		long time = 1_700_000_000_000L;
+		for (int i = 0; i < 50; i++) {
+			time += i == 20 ? 86_400_000 : i == 30 ? -5 : 100 + random.nextInt(2);
+			float[] spectrum = spectrum(random, 4001, 1 + i * 0.001f);
+			spectrum[7] = Float.NaN;
+			spectrum[8] = i % 2 == 0 ? Float.POSITIVE_INFINITY : -0f;
+			times.add(time);
+			frames.add(spectrum);
+			encoder.write(time, spectrum);
+		}
+		byte[] bytes = encoder.toBytes();
+		assertEquals(50, encoder.getFrameCount());
+		assertEquals(bytes.length, encoder.getSize());
+		assertTrue(bytes.length < 50 * 4001 * 4 * 0.8, "Size: " + bytes.length);
+
+		var decoder = new SpectrumCodec.Decoder(bytes);
+		assertEquals(4001, decoder.getCount());
+		for (int i = 0; i < 50; i++) {
+			assertTrue(decoder.next());
+			assertEquals(times.get(i), decoder.getTime());
+			float[] expected = frames.get(i), actual = decoder.getSpectrum();
+			for (int ii = 0; ii < expected.length; ii++)
+				assertEquals(Float.floatToRawIntBits(expected[ii]), Float.floatToRawIntBits(actual[ii]));
+		}
+		assertFalse(decoder.next());
+
+		float[] spectrum = frames.get(0);
+		assertArrayEquals(spectrum, SpectrumCodec.decode(SpectrumCodec.encode(spectrum)));
+	}
+
+	@Test
+	@DisplayName("Bound the error in lossy mode")
+	void testLossy () {
+		var random = new Random(2);
+		float maxError = 0.0005f;
+		var lossless = new SpectrumCodec.Encoder(1000);
+		var lossy = new SpectrumCodec.Encoder(1000, maxError);
+		var frames = new ArrayList<float[]>();
+		for (int i = 0; i < 20; i++) {
+			float[] spectrum = spectrum(random, 1000, 1);
+			frames.add(spectrum);
+			lossless.write(i * 1000, spectrum);
+			lossy.write(i * 1000, spectrum);
+		}
+		assertTrue(lossy.getSize() < lossless.getSize() / 2, lossy.getSize() + " < " + lossless.getSize());
+
+		var decoder = new SpectrumCodec.Decoder(lossy.toBytes());
+		for (float[] expected : frames) {
+			assertTrue(decoder.next());
+			float[] actual = decoder.getSpectrum();
+			for (int i = 0; i < expected.length; i++)
+				assertEquals(expected[i], actual[i], maxError * 1.0001f);
+		}
+		assertFalse(decoder.next());
+
+		var invalid = new float[1000];
+		invalid[3] = Float.NaN;
+		assertThrows(IllegalArgumentException.class, () -> lossy.write(0, invalid));
+	}
+
+	@Test
+	@DisplayName("Continue writing after reset and toBytes")
+	void testReset () {
+		var encoder = new SpectrumCodec.Encoder(3);
+		encoder.write(5, new float[] {1, 2, 3});
+		byte[] first = encoder.toBytes();
+		encoder.write(6, new float[] {1, 2, 4});
+		var decoder = new SpectrumCodec.Decoder(first);
+		assertTrue(decoder.next());
+		assertFalse(decoder.next());
+		decoder = new SpectrumCodec.Decoder(encoder.toBytes());
+		assertTrue(decoder.next());
+		assertTrue(decoder.next());
+		assertEquals(6, decoder.getTime());
+		assertArrayEquals(new float[] {1, 2, 4}, decoder.getSpectrum());
+
+		encoder.reset();
+		assertEquals(0, encoder.getFrameCount());
+		encoder.write(-1, new float[] {7, 8, 9});
+		assertArrayEquals(new float[] {7, 8, 9}, SpectrumCodec.decode(encoder.toBytes()));
+		assertThrows(IllegalArgumentException.class, () -> new SpectrumCodec.Decoder(new byte[3]));
+	}
+
+	@Test
+	@DisplayName("Reject a count larger than the data holds")
+	void testInvalidCount () {
+		var encoder = new SpectrumCodec.Encoder(3);
+		encoder.write(0, new float[] {1, 2, 3});
+		byte[] bytes = encoder.toBytes();
+		bytes[1] = bytes[2] = bytes[3] = bytes[4] = 0x7f; // Over 2 billion values.
+		var decoder = new SpectrumCodec.Decoder(bytes);
+		assertThrows(IllegalArgumentException.class, decoder::next);
+
+		// A block without frames can have any count.
+		assertFalse(new SpectrumCodec.Decoder(new SpectrumCodec.Encoder(1000).toBytes()).next());
+	}
+
+	/** Returns a smooth spectrum with 0.1% noise. */
+	static float[] spectrum (Random random, int count, float scale) {
+		var spectrum = new float[count];
+		for (int i = 0; i < count; i++) {
+			double wavelength = 380 + i * 0.1;
+			double value = Math.exp(-Math.pow((wavelength - 450) / 20, 2))
+				+ 0.6 * Math.exp(-Math.pow((wavelength - 580) / 60, 2));
+			spectrum[i] = (float)(scale * value * 0.01 * (1 + random.nextGaussian() * 0.001));
+		}
+		return spectrum;
+	}
+}
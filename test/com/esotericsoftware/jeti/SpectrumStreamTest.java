@@ -0,0 +1,81 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.jeti.SpectrumStream.Viewer;
+
+public class SpectrumStreamTest extends JetiTest {
+	static private final Pattern data = Pattern.compile("\"data\":\"([^\"]*)\"");
+
+	@Test
+	@DisplayName("Decode keyframes and deltas within the quantum")
+	void testEncode () throws Exception {
+		float quantum = 0.001f;
+		try (var stream = new SpectrumStream(380, 1, quantum)) {
+			stream.setKeyframeInterval(3);
+			Viewer viewer = stream.subscribe();
+			var decoded = new int[401];
+			var values = new float[401];
+			for (int frame = 0; frame < 7; frame++) {
+				for (int i = 0; i < values.length; i++)
+					values[i] = (float)Math.sin(i * 0.05 + frame * 0.1) * (i + 1);
+				stream.publish(values);
+				String event = new String(viewer.next(1, TimeUnit.SECONDS), StandardCharsets.US_ASCII);
+				boolean key = event.contains("event: key");
+				assertEquals(frame % 3 == 0, key, event);
+				decode(event, decoded, key);
+				for (int i = 0; i < values.length; i++)
+					assertEquals(values[i], decoded[i] * quantum, quantum / 2 + 1e-5f);
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Drop frames for a slow viewer until the next keyframe")
+	void testDrop () throws Exception {
+		try (var stream = new SpectrumStream(0, 1, 1)) {
+			stream.setViewerBuffer(2);
+			Viewer slow = stream.subscribe(), fast = stream.subscribe();
+			var values = new float[] {1, 2, 3};
+			for (int i = 0; i < 3; i++) {
+				stream.publish(values);
+				assertNotNull(fast.next(1, TimeUnit.SECONDS));
+			}
+			assertEquals(1, stream.getDroppedCount());
+			assertEquals(0, slow.frames.size());
+
+			stream.publish(values);
+			assertTrue(new String(fast.next(1, TimeUnit.SECONDS), StandardCharsets.US_ASCII).contains("event: key"));
+			assertTrue(new String(slow.next(1, TimeUnit.SECONDS), StandardCharsets.US_ASCII).contains("event: key"));
+			assertEquals(4, stream.getFrameCount());
+		}
+	}
+
+	static void decode (String event, int[] values, boolean key) {
+		Matcher matcher = data.matcher(event);
+		assertTrue(matcher.find(), event);
+		byte[] bytes = Base64.getDecoder().decode(matcher.group(1));
+		int previous = 0;
+		for (int i = 0, p = 0; i < values.length; i++) {
+			int zigzag = 0;
+			for (int shift = 0;; shift += 7) {
+				byte b = bytes[p++];
+				zigzag |= (b & 0x7f) << shift;
+				if (b >= 0) break;
+			}
+			int delta = (zigzag >>> 1) ^ -(zigzag & 1);
+			values[i] = (key ? previous : values[i]) + delta;
+			previous = values[i];
+		}
+	}
+}
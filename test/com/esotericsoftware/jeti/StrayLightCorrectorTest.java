@@ -0,0 +1,78 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class StrayLightCorrectorTest extends JetiTest {
+	@Test
+	@DisplayName("Multiply single spectra and batches like a direct computation")
+	void testMultiply () {
+		var random = new Random(1);
+		int n = 403; // Larger than one block of rows.
+		var correction = new float[n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				correction[i][j] = i == j ? 1 : random.nextFloat() * 0.001f - 0.0005f;
+		var corrector = new StrayLightCorrector(correction);
+
+		var spectra = new float[131][n];
+		var pixels = new int[131][n + 5];
+		for (int s = 0; s < spectra.length; s++) {
+			for (int j = 0; j < n; j++) {
+				pixels[s][j] = random.nextInt(65536);
+				spectra[s][j] = pixels[s][j];
+			}
+		}
+		float[][] batch = corrector.correct(spectra), pixelBatch = corrector.correct(pixels);
+		for (int s = 0; s < spectra.length; s++) {
+			float[] single = corrector.correct(spectra[s]);
+			for (int i = 0; i < n; i++) {
+				double expected = 0, magnitude = 0;
+				for (int j = 0; j < n; j++) {
+					double term = (double)correction[i][j] * spectra[s][j];
+					expected += term;
+					magnitude += Math.abs(term);
+				}
+				assertEquals(expected, single[i], magnitude * 1e-5);
+				assertEquals(single[i], batch[s][i], magnitude * 1e-5);
+				assertEquals(single[i], pixelBatch[s][i], magnitude * 1e-5);
+			}
+		}
+		assertArrayEquals(corrector.correct(spectra[3]), corrector.correct(pixels[3]));
+
+		// In place.
+		float[] expected = corrector.correct(spectra[0]);
+		corrector.correct(spectra, spectra);
+		assertArrayEquals(expected, spectra[0]);
+		assertThrows(IllegalArgumentException.class, () -> corrector.correct(spectra[0], spectra[0]));
+	}
+
+	@Test
+	@DisplayName("Remove stray light spread by a distribution matrix")
+	void testSpread () {
+		int n = 100;
+		var spread = new float[n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				if (Math.abs(i - j) > 2) spread[i][j] = 0.002f * (float)Math.exp(-Math.abs(i - j) / 30f);
+		var truth = new float[n];
+		truth[40] = 1000;
+		truth[41] = 500;
+		var measured = new float[n];
+		for (int i = 0; i < n; i++) {
+			double sum = truth[i];
+			for (int j = 0; j < n; j++)
+				sum += spread[i][j] * truth[j];
+			measured[i] = (float)sum;
+		}
+		assertTrue(measured[90] > 0.1f);
+		float[] corrected = StrayLightCorrector.fromSpread(spread).correct(measured);
+		for (int i = 0; i < n; i++)
+			assertEquals(truth[i], corrected[i], 1e-3);
+	}
+}
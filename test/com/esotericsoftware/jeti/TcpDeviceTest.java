@@ -0,0 +1,76 @@
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TcpDeviceTest extends JetiTest {
+	@Test
+	@DisplayName("Pipeline commands and match responses in order")
+	void testPipelining () throws Exception {
+		try (var emulator = new DeviceEmulator(0)) {
+			emulator.start();
+			try (var device = TcpDevice.open("localhost", emulator.getPort())) {
+				var responses = new ArrayList<CompletableFuture<String>>();
+				for (int i = 1; i <= 100; i++) {
+					responses.add(device.send("*CONF:TINT " + i));
+					responses.add(device.send("*CONF:TINT?"));
+				}
+				for (int i = 1; i <= 100; i++) {
+					assertEquals("", TcpDevice.get(responses.get(i * 2 - 2), 5000));
+					assertEquals(Float.toString(i), TcpDevice.get(responses.get(i * 2 - 1), 5000));
+				}
+
+				emulator.setFaults(0, 1);
+				var ex = assertThrows(JetiException.class, () -> device.sendCommand("*CONF:TINT?", 5000));
+				assertEquals(0x0E, ex.getErrorCode());
+				emulator.setFaults(0, 0);
+				assertEquals("100.0", device.sendCommand("*CONF:TINT?", 5000));
+
+				device.deviceWrite("*PARA:SERNO?\r");
+				assertEquals("EMU00001", device.deviceReadTerminated(5000));
+				ex = assertThrows(JetiException.class, () -> device.deviceReadTerminated(10));
+				assertEquals(JetiSDK.TIMEOUT, ex.getErrorCode());
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Complete a command on a lone ACK or NAK without a terminator")
+	void testLoneAckNak () throws Exception {
+		try (var emulator = new DeviceEmulator(0)) {
+			emulator.start();
+			try (var device = TcpDevice.open("localhost", emulator.getPort())) {
+				assertEquals("", device.sendCommand("*RST", 5000));
+				var ex = assertThrows(JetiException.class, () -> device.sendCommand("*BOGUS", 5000));
+				assertEquals(0x0B, ex.getErrorCode());
+				assertEquals("", device.sendCommand("*CONF:TINT 20", 5000));
+				assertEquals("20.0", device.sendCommand("*CONF:TINT?", 5000));
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Time out commands and close the connection when a response never arrives")
+	void testTimeout () throws Exception {
+		try (var emulator = new DeviceEmulator(0)) {
+			emulator.setFaults(1, 0);
+			emulator.start();
+			try (var device = TcpDevice.open("localhost", emulator.getPort())) {
+				var ex = assertThrows(JetiException.class, () -> device.sendCommand("*IDN?", 50));
+				assertEquals(JetiSDK.TIMEOUT, ex.getErrorCode());
+				// A later response could belong to the hung command, so the connection is closed.
+				for (int i = 0; i < 100 && !device.isClosed(); i++)
+					Thread.sleep(10);
+				assertTrue(device.isClosed());
+				assertEquals(0, device.getPending());
+				ex = assertThrows(JetiException.class, () -> device.sendCommand("*IDN?", 50));
+				assertEquals(0x14, ex.getErrorCode());
+			}
+		}
+	}
+}
@@ -0,0 +1,46 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TcpDriverTest extends JetiTest {
+	@Test
+	@DisplayName("Serve many devices from two I/O threads")
+	void testManyDevices () throws Exception {
+		try (var emulator = new DeviceEmulator(0)) {
+			emulator.start();
+			var driver = new TcpDriver(2);
+			var devices = new ArrayList<TcpDevice>();
+			try {
+				for (int i = 0; i < 200; i++)
+					devices.add(driver.connect("localhost", emulator.getPort()));
+
+				var responses = new ArrayList<CompletableFuture<String>>();
+				for (int round = 0; round < 10; round++)
+					for (int i = 0; i < devices.size(); i++) {
+						responses.add(devices.get(i).send("*CONF:TINT " + (i * 10 + round)));
+						responses.add(devices.get(i).send("*CONF:TINT?"));
+					}
+				int index = 0;
+				for (int round = 0; round < 10; round++)
+					for (int i = 0; i < devices.size(); i++) {
+						assertEquals("", TcpDevice.get(responses.get(index++), 10000));
+						assertEquals(Float.toString(i * 10 + round), TcpDevice.get(responses.get(index++), 10000));
+					}
+			} finally {
+				driver.close();
+			}
+
+			for (TcpDevice device : devices)
+				assertTrue(device.isClosed());
+			var ex = assertThrows(JetiException.class, () -> devices.get(0).sendCommand("*IDN?", 1000));
+			assertEquals(0x14, ex.getErrorCode());
+		}
+	}
+}
@@ -0,0 +1,72 @@
+
+package com.esotericsoftware.jeti;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.sun.jna.Library;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+
+/** A device backed by a Java library, for testing without hardware. */
+public final class TestDevice extends Device<TestDevice.TestLibrary> {
+	public TestDevice () {
+		this(new TestLibrary() {
+			public int JETI_Measure (Pointer handle, float integrationTime, int result) {
+				return result;
+			}
+
+			public int JETI_MeasureStatus (Pointer handle, IntByReference status) {
+				status.setValue(0);
+				return JetiSDK.SUCCESS;
+			}
+
+			public int JETI_Close (Pointer handle) {
+				return JetiSDK.SUCCESS;
+			}
+		});
+	}
+
+	public TestDevice (TestLibrary library) {
+		super( () -> library, new Pointer(0x1234), "JETI_Close", TestLibrary::JETI_Close, 0, 0, 1, 0, 0, 0);
+		serial = "TEST1234";
+		opened();
+	}
+
+	/** Returns a library whose functions return {@link JetiSDK#SUCCESS} and do nothing, except those in the map.
+	 * @param functions Maps a function name to the code that is run with its arguments and returns its result. */
+	@SuppressWarnings("unchecked")
+	static public <L extends Library> L library (Class<L> type, Map<String, Function<Object[], Integer>> functions) {
+		return (L)Proxy.newProxyInstance(type.getClassLoader(), new Class[] {type}, (proxy, method, args) -> {
+			if (method.getDeclaringClass() == Object.class) {
+				return switch (method.getName()) {
+				case "equals" -> proxy == args[0];
+				case "hashCode" -> System.identityHashCode(proxy);
+				default -> type.getSimpleName();
+				};
+			}
+			Function<Object[], Integer> function = functions.get(method.getName());
+			return function == null ? JetiSDK.SUCCESS : function.apply(args);
+		});
+	}
+
+	/** @param result The error code the native call returns. */
+	public void measure (float integrationTime, int result) {
+		this.integrationTime = integrationTime;
+		check("JETI_Measure", lib().JETI_Measure(handle, integrationTime, result));
+	}
+
+	public boolean isMeasuring () {
+		check(status("JETI_MeasureStatus", lib().JETI_MeasureStatus(handle, i[0]), i[0]));
+		return i[0].getValue() != 0;
+	}
+
+	public interface TestLibrary extends Library {
+		int JETI_Measure (Pointer handle, float integrationTime, int result);
+
+		int JETI_MeasureStatus (Pointer handle, IntByReference status);
+
+		int JETI_Close (Pointer handle);
+	}
+}
@@ -0,0 +1,84 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.jeti.TriggeredAcquisition.Frame;
+import com.sun.jna.Pointer;
+
+public class TriggeredAcquisitionTest extends JetiTest {
+	@Test
+	@DisplayName("Pass frames through the ring buffer and drop them when it is full")
+	void testRingBuffer () throws InterruptedException {
+		var acquisition = new TriggeredAcquisition(null, 1, 1000, 2);
+		acquisition.allocate(4);
+		acquisition.setTriggerPeriod(1);
+		assertNull(acquisition.poll(0, TimeUnit.MILLISECONDS));
+
+		long time = 1_000_000_000;
+		for (int i = 0; i < 3; i++) {
+			int[] pixels = acquisition.claim();
+			pixels[0] = i;
+			acquisition.publish(pixels, time);
+			time += 1_000_000;
+		}
+		assertEquals(3, acquisition.getTriggers());
+		assertEquals(1, acquisition.getDropped());
+
+		Frame frame = acquisition.poll(0, TimeUnit.MILLISECONDS);
+		assertEquals(0, frame.sequence);
+		assertEquals(0, frame.pixels[0]);
+		// The polled frame is not released until the next poll, so the ring buffer is still full.
+		assertNotSame(frame.pixels, acquisition.claim());
+
+		frame = acquisition.poll(0, TimeUnit.MILLISECONDS);
+		assertEquals(1, frame.sequence);
+		assertEquals(1, frame.pixels[0]);
+
+		// Two triggers missed between frames.
+		time += 2_000_000;
+		int[] pixels = acquisition.claim();
+		acquisition.publish(pixels, time);
+		frame = acquisition.poll(1, TimeUnit.SECONDS);
+		assertEquals(3, frame.sequence);
+		assertEquals(2, frame.missedTriggers);
+		assertEquals(2, acquisition.getMissedTriggers());
+		assertNull(acquisition.poll(0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	@DisplayName("Cancel the measurement on the acquisition thread when closed")
+	void testClose () throws InterruptedException {
+		var waiting = new CountDownLatch(1);
+		var timeouts = new ArrayList<Integer>();
+		var cancelThreads = new ArrayList<String>();
+		var core = new Core( () -> TestDevice.library(CoreLibrary.class, Map.of( //
+			"JETI_WaitReadTrigger", args -> {
+				timeouts.add((Integer)args[2]);
+				waiting.countDown();
+				sleep((Integer)args[2]);
+				return JetiSDK.TIMEOUT;
+			}, //
+			"JETI_Break", args -> {
+				cancelThreads.add(Thread.currentThread().getName());
+				return JetiSDK.SUCCESS;
+			})), new Pointer(0x1234));
+		var acquisition = new TriggeredAcquisition(core, 1, 60_000, 2);
+		acquisition.start();
+		assertTrue(waiting.await(5, TimeUnit.SECONDS));
+		acquisition.close();
+		assertFalse(acquisition.isRunning());
+		assertEquals(List.of("Triggered acquisition"), cancelThreads);
+		for (int timeout : timeouts)
+			assertEquals(TriggeredAcquisition.closeInterval, timeout);
+	}
+}
@@ -0,0 +1,88 @@
+
+package com.esotericsoftware.jeti;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.esotericsoftware.jeti.WindowAggregator.Summary;
+
+public class WindowAggregatorTest extends JetiTest {
+	@Test
+	@DisplayName("Summarize tumbling windows")
+	void testTumbling () {
+		var aggregator = new WindowAggregator(2, 10);
+		var summaries = new ArrayList<Summary>();
+		aggregator.setListener(summaries::add);
+		aggregator.add(0, 1, 3000, new float[] {1, Float.NaN});
+		aggregator.add(5, 3, Float.NaN, new float[] {3, Float.NaN});
+		aggregator.add(12, 10, 4000, new float[] {5, 1});
+		assertEquals(1, summaries.size());
+		Summary summary = summaries.get(0);
+		assertEquals(0, summary.start());
+		assertEquals(10, summary.end());
+		assertEquals(2, summary.frames());
+		assertEquals(2, summary.luminance().mean());
+		assertEquals(Math.sqrt(2), summary.luminance().standardDeviation(), 1e-6);
+		assertEquals(1, summary.luminance().min());
+		assertEquals(3, summary.luminance().max());
+		assertEquals(1, summary.cct().count());
+		assertEquals(0, summary.cct().standardDeviation());
+		assertEquals(2, summary.spectrumMean()[0]);
+		assertTrue(Float.isNaN(summary.spectrumMean()[1]));
+		assertTrue(Float.isNaN(summary.spectrumMax()[1]));
+
+		aggregator.add(3, 1, 1, new float[] {1, 1}); // Late.
+		assertEquals(1, aggregator.getLateCount());
+		aggregator.add(55, 20, 4000, new float[] {7, 1}); // Gap.
+		aggregator.flush();
+		assertEquals(3, summaries.size());
+		assertEquals(10, summaries.get(1).start());
+		assertEquals(1, summaries.get(1).frames());
+		assertEquals(50, summaries.get(2).start());
+	}
+
+	@Test
+	@DisplayName("Sliding windows match a direct computation")
+	void testSliding () {
+		var aggregator = new WindowAggregator(3, 40, 10);
+		var summaries = new ArrayList<Summary>();
+		aggregator.setListener(summaries::add);
+		var random = new Random(1);
+		var times = new ArrayList<Long>();
+		var values = new ArrayList<float[]>();
+		for (long time = 0; time < 200; time += 1 + random.nextInt(4)) {
+			var spectrum = new float[] {random.nextFloat(), random.nextFloat() * 1000, (float)random.nextGaussian()};
+			times.add(time);
+			values.add(spectrum);
+			aggregator.add(time, spectrum[0], spectrum[1], spectrum);
+		}
+		aggregator.flush();
+
+		for (Summary summary : summaries) {
+			assertEquals(40, summary.end() - summary.start());
+			for (int c = 0; c < 3; c++) {
+				double sum = 0, sumSquares = 0;
+				int n = 0;
+				for (int i = 0; i < times.size(); i++) {
+					if (times.get(i) < summary.start() || times.get(i) >= summary.end()) continue;
+					sum += values.get(i)[c];
+					n++;
+				}
+				double mean = sum / n;
+				for (int i = 0; i < times.size(); i++) {
+					if (times.get(i) < summary.start() || times.get(i) >= summary.end()) continue;
+					sumSquares += (values.get(i)[c] - mean) * (values.get(i)[c] - mean);
+				}
+				assertEquals(n, summary.frames());
+				assertEquals(mean, summary.spectrumMean()[c], Math.abs(mean) * 1e-5 + 1e-5);
+				assertEquals(Math.sqrt(sumSquares / (n - 1)), summary.spectrumStandardDeviation()[c], 1e-3);
+			}
+		}
+		assertEquals(200 / 10 + 3, summaries.size());
+	}
+}